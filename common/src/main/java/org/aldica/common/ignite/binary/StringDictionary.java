@@ -0,0 +1,401 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.common.ignite.binary;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.aldica.common.ignite.lifecycle.IgniteInstanceLifecycleAware;
+import org.alfresco.util.EqualsHelper;
+import org.alfresco.util.PropertyCheck;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteAtomicSequence;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.binary.BinaryObjectException;
+import org.apache.ignite.binary.BinarySerializer;
+import org.apache.ignite.cache.CacheAtomicityMode;
+import org.apache.ignite.cache.CacheMode;
+import org.apache.ignite.cache.CacheRebalanceMode;
+import org.apache.ignite.cache.CacheWriteSynchronizationMode;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * Instances of this class manage a shared dictionary of low-cardinality string values, mapping each value to a numerical ID which is
+ * stable for the lifetime of the data grid, so that {@link BinarySerializer serializers} can substitute such values with a compact ID. The
+ * dictionary is backed by a pair of replicated caches (or local caches if remote support is not enabled) and only ever grows, so that any
+ * value once assigned an ID can be resolved by any server in the grid at any time. Values are learned on first use, i.e. when an ID is
+ * {@link #getId(String) requested} for a value not yet known, up to a configurable maximum number of values. As IDs are requested while
+ * values are serialised, potentially on Ignite system threads, learning is performed asynchronously in a background thread, and the value
+ * is written as a literal until its ID has been assigned. Concurrent assignment of different IDs to the same value by multiple servers is
+ * resolved by an atomic put-if-absent, with the losing server discarding its candidate ID. All known values are additionally kept in local
+ * maps to avoid cache lookups in the hot paths of (de-)serialisation.
+ *
+ * Since the serial form of a value substituted via this dictionary depends on whether the value has already been learned, dictionaries
+ * must only be used for cache values, never for cache keys, which Ignite compares by their serial form.
+ *
+ * @author Axel Faust
+ */
+public class StringDictionary implements InitializingBean, IgniteInstanceLifecycleAware
+{
+
+    /**
+     * The ID returned by {@link #getId(String) ID lookups} when a value cannot / should not be assigned an ID.
+     */
+    public static final int NO_ID = -1;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StringDictionary.class);
+
+    private static final ThreadLocal<Boolean> LEARNING_SUPPRESSED = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    protected final Map<String, Integer> localIds = new ConcurrentHashMap<>();
+
+    protected final Map<Integer, String> localValues = new ConcurrentHashMap<>();
+
+    protected final Set<String> pendingValues = ConcurrentHashMap.newKeySet();
+
+    protected String instanceName;
+
+    protected String cacheName;
+
+    protected boolean enableRemoteSupport;
+
+    protected int maxEntries = 10000;
+
+    protected volatile boolean instanceStarted = false;
+
+    protected IgniteCache<String, Integer> idsCache;
+
+    protected IgniteCache<Integer, String> valuesCache;
+
+    protected IgniteAtomicSequence idSequence;
+
+    protected ExecutorService learningExecutor;
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterPropertiesSet()
+    {
+        PropertyCheck.mandatory(this, "instanceName", this.instanceName);
+        PropertyCheck.mandatory(this, "cacheName", this.cacheName);
+    }
+
+    /**
+     * @param instanceName
+     *            the name of the Ignite instance to which to attach the dictionary caches
+     */
+    public void setInstanceName(final String instanceName)
+    {
+        this.instanceName = instanceName;
+    }
+
+    /**
+     * @return the name of the Ignite instance to which the dictionary caches are attached
+     */
+    public String getInstanceName()
+    {
+        return this.instanceName;
+    }
+
+    /**
+     * @param cacheName
+     *            the base name of the dictionary caches
+     */
+    public void setCacheName(final String cacheName)
+    {
+        this.cacheName = cacheName;
+    }
+
+    /**
+     * @param enableRemoteSupport
+     *            the enableRemoteSupport to set
+     */
+    public void setEnableRemoteSupport(final boolean enableRemoteSupport)
+    {
+        this.enableRemoteSupport = enableRemoteSupport;
+    }
+
+    /**
+     * @param maxEntries
+     *            the maximum number of values to assign IDs to
+     */
+    public void setMaxEntries(final int maxEntries)
+    {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Suppresses / re-enables the learning of new values by any dictionary for the current thread, e.g. to determine the size of the
+     * serial form of live data for diagnostic purposes without polluting the dictionary with values which would otherwise never be used.
+     * While learning is suppressed, dictionaries only hand out IDs for values already known.
+     *
+     * @param suppressed
+     *            {@code true} if learning should be suppressed, {@code false} otherwise
+     * @return the previous state of the flag for the current thread, to be restored when done
+     */
+    public static boolean setLearningSuppressed(final boolean suppressed)
+    {
+        final boolean previous = LEARNING_SUPPRESSED.get().booleanValue();
+        LEARNING_SUPPRESSED.set(Boolean.valueOf(suppressed));
+        return previous;
+    }
+
+    /**
+     * Checks whether the learning of new values is suppressed for the current thread.
+     *
+     * @return {@code true} if learning is suppressed, {@code false} otherwise
+     */
+    public static boolean isLearningSuppressed()
+    {
+        return LEARNING_SUPPRESSED.get().booleanValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void beforeInstanceStartup(final String instanceName)
+    {
+        // NO-OP
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void afterInstanceStartup(final String instanceName)
+    {
+        if (EqualsHelper.nullSafeEquals(this.instanceName, instanceName))
+        {
+            final Ignite instance = Ignition.ignite(this.instanceName);
+
+            this.idsCache = instance.getOrCreateCache(this.createCacheConfiguration(this.cacheName + ".ids"));
+            this.valuesCache = instance.getOrCreateCache(this.createCacheConfiguration(this.cacheName + ".values"));
+            this.idSequence = instance.atomicSequence(this.cacheName + ".idSequence", 0, true);
+            this.learningExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, this.cacheName + "-learning");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            this.instanceStarted = true;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void beforeInstanceShutdown(final String instanceName)
+    {
+        if (EqualsHelper.nullSafeEquals(this.instanceName, instanceName))
+        {
+            this.instanceStarted = false;
+
+            this.learningExecutor.shutdownNow();
+            this.learningExecutor = null;
+            this.pendingValues.clear();
+
+            this.idsCache = null;
+            this.valuesCache = null;
+            this.idSequence = null;
+
+            // IDs are only valid for the lifetime of the grid, and may be different after restart
+            this.localIds.clear();
+            this.localValues.clear();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterInstanceShutdown(final String instanceName)
+    {
+        // NO-OP
+    }
+
+    /**
+     * Checks whether the dictionary is currently available for lookups and registrations.
+     *
+     * @return {@code true} if the dictionary is available, {@code false} otherwise
+     */
+    public boolean isAvailable()
+    {
+        return this.instanceStarted;
+    }
+
+    /**
+     * Registers a collection of values, synchronously assigning IDs to any value not encountered before. This operation must not be used
+     * while serialising values.
+     *
+     * @param values
+     *            the values to register
+     */
+    public synchronized void register(final Collection<String> values)
+    {
+        if (this.instanceStarted)
+        {
+            values.stream().filter(value -> value != null && !this.localIds.containsKey(value)).forEach(this::learn);
+        }
+    }
+
+    /**
+     * Retrieves the ID for a specific value. If the value has not been encountered before, a new ID is assigned asynchronously, unless
+     * {@link #setLearningSuppressed(boolean) learning is suppressed}, and the value needs to be written as a literal in the meantime.
+     *
+     * @param value
+     *            the value for which to retrieve the ID
+     * @return the ID of the value or {@link #NO_ID} if the dictionary is currently not available, the maximum number of values has
+     *         already been reached or the value has not (yet) been assigned an ID
+     */
+    public int getId(final String value)
+    {
+        Integer id = this.localIds.get(value);
+        if (id == null && this.instanceStarted)
+        {
+            // only check the local copy - never wait for remote servers on the serialisation path
+            id = this.idsCache.localPeek(value);
+            if (id != null)
+            {
+                this.localIds.put(value, id);
+                this.localValues.putIfAbsent(id, value);
+            }
+            else if (!isLearningSuppressed() && this.valuesCache.localSize() < this.maxEntries)
+            {
+                this.learnAsync(value);
+            }
+        }
+
+        return id != null ? id.intValue() : NO_ID;
+    }
+
+    protected void learnAsync(final String value)
+    {
+        final ExecutorService learningExecutor = this.learningExecutor;
+        if (learningExecutor != null && this.pendingValues.size() < this.maxEntries && this.pendingValues.add(value))
+        {
+            try
+            {
+                learningExecutor.execute(() -> {
+                    try
+                    {
+                        if (this.instanceStarted)
+                        {
+                            this.learn(value);
+                        }
+                    }
+                    catch (final RuntimeException rex)
+                    {
+                        LOGGER.debug("Failed to learn value {} in dictionary {}", value, this.cacheName, rex);
+                    }
+                    finally
+                    {
+                        this.pendingValues.remove(value);
+                    }
+                });
+            }
+            catch (final RejectedExecutionException rex)
+            {
+                // dictionary concurrently shut down
+                this.pendingValues.remove(value);
+            }
+        }
+    }
+
+    protected void learn(final String value)
+    {
+        Integer id = this.idsCache.get(value);
+        if (id == null && this.valuesCache.localSize() < this.maxEntries)
+        {
+            final int candidateId = (int) this.idSequence.incrementAndGet();
+
+            // make value resolvable before anyone else can use the ID
+            this.valuesCache.put(candidateId, value);
+            id = this.idsCache.getAndPutIfAbsent(value, candidateId);
+            if (id == null)
+            {
+                LOGGER.debug("Assigned ID {} to value {} in dictionary {}", candidateId, value, this.cacheName);
+                id = candidateId;
+            }
+            else
+            {
+                LOGGER.debug("Value {} was concurrently assigned ID {} in dictionary {}", value, id, this.cacheName);
+                this.valuesCache.remove(candidateId);
+            }
+        }
+
+        if (id != null)
+        {
+            this.localIds.put(value, id);
+            this.localValues.putIfAbsent(id, value);
+        }
+    }
+
+    /**
+     * Retrieves the value for a specific ID.
+     *
+     * @param id
+     *            the ID of the value to retrieve
+     * @return the value
+     * @throws BinaryObjectException
+     *             if the ID cannot be resolved
+     */
+    public String getValue(final int id) throws BinaryObjectException
+    {
+        String value = this.localValues.get(id);
+        if (value == null)
+        {
+            if (!this.instanceStarted)
+            {
+                throw new BinaryObjectException("Dictionary " + this.cacheName + " is not available to resolve ID " + id);
+            }
+
+            value = this.valuesCache.get(id);
+            if (value == null)
+            {
+                throw new BinaryObjectException("Cannot resolve value for ID " + id + " in dictionary " + this.cacheName);
+            }
+
+            // ensure that all deserialised instances share the same value instance
+            final String existingValue = this.localValues.putIfAbsent(id, value);
+            if (existingValue != null)
+            {
+                value = existingValue;
+            }
+            this.localIds.putIfAbsent(value, id);
+        }
+        return value;
+    }
+
+    protected <K, V> CacheConfiguration<K, V> createCacheConfiguration(final String name)
+    {
+        final CacheConfiguration<K, V> cacheConfig = new CacheConfiguration<>(name);
+        cacheConfig.setAtomicityMode(CacheAtomicityMode.ATOMIC);
+        if (this.enableRemoteSupport)
+        {
+            cacheConfig.setCacheMode(CacheMode.REPLICATED);
+            // values must be resolvable on any server as soon as an ID has been handed out for use
+            cacheConfig.setWriteSynchronizationMode(CacheWriteSynchronizationMode.FULL_SYNC);
+            cacheConfig.setRebalanceMode(CacheRebalanceMode.SYNC);
+            cacheConfig.setReadFromBackup(true);
+        }
+        else
+        {
+            cacheConfig.setCacheMode(CacheMode.LOCAL);
+        }
+        return cacheConfig;
+    }
+}
@@ -4,22 +4,46 @@
 package org.aldica.common.ignite.cache;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import javax.cache.configuration.Factory;
 import javax.cache.configuration.FactoryBuilder;
+import javax.cache.expiry.AccessedExpiryPolicy;
+import javax.cache.expiry.CreatedExpiryPolicy;
 import javax.cache.expiry.Duration;
+import javax.cache.expiry.EternalExpiryPolicy;
 import javax.cache.expiry.ExpiryPolicy;
+import javax.cache.expiry.ModifiedExpiryPolicy;
+import javax.cache.expiry.TouchedExpiryPolicy;
 
 import org.alfresco.util.ParameterCheck;
 
 /**
+ * Instances of this class combine multiple expiry policies, using the shortest of the durations provided by the constituent policies for
+ * each type of operation. As expiry policies are consulted by Ignite for every entry operation, this implementation avoids any allocations
+ * and time lookups. If all constituent policies are standard JCache policies with constant durations, the combined durations are
+ * precomputed once during construction, otherwise the constituent policies are consulted in a tight loop for every operation.
+ *
  * @author Axel Faust
  */
 public class CombinedExpiryPolicy implements ExpiryPolicy
 {
 
+    private static final Set<Class<?>> STATIC_POLICY_CLASSES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            CreatedExpiryPolicy.class, AccessedExpiryPolicy.class, ModifiedExpiryPolicy.class, TouchedExpiryPolicy.class,
+            EternalExpiryPolicy.class)));
+
+    private static final int OPERATION_CREATION = 0;
+
+    private static final int OPERATION_ACCESS = 1;
+
+    private static final int OPERATION_UPDATE = 2;
+
     /**
      * Obtains a {@link Factory} for a combined {@link ExpiryPolicy}.
      *
@@ -32,15 +56,44 @@ public class CombinedExpiryPolicy implements ExpiryPolicy
         return new FactoryBuilder.SingletonFactory<>(new CombinedExpiryPolicy(policyFactories));
     }
 
-    protected final Collection<ExpiryPolicy> policies;
+    protected final ExpiryPolicy[] policies;
+
+    protected final boolean staticDurations;
+
+    protected final Duration expiryForCreation;
+
+    protected final Duration expiryForAccess;
+
+    protected final Duration expiryForUpdate;
 
     public CombinedExpiryPolicy(final Collection<Factory<? extends ExpiryPolicy>> policyFactories)
     {
         ParameterCheck.mandatoryCollection("policyFactories", policyFactories);
-        this.policies = new ArrayList<>();
-        policyFactories.forEach(factory -> {
-            this.policies.add(factory.create());
-        });
+
+        final List<ExpiryPolicy> policies = new ArrayList<>();
+        boolean staticDurations = true;
+        for (final Factory<? extends ExpiryPolicy> factory : policyFactories)
+        {
+            final ExpiryPolicy policy = factory.create();
+            policies.add(policy);
+            // only exact classes are known to always return the same durations - sub-classes may override
+            staticDurations = staticDurations && STATIC_POLICY_CLASSES.contains(policy.getClass());
+        }
+        this.policies = policies.toArray(new ExpiryPolicy[0]);
+        this.staticDurations = staticDurations;
+
+        if (staticDurations)
+        {
+            this.expiryForCreation = shortestDuration(this.policies, OPERATION_CREATION);
+            this.expiryForAccess = shortestDuration(this.policies, OPERATION_ACCESS);
+            this.expiryForUpdate = shortestDuration(this.policies, OPERATION_UPDATE);
+        }
+        else
+        {
+            this.expiryForCreation = null;
+            this.expiryForAccess = null;
+            this.expiryForUpdate = null;
+        }
     }
 
     /**
@@ -49,22 +102,7 @@ public class CombinedExpiryPolicy implements ExpiryPolicy
     @Override
     public Duration getExpiryForCreation()
     {
-        final AtomicReference<Duration> shortestDuration = new AtomicReference<>();
-        final long currentTime = System.currentTimeMillis();
-
-        this.policies.forEach(policy -> {
-            final Duration duration = policy.getExpiryForCreation();
-            if (duration != null)
-            {
-                final Duration currentShortest = shortestDuration.get();
-                if (currentShortest == null || (currentShortest.getAdjustedTime(currentTime) > duration.getAdjustedTime(currentTime)))
-                {
-                    shortestDuration.set(duration);
-                }
-            }
-        });
-
-        return shortestDuration.get();
+        return this.staticDurations ? this.expiryForCreation : shortestDuration(this.policies, OPERATION_CREATION);
     }
 
     /**
@@ -73,22 +111,7 @@ public class CombinedExpiryPolicy implements ExpiryPolicy
     @Override
     public Duration getExpiryForAccess()
     {
-        final AtomicReference<Duration> shortestDuration = new AtomicReference<>();
-        final long currentTime = System.currentTimeMillis();
-
-        this.policies.forEach(policy -> {
-            final Duration duration = policy.getExpiryForAccess();
-            if (duration != null)
-            {
-                final Duration currentShortest = shortestDuration.get();
-                if (currentShortest == null || (currentShortest.getAdjustedTime(currentTime) > duration.getAdjustedTime(currentTime)))
-                {
-                    shortestDuration.set(duration);
-                }
-            }
-        });
-
-        return shortestDuration.get();
+        return this.staticDurations ? this.expiryForAccess : shortestDuration(this.policies, OPERATION_ACCESS);
     }
 
     /**
@@ -97,22 +120,42 @@ public class CombinedExpiryPolicy implements ExpiryPolicy
     @Override
     public Duration getExpiryForUpdate()
     {
-        final AtomicReference<Duration> shortestDuration = new AtomicReference<>();
-        final long currentTime = System.currentTimeMillis();
+        return this.staticDurations ? this.expiryForUpdate : shortestDuration(this.policies, OPERATION_UPDATE);
+    }
+
+    protected static Duration shortestDuration(final ExpiryPolicy[] policies, final int operation)
+    {
+        Duration shortestDuration = null;
+        long shortestMillis = Long.MAX_VALUE;
+
+        for (int idx = 0; idx < policies.length; idx++)
+        {
+            final Duration duration;
+            switch (operation)
+            {
+                case OPERATION_CREATION:
+                    duration = policies[idx].getExpiryForCreation();
+                    break;
+                case OPERATION_ACCESS:
+                    duration = policies[idx].getExpiryForAccess();
+                    break;
+                default:
+                    duration = policies[idx].getExpiryForUpdate();
+            }
 
-        this.policies.forEach(policy -> {
-            final Duration duration = policy.getExpiryForUpdate();
             if (duration != null)
             {
-                final Duration currentShortest = shortestDuration.get();
-                if (currentShortest == null || (currentShortest.getAdjustedTime(currentTime) > duration.getAdjustedTime(currentTime)))
+                // comparing the raw length is equivalent to comparing adjusted times without needing the current time
+                final long millis = duration.isEternal() ? Long.MAX_VALUE : duration.getTimeUnit().toMillis(duration.getDurationAmount());
+                if (shortestDuration == null || millis < shortestMillis)
                 {
-                    shortestDuration.set(duration);
+                    shortestDuration = duration;
+                    shortestMillis = millis;
                 }
             }
-        });
+        }
 
-        return shortestDuration.get();
+        return shortestDuration;
     }
 
 }
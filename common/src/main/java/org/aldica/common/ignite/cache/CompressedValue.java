@@ -0,0 +1,60 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.common.ignite.cache;
+
+import java.io.Serializable;
+
+/**
+ * Instances of this class hold the compressed, marshalled form of a cache value, which is stored in the off-heap memory of a data region
+ * instead of the value itself. Instances are opaque to Ignite and must only be unwrapped by the client which compressed the value.
+ *
+ * @author Axel Faust
+ */
+public class CompressedValue implements Serializable
+{
+
+    private static final long serialVersionUID = 5164282463715914582L;
+
+    private final byte[] data;
+
+    private final int uncompressedLength;
+
+    /**
+     * Creates a new instance of this class.
+     *
+     * @param data
+     *            the compressed data
+     * @param uncompressedLength
+     *            the length of the marshalled value before compression
+     */
+    public CompressedValue(final byte[] data, final int uncompressedLength)
+    {
+        if (data == null)
+        {
+            throw new IllegalArgumentException("Compressed data must not be null");
+        }
+        if (uncompressedLength < 0)
+        {
+            throw new IllegalArgumentException("Uncompressed length must not be negative");
+        }
+        this.data = data;
+        this.uncompressedLength = uncompressedLength;
+    }
+
+    /**
+     * @return the compressed data
+     */
+    public byte[] getData()
+    {
+        return this.data;
+    }
+
+    /**
+     * @return the length of the marshalled value before compression
+     */
+    public int getUncompressedLength()
+    {
+        return this.uncompressedLength;
+    }
+}
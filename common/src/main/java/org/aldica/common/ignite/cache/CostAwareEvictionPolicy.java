@@ -0,0 +1,355 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.common.ignite.cache;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Arrays;
+
+import org.apache.ignite.cache.eviction.AbstractEvictionPolicy;
+import org.apache.ignite.cache.eviction.EvictableEntry;
+
+/**
+ * Instances of this eviction policy implementation evict entries based on the Greedy-Dual-Size-Frequency algorithm, weighing entries by
+ * their access frequency, their {@link EvictableEntry#size() size} and the cost of reloading them. Each entry is assigned a priority of
+ * {@code L + frequency * cost / size} on every access, and the entry with the lowest priority is evicted, with {@code L} being inflated to
+ * the priority of the last evicted entry to age entries which are no longer accessed. The cost of reloading an entry is calculated as
+ * {@code loadCost + byteCost * size}, so that the ratio of both cost factors determines how strongly small entries are preferred over large
+ * entries in the same cache.
+ *
+ * @author Axel Faust
+ */
+public class CostAwareEvictionPolicy<K, V> extends AbstractEvictionPolicy<K, V>
+{
+
+    private static final long serialVersionUID = -3183745160298736619L;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Object lock = new Object();
+
+    private Node[] heap = new Node[INITIAL_CAPACITY];
+
+    private volatile int currentSize;
+
+    private double inflation;
+
+    private double loadCost = 1;
+
+    private double byteCost = 0;
+
+    /**
+     * Default constructor
+     */
+    public CostAwareEvictionPolicy()
+    {
+        // NO-OP
+    }
+
+    /**
+     * @return the fixed cost of reloading an entry
+     */
+    public double getLoadCost()
+    {
+        return this.loadCost;
+    }
+
+    /**
+     * @param loadCost
+     *            the fixed cost of reloading an entry
+     */
+    public void setLoadCost(final double loadCost)
+    {
+        if (loadCost < 0)
+        {
+            throw new IllegalArgumentException("Load cost must not be negative");
+        }
+        this.loadCost = loadCost;
+    }
+
+    /**
+     * @return the cost of reloading an entry per byte of its size
+     */
+    public double getByteCost()
+    {
+        return this.byteCost;
+    }
+
+    /**
+     * @param byteCost
+     *            the cost of reloading an entry per byte of its size
+     */
+    public void setByteCost(final double byteCost)
+    {
+        if (byteCost < 0)
+        {
+            throw new IllegalArgumentException("Byte cost must not be negative");
+        }
+        this.byteCost = byteCost;
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeExternal(final ObjectOutput out) throws IOException
+    {
+        super.writeExternal(out);
+        out.writeDouble(this.loadCost);
+        out.writeDouble(this.byteCost);
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void readExternal(final ObjectInput in) throws IOException, ClassNotFoundException
+    {
+        super.readExternal(in);
+        this.loadCost = in.readDouble();
+        this.byteCost = in.readDouble();
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    protected int getCurrentSize()
+    {
+        return this.currentSize;
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected int shrink0()
+    {
+        Node victim = null;
+        synchronized (this.lock)
+        {
+            if (this.currentSize > 0)
+            {
+                victim = this.heap[0];
+                this.removeAt(0);
+                this.inflation = victim.priority;
+            }
+        }
+
+        int size = -1;
+        if (victim != null)
+        {
+            size = 0;
+            final EvictableEntry<K, V> entry = (EvictableEntry<K, V>) victim.entry;
+            if (entry.removeMeta(victim))
+            {
+                size = entry.size();
+                this.memSize.add(-size);
+
+                if (!entry.evict())
+                {
+                    this.touch(entry);
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean removeMeta(final Object meta)
+    {
+        boolean removed = false;
+        if (meta instanceof Node)
+        {
+            final Node node = (Node) meta;
+            synchronized (this.lock)
+            {
+                node.removed = true;
+                if (node.index >= 0)
+                {
+                    this.removeAt(node.index);
+                    removed = true;
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean touch(final EvictableEntry<K, V> entry)
+    {
+        boolean added = false;
+
+        // entry meta operations must never be performed while holding the lock, as Ignite may notify the policy while holding entry locks
+        Node node = entry.meta();
+        final int size = entry.size();
+        if (node == null)
+        {
+            node = new Node(entry);
+            if (entry.putMetaIfAbsent(node) == null)
+            {
+                if (entry.isCached())
+                {
+                    synchronized (this.lock)
+                    {
+                        // concurrent removal between setting the meta and enqueuing
+                        if (!node.removed)
+                        {
+                            node.frequency = 1;
+                            node.priority = this.priority(node.frequency, size);
+                            this.add(node);
+                            added = true;
+                        }
+                    }
+
+                    // size must be accounted even if removed concurrently as removal already subtracted it
+                    this.memSize.add(size);
+                }
+                else if (!entry.removeMeta(node))
+                {
+                    // concurrently evicted and removal already subtracted the size
+                    this.memSize.add(size);
+                }
+            }
+        }
+        else
+        {
+            synchronized (this.lock)
+            {
+                if (node.index >= 0)
+                {
+                    node.frequency++;
+                    node.priority = this.priority(node.frequency, size);
+                    // priority can only increase, unless the entry has grown significantly
+                    this.siftDown(node.index);
+                    this.siftUp(node.index);
+                }
+            }
+        }
+
+        return added;
+    }
+
+    protected double priority(final long frequency, final int size)
+    {
+        final int effectiveSize = Math.max(1, size);
+        final double cost = this.loadCost + this.byteCost * effectiveSize;
+        return this.inflation + frequency * cost / effectiveSize;
+    }
+
+    protected void add(final Node node)
+    {
+        final int index = this.currentSize;
+        if (index == this.heap.length)
+        {
+            this.heap = Arrays.copyOf(this.heap, index * 2);
+        }
+        this.heap[index] = node;
+        node.index = index;
+        this.currentSize = index + 1;
+        this.siftUp(index);
+    }
+
+    protected void removeAt(final int index)
+    {
+        final int lastIndex = this.currentSize - 1;
+        final Node node = this.heap[index];
+        final Node last = this.heap[lastIndex];
+        this.heap[lastIndex] = null;
+        this.currentSize = lastIndex;
+        node.index = -1;
+
+        if (index != lastIndex)
+        {
+            this.heap[index] = last;
+            last.index = index;
+            this.siftDown(index);
+            this.siftUp(last.index);
+        }
+    }
+
+    protected void siftUp(final int index)
+    {
+        int idx = index;
+        final Node node = this.heap[idx];
+        while (idx > 0)
+        {
+            final int parentIdx = (idx - 1) >>> 1;
+            final Node parent = this.heap[parentIdx];
+            if (parent.priority <= node.priority)
+            {
+                break;
+            }
+            this.heap[idx] = parent;
+            parent.index = idx;
+            idx = parentIdx;
+        }
+        this.heap[idx] = node;
+        node.index = idx;
+    }
+
+    protected void siftDown(final int index)
+    {
+        int idx = index;
+        final Node node = this.heap[idx];
+        final int size = this.currentSize;
+        int childIdx = 2 * idx + 1;
+        while (childIdx < size)
+        {
+            if (childIdx + 1 < size && this.heap[childIdx + 1].priority < this.heap[childIdx].priority)
+            {
+                childIdx++;
+            }
+            final Node child = this.heap[childIdx];
+            if (node.priority <= child.priority)
+            {
+                break;
+            }
+            this.heap[idx] = child;
+            child.index = idx;
+            idx = childIdx;
+            childIdx = 2 * idx + 1;
+        }
+        this.heap[idx] = node;
+        node.index = idx;
+    }
+
+    /**
+     * Instances of this class represent the policy-specific metadata of a single cache entry, which is held in the priority heap.
+     *
+     * @author Axel Faust
+     */
+    protected static class Node
+    {
+
+        protected final EvictableEntry<?, ?> entry;
+
+        protected int index = -1;
+
+        protected long frequency;
+
+        protected double priority;
+
+        protected boolean removed;
+
+        protected Node(final EvictableEntry<?, ?> entry)
+        {
+            this.entry = entry;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.common.ignite.cache;
+
+import org.apache.ignite.cache.eviction.AbstractEvictionPolicyFactory;
+
+/**
+ * Instances of this factory create {@link CostAwareEvictionPolicy size- and cost-aware eviction policy} instances, which prefer to retain
+ * small, frequently accessed and expensive-to-reload entries over large entries that are cheap to reload.
+ *
+ * @author Axel Faust
+ */
+public class CostAwareEvictionPolicyFactory<K, V> extends AbstractEvictionPolicyFactory<CostAwareEvictionPolicy<K, V>>
+{
+
+    private static final long serialVersionUID = -7710215940383347581L;
+
+    private double loadCost = 1;
+
+    private double byteCost = 0;
+
+    /**
+     * @return the fixed cost of reloading an entry
+     */
+    public double getLoadCost()
+    {
+        return this.loadCost;
+    }
+
+    /**
+     * @param loadCost
+     *            the fixed cost of reloading an entry
+     */
+    public void setLoadCost(final double loadCost)
+    {
+        if (loadCost < 0)
+        {
+            throw new IllegalArgumentException("Load cost must not be negative");
+        }
+        this.loadCost = loadCost;
+    }
+
+    /**
+     * @return the cost of reloading an entry per byte of its size
+     */
+    public double getByteCost()
+    {
+        return this.byteCost;
+    }
+
+    /**
+     * @param byteCost
+     *            the cost of reloading an entry per byte of its size
+     */
+    public void setByteCost(final double byteCost)
+    {
+        if (byteCost < 0)
+        {
+            throw new IllegalArgumentException("Byte cost must not be negative");
+        }
+        this.byteCost = byteCost;
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public CostAwareEvictionPolicy<K, V> create()
+    {
+        final CostAwareEvictionPolicy<K, V> policy = new CostAwareEvictionPolicy<>();
+
+        policy.setBatchSize(this.getBatchSize());
+        policy.setMaxMemorySize(this.getMaxMemorySize());
+        policy.setMaxSize(this.getMaxSize());
+        policy.setLoadCost(this.loadCost);
+        policy.setByteCost(this.byteCost);
+
+        return policy;
+    }
+
+}
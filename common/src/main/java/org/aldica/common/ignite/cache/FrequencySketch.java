@@ -0,0 +1,147 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.common.ignite.cache;
+
+/**
+ * Instances of this class provide a compact, probabilistic estimate of the access frequency of cache keys using a count-min sketch with
+ * four hash functions and 4-bit counters, packed sixteen to a {@code long}. The sketch requires a single {@code long} per expected entry
+ * and periodically halves all counters once a sample of accesses has been recorded, so that the estimate ages and adapts to changing
+ * access patterns. The sketch can grow while retaining the recorded accesses, so it may be sized based on the current number of entries
+ * of a cache without a fixed maximum size.
+ *
+ * The counter layout, the hash seeds as well as the increment and reset scheme are derived from the {@code FrequencySketch} of the
+ * Caffeine caching library (Copyright Ben Manes, licensed under the Apache License, Version 2.0 - https://github.com/ben-manes/caffeine).
+ *
+ * Instances of this class are not thread-safe and must be guarded by the client.
+ *
+ * @author Axel Faust
+ */
+public final class FrequencySketch
+{
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+
+    private static final int MAX_COUNT = 15;
+
+    private long[] table = new long[1];
+
+    private int tableMask = 0;
+
+    private int sampleSize = 10;
+
+    private int size;
+
+    /**
+     * Ensures the sketch is large enough to provide accurate estimates for a specific number of entries. Growing the sketch retains the
+     * estimated frequencies of all previously recorded accesses.
+     *
+     * @param maximumSize
+     *            the number of entries to support
+     */
+    public void ensureCapacity(final long maximumSize)
+    {
+        final int maximum = (int) Math.min(Math.max(maximumSize, 1), Integer.MAX_VALUE >>> 1);
+        if (this.table.length < maximum)
+        {
+            final long[] oldTable = this.table;
+            final int oldTableMask = this.tableMask;
+
+            this.table = new long[Integer.highestOneBit(maximum - 1) << 1];
+            this.tableMask = this.table.length - 1;
+            this.sampleSize = maximum > Integer.MAX_VALUE / 10 ? Integer.MAX_VALUE : 10 * maximum;
+
+            // the index of a key in the grown table only adds higher bits to its index in the old table, so replicating the old table
+            // into each section of the grown table yields the same counters for every key
+            for (int i = 0; i < this.table.length; i++)
+            {
+                this.table[i] = oldTable[i & oldTableMask];
+            }
+        }
+    }
+
+    /**
+     * Retrieves the estimated access frequency of a key.
+     *
+     * @param keyHash
+     *            the hash code of the key
+     * @return the estimated frequency between {@code 0} and {@code 15}
+     */
+    public int frequency(final int keyHash)
+    {
+        final int hash = spread(keyHash);
+        final int start = (hash & 3) << 2;
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < 4; i++)
+        {
+            final int index = this.indexOf(hash, i);
+            final int count = (int) ((this.table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Records an access of a key.
+     *
+     * @param keyHash
+     *            the hash code of the key
+     */
+    public void increment(final int keyHash)
+    {
+        final int hash = spread(keyHash);
+        final int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++)
+        {
+            added |= this.incrementAt(this.indexOf(hash, i), start + i);
+        }
+
+        if (added && ++this.size >= this.sampleSize)
+        {
+            this.reset();
+        }
+    }
+
+    private boolean incrementAt(final int index, final int counter)
+    {
+        final int offset = counter << 2;
+        final long mask = 0xfL << offset;
+        final boolean incremented = (this.table[index] & mask) != mask;
+        if (incremented)
+        {
+            this.table[index] += 1L << offset;
+        }
+        return incremented;
+    }
+
+    private void reset()
+    {
+        int oddCounters = 0;
+        for (int i = 0; i < this.table.length; i++)
+        {
+            oddCounters += Long.bitCount(this.table[i] & ONE_MASK);
+            this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+        }
+        // halving truncates odd counters, which needs to be reflected in the number of recorded accesses
+        this.size = (this.size >>> 1) - (oddCounters >>> 2);
+    }
+
+    private int indexOf(final int hash, final int i)
+    {
+        long index = (hash + SEEDS[i]) * SEEDS[i];
+        index += index >>> 32;
+        return ((int) index) & this.tableMask;
+    }
+
+    private static int spread(final int keyHash)
+    {
+        int hash = ((keyHash >>> 16) ^ keyHash) * 0x45d9f3b;
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+}
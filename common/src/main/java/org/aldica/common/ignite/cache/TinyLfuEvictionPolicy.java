@@ -0,0 +1,321 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.common.ignite.cache;
+
+import org.apache.ignite.cache.eviction.AbstractEvictionPolicy;
+import org.apache.ignite.cache.eviction.EvictableEntry;
+
+/**
+ * Instances of this eviction policy implementation evict entries based on an approximation of the W-TinyLFU algorithm. New entries are
+ * added to a small admission window, from which they overflow into the probationary segment of the main space. Entries accessed again
+ * while in the probationary segment are promoted to the protected segment, which holds up to 80% of the main space. When eviction is
+ * required, the most recent entry overflowing from the window competes with the least recently used entry of the probationary segment, and
+ * the one with the lower {@link FrequencySketch estimated access frequency} is evicted.
+ *
+ * In contrast to LRU-based eviction, a scan of a large number of entries which are accessed only once - e.g. a full-text reindex or bulk
+ * export - cannot flush the frequently accessed entries from the cache, as the scanned entries consistently lose against them.
+ *
+ * @author Axel Faust
+ */
+public class TinyLfuEvictionPolicy<K, V> extends AbstractEvictionPolicy<K, V>
+{
+
+    private static final long serialVersionUID = 1883526734578121573L;
+
+    private static final int WINDOW_PERCENTAGE = 1;
+
+    private static final int PROTECTED_PERCENTAGE = 80;
+
+    private static final int MIN_SKETCH_CAPACITY = 64;
+
+    private final Object lock = new Object();
+
+    private final FrequencySketch sketch = new FrequencySketch();
+
+    private final NodeQueue window = new NodeQueue();
+
+    private final NodeQueue probation = new NodeQueue();
+
+    private final NodeQueue protectedQueue = new NodeQueue();
+
+    private volatile int currentSize;
+
+    /**
+     * Default constructor
+     */
+    public TinyLfuEvictionPolicy()
+    {
+        // NO-OP
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    protected int getCurrentSize()
+    {
+        return this.currentSize;
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected int shrink0()
+    {
+        final Node victim;
+        synchronized (this.lock)
+        {
+            victim = this.selectVictim();
+            if (victim != null)
+            {
+                victim.queue.remove(victim);
+                this.currentSize--;
+            }
+        }
+
+        int size = -1;
+        if (victim != null)
+        {
+            size = 0;
+            final EvictableEntry<K, V> entry = (EvictableEntry<K, V>) victim.entry;
+            if (entry.removeMeta(victim))
+            {
+                size = entry.size();
+                this.memSize.add(-size);
+
+                if (!entry.evict())
+                {
+                    this.touch(entry);
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean removeMeta(final Object meta)
+    {
+        boolean removed = false;
+        if (meta instanceof Node)
+        {
+            final Node node = (Node) meta;
+            synchronized (this.lock)
+            {
+                node.removed = true;
+                if (node.queue != null)
+                {
+                    node.queue.remove(node);
+                    this.currentSize--;
+                    removed = true;
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean touch(final EvictableEntry<K, V> entry)
+    {
+        final int keyHash = entry.getKey().hashCode();
+        boolean added = false;
+
+        // entry meta operations must never be performed while holding the lock, as Ignite may notify the policy while holding entry locks
+        Node node = entry.meta();
+        if (node == null)
+        {
+            node = new Node(entry, keyHash);
+            if (entry.putMetaIfAbsent(node) == null)
+            {
+                if (entry.isCached())
+                {
+                    synchronized (this.lock)
+                    {
+                        this.sketch.increment(keyHash);
+                        // concurrent removal between setting the meta and enqueuing
+                        if (!node.removed)
+                        {
+                            this.window.addLast(node);
+                            this.currentSize++;
+                            // without a maximum size, the sketch grows with the cache while retaining the recorded frequencies
+                            this.sketch.ensureCapacity(Math.max(MIN_SKETCH_CAPACITY, Math.max(this.getMaxSize(), this.currentSize)));
+                            this.overflowWindow();
+                            added = true;
+                        }
+                    }
+
+                    // size must be accounted even if removed concurrently as removal already subtracted it
+                    this.memSize.add(entry.size());
+                }
+                else if (!entry.removeMeta(node))
+                {
+                    // concurrently evicted and removal already subtracted the size
+                    this.memSize.add(entry.size());
+                }
+            }
+        }
+        else
+        {
+            synchronized (this.lock)
+            {
+                this.sketch.increment(keyHash);
+                this.onHit(node);
+            }
+        }
+
+        return added;
+    }
+
+    protected void onHit(final Node node)
+    {
+        if (node.queue == this.window || node.queue == this.protectedQueue)
+        {
+            node.queue.remove(node);
+            node.queue.addLast(node);
+        }
+        else if (node.queue == this.probation)
+        {
+            this.probation.remove(node);
+            this.protectedQueue.addLast(node);
+
+            final int protectedMax = Math.max(1, (this.currentSize - this.window.count) * PROTECTED_PERCENTAGE / 100);
+            while (this.protectedQueue.count > protectedMax)
+            {
+                final Node demoted = this.protectedQueue.head;
+                this.protectedQueue.remove(demoted);
+                this.probation.addLast(demoted);
+            }
+        }
+    }
+
+    protected void overflowWindow()
+    {
+        final int windowMax = Math.max(1, this.currentSize * WINDOW_PERCENTAGE / 100);
+        while (this.window.count > windowMax)
+        {
+            final Node candidate = this.window.head;
+            this.window.remove(candidate);
+            this.probation.addLast(candidate);
+        }
+    }
+
+    protected Node selectVictim()
+    {
+        Node victim = this.probation.head;
+        if (victim != null)
+        {
+            // most recent overflow from the window (or demotion from the protected segment) competes for admission
+            final Node candidate = this.probation.tail;
+            if (candidate != victim && this.sketch.frequency(candidate.keyHash) <= this.sketch.frequency(victim.keyHash))
+            {
+                victim = candidate;
+            }
+        }
+        else if (this.protectedQueue.head != null)
+        {
+            victim = this.protectedQueue.head;
+        }
+        else
+        {
+            victim = this.window.head;
+        }
+        return victim;
+    }
+
+    /**
+     * Instances of this class represent the policy-specific metadata of a single cache entry, which is linked into one of the queues.
+     *
+     * @author Axel Faust
+     */
+    protected static class Node
+    {
+
+        protected final EvictableEntry<?, ?> entry;
+
+        protected final int keyHash;
+
+        protected NodeQueue queue;
+
+        protected Node prev;
+
+        protected Node next;
+
+        protected boolean removed;
+
+        protected Node(final EvictableEntry<?, ?> entry, final int keyHash)
+        {
+            this.entry = entry;
+            this.keyHash = keyHash;
+        }
+    }
+
+    /**
+     * Instances of this class are simple, intrusive doubly-linked queues of {@link Node nodes} ordered from least to most recently used.
+     *
+     * @author Axel Faust
+     */
+    protected static class NodeQueue
+    {
+
+        protected Node head;
+
+        protected Node tail;
+
+        protected int count;
+
+        protected void addLast(final Node node)
+        {
+            node.queue = this;
+            node.prev = this.tail;
+            node.next = null;
+            if (this.tail != null)
+            {
+                this.tail.next = node;
+            }
+            else
+            {
+                this.head = node;
+            }
+            this.tail = node;
+            this.count++;
+        }
+
+        protected void remove(final Node node)
+        {
+            if (node.prev != null)
+            {
+                node.prev.next = node.next;
+            }
+            else
+            {
+                this.head = node.next;
+            }
+
+            if (node.next != null)
+            {
+                node.next.prev = node.prev;
+            }
+            else
+            {
+                this.tail = node.prev;
+            }
+
+            node.queue = null;
+            node.prev = null;
+            node.next = null;
+            this.count--;
+        }
+    }
+}
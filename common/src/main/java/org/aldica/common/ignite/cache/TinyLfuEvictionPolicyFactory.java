@@ -0,0 +1,35 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.common.ignite.cache;
+
+import org.apache.ignite.cache.eviction.AbstractEvictionPolicyFactory;
+
+/**
+ * Instances of this factory create {@link TinyLfuEvictionPolicy frequency-aware eviction policy} instances, which retain frequently
+ * accessed entries during scans of large numbers of entries that are only accessed once.
+ *
+ * @author Axel Faust
+ */
+public class TinyLfuEvictionPolicyFactory<K, V> extends AbstractEvictionPolicyFactory<TinyLfuEvictionPolicy<K, V>>
+{
+
+    private static final long serialVersionUID = 4730941781626208335L;
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public TinyLfuEvictionPolicy<K, V> create()
+    {
+        final TinyLfuEvictionPolicy<K, V> policy = new TinyLfuEvictionPolicy<>();
+
+        policy.setBatchSize(this.getBatchSize());
+        policy.setMaxMemorySize(this.getMaxMemorySize());
+        policy.setMaxSize(this.getMaxSize());
+
+        return policy;
+    }
+
+}
@@ -3,9 +3,11 @@
  * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
 package org.aldica.common.ignite.lifecycle;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.UUID;
 
 import org.aldica.common.ignite.context.ExternalContext;
@@ -27,10 +29,12 @@ import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.event.ContextClosedEvent;
 import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
 
 /**
  * This lifecycle bean initialises an Ignite grid when the Spring application context has been bootstrapped and shuts it down when the
- * context is about to be stopped.
+ * context is about to be stopped. All {@link IgniteInstanceLifecycleAware lifecycle-aware beans} are notified in the order defined by
+ * {@link org.springframework.core.Ordered} / {@link org.springframework.core.annotation.Order}, if any.
  *
  * @author Axel Faust
  */
@@ -112,8 +116,7 @@ public class SpringIgniteLifecycleBean implements InitializingBean, ApplicationL
         if (this.enabled && this.ignite == null)
         {
             final String instanceName = this.configuration.getIgniteInstanceName();
-            final Collection<IgniteInstanceLifecycleAware> gridLifecycleAwareBeans = this.applicationContext
-                    .getBeansOfType(IgniteInstanceLifecycleAware.class, true, false).values();
+            final List<IgniteInstanceLifecycleAware> gridLifecycleAwareBeans = this.getGridLifecycleAwareBeans();
 
             synchronized (this)
             {
@@ -146,8 +149,7 @@ public class SpringIgniteLifecycleBean implements InitializingBean, ApplicationL
         if (this.ignite != null)
         {
             final String instaneName = this.configuration.getIgniteInstanceName();
-            final Collection<IgniteInstanceLifecycleAware> gridLifecycleAwareBeans = this.applicationContext
-                    .getBeansOfType(IgniteInstanceLifecycleAware.class, true, false).values();
+            final List<IgniteInstanceLifecycleAware> gridLifecycleAwareBeans = this.getGridLifecycleAwareBeans();
 
             synchronized (this)
             {
@@ -172,6 +174,15 @@ public class SpringIgniteLifecycleBean implements InitializingBean, ApplicationL
         }
     }
 
+    protected List<IgniteInstanceLifecycleAware> getGridLifecycleAwareBeans()
+    {
+        final List<IgniteInstanceLifecycleAware> gridLifecycleAwareBeans = new ArrayList<>(
+                this.applicationContext.getBeansOfType(IgniteInstanceLifecycleAware.class, true, false).values());
+        // stable sort - beans without explicit order retain their order of definition
+        AnnotationAwareOrderComparator.sort(gridLifecycleAwareBeans);
+        return gridLifecycleAwareBeans;
+    }
+
     protected void setupGridEvents()
     {
         this.logCurrentGridNodes(this.ignite.cluster().nodes());
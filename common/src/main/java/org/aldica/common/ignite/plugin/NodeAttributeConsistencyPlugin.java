@@ -0,0 +1,14 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.common.ignite.plugin;
+
+import org.apache.ignite.plugin.IgnitePlugin;
+
+/**
+ * @author Axel Faust
+ */
+public class NodeAttributeConsistencyPlugin implements IgnitePlugin
+{
+    // dummy plugin instance class (API does not require any feature)
+}
@@ -0,0 +1,97 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.common.ignite.plugin;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.apache.ignite.plugin.PluginConfiguration;
+
+/**
+ * @author Axel Faust
+ */
+public class NodeAttributeConsistencyPluginConfiguration implements PluginConfiguration
+{
+
+    protected boolean enabled;
+
+    protected Map<String, String> consistentAttributeDefaults = Collections.emptyMap();
+
+    protected String nodeRoleAttributeKey;
+
+    protected Collection<String> validatedNodeRoleAttributeValues;
+
+    /**
+     * @return the enabled
+     */
+    public boolean isEnabled()
+    {
+        return this.enabled;
+    }
+
+    /**
+     * @param enabled
+     *            the enabled to set
+     */
+    public void setEnabled(final boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return the keys of node attributes which must be consistent on all validated members, mapped to the value assumed for members not
+     *         advertising the attribute (e.g. older versions) - a {@code null} value denotes that such members are not validated
+     */
+    public Map<String, String> getConsistentAttributeDefaults()
+    {
+        return new HashMap<>(this.consistentAttributeDefaults);
+    }
+
+    /**
+     * @param consistentAttributeDefaults
+     *            the consistentAttributeDefaults to set
+     */
+    public void setConsistentAttributeDefaults(final Map<String, String> consistentAttributeDefaults)
+    {
+        this.consistentAttributeDefaults = consistentAttributeDefaults != null ? new HashMap<>(consistentAttributeDefaults)
+                : Collections.emptyMap();
+    }
+
+    /**
+     * @return the nodeRoleAttributeKey
+     */
+    public String getNodeRoleAttributeKey()
+    {
+        return this.nodeRoleAttributeKey;
+    }
+
+    /**
+     * @param nodeRoleAttributeKey
+     *            the nodeRoleAttributeKey to set
+     */
+    public void setNodeRoleAttributeKey(final String nodeRoleAttributeKey)
+    {
+        this.nodeRoleAttributeKey = nodeRoleAttributeKey;
+    }
+
+    /**
+     * @return the validatedNodeRoleAttributeValues
+     */
+    public Collection<String> getValidatedNodeRoleAttributeValues()
+    {
+        return this.validatedNodeRoleAttributeValues != null ? new HashSet<>(this.validatedNodeRoleAttributeValues) : null;
+    }
+
+    /**
+     * @param validatedNodeRoleAttributeValues
+     *            the validatedNodeRoleAttributeValues to set
+     */
+    public void setValidatedNodeRoleAttributeValues(final Collection<String> validatedNodeRoleAttributeValues)
+    {
+        this.validatedNodeRoleAttributeValues = validatedNodeRoleAttributeValues;
+    }
+}
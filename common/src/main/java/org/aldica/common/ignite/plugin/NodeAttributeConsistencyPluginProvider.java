@@ -0,0 +1,253 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.common.ignite.plugin;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+
+import org.alfresco.util.EqualsHelper;
+import org.apache.ignite.IgniteCheckedException;
+import org.apache.ignite.cluster.ClusterNode;
+import org.apache.ignite.plugin.CachePluginContext;
+import org.apache.ignite.plugin.CachePluginProvider;
+import org.apache.ignite.plugin.ExtensionRegistry;
+import org.apache.ignite.plugin.IgnitePlugin;
+import org.apache.ignite.plugin.PluginContext;
+import org.apache.ignite.plugin.PluginProvider;
+import org.apache.ignite.plugin.PluginValidationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This plugin provider validates that specific node attributes, e.g. those describing the static configuration of serial forms used in
+ * cache keys, are consistent on all relevant members of the data grid. Members advertising inconsistent values are refused when they
+ * attempt to join the data grid, and a member starting up in a data grid of members with inconsistent values fails to start. Since members
+ * of older versions may not validate joining members, both checks are required to reliably detect any inconsistency.
+ *
+ * @author Axel Faust
+ */
+public class NodeAttributeConsistencyPluginProvider implements PluginProvider<NodeAttributeConsistencyPluginConfiguration>
+{
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NodeAttributeConsistencyPluginProvider.class);
+
+    protected NodeAttributeConsistencyPluginConfiguration configuration;
+
+    protected PluginContext context;
+
+    /**
+     * @param configuration
+     *            the configuration to set
+     */
+    public void setConfiguration(final NodeAttributeConsistencyPluginConfiguration configuration)
+    {
+        this.configuration = configuration;
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public String name()
+    {
+        return "NodeAttributeConsistencyPlugin (org.aldica:aldica-common-ignite)";
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public String version()
+    {
+        return "1.0.0";
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public String copyright()
+    {
+        return "Copyright 2020 Acosix GmbH, Copyright 2020 MAGENTA ApS";
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends IgnitePlugin> T plugin()
+    {
+        // forced upon us by API
+        @SuppressWarnings("unchecked")
+        final T plugin = (T) new NodeAttributeConsistencyPlugin();
+        return plugin;
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void initExtensions(final PluginContext ctx, final ExtensionRegistry registry)
+    {
+        this.context = ctx;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> T createComponent(final PluginContext ctx, final Class<T> cls)
+    {
+        // NO-OP
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void start(final PluginContext ctx) throws IgniteCheckedException
+    {
+        // NO-OP
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stop(final boolean cancel) throws IgniteCheckedException
+    {
+        // NO-OP
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onIgniteStart() throws IgniteCheckedException
+    {
+        if (this.configuration != null && this.configuration.isEnabled())
+        {
+            // members of older versions may not have validated this member when it joined
+            for (final ClusterNode node : this.context.grid().cluster().forRemotes().nodes())
+            {
+                final String inconsistency = this.checkConsistency(node);
+                if (inconsistency != null)
+                {
+                    throw new IgniteCheckedException("Local member is inconsistent with member " + node.id() + ": " + inconsistency);
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onIgniteStop(final boolean cancel)
+    {
+        // NO-OP
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Serializable provideDiscoveryData(final UUID nodeId)
+    {
+        // NO-OP
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void receiveDiscoveryData(final UUID nodeId, final Serializable data)
+    {
+        // NO-OP
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void validateNewNode(final ClusterNode node) throws PluginValidationException
+    {
+        if (this.configuration != null && this.configuration.isEnabled())
+        {
+            final String inconsistency = this.checkConsistency(node);
+            if (inconsistency != null)
+            {
+                LOGGER.warn("Rejecting node {} due to inconsistent node attributes: {}", node.id(), inconsistency);
+                throw new PluginValidationException("Node " + node.id() + " is inconsistent with grid: " + inconsistency,
+                        "Local member is inconsistent with grid: " + inconsistency, node.id());
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("rawtypes") // forced by interface
+    public CachePluginProvider<?> createCacheProvider(final CachePluginContext ctx)
+    {
+        // NO-OP
+        return null;
+    }
+
+    /**
+     * Checks the consistency of a remote member's node attributes with the attributes of the local member.
+     *
+     * @param node
+     *            the remote member to check
+     * @return the description of the first detected inconsistency or {@code null} if the remote member is consistent with the local member
+     */
+    protected String checkConsistency(final ClusterNode node)
+    {
+        String inconsistency = null;
+
+        final Map<String, ?> localAttributes = this.context.igniteConfiguration().getUserAttributes();
+        final Map<String, ?> effectiveLocalAttributes = localAttributes != null ? localAttributes : Collections.emptyMap();
+
+        // only members of the validated roles need to be consistent with each other
+        final String nodeRoleAttributeKey = this.configuration.getNodeRoleAttributeKey();
+        final Collection<String> validatedNodeRoleAttributeValues = this.configuration.getValidatedNodeRoleAttributeValues();
+        if (nodeRoleAttributeKey == null || validatedNodeRoleAttributeValues == null
+                || (validatedNodeRoleAttributeValues.contains(effectiveLocalAttributes.get(nodeRoleAttributeKey))
+                        && validatedNodeRoleAttributeValues.contains(node.attribute(nodeRoleAttributeKey))))
+        {
+            for (final Entry<String, String> attributeDefault : this.configuration.getConsistentAttributeDefaults().entrySet())
+            {
+                final String key = attributeDefault.getKey();
+                final Object localValue = effectiveLocalAttributes.get(key);
+                final Object remoteValue = node.attribute(key);
+
+                final String effectiveLocalValue = localValue != null ? String.valueOf(localValue).trim() : attributeDefault.getValue();
+                final String effectiveRemoteValue = remoteValue != null ? String.valueOf(remoteValue).trim() : attributeDefault.getValue();
+
+                // null default denotes that members not advertising the attribute are not affected
+                if (effectiveLocalValue != null && effectiveRemoteValue != null
+                        && !EqualsHelper.nullSafeEquals(effectiveLocalValue, effectiveRemoteValue))
+                {
+                    inconsistency = "Attribute " + key + " has value \"" + effectiveRemoteValue + "\" instead of \"" + effectiveLocalValue
+                            + "\"";
+                    break;
+                }
+            }
+        }
+
+        return inconsistency;
+    }
+}
@@ -3,8 +3,19 @@
  * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
 package org.aldica.common.ignite.spring;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.alfresco.util.PropertyCheck;
 import org.apache.ignite.configuration.DataPageEvictionMode;
@@ -26,6 +37,16 @@ import org.springframework.beans.factory.support.ManagedList;
 import org.springframework.util.PropertyPlaceholderHelper;
 
 /**
+ * Instances of this class emit bean definitions for custom data regions based on configuration properties of the form
+ * <code>&lt;prefix&gt;&lt;regionName&gt;.&lt;property&gt;</code>, and link them to the data storage configuration of an Ignite instance.
+ * Besides the simple region properties, the sizes of a region may be specified as relative shares (e.g. {@code 0.25}) of a reference size,
+ * typically the maximum size of the default data region, via the {@code initialSizeShare} / {@code maxSizeShare} properties. Explicitly
+ * configured sizes always take precedence over size shares. Maximum sizes recommended by an adaptive sizing component may be provided in an
+ * optional sizing file, and take precedence over any configured sizes as long as the configured maximum size they were derived from, which
+ * is stored alongside each recommendation, has not been changed. Regions sized via a maximum size share are carved out of the default
+ * data region, i.e. their maximum sizes are deducted from the maximum size of the default data region if its bean definition has been
+ * specified, so that the total of all regions stays within the configured reference size. A region can be excluded from emission via its
+ * {@code enabled} property.
  *
  * @author Axel Faust
  */
@@ -36,6 +57,21 @@ public class DataRegionBeanDefinitionEmitter implements BeanDefinitionRegistryPo
 
     private static final String DATA_REGION_CONFIGURATIONS_PROPERTY_NAME = "dataRegionConfigurations";
 
+    private static final String DATA_REGION_PROPERTY_PATTERN = "^[a-zA-Z0-9]+\\."
+            + "(enabled|initialSize|maxSize|initialSizeShare|maxSizeShare|swapPath|pageEvictionMode|evictionThreshold|emptyPagesPoolSize)$";
+
+    private static final String ENABLED = "enabled";
+
+    private static final String INITIAL_SIZE = "initialSize";
+
+    private static final String MAX_SIZE = "maxSize";
+
+    private static final String INITIAL_SIZE_SHARE = "initialSizeShare";
+
+    private static final String MAX_SIZE_SHARE = "maxSizeShare";
+
+    private static final String BASE_MAX_SIZE = "baseMaxSize";
+
     protected boolean enabled;
 
     protected String enabledPropertyKey;
@@ -46,8 +82,16 @@ public class DataRegionBeanDefinitionEmitter implements BeanDefinitionRegistryPo
 
     protected String dataRegionBeanDefinitionNamePrefix;
 
+    protected String defaultDataRegionBeanDefinitionName;
+
     protected String instanceNameProperty;
 
+    protected String sizeShareReferenceProperty;
+
+    protected String sizingFileProperty;
+
+    protected String sizingFileEnabledPropertyKey;
+
     protected Properties propertiesSource;
 
     protected String placeholderPrefix = PlaceholderConfigurerSupport.DEFAULT_PLACEHOLDER_PREFIX;
@@ -122,6 +166,16 @@ public class DataRegionBeanDefinitionEmitter implements BeanDefinitionRegistryPo
         this.dataRegionBeanDefinitionNamePrefix = dataRegionBeanDefinitionNamePrefix;
     }
 
+    /**
+     * @param defaultDataRegionBeanDefinitionName
+     *            the name of the bean definition of the default data region from which regions sized via a maximum size share are
+     *            carved out
+     */
+    public void setDefaultDataRegionBeanDefinitionName(final String defaultDataRegionBeanDefinitionName)
+    {
+        this.defaultDataRegionBeanDefinitionName = defaultDataRegionBeanDefinitionName;
+    }
+
     /**
      * @param instanceNameProperty
      *            the instanceNameProperty to set
@@ -131,6 +185,34 @@ public class DataRegionBeanDefinitionEmitter implements BeanDefinitionRegistryPo
         this.instanceNameProperty = instanceNameProperty;
     }
 
+    /**
+     * @param sizeShareReferenceProperty
+     *            the name of the property holding the size (in bytes) to which the relative size shares of data regions refer
+     */
+    public void setSizeShareReferenceProperty(final String sizeShareReferenceProperty)
+    {
+        this.sizeShareReferenceProperty = sizeShareReferenceProperty;
+    }
+
+    /**
+     * @param sizingFileProperty
+     *            the name of the property holding the path to an optional sizing file with recommended maximum sizes of data regions,
+     *            which take precedence over all configured sizes they were derived from
+     */
+    public void setSizingFileProperty(final String sizingFileProperty)
+    {
+        this.sizingFileProperty = sizingFileProperty;
+    }
+
+    /**
+     * @param sizingFileEnabledPropertyKey
+     *            the name of the property holding the flag whether the sizing file should be used
+     */
+    public void setSizingFileEnabledPropertyKey(final String sizingFileEnabledPropertyKey)
+    {
+        this.sizingFileEnabledPropertyKey = sizingFileEnabledPropertyKey;
+    }
+
     /**
      * @param propertiesSource
      *            the propertiesSource to set
@@ -246,28 +328,197 @@ public class DataRegionBeanDefinitionEmitter implements BeanDefinitionRegistryPo
         final String instanceName = this.placeholderHelper.replacePlaceholders(this.propertiesSource.getProperty(this.instanceNameProperty),
                 this.propertiesSource);
 
+        // collect first as explicit sizes need to take precedence over size shares regardless of property order
+        final Map<String, Map<String, String>> dataRegionProperties = new TreeMap<>();
         this.propertiesSource.stringPropertyNames().forEach(propertyName -> {
             if (propertyName.startsWith(this.propertyPrefix))
             {
                 final String effPropertyName = propertyName.substring(this.propertyPrefix.length());
-                if (effPropertyName.matches("^[a-zA-Z0-9]+\\.(initialSize|maxSize|swapPath)$"))
+                if (effPropertyName.matches(DATA_REGION_PROPERTY_PATTERN))
                 {
                     final int sepIdx = effPropertyName.indexOf('.');
                     final String dataRegionName = effPropertyName.substring(0, sepIdx);
                     final String dataRegionPropertyName = effPropertyName.substring(sepIdx + 1);
 
-                    final BeanDefinition dataRegionBeanDefinition = this.lookupOrCreateDataRegionBeanDefinition(registry,
-                            storageDataRegions, instanceName, dataRegionName);
-
                     final String configValue = this.placeholderHelper.replacePlaceholders(this.propertiesSource.getProperty(propertyName),
                             this.propertiesSource);
-                    LOGGER.debug("Setting data region property {} to {} on {} for instance {}", dataRegionPropertyName, configValue,
-                            dataRegionName, instanceName);
-
-                    dataRegionBeanDefinition.getPropertyValues().add(dataRegionPropertyName, configValue);
+                    dataRegionProperties.computeIfAbsent(dataRegionName, k -> new HashMap<>()).put(dataRegionPropertyName, configValue);
                 }
             }
         });
+
+        final Set<String> carvedOutDataRegions = new HashSet<>();
+        dataRegionProperties.entrySet().removeIf(entry -> {
+            final String enabled = entry.getValue().remove(ENABLED);
+            final boolean disabled = enabled != null && !Boolean.parseBoolean(enabled.trim());
+            if (disabled)
+            {
+                LOGGER.debug("Data region {} in instance {} has been disabled", entry.getKey(), instanceName);
+            }
+            else if (entry.getValue().containsKey(MAX_SIZE_SHARE) && !entry.getValue().containsKey(MAX_SIZE))
+            {
+                carvedOutDataRegions.add(entry.getKey());
+            }
+            return disabled;
+        });
+
+        dataRegionProperties.forEach((dataRegionName, properties) -> {
+            this.resolveSizeShare(dataRegionName, properties, INITIAL_SIZE_SHARE, INITIAL_SIZE);
+            this.resolveSizeShare(dataRegionName, properties, MAX_SIZE_SHARE, MAX_SIZE);
+
+            // a size share of a small reference size may yield a maximum below the (minimum) initial size
+            if (properties.containsKey(INITIAL_SIZE) && properties.containsKey(MAX_SIZE)
+                    && Long.parseLong(properties.get(MAX_SIZE).trim()) < Long.parseLong(properties.get(INITIAL_SIZE).trim()))
+            {
+                LOGGER.info("Raising maximum size of data region {} to its initial size {}", dataRegionName, properties.get(INITIAL_SIZE));
+                properties.put(MAX_SIZE, properties.get(INITIAL_SIZE));
+            }
+        });
+
+        // recommendations are based on the fully resolved configured sizes
+        this.applySizingFile(dataRegionProperties);
+
+        final AtomicLong carvedOutSize = new AtomicLong(0);
+        dataRegionProperties.forEach((dataRegionName, properties) -> {
+            if (carvedOutDataRegions.contains(dataRegionName) && properties.containsKey(MAX_SIZE))
+            {
+                carvedOutSize.addAndGet(Long.parseLong(properties.get(MAX_SIZE).trim()));
+            }
+
+            final BeanDefinition dataRegionBeanDefinition = this.lookupOrCreateDataRegionBeanDefinition(registry, storageDataRegions,
+                    instanceName, dataRegionName);
+            properties.forEach((dataRegionPropertyName, configValue) -> {
+                LOGGER.debug("Setting data region property {} to {} on {} for instance {}", dataRegionPropertyName, configValue,
+                        dataRegionName, instanceName);
+
+                dataRegionBeanDefinition.getPropertyValues().add(dataRegionPropertyName, configValue);
+            });
+        });
+
+        if (carvedOutSize.get() > 0)
+        {
+            this.reduceDefaultDataRegion(registry, instanceName, carvedOutSize.get());
+        }
+    }
+
+    protected void reduceDefaultDataRegion(final BeanDefinitionRegistry registry, final String instanceName, final long carvedOutSize)
+    {
+        final String referenceSize = this.sizeShareReferenceProperty != null
+                ? this.propertiesSource.getProperty(this.sizeShareReferenceProperty)
+                : null;
+        if (this.defaultDataRegionBeanDefinitionName != null && referenceSize != null
+                && registry.containsBeanDefinition(this.defaultDataRegionBeanDefinitionName))
+        {
+            final long effectiveReferenceSize = Long
+                    .parseLong(this.placeholderHelper.replacePlaceholders(referenceSize, this.propertiesSource).trim());
+            final MutablePropertyValues propertyValues = registry.getBeanDefinition(this.defaultDataRegionBeanDefinitionName)
+                    .getPropertyValues();
+
+            long minSize = 0;
+            final PropertyValue initialSizeValue = propertyValues.getPropertyValue(INITIAL_SIZE);
+            if (initialSizeValue != null && initialSizeValue.getValue() instanceof String)
+            {
+                minSize = Long.parseLong(
+                        this.placeholderHelper.replacePlaceholders((String) initialSizeValue.getValue(), this.propertiesSource).trim());
+            }
+
+            long maxSize = effectiveReferenceSize - carvedOutSize;
+            if (maxSize < minSize)
+            {
+                LOGGER.warn("Regions sized via shares in instance {} take up {} of {} bytes - limiting default data region to {} bytes",
+                        instanceName, carvedOutSize, effectiveReferenceSize, minSize);
+                maxSize = minSize;
+            }
+            else
+            {
+                LOGGER.info("Reducing maximum size of default data region in instance {} by {} to {} bytes for regions sized via shares",
+                        instanceName, carvedOutSize, maxSize);
+            }
+            propertyValues.add(MAX_SIZE, String.valueOf(maxSize));
+        }
+    }
+
+    protected void applySizingFile(final Map<String, Map<String, String>> dataRegionProperties)
+    {
+        final String sizingFilePath = this.sizingFileProperty != null ? this.propertiesSource.getProperty(this.sizingFileProperty) : null;
+        boolean sizingFileEnabled = sizingFilePath != null && !sizingFilePath.trim().isEmpty();
+        if (sizingFileEnabled && this.sizingFileEnabledPropertyKey != null && !this.sizingFileEnabledPropertyKey.isEmpty())
+        {
+            final String enabledValue = this.propertiesSource.getProperty(this.sizingFileEnabledPropertyKey, "false");
+            sizingFileEnabled = Boolean
+                    .parseBoolean(this.placeholderHelper.replacePlaceholders(enabledValue, this.propertiesSource).trim());
+        }
+
+        if (sizingFileEnabled)
+        {
+            final Path sizingFile = Paths.get(this.placeholderHelper.replacePlaceholders(sizingFilePath, this.propertiesSource).trim());
+            if (Files.isRegularFile(sizingFile))
+            {
+                final Properties sizes = new Properties();
+                try (InputStream is = Files.newInputStream(sizingFile))
+                {
+                    sizes.load(is);
+                }
+                catch (final IOException ioex)
+                {
+                    LOGGER.warn("Failed to read data region sizing file {}", sizingFile, ioex);
+                }
+
+                sizes.stringPropertyNames().forEach(propertyName -> {
+                    final int sepIdx = propertyName.indexOf('.');
+                    final String dataRegionName = sepIdx > 0 ? propertyName.substring(0, sepIdx) : null;
+                    final String dataRegionPropertyName = sepIdx > 0 ? propertyName.substring(sepIdx + 1) : null;
+
+                    // only sizes of regions which are still configured can be overridden
+                    if (MAX_SIZE.equals(dataRegionPropertyName) && dataRegionProperties.containsKey(dataRegionName))
+                    {
+                        final Map<String, String> properties = dataRegionProperties.get(dataRegionName);
+                        final String configuredMaxSize = properties.containsKey(MAX_SIZE) ? properties.get(MAX_SIZE).trim()
+                                : String.valueOf(new DataRegionConfiguration().getMaxSize());
+                        final String baseMaxSize = sizes.getProperty(dataRegionName + '.' + BASE_MAX_SIZE);
+
+                        // a recommendation is only valid as long as the configured size it was derived from has not been changed
+                        if (baseMaxSize != null && configuredMaxSize.equals(baseMaxSize.trim()))
+                        {
+                            LOGGER.info("Using maximum size {} from sizing file for data region {}", sizes.getProperty(propertyName),
+                                    dataRegionName);
+                            properties.put(MAX_SIZE, sizes.getProperty(propertyName).trim());
+                        }
+                        else
+                        {
+                            LOGGER.info("Ignoring outdated maximum size {} from sizing file for region {} (based on {}, configured {})",
+                                    sizes.getProperty(propertyName), dataRegionName, baseMaxSize, configuredMaxSize);
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    protected void resolveSizeShare(final String dataRegionName, final Map<String, String> properties, final String shareProperty,
+            final String sizeProperty)
+    {
+        final String share = properties.remove(shareProperty);
+        if (share != null && !properties.containsKey(sizeProperty))
+        {
+            final String referenceSize = this.sizeShareReferenceProperty != null
+                    ? this.propertiesSource.getProperty(this.sizeShareReferenceProperty)
+                    : null;
+            if (referenceSize != null)
+            {
+                final long effectiveReferenceSize = Long
+                        .parseLong(this.placeholderHelper.replacePlaceholders(referenceSize, this.propertiesSource).trim());
+                final long size = Math.round(effectiveReferenceSize * Double.parseDouble(share.trim()));
+                LOGGER.debug("Resolved {} share {} of reference size {} to {} for data region {}", sizeProperty, share,
+                        effectiveReferenceSize, size, dataRegionName);
+                properties.put(sizeProperty, String.valueOf(size));
+            }
+            else
+            {
+                LOGGER.warn("Unable to resolve {} share {} for data region {} as no reference size has been configured", sizeProperty,
+                        share, dataRegionName);
+            }
+        }
     }
 
     protected BeanDefinition lookupOrCreateDataRegionBeanDefinition(final BeanDefinitionRegistry registry,
@@ -3,8 +3,13 @@
  * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
 package org.aldica.common.ignite;
 
+import org.aldica.common.ignite.cache.CostAwareEvictionPolicy;
+import org.aldica.common.ignite.cache.CostAwareEvictionPolicyFactory;
+import org.aldica.common.ignite.cache.FrequencySketch;
 import org.aldica.common.ignite.cache.MemoryCountingEvictionPolicy;
 import org.aldica.common.ignite.cache.MemoryCountingEvictionPolicyFactory;
+import org.aldica.common.ignite.cache.TinyLfuEvictionPolicy;
+import org.aldica.common.ignite.cache.TinyLfuEvictionPolicyFactory;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.Ignition;
 import org.apache.ignite.cache.CacheMode;
@@ -23,9 +28,11 @@ import org.junit.Test;
 
 /**
  * The tests in this class mostly exist to validate the known / expected behaviour of the default Ignite eviction policies. Only
- * {@link #onlyMemoryCountingEvictionPolicy() the test for the no-op memory counting eviction policy} affects an implementation of this
- * project (which would typically not be used in a regular deployment anyway, as an on-heap cache without limit-based eviction is
- * dangerous).
+ * {@link #onlyMemoryCountingEvictionPolicy() the test for the no-op memory counting eviction policy} (which would typically not be used in
+ * a regular deployment anyway, as an on-heap cache without limit-based eviction is dangerous) and
+ * the tests for the {@link #tinyLfuEvictionPolicyRetainsFrequentEntriesDuringScan() frequency-aware} (including its
+ * {@link #frequencySketchRetainsFrequenciesOnGrowth() frequency sketch}) and
+ * {@link #costAwareEvictionPolicyPrefersSmallEntries() size- and cost-aware} eviction policies affect implementations of this project.
  *
  * @author Axel Faust
  */
@@ -594,4 +601,169 @@ public class EvictionPoliciesTests extends GridTestsBase
             Ignition.stopAll(true);
         }
     }
+
+    @Test
+    public void tinyLfuEvictionPolicyRetainsFrequentEntriesDuringScan()
+    {
+        try
+        {
+            final IgniteConfiguration conf = createConfiguration(1, false);
+
+            final CacheConfiguration<Long, Long> cacheConfig = new CacheConfiguration<>();
+            cacheConfig.setName("testCache");
+            cacheConfig.setCacheMode(CacheMode.LOCAL);
+
+            final TinyLfuEvictionPolicyFactory<Long, Long> evictionPolicyFactory = new TinyLfuEvictionPolicyFactory<>();
+            evictionPolicyFactory.setMaxSize(100);
+
+            cacheConfig.setOnheapCacheEnabled(true);
+            cacheConfig.setEvictionPolicyFactory(evictionPolicyFactory);
+
+            final Ignite grid = Ignition.start(conf);
+
+            final IgniteCacheProxy<Long, Long> cache = (IgniteCacheProxy<Long, Long>) grid.getOrCreateCache(cacheConfig);
+            final GridCacheEvictionManager cacheEvictionManager = (GridCacheEvictionManager) cache.context().evicts();
+            Assert.assertNotNull(cacheEvictionManager);
+            final EvictionPolicy<?, ?> evictionPolicy = cacheEvictionManager.getEvictionPolicy();
+
+            Assert.assertTrue(evictionPolicy instanceof TinyLfuEvictionPolicy<?, ?>);
+
+            final TinyLfuEvictionPolicy<?, ?> tinyLfuPolicy = (TinyLfuEvictionPolicy<?, ?>) evictionPolicy;
+
+            cache.put(Long.valueOf(0), Long.valueOf(0));
+            final long singleElementSize = tinyLfuPolicy.getCurrentMemorySize();
+            Assert.assertNotEquals(0, singleElementSize);
+
+            // hot set filling the cache and being accessed repeatedly
+            for (int idx = 1; idx < 100; idx++)
+            {
+                cache.put(Long.valueOf(idx), Long.valueOf(idx));
+            }
+            for (int round = 0; round < 5; round++)
+            {
+                for (int idx = 0; idx < 100; idx++)
+                {
+                    Assert.assertEquals(Long.valueOf(idx), cache.get(Long.valueOf(idx)));
+                }
+            }
+
+            Assert.assertEquals(100, cache.sizeLong(CachePeekMode.ONHEAP));
+            Assert.assertEquals(100 * singleElementSize, tinyLfuPolicy.getCurrentMemorySize());
+
+            // scan of entries only accessed once, which would flush the entire hot set with LRU / FIFO eviction
+            for (int idx = 1000; idx < 2000; idx++)
+            {
+                cache.put(Long.valueOf(idx), Long.valueOf(idx));
+            }
+
+            Assert.assertEquals(100, cache.sizeLong(CachePeekMode.ONHEAP));
+            Assert.assertEquals(100 * singleElementSize, tinyLfuPolicy.getCurrentMemorySize());
+
+            int retainedHotEntries = 0;
+            for (int idx = 0; idx < 100; idx++)
+            {
+                if (Long.valueOf(idx).equals(cache.localPeek(Long.valueOf(idx), CachePeekMode.ONHEAP)))
+                {
+                    retainedHotEntries++;
+                }
+            }
+            Assert.assertTrue("Most of the hot set should have been retained: " + retainedHotEntries, retainedHotEntries >= 90);
+        }
+        finally
+        {
+            Ignition.stopAll(true);
+        }
+    }
+
+    @Test
+    public void frequencySketchRetainsFrequenciesOnGrowth()
+    {
+        final FrequencySketch sketch = new FrequencySketch();
+        sketch.ensureCapacity(64);
+
+        for (int idx = 0; idx < 5; idx++)
+        {
+            sketch.increment(42);
+        }
+        sketch.increment(43);
+        final int hotFrequency = sketch.frequency(42);
+        final int coldFrequency = sketch.frequency(43);
+        Assert.assertTrue("Hot key should be estimated as more frequent: " + hotFrequency, hotFrequency >= 5);
+
+        // growth as a cache without a fixed maximum size fills up must not discard the recorded accesses
+        sketch.ensureCapacity(1024);
+        Assert.assertEquals(hotFrequency, sketch.frequency(42));
+        Assert.assertEquals(coldFrequency, sketch.frequency(43));
+    }
+
+    @Test
+    public void costAwareEvictionPolicyPrefersSmallEntries()
+    {
+        final int memoryLimit = 20000;
+
+        try
+        {
+            final IgniteConfiguration conf = createConfiguration(1, false);
+
+            final CacheConfiguration<Long, String> cacheConfig = new CacheConfiguration<>();
+            cacheConfig.setName("testCache");
+            cacheConfig.setCacheMode(CacheMode.LOCAL);
+
+            final CostAwareEvictionPolicyFactory<Long, String> evictionPolicyFactory = new CostAwareEvictionPolicyFactory<>();
+            evictionPolicyFactory.setMaxMemorySize(memoryLimit);
+
+            cacheConfig.setOnheapCacheEnabled(true);
+            cacheConfig.setEvictionPolicyFactory(evictionPolicyFactory);
+
+            final Ignite grid = Ignition.start(conf);
+
+            final IgniteCacheProxy<Long, String> cache = (IgniteCacheProxy<Long, String>) grid.getOrCreateCache(cacheConfig);
+            final GridCacheEvictionManager cacheEvictionManager = (GridCacheEvictionManager) cache.context().evicts();
+            Assert.assertNotNull(cacheEvictionManager);
+            final EvictionPolicy<?, ?> evictionPolicy = cacheEvictionManager.getEvictionPolicy();
+
+            Assert.assertTrue(evictionPolicy instanceof CostAwareEvictionPolicy<?, ?>);
+
+            final CostAwareEvictionPolicy<?, ?> costAwarePolicy = (CostAwareEvictionPolicy<?, ?>) evictionPolicy;
+
+            // many small entries, e.g. entity lookups
+            for (int idx = 0; idx < 50; idx++)
+            {
+                cache.put(Long.valueOf(idx), "Small" + idx);
+            }
+            for (int idx = 0; idx < 50; idx++)
+            {
+                Assert.assertEquals("Small" + idx, cache.get(Long.valueOf(idx)));
+            }
+
+            final long smallEntriesSize = costAwarePolicy.getCurrentMemorySize();
+            Assert.assertTrue(smallEntriesSize < memoryLimit / 4);
+
+            // few large entries, e.g. property maps, exceeding the memory limit
+            final StringBuilder largeValueBuilder = new StringBuilder();
+            for (int idx = 0; idx < 1000; idx++)
+            {
+                largeValueBuilder.append('L');
+            }
+            final String largeValue = largeValueBuilder.toString();
+
+            for (int idx = 1000; idx < 1025; idx++)
+            {
+                cache.put(Long.valueOf(idx), largeValue);
+            }
+
+            Assert.assertTrue(costAwarePolicy.getCurrentMemorySize() <= memoryLimit);
+            Assert.assertTrue(cache.sizeLong(CachePeekMode.ONHEAP) < 80);
+
+            // large entries should have been evicted instead of the small ones
+            for (int idx = 0; idx < 50; idx++)
+            {
+                Assert.assertEquals("Small" + idx, cache.localPeek(Long.valueOf(idx), CachePeekMode.ONHEAP));
+            }
+        }
+        finally
+        {
+            Ignition.stopAll(true);
+        }
+    }
 }
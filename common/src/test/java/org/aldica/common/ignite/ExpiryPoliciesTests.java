@@ -0,0 +1,121 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.common.ignite;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import javax.cache.configuration.Factory;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.expiry.AccessedExpiryPolicy;
+import javax.cache.expiry.Duration;
+import javax.cache.expiry.ExpiryPolicy;
+import javax.cache.expiry.ModifiedExpiryPolicy;
+
+import org.aldica.common.ignite.cache.CombinedExpiryPolicy;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.cache.CacheMode;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The tests in this class validate the behaviour of the {@link CombinedExpiryPolicy combined expiry policy}. Its performance and allocation
+ * rate are measured by the {@code ExpiryPolicyBenchmark} of the serializer benchmark module instead.
+ *
+ * @author Axel Faust
+ */
+public class ExpiryPoliciesTests extends GridTestsBase
+{
+
+    private static final Duration TIME_TO_LIVE = new Duration(TimeUnit.SECONDS, 60);
+
+    private static final Duration MAX_IDLE = new Duration(TimeUnit.SECONDS, 30);
+
+    protected static Collection<Factory<? extends ExpiryPolicy>> createStaticPolicyFactories(final Duration timeToLive,
+            final Duration maxIdle)
+    {
+        final Collection<Factory<? extends ExpiryPolicy>> policyFactories = new ArrayList<>();
+        policyFactories.add(ModifiedExpiryPolicy.factoryOf(timeToLive));
+        policyFactories.add(AccessedExpiryPolicy.factoryOf(maxIdle));
+        return policyFactories;
+    }
+
+    protected static Collection<Factory<? extends ExpiryPolicy>> createDynamicPolicyFactories(final Duration timeToLive,
+            final Duration maxIdle)
+    {
+        final Collection<Factory<? extends ExpiryPolicy>> policyFactories = new ArrayList<>();
+        // sub-classes are not known to return constant durations
+        policyFactories.add(new FactoryBuilder.SingletonFactory<>(new ModifiedExpiryPolicy(timeToLive)
+        {
+
+            private static final long serialVersionUID = 1L;
+        }));
+        policyFactories.add(new FactoryBuilder.SingletonFactory<>(new AccessedExpiryPolicy(maxIdle)
+        {
+
+            private static final long serialVersionUID = 1L;
+        }));
+        return policyFactories;
+    }
+
+    @Test
+    public void combinedDurations()
+    {
+        final CombinedExpiryPolicy staticPolicy = new CombinedExpiryPolicy(createStaticPolicyFactories(TIME_TO_LIVE, MAX_IDLE));
+        final CombinedExpiryPolicy dynamicPolicy = new CombinedExpiryPolicy(createDynamicPolicyFactories(TIME_TO_LIVE, MAX_IDLE));
+
+        for (final ExpiryPolicy policy : new ExpiryPolicy[] { staticPolicy, dynamicPolicy })
+        {
+            Assert.assertEquals(MAX_IDLE, policy.getExpiryForCreation());
+            Assert.assertEquals(MAX_IDLE, policy.getExpiryForAccess());
+            Assert.assertEquals(TIME_TO_LIVE, policy.getExpiryForUpdate());
+        }
+
+        final CombinedExpiryPolicy shortLivedPolicy = new CombinedExpiryPolicy(
+                createStaticPolicyFactories(new Duration(TimeUnit.SECONDS, 10), MAX_IDLE));
+        Assert.assertEquals(new Duration(TimeUnit.SECONDS, 10), shortLivedPolicy.getExpiryForCreation());
+        Assert.assertEquals(MAX_IDLE, shortLivedPolicy.getExpiryForAccess());
+        Assert.assertEquals(new Duration(TimeUnit.SECONDS, 10), shortLivedPolicy.getExpiryForUpdate());
+
+        final CombinedExpiryPolicy eternalPolicy = new CombinedExpiryPolicy(createStaticPolicyFactories(Duration.ETERNAL, MAX_IDLE));
+        Assert.assertEquals(MAX_IDLE, eternalPolicy.getExpiryForCreation());
+        Assert.assertEquals(MAX_IDLE, eternalPolicy.getExpiryForAccess());
+        Assert.assertEquals(Duration.ETERNAL, eternalPolicy.getExpiryForUpdate());
+    }
+
+    @Test
+    public void combinedExpiryInGrid() throws Exception
+    {
+        try
+        {
+            final IgniteConfiguration conf = createConfiguration(1, false);
+
+            final CacheConfiguration<Long, String> cacheConfig = new CacheConfiguration<>();
+            cacheConfig.setName("testCache");
+            cacheConfig.setCacheMode(CacheMode.LOCAL);
+            cacheConfig.setExpiryPolicyFactory(
+                    CombinedExpiryPolicy.factoryOf(createStaticPolicyFactories(TIME_TO_LIVE, new Duration(TimeUnit.SECONDS, 1))));
+
+            final Ignite grid = Ignition.start(conf);
+            final IgniteCache<Long, String> cache = grid.getOrCreateCache(cacheConfig);
+
+            cache.put(Long.valueOf(1), "Test1");
+            Assert.assertEquals("Test1", cache.get(Long.valueOf(1)));
+
+            Thread.sleep(2000);
+
+            // expired due to idle time despite time-to-live not being reached
+            Assert.assertNull(cache.get(Long.valueOf(1)));
+        }
+        finally
+        {
+            Ignition.stopAll(true);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.common.ignite;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.aldica.common.ignite.plugin.NodeAttributeConsistencyPluginConfiguration;
+import org.aldica.common.ignite.plugin.NodeAttributeConsistencyPluginProvider;
+import org.apache.ignite.IgniteException;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author Axel Faust
+ */
+public class NodeAttributeConsistencyPluginTests extends GridTestsBase
+{
+
+    private static final String ROLE_ATTRIBUTE_KEY = "test.role";
+
+    private static final String ROLE_SERVER = "test-server";
+
+    private static final String ROLE_CLIENT = "test-client";
+
+    private static final String CONSISTENT_ATTRIBUTE_KEY = "test.keyForm";
+
+    private static final String OPTIONAL_ATTRIBUTE_KEY = "test.valueForm";
+
+    protected static IgniteConfiguration createConfiguration(final int instanceNo, final boolean assumeExisting, final boolean withPlugin,
+            final String role, final String consistentValue, final String optionalValue)
+    {
+        final IgniteConfiguration conf = createConfiguration(instanceNo, assumeExisting);
+
+        final Map<String, Object> userAttributes = new HashMap<>();
+        userAttributes.put(ROLE_ATTRIBUTE_KEY, role);
+        if (consistentValue != null)
+        {
+            userAttributes.put(CONSISTENT_ATTRIBUTE_KEY, consistentValue);
+        }
+        if (optionalValue != null)
+        {
+            userAttributes.put(OPTIONAL_ATTRIBUTE_KEY, optionalValue);
+        }
+        conf.setUserAttributes(userAttributes);
+
+        if (withPlugin)
+        {
+            final Map<String, String> consistentAttributeDefaults = new HashMap<>();
+            consistentAttributeDefaults.put(CONSISTENT_ATTRIBUTE_KEY, "");
+            consistentAttributeDefaults.put(OPTIONAL_ATTRIBUTE_KEY, null);
+
+            final NodeAttributeConsistencyPluginConfiguration pluginConfiguration = new NodeAttributeConsistencyPluginConfiguration();
+            pluginConfiguration.setEnabled(true);
+            pluginConfiguration.setConsistentAttributeDefaults(consistentAttributeDefaults);
+            pluginConfiguration.setNodeRoleAttributeKey(ROLE_ATTRIBUTE_KEY);
+            pluginConfiguration.setValidatedNodeRoleAttributeValues(Collections.singleton(ROLE_SERVER));
+
+            final NodeAttributeConsistencyPluginProvider pluginProvider = new NodeAttributeConsistencyPluginProvider();
+            pluginProvider.setConfiguration(pluginConfiguration);
+            conf.setPluginProviders(pluginProvider);
+        }
+
+        return conf;
+    }
+
+    @Test
+    public void joinWithConsistentAttributes()
+    {
+        try
+        {
+            Ignition.start(createConfiguration(1, false, true, ROLE_SERVER, "abc", "en"));
+            Ignition.start(createConfiguration(2, true, true, ROLE_SERVER, "abc", "en"));
+            // optional attribute is only validated if advertised
+            Ignition.start(createConfiguration(3, true, true, ROLE_SERVER, "abc", null));
+            // members of other roles are not validated
+            Ignition.start(createConfiguration(4, true, true, ROLE_CLIENT, "def", "de"));
+        }
+        finally
+        {
+            Ignition.stopAll(true);
+        }
+    }
+
+    @Test
+    public void joinWithInconsistentAttribute()
+    {
+        try
+        {
+            Ignition.start(createConfiguration(1, false, true, ROLE_SERVER, "abc", "en"));
+            try
+            {
+                Ignition.start(createConfiguration(2, true, true, ROLE_SERVER, "def", "en"));
+                Assert.fail("Member with inconsistent attribute should have been refused");
+            }
+            catch (final IgniteException iex)
+            {
+                // expected
+            }
+
+            try
+            {
+                Ignition.start(createConfiguration(3, true, true, ROLE_SERVER, "abc", "de"));
+                Assert.fail("Member with inconsistent optional attribute should have been refused");
+            }
+            catch (final IgniteException iex)
+            {
+                // expected
+            }
+        }
+        finally
+        {
+            Ignition.stopAll(true);
+        }
+    }
+
+    @Test
+    public void joinGridOfOlderMembers()
+    {
+        try
+        {
+            // older member neither validates joining members nor advertises the attribute
+            Ignition.start(createConfiguration(1, false, false, ROLE_SERVER, null, null));
+
+            // default value of attribute is assumed for older member
+            Ignition.start(createConfiguration(2, true, true, ROLE_SERVER, "", "en"));
+
+            try
+            {
+                Ignition.start(createConfiguration(3, true, true, ROLE_SERVER, "abc", "en"));
+                Assert.fail("Member inconsistent with older member should have failed to start");
+            }
+            catch (final IgniteException iex)
+            {
+                // expected
+            }
+        }
+        finally
+        {
+            Ignition.stopAll(true);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.common.ignite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.aldica.common.ignite.binary.StringDictionary;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.binary.BinaryObjectException;
+import org.apache.ignite.cache.CachePeekMode;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Axel Faust
+ */
+public class StringDictionaryTests extends GridTestsBase
+{
+
+    protected static StringDictionary createDictionary(final Ignite grid, final int maxEntries)
+    {
+        final StringDictionary dictionary = new StringDictionary();
+        dictionary.setInstanceName(grid.name());
+        dictionary.setCacheName("testStrings");
+        dictionary.setEnableRemoteSupport(true);
+        dictionary.setMaxEntries(maxEntries);
+        dictionary.afterPropertiesSet();
+        dictionary.afterInstanceStartup(grid.name());
+        return dictionary;
+    }
+
+    protected static int awaitId(final StringDictionary dictionary, final String value) throws InterruptedException
+    {
+        int id = dictionary.getId(value);
+        for (int attempt = 0; attempt < 100 && id == StringDictionary.NO_ID; attempt++)
+        {
+            Thread.sleep(50);
+            id = dictionary.getId(value);
+        }
+        return id;
+    }
+
+    @Test
+    public void unavailableDictionary()
+    {
+        final StringDictionary dictionary = new StringDictionary();
+        dictionary.setInstanceName("testGrid1");
+        dictionary.setCacheName("testStrings");
+
+        Assert.assertFalse(dictionary.isAvailable());
+        Assert.assertEquals(StringDictionary.NO_ID, dictionary.getId("value"));
+
+        try
+        {
+            dictionary.getValue(1);
+            Assert.fail("Unavailable dictionary should not resolve any ID");
+        }
+        catch (final BinaryObjectException boe)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void learnOnWriteAndResolve() throws Exception
+    {
+        final IgniteConfiguration conf1 = createConfiguration(1, false);
+        final IgniteConfiguration conf2 = createConfiguration(2, true);
+
+        try
+        {
+            final Ignite grid1 = Ignition.start(conf1);
+            final Ignite grid2 = Ignition.start(conf2);
+
+            final StringDictionary dictionary1 = createDictionary(grid1, 100);
+            final StringDictionary dictionary2 = createDictionary(grid2, 100);
+
+            // unknown value is learned asynchronously, so it must be written as a literal on first use
+            Assert.assertEquals(StringDictionary.NO_ID, dictionary1.getId("workspace-store"));
+            final int id = awaitId(dictionary1, "workspace-store");
+            Assert.assertNotEquals(StringDictionary.NO_ID, id);
+            Assert.assertEquals(id, dictionary1.getId("workspace-store"));
+
+            // other server must see the same assignment, both for lookup and resolution
+            Assert.assertEquals("workspace-store", dictionary2.getValue(id));
+            Assert.assertEquals(id, dictionary2.getId("workspace-store"));
+
+            final int otherId = awaitId(dictionary2, "archive-store");
+            Assert.assertNotEquals(id, otherId);
+            Assert.assertEquals("archive-store", dictionary1.getValue(otherId));
+
+            try
+            {
+                dictionary1.getValue(Integer.MAX_VALUE);
+                Assert.fail("Unassigned ID should not be resolvable");
+            }
+            catch (final BinaryObjectException boe)
+            {
+                // expected
+            }
+
+            dictionary1.beforeInstanceShutdown(grid1.name());
+            dictionary2.beforeInstanceShutdown(grid2.name());
+        }
+        finally
+        {
+            Ignition.stopAll(true);
+        }
+    }
+
+    @Test
+    public void maxEntries()
+    {
+        final IgniteConfiguration conf = createConfiguration(1, false);
+
+        try
+        {
+            final Ignite grid = Ignition.start(conf);
+            final StringDictionary dictionary = createDictionary(grid, 2);
+
+            dictionary.register(Arrays.asList("value1", "value2"));
+            Assert.assertNotEquals(StringDictionary.NO_ID, dictionary.getId("value1"));
+            Assert.assertNotEquals(StringDictionary.NO_ID, dictionary.getId("value2"));
+            Assert.assertEquals(StringDictionary.NO_ID, dictionary.getId("value3"));
+
+            dictionary.beforeInstanceShutdown(grid.name());
+        }
+        finally
+        {
+            Ignition.stopAll(true);
+        }
+    }
+
+    @Test
+    public void suppressedLearning()
+    {
+        final IgniteConfiguration conf = createConfiguration(1, false);
+
+        boolean previouslySuppressed = false;
+        try
+        {
+            final Ignite grid = Ignition.start(conf);
+            final StringDictionary dictionary = createDictionary(grid, 100);
+
+            dictionary.register(Arrays.asList("value1"));
+            final int id = dictionary.getId("value1");
+            Assert.assertNotEquals(StringDictionary.NO_ID, id);
+
+            previouslySuppressed = StringDictionary.setLearningSuppressed(true);
+            Assert.assertTrue(StringDictionary.isLearningSuppressed());
+
+            // known values must still be resolved, but unknown values must neither be assigned an ID nor be learned for later
+            Assert.assertEquals(id, dictionary.getId("value1"));
+            Assert.assertEquals(StringDictionary.NO_ID, dictionary.getId("value2"));
+            Assert.assertEquals(1, grid.cache("testStrings.values").localSize(CachePeekMode.ALL));
+
+            dictionary.beforeInstanceShutdown(grid.name());
+        }
+        finally
+        {
+            StringDictionary.setLearningSuppressed(previouslySuppressed);
+            Ignition.stopAll(true);
+        }
+    }
+
+    @Test
+    public void concurrentAssignment() throws Exception
+    {
+        final IgniteConfiguration conf1 = createConfiguration(1, false);
+        final IgniteConfiguration conf2 = createConfiguration(2, true);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try
+        {
+            final Ignite grid1 = Ignition.start(conf1);
+            final Ignite grid2 = Ignition.start(conf2);
+
+            final StringDictionary dictionary1 = createDictionary(grid1, 1000);
+            final StringDictionary dictionary2 = createDictionary(grid2, 1000);
+
+            final List<Callable<int[]>> tasks = new ArrayList<>();
+            for (int taskIdx = 0; taskIdx < 8; taskIdx++)
+            {
+                final StringDictionary dictionary = taskIdx % 2 == 0 ? dictionary1 : dictionary2;
+                tasks.add(() -> {
+                    final List<String> values = new ArrayList<>();
+                    for (int idx = 0; idx < 100; idx++)
+                    {
+                        values.add("value" + idx);
+                    }
+                    dictionary.register(values);
+
+                    final int[] ids = new int[values.size()];
+                    for (int idx = 0; idx < ids.length; idx++)
+                    {
+                        ids[idx] = dictionary.getId(values.get(idx));
+                    }
+                    return ids;
+                });
+            }
+
+            final List<Future<int[]>> results = executor.invokeAll(tasks);
+            final int[] expectedIds = results.get(0).get();
+            for (final Future<int[]> result : results)
+            {
+                // all threads on all servers must have been handed the same IDs
+                Assert.assertArrayEquals(expectedIds, result.get());
+            }
+
+            final Set<Integer> distinctIds = new HashSet<>();
+            for (int idx = 0; idx < expectedIds.length; idx++)
+            {
+                Assert.assertNotEquals(StringDictionary.NO_ID, expectedIds[idx]);
+                Assert.assertTrue(distinctIds.add(expectedIds[idx]));
+                Assert.assertEquals("value" + idx, dictionary1.getValue(expectedIds[idx]));
+                Assert.assertEquals("value" + idx, dictionary2.getValue(expectedIds[idx]));
+            }
+
+            dictionary1.beforeInstanceShutdown(grid1.name());
+            dictionary2.beforeInstanceShutdown(grid2.name());
+        }
+        finally
+        {
+            executor.shutdownNow();
+            Ignition.stopAll(true);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.binary;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.alfresco.repo.cache.lookup.CacheRegionKey;
+import org.alfresco.repo.cache.lookup.CacheRegionValueKey;
+import org.alfresco.repo.domain.node.NodeVersionKey;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.repository.StoreRef;
+import org.alfresco.service.namespace.QName;
+import org.alfresco.util.Pair;
+import org.apache.ignite.cache.CacheKeyConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class provides the computation of precomputed affinity keys for {@link CacheRegionKey} and {@link CacheRegionValueKey} instances,
+ * which can optionally be written by the corresponding serializers as the only named field of the serial form, and referenced as the
+ * affinity key field via a {@link CacheKeyConfiguration cache key configuration}. This allows Ignite to determine the partition of a key by
+ * reading a single integer field instead of relying on the hash of the complete serial form. The affinity key deliberately ignores the
+ * name of the cache region, so that entries of related regions with the same key (e.g. nodes, aspects and properties of the same node ID)
+ * are colocated on the same grid member, as long as the caches use the same affinity function.
+ *
+ * Since the affinity key is part of the serial form of a key, and Ignite compares keys by their serial form, it must be identical on all
+ * members of the data grid. The affinity key is therefore only derived from the hash codes of key types known to compute their hash codes
+ * from their state alone, i.e. strings, numbers, booleans, characters, locales, UUIDs, qualified names, store and node references. Other
+ * common key types are handled via their state: dates via their time, enumeration literals via their name (as their hash codes are
+ * identity-based), classes via their name, and {@link NodeVersionKey}, {@link Pair}, {@link List}, {@link Set}, {@link Map} and array
+ * instances via the affinity keys of their components. Any other key type is mapped to an affinity key derived from its class name, so
+ * that all its instances are colocated on the same grid member instead of risking a serial form differing between grid members - a message
+ * is logged once for each such type.
+ *
+ * @author Axel Faust
+ */
+public final class CacheRegionAffinity
+{
+
+    /**
+     * The name of the field holding the precomputed affinity key in the serial form of cache region (value) keys.
+     */
+    public static final String AFFINITY_KEY_FIELD = "affinityKey";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheRegionAffinity.class);
+
+    private static final Set<Class<?>> STABLE_HASH_CODE_TYPES = Collections
+            .unmodifiableSet(new HashSet<>(Arrays.asList(String.class, Long.class, Integer.class, Short.class, Byte.class, Double.class,
+                    Float.class, BigInteger.class, BigDecimal.class, Boolean.class, Character.class, Locale.class, UUID.class, QName.class,
+                    StoreRef.class, NodeRef.class)));
+
+    private static final Set<Class<?>> INFORMED_UNSTABLE_TYPES = ConcurrentHashMap.newKeySet();
+
+    private CacheRegionAffinity()
+    {
+        // NO-OP
+    }
+
+    /**
+     * Computes the affinity key for a key / value key of an entity lookup cache region.
+     *
+     * @param key
+     *            the key / value key wrapped in a cache region (value) key
+     * @return the affinity key
+     */
+    public static int computeAffinityKey(final Object key)
+    {
+        final int affinityKey;
+        if (key == null)
+        {
+            affinityKey = 0;
+        }
+        else if (key instanceof NodeVersionKey)
+        {
+            // colocate with entries keyed by node ID, e.g. the node itself
+            affinityKey = ((NodeVersionKey) key).getNodeId().hashCode();
+        }
+        else if (key instanceof Pair<?, ?>)
+        {
+            affinityKey = 31 * computeAffinityKey(((Pair<?, ?>) key).getFirst()) + computeAffinityKey(((Pair<?, ?>) key).getSecond());
+        }
+        else if (key instanceof List<?>)
+        {
+            affinityKey = computeOrderedAffinityKey((List<?>) key);
+        }
+        else if (key instanceof Set<?>)
+        {
+            // consistent with set equality, independent of iteration order
+            int setAffinityKey = 0;
+            for (final Object element : (Set<?>) key)
+            {
+                setAffinityKey += computeAffinityKey(element);
+            }
+            affinityKey = setAffinityKey;
+        }
+        else if (key instanceof Map<?, ?>)
+        {
+            // consistent with map equality, independent of iteration order
+            int mapAffinityKey = 0;
+            for (final Map.Entry<?, ?> entry : ((Map<?, ?>) key).entrySet())
+            {
+                mapAffinityKey += computeAffinityKey(entry.getKey()) ^ computeAffinityKey(entry.getValue());
+            }
+            affinityKey = mapAffinityKey;
+        }
+        else if (key instanceof Date)
+        {
+            affinityKey = Long.hashCode(((Date) key).getTime());
+        }
+        else if (key instanceof Enum<?>)
+        {
+            // hash code of enums is identity-based
+            affinityKey = ((Enum<?>) key).name().hashCode();
+        }
+        else if (key instanceof Class<?>)
+        {
+            // hash code of classes is identity-based
+            affinityKey = ((Class<?>) key).getName().hashCode();
+        }
+        else if (key instanceof Object[])
+        {
+            affinityKey = computeOrderedAffinityKey(Arrays.asList((Object[]) key));
+        }
+        else if (key.getClass().isArray())
+        {
+            affinityKey = computePrimitiveArrayAffinityKey(key);
+        }
+        else if (STABLE_HASH_CODE_TYPES.contains(key.getClass()))
+        {
+            affinityKey = key.hashCode();
+        }
+        else
+        {
+            // hash code may not be stable across JVMs
+            if (INFORMED_UNSTABLE_TYPES.add(key.getClass()))
+            {
+                LOGGER.info("Key type {} has no JVM-independent affinity key - all its instances will be colocated on a single grid member",
+                        key.getClass());
+            }
+            affinityKey = key.getClass().getName().hashCode();
+        }
+        return affinityKey;
+    }
+
+    private static int computeOrderedAffinityKey(final List<?> elements)
+    {
+        int affinityKey = 1;
+        for (final Object element : elements)
+        {
+            affinityKey = 31 * affinityKey + computeAffinityKey(element);
+        }
+        return affinityKey;
+    }
+
+    private static int computePrimitiveArrayAffinityKey(final Object array)
+    {
+        // hash codes of primitive values are JVM-independent
+        final int affinityKey;
+        if (array instanceof byte[])
+        {
+            affinityKey = Arrays.hashCode((byte[]) array);
+        }
+        else if (array instanceof char[])
+        {
+            affinityKey = Arrays.hashCode((char[]) array);
+        }
+        else if (array instanceof short[])
+        {
+            affinityKey = Arrays.hashCode((short[]) array);
+        }
+        else if (array instanceof int[])
+        {
+            affinityKey = Arrays.hashCode((int[]) array);
+        }
+        else if (array instanceof long[])
+        {
+            affinityKey = Arrays.hashCode((long[]) array);
+        }
+        else if (array instanceof float[])
+        {
+            affinityKey = Arrays.hashCode((float[]) array);
+        }
+        else if (array instanceof double[])
+        {
+            affinityKey = Arrays.hashCode((double[]) array);
+        }
+        else
+        {
+            affinityKey = Arrays.hashCode((boolean[]) array);
+        }
+        return affinityKey;
+    }
+}
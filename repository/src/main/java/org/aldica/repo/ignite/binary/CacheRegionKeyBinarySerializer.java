@@ -20,6 +20,11 @@ import org.apache.ignite.internal.binary.BinaryMarshaller;
  * instances into more efficient binary representations as would be possible by using the default {@link BinaryMarshaller} by optimising
  * away the hash code instance and reducing the average cost of handling the (typically pre-defined / well-known) region names.
  *
+ * Optionally, a precomputed {@link CacheRegionAffinity affinity key} can be included as the only named field of the serial form, which
+ * can be used to cheaply determine the partition of a key and to colocate entries of related cache regions. As keys are compared by their
+ * serial form, the affinity key is never subject to the negotiation of serial form versions - whether it is included is part of the
+ * static configuration, which must be identical on all members and is validated when members join the data grid.
+ *
  * @author Axel Faust
  */
 public class CacheRegionKeyBinarySerializer implements BinarySerializer
@@ -57,6 +62,8 @@ public class CacheRegionKeyBinarySerializer implements BinarySerializer
 
     protected boolean useRawSerialForm = false;
 
+    protected boolean useAffinityKey = false;
+
     /**
      * @param useRawSerialForm
      *            the useRawSerialForm to set
@@ -66,6 +73,25 @@ public class CacheRegionKeyBinarySerializer implements BinarySerializer
         this.useRawSerialForm = useRawSerialForm;
     }
 
+    /**
+     * @param useAffinityKey
+     *            the useAffinityKey to set
+     */
+    public void setUseAffinityKey(final boolean useAffinityKey)
+    {
+        this.useAffinityKey = useAffinityKey;
+    }
+
+    /**
+     * Checks whether this serializer includes a precomputed {@link CacheRegionAffinity affinity key} as a named field in the serial form.
+     *
+     * @return {@code true} if the affinity key is included, {@code false} otherwise
+     */
+    public boolean isUseAffinityKey()
+    {
+        return this.useAffinityKey;
+    }
+
     /**
      *
      * {@inheritDoc}
@@ -86,6 +112,12 @@ public class CacheRegionKeyBinarySerializer implements BinarySerializer
 
             final CacheRegion literal = CacheRegion.getLiteral(cacheRegion);
 
+            if (this.useAffinityKey)
+            {
+                // named fields must precede raw data
+                writer.writeInt(CacheRegionAffinity.AFFINITY_KEY_FIELD, CacheRegionAffinity.computeAffinityKey(cacheKey));
+            }
+
             if (this.useRawSerialForm)
             {
                 final BinaryRawWriter rawWriter = writer.rawWriter();
@@ -167,5 +199,4 @@ public class CacheRegionKeyBinarySerializer implements BinarySerializer
             throw new BinaryObjectException("Failed to write deserialised field values", iae);
         }
     }
-
 }
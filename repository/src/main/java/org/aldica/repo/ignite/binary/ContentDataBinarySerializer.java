@@ -5,7 +5,12 @@ package org.aldica.repo.ignite.binary;
 
 import java.lang.reflect.Field;
 import java.util.Locale;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import org.aldica.common.ignite.binary.StringDictionary;
+import org.alfresco.repo.content.filestore.FileContentStore;
 import org.alfresco.repo.domain.encoding.EncodingDAO;
 import org.alfresco.repo.domain.locale.LocaleDAO;
 import org.alfresco.repo.domain.mimetype.MimetypeDAO;
@@ -27,8 +32,18 @@ import org.springframework.context.ApplicationContextAware;
  *
  * This implementation is capable of replacing {@link ContentData#getMimetype() mimetype}, {@link ContentData#getEncoding() encoding} and
  * {@link ContentData#getLocale() locale} with their corresponding IDs for a more efficient serial form. It can be reasonably expected that
- * these IDs can be efficiently resolved using fully replicated caches, especially given their extremely low numbers / variety.
+ * these IDs can be efficiently resolved using fully replicated caches, especially given their extremely low numbers / variety. If the
+ * use of these IDs is not enabled, mimetype and encoding can alternatively be substituted by IDs from a grid-wide {@link StringDictionary
+ * dictionary}.
  *
+ * This implementation is also capable of writing {@link ContentData#getContentUrl() content URLs} in a packed form if they follow the
+ * default layout of the {@link FileContentStore file content store} ({@code store://yyyy/M/d/H/m/<uuid>.bin}). Such URLs are written as
+ * a protocol ordinal, a single integer for the date/time components and the 16 bytes of the UUID instead of a string of 60+ characters.
+ * Any content URL not matching that layout exactly is written as a regular string.
+ *
+ * Packed content URLs and dictionary IDs are only written if all relevant grid members are able to read them, as negotiated via the
+ * {@link SerialFormCompatibility serial form compatibility} component, if configured. Both are marked in the serial form, so that any form
+ * can always be read regardless of configuration.
  *
  * @author Axel Faust
  */
@@ -39,16 +54,26 @@ public class ContentDataBinarySerializer implements BinarySerializer, Applicatio
 
     private static final String CONTENT_URL = "contentUrl";
 
+    private static final String CONTENT_URL_PROTOCOL = "contentUrlProtocol";
+
+    private static final String CONTENT_URL_DATE = "contentUrlDate";
+
+    private static final String CONTENT_URL_UUID = "contentUrlUuid";
+
     private static final String SIZE = "size";
 
     private static final String MIMETYPE = "mimetype";
 
     private static final String MIMETYPE_ID = "mimetypeId";
 
+    private static final String MIMETYPE_DICTIONARY_ID = "mimetypeDictionaryId";
+
     private static final String ENCODING = "encoding";
 
     private static final String ENCODING_ID = "encodingId";
 
+    private static final String ENCODING_DICTIONARY_ID = "encodingDictionaryId";
+
     private static final String LOCALE = "locale";
 
     private static final String LOCALE_ID = "localeId";
@@ -66,6 +91,21 @@ public class ContentDataBinarySerializer implements BinarySerializer, Applicatio
 
     private static final byte FLAG_LOCALE_ID = 32;
 
+    private static final byte FLAG_CONTENT_URL_PACKED = 64;
+
+    // denotes that mimetype / encoding IDs are string dictionary IDs instead of database IDs
+    private static final byte FLAG_DICTIONARY_IDS = (byte) 128;
+
+    // only protocols known to use the default layout of FileContentStore#createNewFileStoreUrl
+    private static final String[] PACKABLE_PROTOCOLS = { FileContentStore.STORE_PROTOCOL };
+
+    // components must not use leading zeros to guarantee the reconstructed URL is identical
+    private static final Pattern PACKABLE_CONTENT_URL = Pattern
+            .compile("^([a-z]+)://([12][0-9]{3})/([1-9]|1[0-2])/([1-9]|[12][0-9]|3[01])/([0-9]|1[0-9]|2[0-3])/([0-9]|[1-5][0-9])/"
+                    + "([0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12})\\.bin$");
+
+    private static final String PACKABLE_CONTENT_URL_SUFFIX = ".bin";
+
     private static final Field CONTENT_URL_FIELD;
 
     private static final Field MIMETYPE_FIELD;
@@ -114,6 +154,14 @@ public class ContentDataBinarySerializer implements BinarySerializer, Applicatio
 
     protected boolean useRawSerialForm = false;
 
+    protected boolean usePackedContentUrls = false;
+
+    protected boolean useStringDictionary = false;
+
+    protected StringDictionary stringDictionary;
+
+    protected SerialFormCompatibility serialFormCompatibility;
+
     /**
      * {@inheritDoc}
      */
@@ -141,6 +189,42 @@ public class ContentDataBinarySerializer implements BinarySerializer, Applicatio
         this.useRawSerialForm = useRawSerialForm;
     }
 
+    /**
+     * @param usePackedContentUrls
+     *            the usePackedContentUrls to set
+     */
+    public void setUsePackedContentUrls(final boolean usePackedContentUrls)
+    {
+        this.usePackedContentUrls = usePackedContentUrls;
+    }
+
+    /**
+     * @param useStringDictionary
+     *            the useStringDictionary to set
+     */
+    public void setUseStringDictionary(final boolean useStringDictionary)
+    {
+        this.useStringDictionary = useStringDictionary;
+    }
+
+    /**
+     * @param stringDictionary
+     *            the stringDictionary to set
+     */
+    public void setStringDictionary(final StringDictionary stringDictionary)
+    {
+        this.stringDictionary = stringDictionary;
+    }
+
+    /**
+     * @param serialFormCompatibility
+     *            the serialFormCompatibility to set
+     */
+    public void setSerialFormCompatibility(final SerialFormCompatibility serialFormCompatibility)
+    {
+        this.serialFormCompatibility = serialFormCompatibility;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -179,17 +263,28 @@ public class ContentDataBinarySerializer implements BinarySerializer, Applicatio
             rawWriter.writeLong(((ContentDataWithId) contentData).getId());
         }
 
-        rawWriter.writeString(contentData.getContentUrl());
-        rawWriter.writeLong(contentData.getSize());
+        final String contentUrl = contentData.getContentUrl();
+        final boolean extendedForms = this.isSerialFormSupported(SerialFormCompatibility.VERSION_EXTENDED_FORMS);
+        final Matcher contentUrlMatcher = this.usePackedContentUrls && extendedForms ? this.matchPackableContentUrl(contentUrl) : null;
 
         final String mimetype = contentData.getMimetype();
         Long mimetypeId = null;
+        int mimetypeDictionaryId = StringDictionary.NO_ID;
         final String encoding = contentData.getEncoding();
         Long encodingId = null;
+        int encodingDictionaryId = StringDictionary.NO_ID;
         final Locale locale = contentData.getLocale();
         Long localeId = null;
 
+        final boolean useDictionary = !this.useIdsWhenReasonable && this.useStringDictionary && this.stringDictionary != null
+                && extendedForms;
+
         byte flags = 0;
+        if (contentUrlMatcher != null)
+        {
+            flags = (byte) (flags | FLAG_CONTENT_URL_PACKED);
+        }
+
         if (mimetype == null)
         {
             flags = (byte) (flags | FLAG_MIMETYPE_NULL);
@@ -203,6 +298,14 @@ public class ContentDataBinarySerializer implements BinarySerializer, Applicatio
                 mimetypeId = mimetypePair.getFirst();
             }
         }
+        else if (useDictionary)
+        {
+            mimetypeDictionaryId = this.stringDictionary.getId(mimetype);
+            if (mimetypeDictionaryId != StringDictionary.NO_ID)
+            {
+                flags = (byte) (flags | FLAG_MIMETYPE_ID | FLAG_DICTIONARY_IDS);
+            }
+        }
 
         if (encoding == null)
         {
@@ -217,6 +320,14 @@ public class ContentDataBinarySerializer implements BinarySerializer, Applicatio
                 encodingId = encodingPair.getFirst();
             }
         }
+        else if (useDictionary)
+        {
+            encodingDictionaryId = this.stringDictionary.getId(encoding);
+            if (encodingDictionaryId != StringDictionary.NO_ID)
+            {
+                flags = (byte) (flags | FLAG_ENCODING_ID | FLAG_DICTIONARY_IDS);
+            }
+        }
 
         if (locale == null)
         {
@@ -231,12 +342,30 @@ public class ContentDataBinarySerializer implements BinarySerializer, Applicatio
                 localeId = localePair.getFirst();
             }
         }
+
+        // baseline field order is retained, so that the form is unchanged unless the content URL is packed
+        // a packed content URL is written as null with its components appended after the flags
+        rawWriter.writeString(contentUrlMatcher != null ? null : contentUrl);
+        rawWriter.writeLong(contentData.getSize());
         rawWriter.writeByte(flags);
 
+        if (contentUrlMatcher != null)
+        {
+            final UUID uuid = UUID.fromString(contentUrlMatcher.group(7));
+            rawWriter.writeByte(this.getPackableProtocolOrdinal(contentUrlMatcher));
+            rawWriter.writeInt(this.packContentUrlDate(contentUrlMatcher));
+            rawWriter.writeLong(uuid.getMostSignificantBits());
+            rawWriter.writeLong(uuid.getLeastSignificantBits());
+        }
+
         if (mimetypeId != null)
         {
             rawWriter.writeLong(mimetypeId);
         }
+        else if (mimetypeDictionaryId != StringDictionary.NO_ID)
+        {
+            rawWriter.writeInt(mimetypeDictionaryId);
+        }
         else if (mimetype != null)
         {
             rawWriter.writeString(mimetype);
@@ -246,6 +375,10 @@ public class ContentDataBinarySerializer implements BinarySerializer, Applicatio
         {
             rawWriter.writeLong(encodingId);
         }
+        else if (encodingDictionaryId != StringDictionary.NO_ID)
+        {
+            rawWriter.writeInt(encodingDictionaryId);
+        }
         else if (encoding != null)
         {
             rawWriter.writeString(encoding);
@@ -268,7 +401,19 @@ public class ContentDataBinarySerializer implements BinarySerializer, Applicatio
             writer.writeLong(ID, ((ContentDataWithId) contentData).getId());
         }
 
-        writer.writeString(CONTENT_URL, contentData.getContentUrl());
+        final String contentUrl = contentData.getContentUrl();
+        final boolean extendedForms = this.isSerialFormSupported(SerialFormCompatibility.VERSION_EXTENDED_FORMS);
+        final Matcher contentUrlMatcher = this.usePackedContentUrls && extendedForms ? this.matchPackableContentUrl(contentUrl) : null;
+        if (contentUrlMatcher != null)
+        {
+            writer.writeByte(CONTENT_URL_PROTOCOL, this.getPackableProtocolOrdinal(contentUrlMatcher));
+            writer.writeInt(CONTENT_URL_DATE, this.packContentUrlDate(contentUrlMatcher));
+            writer.writeUuid(CONTENT_URL_UUID, UUID.fromString(contentUrlMatcher.group(7)));
+        }
+        else
+        {
+            writer.writeString(CONTENT_URL, contentUrl);
+        }
         writer.writeLong(SIZE, contentData.getSize());
 
         final String mimetype = contentData.getMimetype();
@@ -305,10 +450,19 @@ public class ContentDataBinarySerializer implements BinarySerializer, Applicatio
             }
         }
 
+        final boolean useDictionary = !this.useIdsWhenReasonable && this.useStringDictionary && this.stringDictionary != null
+                && extendedForms;
+        final int mimetypeDictionaryId = mimetype != null && useDictionary ? this.stringDictionary.getId(mimetype) : StringDictionary.NO_ID;
+        final int encodingDictionaryId = encoding != null && useDictionary ? this.stringDictionary.getId(encoding) : StringDictionary.NO_ID;
+
         if (mimetypeId != null)
         {
             writer.writeObject(MIMETYPE_ID, mimetypeId);
         }
+        else if (mimetypeDictionaryId != StringDictionary.NO_ID)
+        {
+            writer.writeObject(MIMETYPE_DICTIONARY_ID, Integer.valueOf(mimetypeDictionaryId));
+        }
         else if (mimetype != null)
         {
             writer.writeString(MIMETYPE, mimetype);
@@ -318,6 +472,10 @@ public class ContentDataBinarySerializer implements BinarySerializer, Applicatio
         {
             writer.writeObject(ENCODING_ID, encodingId);
         }
+        else if (encodingDictionaryId != StringDictionary.NO_ID)
+        {
+            writer.writeObject(ENCODING_DICTIONARY_ID, Integer.valueOf(encodingDictionaryId));
+        }
         else if (encoding != null)
         {
             writer.writeString(ENCODING, encoding);
@@ -378,7 +536,7 @@ public class ContentDataBinarySerializer implements BinarySerializer, Applicatio
             }
         }
 
-        final String contentUrl = rawReader.readString();
+        String contentUrl = rawReader.readString();
         final long size = rawReader.readLong();
 
         String mimetype = null;
@@ -386,12 +544,27 @@ public class ContentDataBinarySerializer implements BinarySerializer, Applicatio
         Locale locale = null;
 
         final byte flags = rawReader.readByte();
-        if (!this.useIdsWhenReasonable && ((FLAG_MIMETYPE_ID | FLAG_ENCODING_ID | FLAG_LOCALE_ID) & flags) != 0)
+        final boolean dictionaryIds = (flags & FLAG_DICTIONARY_IDS) == FLAG_DICTIONARY_IDS;
+        final int databaseIdFlags = dictionaryIds ? FLAG_LOCALE_ID : (FLAG_MIMETYPE_ID | FLAG_ENCODING_ID | FLAG_LOCALE_ID);
+        if (!this.useIdsWhenReasonable && (databaseIdFlags & flags) != 0)
         {
             throw new BinaryObjectException("Serializer is not configured to use IDs in place of content data fragments");
         }
 
-        if ((flags & FLAG_MIMETYPE_ID) == FLAG_MIMETYPE_ID)
+        if ((flags & FLAG_CONTENT_URL_PACKED) == FLAG_CONTENT_URL_PACKED)
+        {
+            final byte protocolOrdinal = rawReader.readByte();
+            final int packedDate = rawReader.readInt();
+            final long mostSigBits = rawReader.readLong();
+            final long leastSigBits = rawReader.readLong();
+            contentUrl = this.unpackContentUrl(protocolOrdinal, packedDate, new UUID(mostSigBits, leastSigBits));
+        }
+
+        if ((flags & FLAG_MIMETYPE_ID) == FLAG_MIMETYPE_ID && dictionaryIds)
+        {
+            mimetype = this.resolveDictionaryId(rawReader.readInt());
+        }
+        else if ((flags & FLAG_MIMETYPE_ID) == FLAG_MIMETYPE_ID)
         {
             final long mimetypeId = rawReader.readLong();
             final Pair<Long, String> mimetypePair = this.mimetypeDAO.getMimetype(mimetypeId);
@@ -409,7 +582,11 @@ public class ContentDataBinarySerializer implements BinarySerializer, Applicatio
             mimetype = rawReader.readString();
         }
 
-        if ((flags & FLAG_ENCODING_ID) == FLAG_ENCODING_ID)
+        if ((flags & FLAG_ENCODING_ID) == FLAG_ENCODING_ID && dictionaryIds)
+        {
+            encoding = this.resolveDictionaryId(rawReader.readInt());
+        }
+        else if ((flags & FLAG_ENCODING_ID) == FLAG_ENCODING_ID)
         {
             final long encodingId = rawReader.readLong();
             final Pair<Long, String> encodingPair = this.encodingDAO.getEncoding(encodingId);
@@ -474,7 +651,15 @@ public class ContentDataBinarySerializer implements BinarySerializer, Applicatio
             }
         }
 
-        final String contentUrl = reader.readString(CONTENT_URL);
+        String contentUrl = reader.readString(CONTENT_URL);
+        if (contentUrl == null)
+        {
+            final UUID contentUrlUuid = reader.readUuid(CONTENT_URL_UUID);
+            if (contentUrlUuid != null)
+            {
+                contentUrl = this.unpackContentUrl(reader.readByte(CONTENT_URL_PROTOCOL), reader.readInt(CONTENT_URL_DATE), contentUrlUuid);
+            }
+        }
         final long size = reader.readLong(SIZE);
 
         String mimetype = reader.readString(MIMETYPE);
@@ -483,8 +668,13 @@ public class ContentDataBinarySerializer implements BinarySerializer, Applicatio
 
         if (mimetype == null)
         {
-            final Long mimetypeId = reader.readObject(MIMETYPE_ID);
-            if (mimetypeId != null)
+            final Integer mimetypeDictionaryId = reader.readObject(MIMETYPE_DICTIONARY_ID);
+            final Long mimetypeId = mimetypeDictionaryId == null ? reader.readObject(MIMETYPE_ID) : null;
+            if (mimetypeDictionaryId != null)
+            {
+                mimetype = this.resolveDictionaryId(mimetypeDictionaryId);
+            }
+            else if (mimetypeId != null)
             {
                 final Pair<Long, String> mimetypePair = this.mimetypeDAO.getMimetype(mimetypeId);
                 if (mimetypePair != null)
@@ -500,8 +690,13 @@ public class ContentDataBinarySerializer implements BinarySerializer, Applicatio
 
         if (encoding == null)
         {
-            final Long encodingId = reader.readObject(ENCODING_ID);
-            if (encodingId != null)
+            final Integer encodingDictionaryId = reader.readObject(ENCODING_DICTIONARY_ID);
+            final Long encodingId = encodingDictionaryId == null ? reader.readObject(ENCODING_ID) : null;
+            if (encodingDictionaryId != null)
+            {
+                encoding = this.resolveDictionaryId(encodingDictionaryId);
+            }
+            else if (encodingId != null)
             {
                 final Pair<Long, String> encodingPair = this.encodingDAO.getEncoding(encodingId);
                 if (encodingPair != null)
@@ -546,6 +741,83 @@ public class ContentDataBinarySerializer implements BinarySerializer, Applicatio
         }
     }
 
+    /**
+     * Matches a content URL against the layout supported for packed serialisation.
+     *
+     * @param contentUrl
+     *            the content URL to match
+     * @return the matcher providing access to the individual components of the content URL, or {@code null} if the content URL does not
+     *         support packed serialisation
+     */
+    protected Matcher matchPackableContentUrl(final String contentUrl)
+    {
+        Matcher result = null;
+        if (contentUrl != null && contentUrl.endsWith(PACKABLE_CONTENT_URL_SUFFIX))
+        {
+            final Matcher matcher = PACKABLE_CONTENT_URL.matcher(contentUrl);
+            if (matcher.matches() && this.getPackableProtocolOrdinal(matcher) != -1)
+            {
+                result = matcher;
+            }
+        }
+        return result;
+    }
+
+    protected byte getPackableProtocolOrdinal(final Matcher contentUrlMatcher)
+    {
+        final String protocol = contentUrlMatcher.group(1);
+        byte ordinal = -1;
+        for (byte idx = 0; idx < PACKABLE_PROTOCOLS.length && ordinal == -1; idx++)
+        {
+            if (PACKABLE_PROTOCOLS[idx].equals(protocol))
+            {
+                ordinal = idx;
+            }
+        }
+        return ordinal;
+    }
+
+    protected int packContentUrlDate(final Matcher contentUrlMatcher)
+    {
+        final int year = Integer.parseInt(contentUrlMatcher.group(2));
+        final int month = Integer.parseInt(contentUrlMatcher.group(3));
+        final int day = Integer.parseInt(contentUrlMatcher.group(4));
+        final int hour = Integer.parseInt(contentUrlMatcher.group(5));
+        final int minute = Integer.parseInt(contentUrlMatcher.group(6));
+
+        // 6 bits minute, 5 bits hour, 5 bits day, 4 bits month, remaining 12 bits year (regex limits to 1000-2999)
+        return (year << 20) | (month << 16) | (day << 11) | (hour << 6) | minute;
+    }
+
+    protected String unpackContentUrl(final byte protocolOrdinal, final int packedDate, final UUID uuid)
+    {
+        if (protocolOrdinal < 0 || protocolOrdinal >= PACKABLE_PROTOCOLS.length)
+        {
+            throw new BinaryObjectException("Unsupported content URL protocol ordinal " + protocolOrdinal);
+        }
+
+        final int year = packedDate >>> 20;
+        final int month = (packedDate >> 16) & 0xF;
+        final int day = (packedDate >> 11) & 0x1F;
+        final int hour = (packedDate >> 6) & 0x1F;
+        final int minute = packedDate & 0x3F;
+
+        final StringBuilder sb = new StringBuilder(64);
+        sb.append(PACKABLE_PROTOCOLS[protocolOrdinal]).append("://");
+        sb.append(year).append('/').append(month).append('/').append(day).append('/').append(hour).append('/').append(minute).append('/');
+        sb.append(uuid).append(PACKABLE_CONTENT_URL_SUFFIX);
+        return sb.toString();
+    }
+
+    protected String resolveDictionaryId(final int dictionaryId)
+    {
+        if (this.stringDictionary == null)
+        {
+            throw new BinaryObjectException("No string dictionary available to resolve ID " + dictionaryId);
+        }
+        return this.stringDictionary.getValue(dictionaryId);
+    }
+
     protected void ensureDAOsAvailable() throws BinaryObjectException
     {
         if (this.mimetypeDAO == null)
@@ -587,4 +859,9 @@ public class ContentDataBinarySerializer implements BinarySerializer, Applicatio
             }
         }
     }
+
+    protected boolean isSerialFormSupported(final int version)
+    {
+        return this.serialFormCompatibility == null || this.serialFormCompatibility.isSupported(version);
+    }
 }
@@ -0,0 +1,199 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.binary;
+
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongFunction;
+
+import org.aldica.repo.ignite.cache.CacheWithBulkRetrieval;
+import org.alfresco.repo.cache.SimpleCache;
+import org.alfresco.repo.cache.TransactionalCache.ValueHolder;
+import org.alfresco.repo.cache.lookup.CacheRegionKey;
+import org.alfresco.repo.cache.lookup.EntityLookupCache;
+import org.alfresco.repo.domain.contentdata.ContentDataDAO;
+import org.alfresco.repo.domain.qname.QNameDAO;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport.TxnReadState;
+import org.alfresco.service.cmr.repository.ContentData;
+import org.alfresco.service.namespace.QName;
+import org.alfresco.util.Pair;
+import org.apache.ignite.binary.BinaryObjectException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.context.ApplicationContext;
+
+/**
+ * Instances of this class resolve multiple {@link QName} or {@link ContentData} IDs read from a single serialised value in bulk. Instead of
+ * resolving each ID individually via the corresponding DAO - potentially incurring a separate network round trip for each ID in case of
+ * partitioned caches - all IDs are looked up in a single bulk operation on the shared cache backing the {@link EntityLookupCache entity
+ * lookup cache} of the DAO. Only IDs not found in the shared cache are resolved individually via the DAO, which also ensures these are
+ * loaded into the cache for subsequent lookups.
+ *
+ * Since the shared caches do not reflect any transactional changes, bulk lookups of {@link ContentData} are not performed in read-write
+ * transactions, in which changes to content data entities may have been made.
+ *
+ * @author Axel Faust
+ */
+public class EntityIdBulkResolver
+{
+
+    // note: no public constants for cache region names exist in Alfresco classes
+    private static final String QNAME_CACHE_REGION = CacheRegion.QNAME.getCacheRegionName();
+
+    private static final String CONTENT_DATA_CACHE_REGION = CacheRegion.CONTENT_DATA.getCacheRegionName();
+
+    private static final String QNAME_SHARED_CACHE = "immutableEntitySharedCache";
+
+    private static final String CONTENT_DATA_SHARED_CACHE = "contentDataSharedCache";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EntityIdBulkResolver.class);
+
+    protected final QNameDAO qnameDAO;
+
+    protected final ContentDataDAO contentDataDAO;
+
+    protected final CacheWithBulkRetrieval<Serializable, Object> qnameCache;
+
+    protected final CacheWithBulkRetrieval<Serializable, Object> contentDataCache;
+
+    /**
+     * Creates a new instance of this class.
+     *
+     * @param applicationContext
+     *            the application context from which to retrieve the shared caches
+     * @param qnameDAO
+     *            the QName DAO to use for resolving individual QName IDs - may be {@code null} if QName IDs are never resolved
+     * @param contentDataDAO
+     *            the content data DAO to use for resolving individual content data IDs - may be {@code null} if content data IDs are never
+     *            resolved
+     */
+    public EntityIdBulkResolver(final ApplicationContext applicationContext, final QNameDAO qnameDAO, final ContentDataDAO contentDataDAO)
+    {
+        this.qnameDAO = qnameDAO;
+        this.contentDataDAO = contentDataDAO;
+        this.qnameCache = qnameDAO != null ? getBulkRetrievalCache(applicationContext, QNAME_SHARED_CACHE) : null;
+        this.contentDataCache = contentDataDAO != null ? getBulkRetrievalCache(applicationContext, CONTENT_DATA_SHARED_CACHE) : null;
+    }
+
+    /**
+     * Resolves a set of QName IDs.
+     *
+     * @param ids
+     *            the IDs to resolve
+     * @return the resolved QNames in the same order as the provided IDs
+     * @throws BinaryObjectException
+     *             if any ID cannot be resolved
+     */
+    public QName[] resolveQNames(final long[] ids) throws BinaryObjectException
+    {
+        final QName[] qnames = new QName[ids.length];
+        this.resolve(ids, qnames, QName.class, this.qnameCache, QNAME_CACHE_REGION, id -> {
+            final Pair<Long, QName> qnamePair = this.qnameDAO.getQName(id);
+            if (qnamePair == null)
+            {
+                throw new BinaryObjectException("Cannot resolve QName for ID " + id);
+            }
+            return qnamePair.getSecond();
+        });
+        return qnames;
+    }
+
+    /**
+     * Resolves a set of content data IDs.
+     *
+     * @param ids
+     *            the IDs to resolve
+     * @return the resolved content data instances in the same order as the provided IDs
+     * @throws BinaryObjectException
+     *             if any ID cannot be resolved
+     */
+    public ContentData[] resolveContentData(final long[] ids) throws BinaryObjectException
+    {
+        final ContentData[] contentData = new ContentData[ids.length];
+        // shared cache does not reflect any changes of the current transaction
+        final boolean useCache = AlfrescoTransactionSupport.getTransactionReadState() != TxnReadState.TXN_READ_WRITE;
+        this.resolve(ids, contentData, ContentData.class, useCache ? this.contentDataCache : null, CONTENT_DATA_CACHE_REGION, id -> {
+            final Pair<Long, ContentData> contentDataPair = this.contentDataDAO.getContentData(id);
+            if (contentDataPair == null)
+            {
+                throw new BinaryObjectException("Cannot resolve ContentData for ID " + id);
+            }
+            return contentDataPair.getSecond();
+        });
+        return contentData;
+    }
+
+    protected <T> void resolve(final long[] ids, final T[] results, final Class<T> valueType,
+            final CacheWithBulkRetrieval<Serializable, Object> cache, final String cacheRegion, final LongFunction<T> individualResolver)
+    {
+        // bulk lookup only makes sense for more than one ID
+        if (cache != null && ids.length > 1)
+        {
+            final CacheRegionKey[] keys = new CacheRegionKey[ids.length];
+            final Set<Serializable> keySet = new HashSet<>(ids.length * 4 / 3 + 1);
+            for (int idx = 0; idx < ids.length; idx++)
+            {
+                keys[idx] = new CacheRegionKey(cacheRegion, Long.valueOf(ids[idx]));
+                keySet.add(keys[idx]);
+            }
+
+            final Map<Serializable, Object> values = cache.getAll(keySet);
+            for (int idx = 0; idx < ids.length; idx++)
+            {
+                Object value = values.get(keys[idx]);
+                if (value instanceof ValueHolder<?>)
+                {
+                    value = ((ValueHolder<?>) value).getValue();
+                }
+
+                // anything else (including sentinels) is treated as a miss
+                if (valueType.isInstance(value))
+                {
+                    results[idx] = valueType.cast(value);
+                }
+            }
+
+            LOGGER.trace("Resolved {} of {} IDs in cache region {} via bulk lookup", values.size(), ids.length, cacheRegion);
+        }
+
+        for (int idx = 0; idx < ids.length; idx++)
+        {
+            if (results[idx] == null)
+            {
+                results[idx] = individualResolver.apply(ids[idx]);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    protected static CacheWithBulkRetrieval<Serializable, Object> getBulkRetrievalCache(final ApplicationContext applicationContext,
+            final String cacheBeanName)
+    {
+        CacheWithBulkRetrieval<Serializable, Object> cache = null;
+        if (applicationContext != null && applicationContext.containsBean(cacheBeanName))
+        {
+            try
+            {
+                final SimpleCache<?, ?> sharedCache = applicationContext.getBean(cacheBeanName, SimpleCache.class);
+                if (sharedCache instanceof CacheWithBulkRetrieval<?, ?>)
+                {
+                    cache = (CacheWithBulkRetrieval<Serializable, Object>) sharedCache;
+                }
+                else
+                {
+                    LOGGER.debug("Shared cache {} does not support bulk retrieval", cacheBeanName);
+                }
+            }
+            catch (final BeansException be)
+            {
+                LOGGER.debug("Failed to retrieve shared cache {} - IDs will be resolved individually", cacheBeanName, be);
+            }
+        }
+        return cache;
+    }
+}
@@ -0,0 +1,243 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.binary;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * This class provides lightweight, immutable list views on the arrays of values read from the packed serial form of multi-valued
+ * properties. The views avoid copying the values into a regular list and, in case of primitive values, avoid holding boxed values for the
+ * lifetime of the list.
+ *
+ * Alfresco copies collection values of cached node properties via Java serialisation before handing them to any client code, so all views
+ * are replaced by regular {@link ArrayList array lists} in their Java serial form. This ensures client code always works with mutable lists
+ * as it would without the views.
+ *
+ * @author Axel Faust
+ */
+public final class ImmutableValueLists
+{
+
+    private ImmutableValueLists()
+    {
+        // NO-OP
+    }
+
+    /**
+     * Creates an immutable list view on an array of values.
+     *
+     * @param values
+     *            the values to wrap
+     * @return the list view
+     */
+    public static <T extends Serializable> List<T> of(final T[] values)
+    {
+        return new ObjectValueList<>(values);
+    }
+
+    /**
+     * Creates an immutable list view on an array of integer values.
+     *
+     * @param values
+     *            the values to wrap
+     * @return the list view
+     */
+    public static List<Integer> ofInts(final int[] values)
+    {
+        return new IntValueList(values);
+    }
+
+    /**
+     * Creates an immutable list view on an array of long values.
+     *
+     * @param values
+     *            the values to wrap
+     * @return the list view
+     */
+    public static List<Long> ofLongs(final long[] values)
+    {
+        return new LongValueList(values);
+    }
+
+    /**
+     * Creates an immutable list view on an array of double values.
+     *
+     * @param values
+     *            the values to wrap
+     * @return the list view
+     */
+    public static List<Double> ofDoubles(final double[] values)
+    {
+        return new DoubleValueList(values);
+    }
+
+    /**
+     * Base class for all list views in this utility.
+     *
+     * @author Axel Faust
+     */
+    private abstract static class ValueList<T extends Serializable> extends AbstractList<T> implements RandomAccess, Serializable
+    {
+
+        private static final long serialVersionUID = -1390521286683004376L;
+
+        /**
+         * Replaces this view with a regular, mutable list in the Java serial form.
+         *
+         * @return the replacement object
+         */
+        protected Object writeReplace()
+        {
+            return new ArrayList<>(this);
+        }
+    }
+
+    /**
+     * List view on an array of objects.
+     *
+     * @author Axel Faust
+     */
+    private static class ObjectValueList<T extends Serializable> extends ValueList<T>
+    {
+
+        private static final long serialVersionUID = 8427361046720146862L;
+
+        private final T[] values;
+
+        protected ObjectValueList(final T[] values)
+        {
+            this.values = values;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public T get(final int index)
+        {
+            return this.values[index];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size()
+        {
+            return this.values.length;
+        }
+    }
+
+    /**
+     * List view on an array of primitive integers.
+     *
+     * @author Axel Faust
+     */
+    private static class IntValueList extends ValueList<Integer>
+    {
+
+        private static final long serialVersionUID = 5153880410829574617L;
+
+        private final int[] values;
+
+        protected IntValueList(final int[] values)
+        {
+            this.values = values;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Integer get(final int index)
+        {
+            return Integer.valueOf(this.values[index]);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size()
+        {
+            return this.values.length;
+        }
+    }
+
+    /**
+     * List view on an array of primitive longs.
+     *
+     * @author Axel Faust
+     */
+    private static class LongValueList extends ValueList<Long>
+    {
+
+        private static final long serialVersionUID = -5721873457915094637L;
+
+        private final long[] values;
+
+        protected LongValueList(final long[] values)
+        {
+            this.values = values;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Long get(final int index)
+        {
+            return Long.valueOf(this.values[index]);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size()
+        {
+            return this.values.length;
+        }
+    }
+
+    /**
+     * List view on an array of primitive doubles.
+     *
+     * @author Axel Faust
+     */
+    private static class DoubleValueList extends ValueList<Double>
+    {
+
+        private static final long serialVersionUID = 2938140977616102155L;
+
+        private final double[] values;
+
+        protected DoubleValueList(final double[] values)
+        {
+            this.values = values;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Double get(final int index)
+        {
+            return Double.valueOf(this.values[index]);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size()
+        {
+            return this.values.length;
+        }
+    }
+}
@@ -30,12 +30,27 @@ import org.springframework.context.ApplicationContextAware;
  * already faster than regular JVM serialisation, it does not necessarily result in the smallest serial form, and we are able to apply
  * optional optimisations during marshalling via this class.
  *
+ * As the vast majority of multilingual text values only hold a single value, typically in the predominant locale of the system, the raw
+ * serial form can optionally use a compact form for single-value instances, which avoids writing the number of values, and either omits the
+ * locale completely if it matches the configured default locale or writes the locale ID in a more compact form. The compact forms are
+ * marked with a negative value in place of the number of values of the generic raw serial form, so that either form can always be read
+ * regardless of configuration. The compact forms are only written if all relevant grid members are able to read them, as negotiated via
+ * the {@link SerialFormCompatibility serial form compatibility} component, if configured. As the default locale is not part of the serial
+ * form, it must be configured identically on all grid members, which is validated when a member joins the grid.
  *
  * @author Axel Faust
  */
 public class MLTextBinarySerializer implements BinarySerializer, ApplicationContextAware
 {
 
+    // compact forms use negative markers in place of the non-negative size of the generic form
+
+    private static final int FORM_DEFAULT_LOCALE = -1;
+
+    private static final int FORM_SINGLE_LOCALE_ID = -2;
+
+    private static final int FORM_SINGLE_LOCALE = -3;
+
     protected ApplicationContext applicationContext;
 
     protected LocaleDAO localeDAO;
@@ -44,6 +59,12 @@ public class MLTextBinarySerializer implements BinarySerializer, ApplicationCont
 
     protected boolean useRawSerialForm = false;
 
+    protected boolean useCompactSingleLocaleForm = false;
+
+    protected Locale defaultLocale;
+
+    protected SerialFormCompatibility serialFormCompatibility;
+
     /**
      * {@inheritDoc}
      */
@@ -71,6 +92,33 @@ public class MLTextBinarySerializer implements BinarySerializer, ApplicationCont
         this.useRawSerialForm = useRawSerialForm;
     }
 
+    /**
+     * @param useCompactSingleLocaleForm
+     *            the useCompactSingleLocaleForm to set
+     */
+    public void setUseCompactSingleLocaleForm(final boolean useCompactSingleLocaleForm)
+    {
+        this.useCompactSingleLocaleForm = useCompactSingleLocaleForm;
+    }
+
+    /**
+     * @param defaultLocale
+     *            the defaultLocale to set
+     */
+    public void setDefaultLocale(final Locale defaultLocale)
+    {
+        this.defaultLocale = defaultLocale;
+    }
+
+    /**
+     * @param serialFormCompatibility
+     *            the serialFormCompatibility to set
+     */
+    public void setSerialFormCompatibility(final SerialFormCompatibility serialFormCompatibility)
+    {
+        this.serialFormCompatibility = serialFormCompatibility;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -93,30 +141,14 @@ public class MLTextBinarySerializer implements BinarySerializer, ApplicationCont
         if (this.useRawSerialForm)
         {
             final BinaryRawWriter rawWriter = writer.rawWriter();
-            rawWriter.writeInt(mlText.size());
-
-            for (final Entry<Locale, String> entry : mlText.entrySet())
+            if (this.useCompactSingleLocaleForm && (this.serialFormCompatibility == null
+                    || this.serialFormCompatibility.isSupported(SerialFormCompatibility.VERSION_COMPACT_VALUES)))
             {
-                final Locale key = entry.getKey();
-                final String value = entry.getValue();
-                if (this.useIdsWhenReasonable)
-                {
-                    final Pair<Long, Locale> localePair = this.localeDAO.getLocalePair(key);
-                    rawWriter.writeBoolean(localePair != null);
-                    if (localePair != null)
-                    {
-                        rawWriter.writeLong(localePair.getFirst());
-                    }
-                    else
-                    {
-                        rawWriter.writeObject(key);
-                    }
-                }
-                else
-                {
-                    rawWriter.writeObject(key);
-                }
-                rawWriter.writeString(value);
+                this.writeCompactRawSerialForm(mlText, rawWriter);
+            }
+            else
+            {
+                this.writeRawSerialForm(mlText, rawWriter);
             }
         }
         else
@@ -161,36 +193,7 @@ public class MLTextBinarySerializer implements BinarySerializer, ApplicationCont
         if (this.useRawSerialForm)
         {
             final BinaryRawReader rawReader = reader.rawReader();
-            final int size = rawReader.readInt();
-
-            for (int idx = 0; idx < size; idx++)
-            {
-                Locale key;
-                if (this.useIdsWhenReasonable)
-                {
-                    final boolean isId = rawReader.readBoolean();
-                    if (isId)
-                    {
-                        final long id = rawReader.readLong();
-                        final Pair<Long, Locale> localePair = this.localeDAO.getLocalePair(id);
-                        if (localePair == null)
-                        {
-                            throw new BinaryObjectException("Cannot resolve Locale for ID " + id);
-                        }
-                        key = localePair.getSecond();
-                    }
-                    else
-                    {
-                        key = rawReader.readObject();
-                    }
-                }
-                else
-                {
-                    key = rawReader.readObject();
-                }
-                final String value = rawReader.readObject();
-                mlText.addValue(key, value);
-            }
+            this.readRawSerialForm(mlText, rawReader);
         }
         else
         {
@@ -222,6 +225,148 @@ public class MLTextBinarySerializer implements BinarySerializer, ApplicationCont
         }
     }
 
+    protected void writeCompactRawSerialForm(final MLText mlText, final BinaryRawWriter rawWriter)
+    {
+        boolean written = false;
+        if (mlText.size() == 1)
+        {
+            final Entry<Locale, String> entry = mlText.entrySet().iterator().next();
+            final Locale key = entry.getKey();
+            final String value = entry.getValue();
+
+            if (this.defaultLocale != null && this.defaultLocale.equals(key))
+            {
+                rawWriter.writeInt(FORM_DEFAULT_LOCALE);
+                rawWriter.writeString(value);
+                written = true;
+            }
+            else if (this.useIdsWhenReasonable)
+            {
+                final Pair<Long, Locale> localePair = this.localeDAO.getLocalePair(key);
+                // IDs of locales are practically guaranteed to be small
+                if (localePair != null && localePair.getFirst() <= Integer.MAX_VALUE)
+                {
+                    rawWriter.writeInt(FORM_SINGLE_LOCALE_ID);
+                    rawWriter.writeInt(localePair.getFirst().intValue());
+                    rawWriter.writeString(value);
+                    written = true;
+                }
+            }
+
+            if (!written)
+            {
+                rawWriter.writeInt(FORM_SINGLE_LOCALE);
+                rawWriter.writeObject(key);
+                rawWriter.writeString(value);
+                written = true;
+            }
+        }
+
+        if (!written)
+        {
+            this.writeRawSerialForm(mlText, rawWriter);
+        }
+    }
+
+    protected void writeRawSerialForm(final MLText mlText, final BinaryRawWriter rawWriter)
+    {
+        rawWriter.writeInt(mlText.size());
+
+        for (final Entry<Locale, String> entry : mlText.entrySet())
+        {
+            final Locale key = entry.getKey();
+            final String value = entry.getValue();
+            if (this.useIdsWhenReasonable)
+            {
+                final Pair<Long, Locale> localePair = this.localeDAO.getLocalePair(key);
+                rawWriter.writeBoolean(localePair != null);
+                if (localePair != null)
+                {
+                    rawWriter.writeLong(localePair.getFirst());
+                }
+                else
+                {
+                    rawWriter.writeObject(key);
+                }
+            }
+            else
+            {
+                rawWriter.writeObject(key);
+            }
+            rawWriter.writeString(value);
+        }
+    }
+
+    protected void readCompactRawSerialForm(final MLText mlText, final int form, final BinaryRawReader rawReader)
+    {
+        switch (form)
+        {
+            case FORM_DEFAULT_LOCALE:
+                if (this.defaultLocale == null)
+                {
+                    throw new BinaryObjectException("No default locale configured to resolve compact form of MLText");
+                }
+                mlText.addValue(this.defaultLocale, rawReader.readString());
+                break;
+            case FORM_SINGLE_LOCALE_ID:
+                mlText.addValue(this.resolveLocale(rawReader.readInt()), rawReader.readString());
+                break;
+            case FORM_SINGLE_LOCALE:
+                mlText.addValue(rawReader.readObject(), rawReader.readString());
+                break;
+            default:
+                throw new BinaryObjectException("Unsupported compact form of MLText: " + form);
+        }
+    }
+
+    protected void readRawSerialForm(final MLText mlText, final BinaryRawReader rawReader)
+    {
+        final int size = rawReader.readInt();
+        if (size < 0)
+        {
+            this.readCompactRawSerialForm(mlText, size, rawReader);
+        }
+        else
+        {
+            for (int idx = 0; idx < size; idx++)
+            {
+                Locale key;
+                if (this.useIdsWhenReasonable)
+                {
+                    final boolean isId = rawReader.readBoolean();
+                    if (isId)
+                    {
+                        key = this.resolveLocale(rawReader.readLong());
+                    }
+                    else
+                    {
+                        key = rawReader.readObject();
+                    }
+                }
+                else
+                {
+                    key = rawReader.readObject();
+                }
+                final String value = rawReader.readObject();
+                mlText.addValue(key, value);
+            }
+        }
+    }
+
+    protected Locale resolveLocale(final long id)
+    {
+        if (this.localeDAO == null)
+        {
+            throw new BinaryObjectException("No LocaleDAO available to resolve Locale for ID " + id);
+        }
+        final Pair<Long, Locale> localePair = this.localeDAO.getLocalePair(id);
+        if (localePair == null)
+        {
+            throw new BinaryObjectException("Cannot resolve Locale for ID " + id);
+        }
+        return localePair.getSecond();
+    }
+
     protected void ensureLocaleDAOAvailable() throws BinaryObjectException
     {
         if (this.localeDAO == null)
@@ -0,0 +1,155 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.binary;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.alfresco.service.namespace.QName;
+import org.apache.ignite.binary.BinaryObjectException;
+
+/**
+ * Instances of this class provide a static dictionary of custom {@link QName#getNamespaceURI() namespace URIs}, i.e. URIs not covered by
+ * the well-known {@link Namespace namespaces}, mapping each URI to a numerical ID based on its position in the configured list of URIs.
+ *
+ * Since qualified names are used in cache keys, and Ignite compares keys by their serial form, the ID of a namespace URI must never change
+ * over time or differ between members of the data grid. This dictionary therefore never learns URIs on use, and must be configured
+ * identically on all members of the data grid. Any change to the list of URIs requires a restart of all grid members. In order to detect
+ * inconsistent configurations, each member advertises the {@link #fingerprint(boolean, String) fingerprint} of its dictionary as a node
+ * attribute, which is validated whenever a member joins the data grid.
+ *
+ * @author Axel Faust
+ */
+public class NamespaceDictionary
+{
+
+    /**
+     * The ID returned by {@link #getNamespaceId(String) ID lookups} when a namespace URI is not contained in the dictionary.
+     */
+    public static final int NO_NAMESPACE_ID = -1;
+
+    /**
+     * The fingerprint of a disabled or empty dictionary, which is also assumed for members not advertising any fingerprint.
+     */
+    public static final String NO_FINGERPRINT = "";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    protected Map<String, Integer> namespaceIds = Collections.emptyMap();
+
+    protected List<String> namespaceUris = Collections.emptyList();
+
+    /**
+     * Computes the fingerprint of a dictionary configuration, i.e. a digest of the effective namespace URIs in the order of their IDs, so
+     * that members can validate that they use identical dictionaries without exchanging the complete list of URIs.
+     *
+     * @param enabled
+     *            {@code true} if the dictionary is used in serial forms, {@code false} otherwise
+     * @param namespaceUris
+     *            the comma-separated custom namespace URIs as configured for the dictionary
+     * @return the fingerprint of the dictionary, or {@link #NO_FINGERPRINT} if the dictionary is not used or does not contain any URIs
+     */
+    public static String fingerprint(final boolean enabled, final String namespaceUris)
+    {
+        String fingerprint = NO_FINGERPRINT;
+        if (enabled)
+        {
+            final List<String> uris = parseNamespaceUris(namespaceUris);
+            if (!uris.isEmpty())
+            {
+                try
+                {
+                    final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                    final byte[] hash = digest.digest(String.join(",", uris).getBytes(StandardCharsets.UTF_8));
+
+                    final char[] hex = new char[hash.length * 2];
+                    for (int idx = 0; idx < hash.length; idx++)
+                    {
+                        hex[idx * 2] = HEX_DIGITS[(hash[idx] >> 4) & 0x0f];
+                        hex[idx * 2 + 1] = HEX_DIGITS[hash[idx] & 0x0f];
+                    }
+                    fingerprint = new String(hex);
+                }
+                catch (final NoSuchAlgorithmException nsaex)
+                {
+                    throw new IllegalStateException("SHA-256 digest is not supported by the JVM", nsaex);
+                }
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * @param namespaceUris
+     *            the comma-separated custom namespace URIs to include in the dictionary - well-known namespace URIs and duplicates are
+     *            silently ignored
+     */
+    public void setNamespaceUris(final String namespaceUris)
+    {
+        final List<String> uris = parseNamespaceUris(namespaceUris);
+        final Map<String, Integer> namespaceIds = new HashMap<>();
+        for (final String uri : uris)
+        {
+            // IDs start at 1 to allow for compact encoding in namespace type of QNameBinarySerializer
+            namespaceIds.put(uri, namespaceIds.size() + 1);
+        }
+
+        this.namespaceIds = Collections.unmodifiableMap(namespaceIds);
+        this.namespaceUris = Collections.unmodifiableList(uris);
+    }
+
+    /**
+     * Retrieves the ID for a specific custom namespace URI.
+     *
+     * @param namespaceUri
+     *            the namespace URI for which to retrieve the ID
+     * @return the ID of the namespace URI or {@link #NO_NAMESPACE_ID} if the URI is not contained in the dictionary
+     */
+    public int getNamespaceId(final String namespaceUri)
+    {
+        final Integer id = this.namespaceIds.get(namespaceUri);
+        return id != null ? id.intValue() : NO_NAMESPACE_ID;
+    }
+
+    /**
+     * Retrieves the namespace URI for a specific ID.
+     *
+     * @param namespaceId
+     *            the ID of the namespace URI to retrieve
+     * @return the namespace URI
+     * @throws BinaryObjectException
+     *             if the ID cannot be resolved, e.g. as the dictionary is not configured identically on all members of the data grid
+     */
+    public String getNamespaceUri(final int namespaceId) throws BinaryObjectException
+    {
+        if (namespaceId < 1 || namespaceId > this.namespaceUris.size())
+        {
+            throw new BinaryObjectException("Cannot resolve namespace URI for ID " + namespaceId);
+        }
+        return this.namespaceUris.get(namespaceId - 1);
+    }
+
+    protected static List<String> parseNamespaceUris(final String namespaceUris)
+    {
+        final List<String> uris = new ArrayList<>();
+        if (namespaceUris != null)
+        {
+            for (final String namespaceUri : namespaceUris.split(","))
+            {
+                final String uri = namespaceUri.trim();
+                if (!uri.isEmpty() && Namespace.getLiteral(uri) == Namespace.CUSTOM && !uris.contains(uri))
+                {
+                    uris.add(uri);
+                }
+            }
+        }
+        return uris;
+    }
+}
@@ -3,12 +3,15 @@
  * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
 package org.aldica.repo.ignite.binary;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import org.aldica.repo.ignite.cache.IdBitmap;
+import org.aldica.repo.ignite.cache.NodeAspectsBitmapSet;
 import org.aldica.repo.ignite.cache.NodeAspectsCacheSet;
 import org.alfresco.error.AlfrescoRuntimeException;
 import org.alfresco.repo.domain.qname.QNameDAO;
@@ -30,6 +33,15 @@ import org.springframework.context.ApplicationContextAware;
  * marshalling, resulting in generally smaller binary representations. This implementation is capable of replacing {@link QName aspects
  * names} with their corresponding IDs for a more efficient serial form.
  *
+ * When configured to use a {@link #setUseBitmapSerialForm(boolean) bitmap serial form}, the IDs of all aspects are encoded in a
+ * compressed {@link IdBitmap bitmap}, and deserialised instances are backed by an immutable {@link NodeAspectsBitmapSet bitmap view} which
+ * does not need to resolve all aspects for simple membership checks. The bitmap form is marked in the serial form, so that either form can
+ * always be read regardless of configuration, and is only written if all relevant grid members are able to read it, as negotiated via the
+ * {@link SerialFormCompatibility serial form compatibility} component, if configured.
+ *
+ * When configured to {@link #setResolveIdsInBulk(boolean) resolve IDs in bulk}, all aspect IDs of a single set are resolved via
+ * {@link EntityIdBulkResolver bulk lookups}, instead of individual lookups for each ID.
+ *
  * @author Axel Faust
  */
 public class NodeAspectsBinarySerializer implements BinarySerializer, ApplicationContextAware
@@ -37,6 +49,11 @@ public class NodeAspectsBinarySerializer implements BinarySerializer, Applicatio
 
     private static final String VALUES = "values";
 
+    private static final String BITMAP = "bitmap";
+
+    // bitmap form uses a negative marker in place of the non-negative size of the generic raw form
+    private static final int BITMAP_FORM_MARKER = -1;
+
     protected ApplicationContext applicationContext;
 
     protected QNameDAO qnameDAO;
@@ -45,6 +62,14 @@ public class NodeAspectsBinarySerializer implements BinarySerializer, Applicatio
 
     protected boolean useRawSerialForm = false;
 
+    protected boolean useBitmapSerialForm = false;
+
+    protected boolean resolveIdsInBulk = false;
+
+    protected EntityIdBulkResolver entityIdBulkResolver;
+
+    protected SerialFormCompatibility serialFormCompatibility;
+
     /**
      * {@inheritDoc}
      */
@@ -72,6 +97,33 @@ public class NodeAspectsBinarySerializer implements BinarySerializer, Applicatio
         this.useRawSerialForm = useRawSerialForm;
     }
 
+    /**
+     * @param useBitmapSerialForm
+     *            the useBitmapSerialForm to set
+     */
+    public void setUseBitmapSerialForm(final boolean useBitmapSerialForm)
+    {
+        this.useBitmapSerialForm = useBitmapSerialForm;
+    }
+
+    /**
+     * @param resolveIdsInBulk
+     *            the resolveIdsInBulk to set
+     */
+    public void setResolveIdsInBulk(final boolean resolveIdsInBulk)
+    {
+        this.resolveIdsInBulk = resolveIdsInBulk;
+    }
+
+    /**
+     * @param serialFormCompatibility
+     *            the serialFormCompatibility to set
+     */
+    public void setSerialFormCompatibility(final SerialFormCompatibility serialFormCompatibility)
+    {
+        this.serialFormCompatibility = serialFormCompatibility;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -128,24 +180,32 @@ public class NodeAspectsBinarySerializer implements BinarySerializer, Applicatio
 
     protected void writeAspectsRawSerialForm(final NodeAspectsCacheSet aspects, final BinaryRawWriter rawWriter)
     {
-        final int size = aspects.size();
-        rawWriter.writeInt(size);
-
-        for (final QName aspectQName : aspects)
+        if (this.isBitmapSerialFormEnabled())
         {
-            if (this.useIdsWhenReasonable)
+            rawWriter.writeInt(BITMAP_FORM_MARKER);
+            rawWriter.writeByteArray(this.toBitmap(aspects).toBytes());
+        }
+        else
+        {
+            final int size = aspects.size();
+            rawWriter.writeInt(size);
+
+            for (final QName aspectQName : aspects)
             {
-                // technically may be null, but practically guaranteed to always be valid
-                final Pair<Long, QName> qnamePair = this.qnameDAO.getQName(aspectQName);
-                if (qnamePair == null)
+                if (this.useIdsWhenReasonable)
                 {
-                    throw new AlfrescoRuntimeException("Cannot resolve " + aspectQName + " to DB ID");
+                    // technically may be null, but practically guaranteed to always be valid
+                    final Pair<Long, QName> qnamePair = this.qnameDAO.getQName(aspectQName);
+                    if (qnamePair == null)
+                    {
+                        throw new AlfrescoRuntimeException("Cannot resolve " + aspectQName + " to DB ID");
+                    }
+                    rawWriter.writeLong(qnamePair.getFirst());
+                }
+                else
+                {
+                    rawWriter.writeObject(aspectQName);
                 }
-                rawWriter.writeLong(qnamePair.getFirst());
-            }
-            else
-            {
-                rawWriter.writeObject(aspectQName);
             }
         }
     }
@@ -153,31 +213,47 @@ public class NodeAspectsBinarySerializer implements BinarySerializer, Applicatio
     protected void readAspectsRawSerialForm(final NodeAspectsCacheSet aspects, final BinaryRawReader rawReader) throws BinaryObjectException
     {
         final int size = rawReader.readInt();
-
-        for (int idx = 0; idx < size; idx++)
+        if (size == BITMAP_FORM_MARKER)
+        {
+            if (!this.useIdsWhenReasonable)
+            {
+                throw new BinaryObjectException("Serializer is not configured to use IDs in place of QName keys");
+            }
+            aspects.setBitmapView(this.toBitmapView(rawReader.readByteArray()));
+        }
+        else if (size < 0)
+        {
+            throw new BinaryObjectException("Invalid number of aspects " + size);
+        }
+        else
         {
-            QName aspectQName;
             if (this.useIdsWhenReasonable)
             {
-                final long id = rawReader.readLong();
-                final Pair<Long, QName> qnamePair = this.qnameDAO.getQName(id);
-                if (qnamePair == null)
+                final long[] ids = new long[size];
+                for (int idx = 0; idx < size; idx++)
                 {
-                    throw new BinaryObjectException("Cannot resolve QName for ID " + id);
+                    ids[idx] = rawReader.readLong();
                 }
-                aspectQName = qnamePair.getSecond();
+                aspects.addAll(Arrays.asList(this.resolveQNames(ids)));
             }
             else
             {
-                aspectQName = rawReader.readObject();
+                for (int idx = 0; idx < size; idx++)
+                {
+                    final QName aspectQName = rawReader.readObject();
+                    aspects.add(aspectQName);
+                }
             }
-            aspects.add(aspectQName);
         }
     }
 
     protected void writeAspectsRegularSerialForm(final NodeAspectsCacheSet aspects, final BinaryWriter writer)
     {
-        if (this.useIdsWhenReasonable)
+        if (this.isBitmapSerialFormEnabled())
+        {
+            writer.writeByteArray(BITMAP, this.toBitmap(aspects).toBytes());
+        }
+        else if (this.useIdsWhenReasonable)
         {
             final Set<Long> ids = aspects.stream().map(aspectQName -> {
                 final Pair<Long, QName> qnamePair = this.qnameDAO.getQName(aspectQName);
@@ -201,28 +277,111 @@ public class NodeAspectsBinarySerializer implements BinarySerializer, Applicatio
 
     protected void readAspectsRegularSerialForm(final NodeAspectsCacheSet aspects, final BinaryReader reader)
     {
-        final Collection<?> values = reader.readCollection(VALUES);
-        values.forEach(value -> {
-            QName aspectQName;
-            if (value instanceof Long)
+        final byte[] bitmapBytes = reader.readByteArray(BITMAP);
+        if (bitmapBytes != null)
+        {
+            if (!this.useIdsWhenReasonable)
+            {
+                throw new BinaryObjectException("Serializer is not configured to use IDs in place of QName keys");
+            }
+            aspects.setBitmapView(this.toBitmapView(bitmapBytes));
+        }
+        else
+        {
+            final Collection<?> values = reader.readCollection(VALUES);
+            final long[] ids = values.stream().filter(Long.class::isInstance).mapToLong(value -> (Long) value).toArray();
+            if (ids.length > 0)
             {
                 if (!this.useIdsWhenReasonable)
                 {
                     throw new BinaryObjectException("Serializer is not configured to use IDs in place of QName keys");
                 }
-                final Pair<Long, QName> qnamePair = this.qnameDAO.getQName((Long) value);
+                aspects.addAll(Arrays.asList(this.resolveQNames(ids)));
+            }
+
+            values.forEach(value -> {
+                if (!(value instanceof Long))
+                {
+                    aspects.add((QName) value);
+                }
+            });
+        }
+    }
+
+    protected boolean isBitmapSerialFormEnabled()
+    {
+        return this.useIdsWhenReasonable && this.useBitmapSerialForm
+                && this.isSerialFormSupported(SerialFormCompatibility.VERSION_EXTENDED_FORMS);
+    }
+
+    protected IdBitmap toBitmap(final NodeAspectsCacheSet aspects)
+    {
+        IdBitmap bitmap;
+        final NodeAspectsBitmapSet bitmapView = aspects.getBitmapView();
+        if (bitmapView != null)
+        {
+            // re-use bitmap of a not yet materialised set
+            bitmap = bitmapView.getBitmap();
+        }
+        else
+        {
+            final long[] ids = new long[aspects.size()];
+            int idx = 0;
+            for (final QName aspectQName : aspects)
+            {
+                // technically may be null, but practically guaranteed to always be valid
+                final Pair<Long, QName> qnamePair = this.qnameDAO.getQName(aspectQName);
                 if (qnamePair == null)
                 {
-                    throw new BinaryObjectException("Cannot resolve QName for ID " + value);
+                    throw new AlfrescoRuntimeException("Cannot resolve " + aspectQName + " to DB ID");
                 }
-                aspectQName = qnamePair.getSecond();
+                ids[idx++] = qnamePair.getFirst();
             }
-            else
+            bitmap = IdBitmap.of(ids);
+        }
+        return bitmap;
+    }
+
+    protected NodeAspectsBitmapSet toBitmapView(final byte[] bitmapBytes) throws BinaryObjectException
+    {
+        final IdBitmap bitmap;
+        try
+        {
+            bitmap = IdBitmap.fromBytes(bitmapBytes);
+        }
+        catch (final IllegalArgumentException iae)
+        {
+            throw new BinaryObjectException("Invalid aspect ID bitmap", iae);
+        }
+
+        final QNameDAO qnameDAO = this.qnameDAO;
+        return new NodeAspectsBitmapSet(bitmap, this::resolveQNames, aspectQName -> {
+            final Pair<Long, QName> qnamePair = qnameDAO.getQName(aspectQName);
+            return qnamePair != null ? qnamePair.getFirst() : null;
+        });
+    }
+
+    protected QName[] resolveQNames(final long[] ids) throws BinaryObjectException
+    {
+        final QName[] qnames;
+        if (this.entityIdBulkResolver != null)
+        {
+            qnames = this.entityIdBulkResolver.resolveQNames(ids);
+        }
+        else
+        {
+            qnames = new QName[ids.length];
+            for (int idx = 0; idx < ids.length; idx++)
             {
-                aspectQName = (QName) value;
+                final Pair<Long, QName> qnamePair = this.qnameDAO.getQName(ids[idx]);
+                if (qnamePair == null)
+                {
+                    throw new BinaryObjectException("Cannot resolve QName for ID " + ids[idx]);
+                }
+                qnames[idx] = qnamePair.getSecond();
             }
-            aspects.add(aspectQName);
-        });
+        }
+        return qnames;
     }
 
     protected void ensureDAOsAvailable() throws BinaryObjectException
@@ -239,5 +398,15 @@ public class NodeAspectsBinarySerializer implements BinarySerializer, Applicatio
                         be);
             }
         }
+
+        if (this.useIdsWhenReasonable && this.resolveIdsInBulk && this.entityIdBulkResolver == null)
+        {
+            this.entityIdBulkResolver = new EntityIdBulkResolver(this.applicationContext, this.qnameDAO, null);
+        }
+    }
+
+    protected boolean isSerialFormSupported(final int version)
+    {
+        return this.serialFormCompatibility == null || this.serialFormCompatibility.isSupported(version);
     }
 }
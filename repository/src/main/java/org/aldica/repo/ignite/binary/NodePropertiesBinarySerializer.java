@@ -12,14 +12,20 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.UUID;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
+import org.aldica.repo.ignite.binary.PropertyLayoutDictionary.PropertyLayout;
 import org.aldica.repo.ignite.cache.NodePropertiesCacheMap;
 import org.alfresco.error.AlfrescoRuntimeException;
+import org.alfresco.model.ContentModel;
 import org.alfresco.repo.domain.contentdata.ContentDataDAO;
 import org.alfresco.repo.domain.node.ContentDataWithId;
 import org.alfresco.repo.domain.qname.QNameDAO;
 import org.alfresco.service.cmr.repository.ContentData;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.repository.StoreRef;
 import org.alfresco.service.namespace.QName;
 import org.alfresco.util.Pair;
 import org.apache.ignite.binary.BinaryObjectException;
@@ -44,6 +50,41 @@ import org.springframework.context.ApplicationContextAware;
  * thousands range). But ContentDataWithId instances can well be in the millions or billions for larger systems, and their resolution miss
  * partitioned caches and/or require network calls to retrieve values from different grid members.
  *
+ * In order to mitigate the cost of resolving ContentDataWithId instances, this implementation can be configured to decode lazily, in which
+ * case the resolution of any content data values is deferred until the specific property is accessed for the first time via
+ * {@link NodePropertiesCacheMap#putLazy(QName, java.util.function.Supplier) lazy values}. Read-mostly access patterns which only ever check
+ * individual properties (e.g. permission checks, path building) then do not incur any resolution cost for content data values. Lazy
+ * decoding is deliberately limited to content data values, as all other values are decoded without any potentially remote lookups, and
+ * the binary reader cannot be retained beyond deserialisation to decode the remaining bytes of a map later on.
+ *
+ * When using the raw serial form with IDs in place of QName keys, this implementation can also use a shared
+ * {@link PropertyLayoutDictionary dictionary of property layouts}. Since nodes of the same type with the same aspects typically share an
+ * identical set of properties, the sorted QName IDs as well as the flags / value types of all entries can be replaced by a single layout
+ * ID, and only the values of the individual properties need to be written.
+ *
+ * When configured to {@link #setResolveIdsInBulk(boolean) resolve IDs in bulk}, all QName and ContentData IDs of a single map are
+ * collected during deserialisation and resolved via {@link EntityIdBulkResolver bulk lookups}, instead of individual lookups for each ID.
+ *
+ * When using the raw serial form, this implementation can also use a shared {@link PropertyValueDictionary dictionary of property values}
+ * to substitute single-valued textual values of low-cardinality properties, e.g. {@code cm:creator} / {@code cm:modifier}, with compact
+ * IDs. The dictionary determines adaptively which properties qualify, and properties found to be of high cardinality are excluded.
+ *
+ * When using the raw serial form, this implementation can also use a compact encoding for date values, writing the difference in
+ * milliseconds to a fixed epoch base as a variable-length integer instead of the full timestamp. Single-valued date properties of a node
+ * with a {@link ContentModel#PROP_CREATED creation date} are encoded relative to that date instead, as e.g. {@code cm:modified} or dates of
+ * custom audit properties are typically close to it.
+ *
+ * When using the raw serial form, this implementation can also write multi-valued properties with a homogeneous element type in a packed
+ * form, writing the element type only once for the entire list instead of once per element. Numeric values are packed without any per
+ * element overhead, textual values may be substituted using the property value dictionary, and node references are reduced to their
+ * (shared) store and the binary form of their UUIDs. Such lists are read as {@link ImmutableValueLists immutable list views} on the read
+ * values.
+ *
+ * Property layouts, dictionary values, compact date values and packed multi-valued properties are only written if all relevant grid
+ * members are able to read them, as negotiated via the {@link SerialFormCompatibility serial form compatibility} component, if configured.
+ * Since all values in the raw serial form are prefixed with their type, and layout IDs are written in place of the number of entries,
+ * values written in older forms can always be read.
+ *
  * @author Axel Faust
  */
 public class NodePropertiesBinarySerializer implements BinarySerializer, ApplicationContextAware
@@ -83,6 +124,46 @@ public class NodePropertiesBinarySerializer implements BinarySerializer, Applica
 
     private static final byte TYPE_DATE = 9;
 
+    private static final byte TYPE_DICTIONARY_STRING = 10;
+
+    private static final byte TYPE_COMPACT_DATE = 11;
+
+    private static final byte TYPE_RELATIVE_DATE = 12;
+
+    private static final byte TYPE_HOMOGENEOUS_LIST = 13;
+
+    // only used as element type of homogeneous lists
+    private static final byte TYPE_NODE_REF = 14;
+
+    // marker of a dictionary string value written as literal instead of an ID
+    private static final byte DICTIONARY_STRING_LITERAL = 0;
+
+    // 2020-01-01T00:00:00Z - keeps typical differences within 6 bytes of variable-length encoding
+    private static final long DATE_EPOCH_BASE = 1577836800000L;
+
+    /**
+     * Instances of this class hold the pre-processed state of a single property entry for writing in the raw serial form.
+     *
+     * @author Axel Faust
+     */
+    protected static class RawPropertyEntry
+    {
+
+        protected QName key;
+
+        protected long keyId;
+
+        protected byte flags;
+
+        protected byte type;
+
+        protected Serializable value;
+
+        protected long[] valueIds;
+
+        protected long dateBase;
+    }
+
     protected ApplicationContext applicationContext;
 
     protected QNameDAO qnameDAO;
@@ -95,6 +176,26 @@ public class NodePropertiesBinarySerializer implements BinarySerializer, Applica
 
     protected boolean useRawSerialForm = false;
 
+    protected boolean decodeLazily = false;
+
+    protected boolean usePropertyLayouts = false;
+
+    protected PropertyLayoutDictionary propertyLayoutDictionary;
+
+    protected boolean resolveIdsInBulk = false;
+
+    protected boolean useValueDictionary = false;
+
+    protected boolean useCompactDates = false;
+
+    protected boolean useHomogeneousLists = false;
+
+    protected SerialFormCompatibility serialFormCompatibility;
+
+    protected PropertyValueDictionary propertyValueDictionary;
+
+    protected EntityIdBulkResolver entityIdBulkResolver;
+
     /**
      * {@inheritDoc}
      */
@@ -131,6 +232,87 @@ public class NodePropertiesBinarySerializer implements BinarySerializer, Applica
         this.useRawSerialForm = useRawSerialForm;
     }
 
+    /**
+     * @param decodeLazily
+     *            the decodeLazily to set
+     */
+    public void setDecodeLazily(final boolean decodeLazily)
+    {
+        this.decodeLazily = decodeLazily;
+    }
+
+    /**
+     * @param usePropertyLayouts
+     *            the usePropertyLayouts to set
+     */
+    public void setUsePropertyLayouts(final boolean usePropertyLayouts)
+    {
+        this.usePropertyLayouts = usePropertyLayouts;
+    }
+
+    /**
+     * @param propertyLayoutDictionary
+     *            the propertyLayoutDictionary to set
+     */
+    public void setPropertyLayoutDictionary(final PropertyLayoutDictionary propertyLayoutDictionary)
+    {
+        this.propertyLayoutDictionary = propertyLayoutDictionary;
+    }
+
+    /**
+     * @param resolveIdsInBulk
+     *            the resolveIdsInBulk to set
+     */
+    public void setResolveIdsInBulk(final boolean resolveIdsInBulk)
+    {
+        this.resolveIdsInBulk = resolveIdsInBulk;
+    }
+
+    /**
+     * @param useValueDictionary
+     *            the useValueDictionary to set
+     */
+    public void setUseValueDictionary(final boolean useValueDictionary)
+    {
+        this.useValueDictionary = useValueDictionary;
+    }
+
+    /**
+     * @param propertyValueDictionary
+     *            the propertyValueDictionary to set
+     */
+    public void setPropertyValueDictionary(final PropertyValueDictionary propertyValueDictionary)
+    {
+        this.propertyValueDictionary = propertyValueDictionary;
+    }
+
+    /**
+     * @param useCompactDates
+     *            the useCompactDates to set
+     */
+    public void setUseCompactDates(final boolean useCompactDates)
+    {
+        this.useCompactDates = useCompactDates;
+    }
+
+    /**
+     * @param useHomogeneousLists
+     *            the useHomogeneousLists to set
+     */
+    public void setUseHomogeneousLists(final boolean useHomogeneousLists)
+    {
+        this.useHomogeneousLists = useHomogeneousLists;
+    }
+
+    /**
+     * @param serialFormCompatibility
+     *            the serialFormCompatibility to set
+     */
+    public void setSerialFormCompatibility(final SerialFormCompatibility serialFormCompatibility)
+    {
+        this.serialFormCompatibility = serialFormCompatibility;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -188,275 +370,686 @@ public class NodePropertiesBinarySerializer implements BinarySerializer, Applica
     protected void writePropertiesRawSerialForm(final NodePropertiesCacheMap properties, final BinaryRawWriter rawWriter)
     {
         final int size = properties.size();
-        rawWriter.writeInt(size);
 
+        final RawPropertyEntry[] entries = new RawPropertyEntry[size];
+        int idx = 0;
         for (final Entry<QName, Serializable> entry : properties.entrySet())
         {
-            final QName key = entry.getKey();
-            Long keyId = null;
-            final Serializable value = entry.getValue();
-            long[] valueIds = null;
+            entries[idx++] = this.toRawPropertyEntry(entry.getKey(), entry.getValue());
+        }
+        this.applyRelativeDates(entries, properties.get(ContentModel.PROP_CREATED));
 
-            byte flags = 0;
+        int layoutId = PropertyLayoutDictionary.NO_LAYOUT_ID;
+        PropertyLayout layout = null;
+        if (this.usePropertyLayouts && this.propertyLayoutDictionary != null && this.useIdsWhenReasonable && size > 0
+                && this.isSerialFormSupported(SerialFormCompatibility.VERSION_EXTENDED_FORMS))
+        {
+            // layout must be independent of iteration order of map
+            Arrays.sort(entries, (e1, e2) -> Long.compare(e1.keyId, e2.keyId));
 
-            if (value instanceof List<?>)
+            final long[] keyIds = new long[size];
+            final byte[] flags = new byte[size];
+            final byte[] types = new byte[size];
+            for (idx = 0; idx < size; idx++)
             {
-                flags |= FLAG_MULTI_VALUED;
+                keyIds[idx] = entries[idx].keyId;
+                flags[idx] = entries[idx].flags;
+                types[idx] = entries[idx].type;
             }
-            else if (value == null)
+
+            layout = new PropertyLayout(keyIds, flags, types);
+            layoutId = this.propertyLayoutDictionary.getLayoutId(layout);
+        }
+
+        if (layoutId != PropertyLayoutDictionary.NO_LAYOUT_ID)
+        {
+            // negative size denotes layout ID (always >= 0)
+            rawWriter.writeInt(-1 - layoutId);
+
+            for (final RawPropertyEntry entry : entries)
             {
-                flags |= FLAG_NULL;
+                this.writeRawPropertyEntryValue(entry, rawWriter, false);
             }
+        }
+        else
+        {
+            rawWriter.writeInt(size);
 
-            if (this.useIdsWhenReasonable)
+            for (final RawPropertyEntry entry : entries)
             {
-                final Pair<Long, QName> qnamePair = this.qnameDAO.getQName(key);
-                // technically may be null, but practically guaranteed to always be valid
-                if (qnamePair == null)
+                rawWriter.writeByte(entry.flags);
+                if ((entry.flags & FLAG_QNAME_ID) == FLAG_QNAME_ID)
+                {
+                    rawWriter.writeLong(entry.keyId);
+                }
+                else
                 {
-                    throw new AlfrescoRuntimeException("Cannot resolve " + key + " to DB ID");
+                    rawWriter.writeObject(entry.key);
                 }
-                keyId = qnamePair.getFirst();
 
-                if (this.useIdsWhenPossible)
+                this.writeRawPropertyEntryValue(entry, rawWriter, true);
+            }
+        }
+    }
+
+    protected RawPropertyEntry toRawPropertyEntry(final QName key, final Serializable value)
+    {
+        final RawPropertyEntry entry = new RawPropertyEntry();
+        entry.key = key;
+        entry.value = value;
+
+        byte flags = 0;
+
+        if (value instanceof List<?>)
+        {
+            flags |= FLAG_MULTI_VALUED;
+        }
+        else if (value == null)
+        {
+            flags |= FLAG_NULL;
+        }
+
+        if (this.useIdsWhenReasonable)
+        {
+            final Pair<Long, QName> qnamePair = this.qnameDAO.getQName(key);
+            // technically may be null, but practically guaranteed to always be valid
+            if (qnamePair == null)
+            {
+                throw new AlfrescoRuntimeException("Cannot resolve " + key + " to DB ID");
+            }
+            entry.keyId = qnamePair.getFirst();
+            flags |= FLAG_QNAME_ID;
+
+            if (this.useIdsWhenPossible)
+            {
+                if (value instanceof ContentDataWithId)
                 {
-                    if (value instanceof ContentDataWithId)
-                    {
-                        valueIds = new long[] { ((ContentDataWithId) value).getId() };
-                    }
-                    else if (value instanceof List<?>)
+                    entry.valueIds = new long[] { ((ContentDataWithId) value).getId() };
+                }
+                else if (value instanceof List<?>)
+                {
+                    final long[] ids = new long[((List<?>) value).size()];
+                    int idx = 0;
+                    boolean allIds = !((List<?>) value).isEmpty();
+                    for (final Object element : (List<?>) value)
                     {
-                        final long[] ids = new long[((List<?>) value).size()];
-                        int idx = 0;
-                        boolean allIds = !((List<?>) value).isEmpty();
-                        for (final Object element : (List<?>) value)
+                        if (element instanceof ContentDataWithId)
                         {
-                            if (element instanceof ContentDataWithId)
-                            {
-                                ids[idx++] = ((ContentDataWithId) element).getId();
-                            }
-                            else
-                            {
-                                allIds = false;
-                            }
+                            ids[idx++] = ((ContentDataWithId) element).getId();
                         }
-
-                        if (allIds)
+                        else
                         {
-                            valueIds = ids;
+                            allIds = false;
                         }
                     }
+
+                    if (allIds)
+                    {
+                        entry.valueIds = ids;
+                    }
+                }
+            }
+        }
+
+        if (entry.valueIds != null)
+        {
+            flags |= FLAG_CONTENT_DATA_VALUE_ID;
+            entry.type = TYPE_NULL;
+        }
+        else
+        {
+            entry.type = this.determineValueType(value);
+
+            // type must only depend on the property (not the value) to keep property layouts stable
+            if (entry.type == TYPE_STRING && this.isValueDictionaryCandidate(key))
+            {
+                entry.type = TYPE_DICTIONARY_STRING;
+            }
+        }
+
+        entry.flags = flags;
+        return entry;
+    }
+
+    protected void applyRelativeDates(final RawPropertyEntry[] entries, final Serializable created)
+    {
+        if (created instanceof Date)
+        {
+            final long dateBase = ((Date) created).getTime();
+            for (final RawPropertyEntry entry : entries)
+            {
+                // type must only depend on the property (and presence of the creation date) to keep property layouts stable
+                if (entry.type == TYPE_COMPACT_DATE && !ContentModel.PROP_CREATED.equals(entry.key))
+                {
+                    entry.type = TYPE_RELATIVE_DATE;
+                    entry.dateBase = dateBase;
                 }
             }
+        }
+    }
 
-            if (keyId != null)
+    protected void writeRawPropertyEntryValue(final RawPropertyEntry entry, final BinaryRawWriter rawWriter, final boolean withType)
+    {
+        if (entry.valueIds != null)
+        {
+            if ((entry.flags & FLAG_MULTI_VALUED) == FLAG_MULTI_VALUED)
+            {
+                rawWriter.writeLongArray(entry.valueIds);
+            }
+            else
             {
-                flags |= FLAG_QNAME_ID;
+                rawWriter.writeLong(entry.valueIds[0]);
             }
-            if (valueIds != null)
+        }
+        else if (entry.value != null)
+        {
+            if (withType)
             {
-                flags |= FLAG_CONTENT_DATA_VALUE_ID;
+                rawWriter.writeByte(entry.type);
             }
 
-            rawWriter.writeByte(flags);
-            if (keyId != null)
+            if (entry.type == TYPE_DICTIONARY_STRING)
             {
-                rawWriter.writeLong(keyId);
+                this.writeDictionaryStringRawSerialForm(entry.key, (String) entry.value, rawWriter);
+            }
+            else if (entry.type == TYPE_RELATIVE_DATE)
+            {
+                writeVarLong(((Date) entry.value).getTime() - entry.dateBase, rawWriter);
+            }
+            else if (entry.type == TYPE_HOMOGENEOUS_LIST)
+            {
+                this.writeHomogeneousListRawSerialForm(entry.key, (List<?>) entry.value, rawWriter);
             }
             else
             {
-                rawWriter.writeObject(key);
+                this.writeValueRawSerialForm(entry.type, entry.value, rawWriter);
+            }
+        }
+    }
+
+    protected byte determineValueType(final Object value)
+    {
+        final byte type;
+        if (value instanceof List<?>)
+        {
+            // type must not depend on the elements to keep property layouts stable
+            type = this.useHomogeneousLists && this.isSerialFormSupported(SerialFormCompatibility.VERSION_COMPACT_VALUES)
+                    ? TYPE_HOMOGENEOUS_LIST
+                    : TYPE_LIST;
+        }
+        else if (value instanceof Boolean)
+        {
+            type = TYPE_BOOLEAN;
+        }
+        else if (value instanceof Integer)
+        {
+            type = TYPE_INTEGER;
+        }
+        else if (value instanceof Long)
+        {
+            type = TYPE_LONG;
+        }
+        else if (value instanceof Float)
+        {
+            type = TYPE_FLOAT;
+        }
+        else if (value instanceof Double)
+        {
+            type = TYPE_DOUBLE;
+        }
+        else if (value instanceof String)
+        {
+            type = TYPE_STRING;
+        }
+        else if (value instanceof Date)
+        {
+            type = this.useCompactDates && this.isSerialFormSupported(SerialFormCompatibility.VERSION_COMPACT_VALUES) ? TYPE_COMPACT_DATE
+                    : TYPE_DATE;
+        }
+        // TODO Support Locale (d:locale) via ID resolution
+        else if (value != null)
+        {
+            type = TYPE_DEFAULT;
+        }
+        else
+        {
+            type = TYPE_NULL;
+        }
+        return type;
+    }
+
+    /**
+     * Writes out property values in raw serial form. This operation tries to optimise any type of value that Alfresco supports in the out
+     * of the box dictionary model, apart from generic or complex types, which should be handled by serializers for their specific types if
+     * needed. THe aim of this operation is to optimise storage footprint for 80-90% of expected property values.
+     *
+     * @param value
+     *            the value to write
+     * @param rawWriter
+     *            the raw binary writer to use
+     */
+    protected void writeValueRawSerialForm(final Object value, final BinaryRawWriter rawWriter)
+    {
+        final byte type = this.determineValueType(value);
+        rawWriter.writeByte(type);
+        this.writeValueRawSerialForm(type, value, rawWriter);
+    }
+
+    /**
+     * Writes out property values in raw serial form without the leading value type marker.
+     *
+     * @param type
+     *            the type of the value as determined via {@link #determineValueType(Object)}
+     * @param value
+     *            the value to write
+     * @param rawWriter
+     *            the raw binary writer to use
+     */
+    protected void writeValueRawSerialForm(final byte type, final Object value, final BinaryRawWriter rawWriter)
+    {
+        switch (type)
+        {
+            case TYPE_LIST:
+                final List<?> list = (List<?>) value;
+                rawWriter.writeInt(list.size());
+                for (final Object element : list)
+                {
+                    this.writeValueRawSerialForm(element, rawWriter);
+                }
+                break;
+            case TYPE_HOMOGENEOUS_LIST:
+                // nested lists cannot be associated with a property for the value dictionary
+                this.writeHomogeneousListRawSerialForm(null, (List<?>) value, rawWriter);
+                break;
+            case TYPE_BOOLEAN:
+                rawWriter.writeBoolean(Boolean.TRUE.equals(value));
+                break;
+            case TYPE_INTEGER:
+                rawWriter.writeInt((Integer) value);
+                break;
+            case TYPE_LONG:
+                rawWriter.writeLong((Long) value);
+                break;
+            case TYPE_FLOAT:
+                rawWriter.writeFloat((Float) value);
+                break;
+            case TYPE_DOUBLE:
+                rawWriter.writeDouble((Double) value);
+                break;
+            case TYPE_STRING:
+                rawWriter.writeString((String) value);
+                break;
+            case TYPE_DATE:
+                rawWriter.writeDate((Date) value);
+                break;
+            case TYPE_COMPACT_DATE:
+                writeVarLong(((Date) value).getTime() - DATE_EPOCH_BASE, rawWriter);
+                break;
+            case TYPE_DEFAULT:
+                rawWriter.writeObject(value);
+                break;
+            default:
+                // NO-OP - TYPE_NULL
+        }
+    }
+
+    protected void writeDictionaryStringRawSerialForm(final QName key, final String value, final BinaryRawWriter rawWriter)
+    {
+        final int valueId = this.propertyValueDictionary.getValueId(key, value);
+        // dictionary IDs are always positive, so 0 denotes a literal value, limiting overhead of not (yet) substituted values to one byte
+        if (valueId == PropertyValueDictionary.NO_VALUE_ID)
+        {
+            rawWriter.writeByte(DICTIONARY_STRING_LITERAL);
+            rawWriter.writeString(value);
+        }
+        else
+        {
+            writeVarLong(valueId, rawWriter);
+        }
+    }
+
+    /**
+     * Writes out a list of property values in the packed raw serial form, writing the type of the elements only once if all elements are
+     * of the same type.
+     *
+     * @param key
+     *            the key of the property with the list as its value, or {@code null} if the list is nested in another list
+     * @param list
+     *            the list to write
+     * @param rawWriter
+     *            the raw binary writer to use
+     */
+    protected void writeHomogeneousListRawSerialForm(final QName key, final List<?> list, final BinaryRawWriter rawWriter)
+    {
+        final int size = list.size();
+        writeVarLong(size, rawWriter);
+
+        if (size > 0)
+        {
+            final byte elementType = this.determineListElementType(key, list);
+            rawWriter.writeByte(elementType);
+
+            switch (elementType)
+            {
+                case TYPE_LIST:
+                    // mixed list - fall back to type marker per element
+                    for (final Object element : list)
+                    {
+                        this.writeValueRawSerialForm(element, rawWriter);
+                    }
+                    break;
+                case TYPE_DICTIONARY_STRING:
+                    for (final Object element : list)
+                    {
+                        this.writeDictionaryStringRawSerialForm(key, (String) element, rawWriter);
+                    }
+                    break;
+                case TYPE_NODE_REF:
+                    this.writeNodeRefsRawSerialForm(list, rawWriter);
+                    break;
+                default:
+                    for (final Object element : list)
+                    {
+                        this.writeValueRawSerialForm(elementType, element, rawWriter);
+                    }
+            }
+        }
+    }
+
+    protected byte determineListElementType(final QName key, final List<?> list)
+    {
+        byte elementType = TYPE_NULL;
+        StoreRef storeRef = null;
+        boolean sameStoreNodeRefs = true;
+        for (final Object element : list)
+        {
+            final byte type = this.determineValueType(element);
+            if (type == TYPE_NULL || type == TYPE_LIST || type == TYPE_HOMOGENEOUS_LIST || (elementType != TYPE_NULL && type != elementType))
+            {
+                elementType = TYPE_LIST;
+                break;
+            }
+            elementType = type;
+
+            if (sameStoreNodeRefs && element instanceof NodeRef)
+            {
+                final StoreRef elementStoreRef = ((NodeRef) element).getStoreRef();
+                sameStoreNodeRefs = storeRef == null || storeRef.equals(elementStoreRef);
+                storeRef = elementStoreRef;
+            }
+            else
+            {
+                sameStoreNodeRefs = false;
+            }
+        }
+
+        if (elementType == TYPE_DEFAULT && sameStoreNodeRefs)
+        {
+            elementType = TYPE_NODE_REF;
+        }
+        else if (elementType == TYPE_STRING && key != null && this.isValueDictionaryCandidate(key))
+        {
+            elementType = TYPE_DICTIONARY_STRING;
+        }
+
+        return elementType;
+    }
+
+    protected void writeNodeRefsRawSerialForm(final List<?> nodeRefs, final BinaryRawWriter rawWriter)
+    {
+        rawWriter.writeObject(((NodeRef) nodeRefs.get(0)).getStoreRef());
+
+        boolean uuids = true;
+        for (final Object nodeRef : nodeRefs)
+        {
+            uuids = uuids && isCanonicalUuid(((NodeRef) nodeRef).getId());
+        }
+        rawWriter.writeBoolean(uuids);
+
+        for (final Object nodeRef : nodeRefs)
+        {
+            final String id = ((NodeRef) nodeRef).getId();
+            if (uuids)
+            {
+                final UUID uuid = UUID.fromString(id);
+                rawWriter.writeLong(uuid.getMostSignificantBits());
+                rawWriter.writeLong(uuid.getLeastSignificantBits());
+            }
+            else
+            {
+                rawWriter.writeString(id);
+            }
+        }
+    }
+
+    protected static boolean isCanonicalUuid(final String id)
+    {
+        boolean canonical = id.length() == 36;
+        if (canonical)
+        {
+            try
+            {
+                // lenient parsing, e.g. upper case hex digits, would not restore the identical ID
+                canonical = UUID.fromString(id).toString().equals(id);
+            }
+            catch (final IllegalArgumentException iae)
+            {
+                canonical = false;
+            }
+        }
+        return canonical;
+    }
+
+    protected void readPropertiesRawSerialForm(final NodePropertiesCacheMap properties, final BinaryRawReader rawReader)
+            throws BinaryObjectException
+    {
+        final int size = rawReader.readInt();
+
+        final RawPropertyEntry[] entries;
+        if (size < 0)
+        {
+            if (this.propertyLayoutDictionary == null || !this.useIdsWhenReasonable)
+            {
+                throw new BinaryObjectException("Serializer is not configured to use property layouts");
+            }
+
+            final PropertyLayout layout = this.propertyLayoutDictionary.getLayout(-1 - size);
+            entries = new RawPropertyEntry[layout.size()];
+            for (int idx = 0; idx < entries.length; idx++)
+            {
+                final RawPropertyEntry entry = new RawPropertyEntry();
+                entry.keyId = layout.getKeyId(idx);
+                entry.flags = layout.getFlags(idx);
+                entry.type = layout.getType(idx);
+                this.readRawPropertyEntryValue(entry, rawReader);
+                entries[idx] = entry;
+            }
+        }
+        else
+        {
+            entries = new RawPropertyEntry[size];
+            for (int idx = 0; idx < size; idx++)
+            {
+                final RawPropertyEntry entry = new RawPropertyEntry();
+                entry.flags = rawReader.readByte();
+
+                if (!this.useIdsWhenReasonable && (entry.flags & FLAG_QNAME_ID) == FLAG_QNAME_ID)
+                {
+                    throw new BinaryObjectException("Serializer is not configured to use IDs in place of QName keys");
+                }
+
+                if ((entry.flags & FLAG_QNAME_ID) == FLAG_QNAME_ID)
+                {
+                    entry.keyId = rawReader.readLong();
+                }
+                else
+                {
+                    entry.key = rawReader.readObject();
+                }
+
+                entry.type = (entry.flags & (FLAG_NULL | FLAG_CONTENT_DATA_VALUE_ID)) == 0 ? rawReader.readByte() : TYPE_NULL;
+                this.readRawPropertyEntryValue(entry, rawReader);
+                entries[idx] = entry;
+            }
+        }
+
+        // IDs are only resolved after all entries have been read so they can be resolved in bulk
+        this.resolveRawPropertyEntryKeys(entries);
+        this.resolveRelativeDates(entries);
+        this.putRawPropertyEntries(properties, entries);
+    }
+
+    protected void readRawPropertyEntryValue(final RawPropertyEntry entry, final BinaryRawReader rawReader)
+    {
+        if (!this.useIdsWhenPossible && (entry.flags & FLAG_CONTENT_DATA_VALUE_ID) == FLAG_CONTENT_DATA_VALUE_ID)
+        {
+            throw new BinaryObjectException("Serializer is not configured to use IDs in place of ContentData values");
+        }
+
+        if ((entry.flags & FLAG_NULL) == 0)
+        {
+            if ((entry.flags & FLAG_CONTENT_DATA_VALUE_ID) == FLAG_CONTENT_DATA_VALUE_ID)
+            {
+                if ((entry.flags & FLAG_MULTI_VALUED) == FLAG_MULTI_VALUED)
+                {
+                    entry.valueIds = rawReader.readLongArray();
+                }
+                else
+                {
+                    entry.valueIds = new long[] { rawReader.readLong() };
+                }
+            }
+            else
+            {
+                entry.value = this.readValueRawSerialForm(entry.type, rawReader);
+            }
+        }
+    }
+
+    protected void resolveRawPropertyEntryKeys(final RawPropertyEntry[] entries)
+    {
+        int idCount = 0;
+        for (final RawPropertyEntry entry : entries)
+        {
+            if (entry.key == null)
+            {
+                idCount++;
+            }
+        }
+
+        if (idCount > 0)
+        {
+            final long[] ids = new long[idCount];
+            int idx = 0;
+            for (final RawPropertyEntry entry : entries)
+            {
+                if (entry.key == null)
+                {
+                    ids[idx++] = entry.keyId;
+                }
             }
 
-            if (valueIds != null)
+            final QName[] keys = this.resolveQNames(ids);
+            idx = 0;
+            for (final RawPropertyEntry entry : entries)
             {
-                if ((flags & FLAG_MULTI_VALUED) == FLAG_MULTI_VALUED)
+                if (entry.key == null)
                 {
-                    rawWriter.writeLongArray(valueIds);
+                    entry.key = keys[idx++];
                 }
-                else
-                {
-                    rawWriter.writeLong(valueIds[0]);
-                }
-            }
-            else if (value != null)
-            {
-                this.writeValueRawSerialForm(value, rawWriter);
             }
         }
     }
 
-    /**
-     * Writes out property values in raw serial form. This operation tries to optimise any type of value that Alfresco supports in the out
-     * of the box dictionary model, apart from generic or complex types, which should be handled by serializers for their specific types if
-     * needed. THe aim of this operation is to optimise storage footprint for 80-90% of expected property values.
-     *
-     * @param value
-     *            the value to write
-     * @param rawWriter
-     *            the raw binary writer to use
-     */
-    protected void writeValueRawSerialForm(final Object value, final BinaryRawWriter rawWriter)
+    protected void resolveRelativeDates(final RawPropertyEntry[] entries)
     {
-        if (value instanceof List<?>)
+        Date created = null;
+        boolean relativeDates = false;
+        for (final RawPropertyEntry entry : entries)
         {
-            rawWriter.writeByte(TYPE_LIST);
-            final List<?> list = (List<?>) value;
-            rawWriter.writeInt(list.size());
-            for (final Object element : list)
+            relativeDates = relativeDates || entry.type == TYPE_RELATIVE_DATE;
+            if (ContentModel.PROP_CREATED.equals(entry.key) && entry.value instanceof Date)
             {
-                this.writeValueRawSerialForm(element, rawWriter);
+                created = (Date) entry.value;
             }
         }
-        else if (value instanceof Boolean)
-        {
-            rawWriter.writeByte(TYPE_BOOLEAN);
-            rawWriter.writeBoolean(Boolean.TRUE.equals(value));
-        }
-        else if (value instanceof Integer)
-        {
-            rawWriter.writeByte(TYPE_INTEGER);
-            rawWriter.writeInt((Integer) value);
-        }
-        else if (value instanceof Long)
-        {
-            rawWriter.writeByte(TYPE_LONG);
-            rawWriter.writeLong((Long) value);
-        }
-        else if (value instanceof Float)
-        {
-            rawWriter.writeByte(TYPE_FLOAT);
-            rawWriter.writeFloat((Float) value);
-        }
-        else if (value instanceof Double)
-        {
-            rawWriter.writeByte(TYPE_DOUBLE);
-            rawWriter.writeDouble((Double) value);
-        }
-        else if (value instanceof String)
-        {
-            rawWriter.writeByte(TYPE_STRING);
-            rawWriter.writeString((String) value);
-        }
-        else if (value instanceof Date)
-        {
-            rawWriter.writeByte(TYPE_DATE);
-            rawWriter.writeDate((Date) value);
-        }
-        // TODO Support Locale (d:locale) via ID resolution
-        else if (value != null)
-        {
-            rawWriter.writeByte(TYPE_DEFAULT);
-            rawWriter.writeObject(value);
-        }
-        else
-        {
-            rawWriter.writeByte(TYPE_NULL);
-        }
-    }
-
-    protected void readPropertiesRawSerialForm(final NodePropertiesCacheMap properties, final BinaryRawReader rawReader)
-            throws BinaryObjectException
-    {
-        final int size = rawReader.readInt();
 
-        for (int idx = 0; idx < size; idx++)
+        if (relativeDates)
         {
-            final byte flags = rawReader.readByte();
-
-            if (!this.useIdsWhenReasonable && (flags & FLAG_QNAME_ID) == FLAG_QNAME_ID)
-            {
-                throw new BinaryObjectException("Serializer is not configured to use IDs in place of QName keys");
-            }
-            if (!this.useIdsWhenPossible && (flags & FLAG_CONTENT_DATA_VALUE_ID) == FLAG_CONTENT_DATA_VALUE_ID)
+            if (created == null)
             {
-                throw new BinaryObjectException("Serializer is not configured to use IDs in place of ContentData values");
+                throw new BinaryObjectException("Cannot resolve relative date values without a creation date");
             }
 
-            final QName key;
-            if ((flags & FLAG_QNAME_ID) == FLAG_QNAME_ID)
+            for (final RawPropertyEntry entry : entries)
             {
-                final long id = rawReader.readLong();
-                final Pair<Long, QName> qnamePair = this.qnameDAO.getQName(id);
-                if (qnamePair == null)
+                if (entry.type == TYPE_RELATIVE_DATE && entry.value != null)
                 {
-                    throw new BinaryObjectException("Cannot resolve QName for ID " + id);
+                    entry.value = new Date(created.getTime() + ((Long) entry.value).longValue());
                 }
-                key = qnamePair.getSecond();
             }
-            else
+        }
+    }
+
+    protected void putRawPropertyEntries(final NodePropertiesCacheMap properties, final RawPropertyEntry[] entries)
+    {
+        Map<Long, ContentData> resolvedContentData = null;
+        if (!this.decodeLazily && this.entityIdBulkResolver != null)
+        {
+            int idCount = 0;
+            for (final RawPropertyEntry entry : entries)
             {
-                key = rawReader.readObject();
+                idCount += entry.valueIds != null ? entry.valueIds.length : 0;
             }
 
-            if ((flags & FLAG_NULL) == 0)
+            if (idCount > 1)
             {
-                Serializable value;
-                if ((flags & FLAG_MULTI_VALUED) == FLAG_MULTI_VALUED)
+                final long[] ids = new long[idCount];
+                int idx = 0;
+                for (final RawPropertyEntry entry : entries)
                 {
-                    if ((flags & FLAG_CONTENT_DATA_VALUE_ID) == FLAG_CONTENT_DATA_VALUE_ID)
-                    {
-                        final long[] ids = rawReader.readLongArray();
-                        if (ids != null)
-                        {
-                            final ContentData[] cds = new ContentData[ids.length];
-                            idx = 0;
-
-                            for (final long id : ids)
-                            {
-                                final Pair<Long, ContentData> contentDataPair = this.contentDataDAO.getContentData(id);
-                                if (contentDataPair == null)
-                                {
-                                    throw new BinaryObjectException("Cannot resolve ContentData for ID " + id);
-                                }
-                                cds[idx++] = contentDataPair.getSecond();
-                            }
-
-                            value = new ArrayList<>(Arrays.asList(cds));
-                        }
-                        // else should never occur, but technically can
-                        else
-                        {
-                            value = new ArrayList<>();
-                        }
-                    }
-                    else
+                    if (entry.valueIds != null)
                     {
-                        value = this.readValueRawSerialForm(rawReader);
+                        System.arraycopy(entry.valueIds, 0, ids, idx, entry.valueIds.length);
+                        idx += entry.valueIds.length;
                     }
                 }
+                resolvedContentData = this.resolveContentDataInBulk(ids);
+            }
+        }
+
+        for (final RawPropertyEntry entry : entries)
+        {
+            if (entry.valueIds != null)
+            {
+                final long[] ids = entry.valueIds;
+                final Map<Long, ContentData> prefetched = resolvedContentData;
+                if ((entry.flags & FLAG_MULTI_VALUED) == FLAG_MULTI_VALUED)
+                {
+                    this.putContentDataValue(properties, entry.key, () -> this.resolveContentDataList(ids, prefetched));
+                }
                 else
                 {
-                    if ((flags & FLAG_CONTENT_DATA_VALUE_ID) == FLAG_CONTENT_DATA_VALUE_ID)
-                    {
-                        final long id = rawReader.readLong();
-                        final Pair<Long, ContentData> contentDataPair = this.contentDataDAO.getContentData(id);
-                        if (contentDataPair == null)
-                        {
-                            throw new BinaryObjectException("Cannot resolve ContentData for ID " + id);
-                        }
-                        value = contentDataPair.getSecond();
-                    }
-                    else
-                    {
-                        value = this.readValueRawSerialForm(rawReader);
-                    }
+                    this.putContentDataValue(properties, entry.key, () -> prefetched != null ? prefetched.get(ids[0])
+                            : this.resolveContentData(ids[0]));
                 }
-
-                properties.put(key, value);
             }
             else
             {
-                properties.put(key, null);
+                properties.put(entry.key, entry.value);
             }
         }
     }
 
     protected Serializable readValueRawSerialForm(final BinaryRawReader rawReader) throws BinaryObjectException
     {
-        Serializable result;
-
         final byte type = rawReader.readByte();
+        return this.readValueRawSerialForm(type, rawReader);
+    }
+
+    protected Serializable readValueRawSerialForm(final byte type, final BinaryRawReader rawReader) throws BinaryObjectException
+    {
+        Serializable result;
 
         switch (type)
         {
@@ -469,6 +1062,9 @@ public class NodePropertiesBinarySerializer implements BinarySerializer, Applica
                 }
                 result = list;
                 break;
+            case TYPE_HOMOGENEOUS_LIST:
+                result = (Serializable) this.readHomogeneousListRawSerialForm(rawReader);
+                break;
             case TYPE_BOOLEAN:
                 result = rawReader.readBoolean();
                 break;
@@ -490,6 +1086,16 @@ public class NodePropertiesBinarySerializer implements BinarySerializer, Applica
             case TYPE_DATE:
                 result = rawReader.readDate();
                 break;
+            case TYPE_COMPACT_DATE:
+                result = new Date(DATE_EPOCH_BASE + readVarLong(rawReader));
+                break;
+            case TYPE_RELATIVE_DATE:
+                // only the difference - resolved once the creation date has been read
+                result = readVarLong(rawReader);
+                break;
+            case TYPE_DICTIONARY_STRING:
+                result = this.readDictionaryStringRawSerialForm(rawReader);
+                break;
             case TYPE_DEFAULT:
                 result = rawReader.readObject();
                 break;
@@ -503,6 +1109,193 @@ public class NodePropertiesBinarySerializer implements BinarySerializer, Applica
         return result;
     }
 
+    protected List<? extends Serializable> readHomogeneousListRawSerialForm(final BinaryRawReader rawReader) throws BinaryObjectException
+    {
+        final long size = readVarLong(rawReader);
+        if (size < 0 || size > Integer.MAX_VALUE)
+        {
+            throw new BinaryObjectException("Read invalid list size " + size);
+        }
+
+        final List<? extends Serializable> result;
+        if (size == 0)
+        {
+            result = ImmutableValueLists.of(new Serializable[0]);
+        }
+        else
+        {
+            final byte elementType = rawReader.readByte();
+            switch (elementType)
+            {
+                case TYPE_INTEGER:
+                    final int[] ints = new int[(int) size];
+                    for (int idx = 0; idx < ints.length; idx++)
+                    {
+                        ints[idx] = rawReader.readInt();
+                    }
+                    result = ImmutableValueLists.ofInts(ints);
+                    break;
+                case TYPE_LONG:
+                    final long[] longs = new long[(int) size];
+                    for (int idx = 0; idx < longs.length; idx++)
+                    {
+                        longs[idx] = rawReader.readLong();
+                    }
+                    result = ImmutableValueLists.ofLongs(longs);
+                    break;
+                case TYPE_DOUBLE:
+                    final double[] doubles = new double[(int) size];
+                    for (int idx = 0; idx < doubles.length; idx++)
+                    {
+                        doubles[idx] = rawReader.readDouble();
+                    }
+                    result = ImmutableValueLists.ofDoubles(doubles);
+                    break;
+                case TYPE_NODE_REF:
+                    result = ImmutableValueLists.of(this.readNodeRefsRawSerialForm((int) size, rawReader));
+                    break;
+                case TYPE_LIST:
+                    final Serializable[] mixedValues = new Serializable[(int) size];
+                    for (int idx = 0; idx < mixedValues.length; idx++)
+                    {
+                        mixedValues[idx] = this.readValueRawSerialForm(rawReader);
+                    }
+                    result = ImmutableValueLists.of(mixedValues);
+                    break;
+                case TYPE_NULL:
+                case TYPE_RELATIVE_DATE:
+                case TYPE_HOMOGENEOUS_LIST:
+                    throw new BinaryObjectException("Read unsupported list element type flag value " + elementType);
+                default:
+                    final Serializable[] values = new Serializable[(int) size];
+                    for (int idx = 0; idx < values.length; idx++)
+                    {
+                        values[idx] = this.readValueRawSerialForm(elementType, rawReader);
+                    }
+                    result = ImmutableValueLists.of(values);
+            }
+        }
+        return result;
+    }
+
+    protected NodeRef[] readNodeRefsRawSerialForm(final int size, final BinaryRawReader rawReader) throws BinaryObjectException
+    {
+        final StoreRef storeRef = rawReader.readObject();
+        final boolean uuids = rawReader.readBoolean();
+
+        final NodeRef[] nodeRefs = new NodeRef[size];
+        for (int idx = 0; idx < size; idx++)
+        {
+            final String id;
+            if (uuids)
+            {
+                final long mostSigBits = rawReader.readLong();
+                final long leastSigBits = rawReader.readLong();
+                id = new UUID(mostSigBits, leastSigBits).toString();
+            }
+            else
+            {
+                id = rawReader.readString();
+            }
+            nodeRefs[idx] = new NodeRef(storeRef, id);
+        }
+        return nodeRefs;
+    }
+
+    protected String readDictionaryStringRawSerialForm(final BinaryRawReader rawReader) throws BinaryObjectException
+    {
+        final String result;
+        final long valueId = readVarLong(rawReader);
+        if (valueId == DICTIONARY_STRING_LITERAL)
+        {
+            result = rawReader.readString();
+        }
+        else
+        {
+            if (valueId < 0 || valueId > Integer.MAX_VALUE)
+            {
+                throw new BinaryObjectException("Invalid property value ID " + valueId);
+            }
+            if (this.propertyValueDictionary == null)
+            {
+                throw new BinaryObjectException("Serializer is not configured to use a property value dictionary");
+            }
+            result = this.propertyValueDictionary.getPropertyValue((int) valueId);
+        }
+        return result;
+    }
+
+    protected boolean isValueDictionaryCandidate(final QName key)
+    {
+        return this.useValueDictionary && this.propertyValueDictionary != null
+                && this.isSerialFormSupported(SerialFormCompatibility.VERSION_EXTENDED_FORMS)
+                && this.propertyValueDictionary.isDictionaryCandidate(key);
+    }
+
+    protected boolean isSerialFormSupported(final int version)
+    {
+        return this.serialFormCompatibility == null || this.serialFormCompatibility.isSupported(version);
+    }
+
+    protected static void writeVarLong(final long value, final BinaryRawWriter rawWriter)
+    {
+        // zig-zag encoding to keep small negative values small
+        long remaining = (value << 1) ^ (value >> 63);
+        while ((remaining & ~0x7FL) != 0)
+        {
+            rawWriter.writeByte((byte) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        rawWriter.writeByte((byte) remaining);
+    }
+
+    protected static long readVarLong(final BinaryRawReader rawReader)
+    {
+        long encoded = 0;
+        int shift = 0;
+        byte b;
+        do
+        {
+            if (shift > 63)
+            {
+                throw new BinaryObjectException("Malformed variable-length value");
+            }
+            b = rawReader.readByte();
+            encoded |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while ((b & 0x80) != 0);
+        return (encoded >>> 1) ^ -(encoded & 1);
+    }
+
+    protected QName resolveQName(final long id)
+    {
+        final Pair<Long, QName> qnamePair = this.qnameDAO.getQName(id);
+        if (qnamePair == null)
+        {
+            throw new BinaryObjectException("Cannot resolve QName for ID " + id);
+        }
+        return qnamePair.getSecond();
+    }
+
+    protected QName[] resolveQNames(final long[] ids)
+    {
+        final QName[] qnames;
+        if (this.entityIdBulkResolver != null)
+        {
+            qnames = this.entityIdBulkResolver.resolveQNames(ids);
+        }
+        else
+        {
+            qnames = new QName[ids.length];
+            for (int idx = 0; idx < ids.length; idx++)
+            {
+                qnames[idx] = this.resolveQName(ids[idx]);
+            }
+        }
+        return qnames;
+    }
+
     protected void writePropertiesRegularSerialForm(final NodePropertiesCacheMap properties, final BinaryWriter writer)
     {
         if (this.useIdsWhenPossible)
@@ -572,6 +1365,7 @@ public class NodePropertiesBinarySerializer implements BinarySerializer, Applica
 
     protected void readPropertiesRegularSerialForm(final NodePropertiesCacheMap properties, final BinaryReader reader)
     {
+        final Map<Long, QName> resolvedQNames = new HashMap<>();
         final Function<Entry<Object, Serializable>, QName> resolveQName = entry -> {
             final Object key = entry.getKey();
             QName qn;
@@ -582,12 +1376,16 @@ public class NodePropertiesBinarySerializer implements BinarySerializer, Applica
                     throw new BinaryObjectException("Serializer is not configured to use IDs in place of QName keys");
                 }
 
-                final Pair<Long, QName> qnamePair = this.qnameDAO.getQName((Long) key);
-                if (qnamePair == null)
+                qn = resolvedQNames.get(key);
+                if (qn == null)
                 {
-                    throw new BinaryObjectException("Cannot resolve QName for ID " + key);
+                    final Pair<Long, QName> qnamePair = this.qnameDAO.getQName((Long) key);
+                    if (qnamePair == null)
+                    {
+                        throw new BinaryObjectException("Cannot resolve QName for ID " + key);
+                    }
+                    qn = qnamePair.getSecond();
                 }
-                qn = qnamePair.getSecond();
             }
             else
             {
@@ -599,13 +1397,41 @@ public class NodePropertiesBinarySerializer implements BinarySerializer, Applica
         if (this.useIdsWhenPossible)
         {
             final Map<Object, Serializable> regularProperties = reader.readMap(REGULAR_VALUES);
+            final Map<Object, Serializable> contentProperties = reader.readMap(CONTENT_ID_VALUES);
+
+            if (this.entityIdBulkResolver != null && this.useIdsWhenReasonable)
+            {
+                this.resolveQNameKeysInBulk(resolvedQNames, regularProperties, contentProperties);
+            }
+
+            Map<Long, ContentData> resolvedContentData = null;
+            if (!this.decodeLazily && this.entityIdBulkResolver != null)
+            {
+                final List<Long> contentIds = new ArrayList<>();
+                for (final Serializable value : contentProperties.values())
+                {
+                    if (value instanceof Long)
+                    {
+                        contentIds.add((Long) value);
+                    }
+                    else if (value instanceof Long[])
+                    {
+                        contentIds.addAll(Arrays.asList((Long[]) value));
+                    }
+                }
+
+                if (contentIds.size() > 1)
+                {
+                    resolvedContentData = this.resolveContentDataInBulk(contentIds.stream().mapToLong(Long::longValue).toArray());
+                }
+            }
+            final Map<Long, ContentData> prefetched = resolvedContentData;
 
             for (final Entry<Object, Serializable> regularEntry : regularProperties.entrySet())
             {
                 properties.put(resolveQName.apply(regularEntry), regularEntry.getValue());
             }
 
-            final Map<Object, Serializable> contentProperties = reader.readMap(CONTENT_ID_VALUES);
             for (final Entry<Object, Serializable> contentEntry : contentProperties.entrySet())
             {
                 final QName qn = resolveQName.apply(contentEntry);
@@ -613,26 +1439,18 @@ public class NodePropertiesBinarySerializer implements BinarySerializer, Applica
                 final Serializable value = contentEntry.getValue();
                 if (value instanceof Long)
                 {
-                    final Pair<Long, ContentData> contentDataPair = this.contentDataDAO.getContentData((Long) value);
-                    if (contentDataPair == null)
-                    {
-                        throw new BinaryObjectException("Cannot resolve ContentData for ID " + value);
-                    }
-                    properties.put(qn, contentDataPair.getSecond());
+                    this.putContentDataValue(properties, qn,
+                            () -> prefetched != null ? prefetched.get(value) : this.resolveContentData((Long) value));
                 }
                 else if (value instanceof Long[])
                 {
-                    final ArrayList<ContentData> cds = new ArrayList<>();
-                    for (final Long id : (Long[]) value)
+                    final Long[] ids = (Long[]) value;
+                    final long[] primitiveIds = new long[ids.length];
+                    for (int idx = 0; idx < ids.length; idx++)
                     {
-                        final Pair<Long, ContentData> contentDataPair = this.contentDataDAO.getContentData(id);
-                        if (contentDataPair == null)
-                        {
-                            throw new BinaryObjectException("Cannot resolve ContentData for ID " + id);
-                        }
-                        cds.add(contentDataPair.getSecond());
+                        primitiveIds[idx] = ids[idx];
                     }
-                    properties.put(qn, cds);
+                    this.putContentDataValue(properties, qn, () -> this.resolveContentDataList(primitiveIds, prefetched));
                 }
                 else
                 {
@@ -643,6 +1461,11 @@ public class NodePropertiesBinarySerializer implements BinarySerializer, Applica
         else
         {
             final Map<Object, Serializable> values = reader.readMap(VALUES);
+            if (this.entityIdBulkResolver != null && this.useIdsWhenReasonable)
+            {
+                this.resolveQNameKeysInBulk(resolvedQNames, values);
+            }
+
             values.entrySet().forEach(entry -> {
                 final QName qn = resolveQName.apply(entry);
                 properties.put(qn, entry.getValue());
@@ -650,6 +1473,99 @@ public class NodePropertiesBinarySerializer implements BinarySerializer, Applica
         }
     }
 
+    protected void putContentDataValue(final NodePropertiesCacheMap properties, final QName key,
+            final Supplier<Serializable> valueSupplier)
+    {
+        if (this.decodeLazily)
+        {
+            properties.putLazy(key, valueSupplier);
+        }
+        else
+        {
+            properties.put(key, valueSupplier.get());
+        }
+    }
+
+    @SafeVarargs
+    protected final void resolveQNameKeysInBulk(final Map<Long, QName> resolvedQNames, final Map<Object, Serializable>... maps)
+    {
+        final List<Long> ids = new ArrayList<>();
+        for (final Map<Object, Serializable> map : maps)
+        {
+            for (final Object key : map.keySet())
+            {
+                if (key instanceof Long)
+                {
+                    ids.add((Long) key);
+                }
+            }
+        }
+
+        if (ids.size() > 1)
+        {
+            final long[] primitiveIds = ids.stream().mapToLong(Long::longValue).toArray();
+            final QName[] qnames = this.entityIdBulkResolver.resolveQNames(primitiveIds);
+            for (int idx = 0; idx < primitiveIds.length; idx++)
+            {
+                resolvedQNames.put(primitiveIds[idx], qnames[idx]);
+            }
+        }
+    }
+
+    protected Map<Long, ContentData> resolveContentDataInBulk(final long[] ids)
+    {
+        final ContentData[] contentData = this.entityIdBulkResolver.resolveContentData(ids);
+        final Map<Long, ContentData> resolvedContentData = new HashMap<>(ids.length * 4 / 3 + 1);
+        for (int idx = 0; idx < ids.length; idx++)
+        {
+            resolvedContentData.put(ids[idx], contentData[idx]);
+        }
+        return resolvedContentData;
+    }
+
+    protected ContentData resolveContentData(final long id)
+    {
+        final Pair<Long, ContentData> contentDataPair = this.contentDataDAO.getContentData(id);
+        if (contentDataPair == null)
+        {
+            throw new BinaryObjectException("Cannot resolve ContentData for ID " + id);
+        }
+        return contentDataPair.getSecond();
+    }
+
+    protected ArrayList<ContentData> resolveContentDataList(final long[] ids, final Map<Long, ContentData> prefetched)
+    {
+        final ArrayList<ContentData> cds;
+        if (ids != null)
+        {
+            cds = new ArrayList<>(ids.length);
+            if (prefetched != null)
+            {
+                for (final long id : ids)
+                {
+                    cds.add(prefetched.get(id));
+                }
+            }
+            else if (this.entityIdBulkResolver != null)
+            {
+                cds.addAll(Arrays.asList(this.entityIdBulkResolver.resolveContentData(ids)));
+            }
+            else
+            {
+                for (final long id : ids)
+                {
+                    cds.add(this.resolveContentData(id));
+                }
+            }
+        }
+        // else should never occur, but technically can
+        else
+        {
+            cds = new ArrayList<>();
+        }
+        return cds;
+    }
+
     protected void ensureDAOsAvailable() throws BinaryObjectException
     {
         if (this.useIdsWhenReasonable || this.useIdsWhenPossible)
@@ -679,6 +1595,11 @@ public class NodePropertiesBinarySerializer implements BinarySerializer, Applica
                             "Cannot (de-)serialise node properties in current configuration without access to ContentDataDAO", be);
                 }
             }
+
+            if (this.resolveIdsInBulk && this.entityIdBulkResolver == null)
+            {
+                this.entityIdBulkResolver = new EntityIdBulkResolver(this.applicationContext, this.qnameDAO, this.contentDataDAO);
+            }
         }
     }
 }
@@ -0,0 +1,262 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.binary;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.aldica.common.ignite.binary.StringDictionary;
+import org.alfresco.util.EqualsHelper;
+import org.apache.ignite.binary.BinaryObjectException;
+
+/**
+ * Instances of this class manage a shared dictionary of {@link PropertyLayout property layouts}, mapping each distinct layout to a
+ * numerical ID which is stable for the lifetime of the data grid. Layouts are stored in the shared dictionary by their canonical
+ * {@link PropertyLayout#getKey() key}, and resolved layouts are additionally kept in a local map to avoid re-parsing keys in the hot paths
+ * of (de-)serialisation.
+ *
+ * @author Axel Faust
+ */
+public class PropertyLayoutDictionary extends StringDictionary
+{
+
+    /**
+     * The ID returned by {@link #getLayoutId(PropertyLayout) ID lookups} when a layout cannot / should not be assigned an ID.
+     */
+    public static final int NO_LAYOUT_ID = NO_ID;
+
+    protected final Map<Integer, PropertyLayout> localLayouts = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new instance of this class.
+     */
+    public PropertyLayoutDictionary()
+    {
+        this.cacheName = "propertyLayouts";
+        this.maxEntries = 50000;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void beforeInstanceShutdown(final String instanceName)
+    {
+        super.beforeInstanceShutdown(instanceName);
+        if (EqualsHelper.nullSafeEquals(this.instanceName, instanceName))
+        {
+            this.localLayouts.clear();
+        }
+    }
+
+    /**
+     * Retrieves the ID for a specific layout, assigning a new ID if the layout has not been encountered before.
+     *
+     * @param layout
+     *            the layout for which to retrieve the ID
+     * @return the ID of the layout or {@link #NO_LAYOUT_ID} if the dictionary is currently not available or the maximum number of layouts
+     *         has already been reached
+     */
+    public int getLayoutId(final PropertyLayout layout)
+    {
+        final int layoutId = this.getId(layout.getKey());
+        if (layoutId != NO_LAYOUT_ID)
+        {
+            this.localLayouts.putIfAbsent(layoutId, layout);
+        }
+        return layoutId;
+    }
+
+    /**
+     * Retrieves the layout for a specific ID.
+     *
+     * @param layoutId
+     *            the ID of the layout to retrieve
+     * @return the layout
+     * @throws BinaryObjectException
+     *             if the ID cannot be resolved
+     */
+    public PropertyLayout getLayout(final int layoutId) throws BinaryObjectException
+    {
+        PropertyLayout layout = this.localLayouts.get(layoutId);
+        if (layout == null)
+        {
+            layout = PropertyLayout.fromKey(this.getValue(layoutId));
+            this.localLayouts.putIfAbsent(layoutId, layout);
+        }
+        return layout;
+    }
+
+    /**
+     * Instances of this class represent the layout of a node properties map, that is the (sorted) IDs of the property keys together with
+     * the flags and value types of the individual properties.
+     *
+     * @author Axel Faust
+     */
+    public static class PropertyLayout
+    {
+
+        private static final char ENTRY_SEPARATOR = ',';
+
+        private static final char COMPONENT_SEPARATOR = ':';
+
+        private final long[] keyIds;
+
+        private final byte[] flags;
+
+        private final byte[] types;
+
+        private final String key;
+
+        /**
+         * Creates a new instance of a layout.
+         *
+         * @param keyIds
+         *            the IDs of the property keys in ascending order
+         * @param flags
+         *            the flags for each property
+         * @param types
+         *            the value types of each property
+         */
+        public PropertyLayout(final long[] keyIds, final byte[] flags, final byte[] types)
+        {
+            if (keyIds.length != flags.length || keyIds.length != types.length)
+            {
+                throw new IllegalArgumentException("Layout components must all be of the same length");
+            }
+
+            this.keyIds = keyIds;
+            this.flags = flags;
+            this.types = types;
+
+            final StringBuilder sb = new StringBuilder(keyIds.length * 8);
+            for (int idx = 0; idx < keyIds.length; idx++)
+            {
+                if (idx != 0)
+                {
+                    sb.append(ENTRY_SEPARATOR);
+                }
+                sb.append(Long.toString(keyIds[idx], Character.MAX_RADIX)).append(COMPONENT_SEPARATOR).append(flags[idx])
+                        .append(COMPONENT_SEPARATOR).append(types[idx]);
+            }
+            this.key = sb.toString();
+        }
+
+        /**
+         * Reconstructs a layout from its {@link #getKey() key}.
+         *
+         * @param key
+         *            the key of the layout
+         * @return the layout
+         */
+        public static PropertyLayout fromKey(final String key)
+        {
+            final String[] entries = key.isEmpty() ? new String[0] : key.split(String.valueOf(ENTRY_SEPARATOR));
+            final long[] keyIds = new long[entries.length];
+            final byte[] flags = new byte[entries.length];
+            final byte[] types = new byte[entries.length];
+
+            for (int idx = 0; idx < entries.length; idx++)
+            {
+                final String[] components = entries[idx].split(String.valueOf(COMPONENT_SEPARATOR));
+                if (components.length != 3)
+                {
+                    throw new BinaryObjectException("Invalid property layout key " + key);
+                }
+                keyIds[idx] = Long.parseLong(components[0], Character.MAX_RADIX);
+                flags[idx] = Byte.parseByte(components[1]);
+                types[idx] = Byte.parseByte(components[2]);
+            }
+
+            return new PropertyLayout(keyIds, flags, types);
+        }
+
+        /**
+         * @return the number of properties in this layout
+         */
+        public int size()
+        {
+            return this.keyIds.length;
+        }
+
+        /**
+         * @param idx
+         *            the index of the property
+         * @return the ID of the property key
+         */
+        public long getKeyId(final int idx)
+        {
+            return this.keyIds[idx];
+        }
+
+        /**
+         * @param idx
+         *            the index of the property
+         * @return the flags of the property
+         */
+        public byte getFlags(final int idx)
+        {
+            return this.flags[idx];
+        }
+
+        /**
+         * @param idx
+         *            the index of the property
+         * @return the value type of the property
+         */
+        public byte getType(final int idx)
+        {
+            return this.types[idx];
+        }
+
+        /**
+         * @return the canonical textual key of this layout
+         */
+        public String getKey()
+        {
+            return this.key;
+        }
+
+        /**
+         *
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode()
+        {
+            return this.key.hashCode();
+        }
+
+        /**
+         *
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(final Object obj)
+        {
+            if (this == obj)
+            {
+                return true;
+            }
+            if (!(obj instanceof PropertyLayout))
+            {
+                return false;
+            }
+            final PropertyLayout other = (PropertyLayout) obj;
+            return Arrays.equals(this.keyIds, other.keyIds) && Arrays.equals(this.flags, other.flags)
+                    && Arrays.equals(this.types, other.types);
+        }
+
+        /**
+         *
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString()
+        {
+            return "PropertyLayout [" + this.key + "]";
+        }
+    }
+}
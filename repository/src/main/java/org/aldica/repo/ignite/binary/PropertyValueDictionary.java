@@ -0,0 +1,176 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.binary;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.aldica.common.ignite.binary.StringDictionary;
+import org.alfresco.service.namespace.QName;
+import org.alfresco.util.EqualsHelper;
+import org.apache.ignite.binary.BinaryObjectException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Instances of this class manage a shared dictionary of textual property values, e.g. user names in {@code cm:creator} /
+ * {@code cm:modifier} / {@code cm:owner} or values of list-constrained {@code d:text} properties, which are typically repeated across a
+ * large number of nodes. The dictionary is built adaptively: each server tracks the distinct values it has observed for each property, and
+ * a value is only assigned an ID once it has been observed more than once for the same property. As soon as the number of distinct values
+ * observed for a property exceeds the configured threshold, the property is considered to be of high cardinality, its tracked values are
+ * discarded, and none of its values will be substituted with IDs for the remaining lifetime of the data grid. IDs already assigned remain
+ * valid, as the dictionary only ever grows.
+ *
+ * @author Axel Faust
+ */
+public class PropertyValueDictionary extends StringDictionary
+{
+
+    /**
+     * The ID returned by {@link #getValueId(QName, String) ID lookups} when a property value cannot / should not be assigned an ID.
+     */
+    public static final int NO_VALUE_ID = NO_ID;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PropertyValueDictionary.class);
+
+    /**
+     * Instances of this class track the distinct values observed for a single property.
+     *
+     * @author Axel Faust
+     */
+    protected static class PropertyValueTracker
+    {
+
+        protected final Set<String> values = ConcurrentHashMap.newKeySet();
+
+        protected volatile boolean highCardinality = false;
+    }
+
+    protected final Map<QName, PropertyValueTracker> trackers = new ConcurrentHashMap<>();
+
+    protected int maxValuesPerProperty = 256;
+
+    protected int maxValueLength = 256;
+
+    /**
+     * Creates a new instance of this class.
+     */
+    public PropertyValueDictionary()
+    {
+        this.cacheName = "propertyValues";
+        this.maxEntries = 100000;
+    }
+
+    /**
+     * @param maxValuesPerProperty
+     *            the maximum number of distinct values of a property before it is considered to be of high cardinality
+     */
+    public void setMaxValuesPerProperty(final int maxValuesPerProperty)
+    {
+        this.maxValuesPerProperty = maxValuesPerProperty;
+    }
+
+    /**
+     * @param maxValueLength
+     *            the maximum length of values to consider for the dictionary
+     */
+    public void setMaxValueLength(final int maxValueLength)
+    {
+        this.maxValueLength = maxValueLength;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void beforeInstanceShutdown(final String instanceName)
+    {
+        super.beforeInstanceShutdown(instanceName);
+        if (EqualsHelper.nullSafeEquals(this.instanceName, instanceName))
+        {
+            this.trackers.clear();
+        }
+    }
+
+    /**
+     * Checks whether values of a specific property are currently candidates for substitution with dictionary IDs.
+     *
+     * @param property
+     *            the property to check
+     * @return {@code true} if the dictionary is available and the property has not been found to be of high cardinality, {@code false}
+     *         otherwise
+     */
+    public boolean isDictionaryCandidate(final QName property)
+    {
+        boolean candidate = this.isAvailable();
+        if (candidate)
+        {
+            final PropertyValueTracker tracker = this.trackers.get(property);
+            candidate = tracker == null || !tracker.highCardinality;
+        }
+        return candidate;
+    }
+
+    /**
+     * Retrieves the ID for a specific value of a property, tracking the value in order to determine the cardinality of the property and
+     * asynchronously assigning a new ID if the value has been observed before for the same property.
+     *
+     * @param property
+     *            the property of the value
+     * @param value
+     *            the value for which to retrieve the ID
+     * @return the ID of the value or {@link #NO_VALUE_ID} if the value should not (yet) be substituted with an ID
+     */
+    public int getValueId(final QName property, final String value)
+    {
+        int id = NO_VALUE_ID;
+        if (isLearningSuppressed())
+        {
+            // neither track values nor assign new IDs
+            final PropertyValueTracker tracker = this.trackers.get(property);
+            final Integer knownId = tracker == null || !tracker.highCardinality ? this.localIds.get(value) : null;
+            id = knownId != null ? knownId.intValue() : NO_VALUE_ID;
+        }
+        else if (this.isAvailable() && value.length() <= this.maxValueLength)
+        {
+            final PropertyValueTracker tracker = this.trackers.computeIfAbsent(property, k -> new PropertyValueTracker());
+            if (!tracker.highCardinality)
+            {
+                if (!tracker.values.add(value))
+                {
+                    id = this.getId(value);
+                }
+                else if (tracker.values.size() > this.maxValuesPerProperty)
+                {
+                    LOGGER.debug("Property {} exceeded {} distinct values - excluding it from dictionary {}", property,
+                            this.maxValuesPerProperty, this.cacheName);
+                    tracker.highCardinality = true;
+                    tracker.values.clear();
+                }
+                else
+                {
+                    // value may already have been assigned an ID via other property / server
+                    final Integer knownId = this.localIds.get(value);
+                    id = knownId != null ? knownId.intValue() : NO_VALUE_ID;
+                }
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Retrieves the property value for a specific ID.
+     *
+     * @param valueId
+     *            the ID of the value to retrieve
+     * @return the value
+     * @throws BinaryObjectException
+     *             if the ID cannot be resolved
+     */
+    public String getPropertyValue(final int valueId) throws BinaryObjectException
+    {
+        return this.getValue(valueId);
+    }
+}
@@ -16,7 +16,11 @@ import org.apache.ignite.binary.BinaryWriter;
 /**
  * Instances of this class handle (de-)serialisations of {@link QName qualified name} instances in order to optimise their serial form. This
  * implementation primarily aims to optimise handling of well-known {@link QName#getNamespaceURI() namespace URIs} as part of the qualifed
- * name.
+ * name. Optionally, custom namespace URIs can be substituted by an ID from a statically configured {@link NamespaceDictionary dictionary},
+ * which is written as part of the namespace type byte if the ID is small enough, or as a separate integer otherwise. As qualified names are
+ * used in cache keys, any ID substitution must be deterministic, so the dictionary never learns new namespace URIs on use. For the same
+ * reason, namespace IDs are never subject to the negotiation of serial form versions - their use is part of the static configuration,
+ * which must be identical on all members and is validated when members join the data grid.
  *
  * @author Axel Faust
  */
@@ -27,14 +31,29 @@ public class QNameBinarySerializer implements BinarySerializer
 
     private static final String NAMESPACE_URI = "namespaceURI";
 
+    private static final String NAMESPACE_ID = "namespaceId";
+
     private static final String LOCAL_NAME = "localName";
 
+    // any type value higher than this offset denotes a small dictionary ID
+    // explicit constant (instead of ordinal of custom namespace) so that the encoding does not change when well-known namespaces are added
+    private static final int DICTIONARY_ID_OFFSET = 63;
+
+    private static final int MAX_INLINE_DICTIONARY_ID = Byte.MAX_VALUE - DICTIONARY_ID_OFFSET;
+
+    private static final byte DICTIONARY_ID_TYPE = -1;
+
     private static final Field NAMESPACE_URI_FIELD;
 
     private static final Field LOCAL_NAME_FIELD;
 
     static
     {
+        if (Namespace.CUSTOM.ordinal() >= DICTIONARY_ID_OFFSET)
+        {
+            throw new IllegalStateException("Ordinals of namespace literals overlap with the encoding of namespace dictionary IDs");
+        }
+
         try
         {
             NAMESPACE_URI_FIELD = QName.class.getDeclaredField("namespaceURI");
@@ -51,6 +70,10 @@ public class QNameBinarySerializer implements BinarySerializer
 
     protected boolean useRawSerialForm = false;
 
+    protected boolean useNamespaceDictionary = false;
+
+    protected NamespaceDictionary namespaceDictionary;
+
     /**
      * @param useRawSerialForm
      *            the useRawSerialForm to set
@@ -60,6 +83,24 @@ public class QNameBinarySerializer implements BinarySerializer
         this.useRawSerialForm = useRawSerialForm;
     }
 
+    /**
+     * @param useNamespaceDictionary
+     *            the useNamespaceDictionary to set
+     */
+    public void setUseNamespaceDictionary(final boolean useNamespaceDictionary)
+    {
+        this.useNamespaceDictionary = useNamespaceDictionary;
+    }
+
+    /**
+     * @param namespaceDictionary
+     *            the namespaceDictionary to set
+     */
+    public void setNamespaceDictionary(final NamespaceDictionary namespaceDictionary)
+    {
+        this.namespaceDictionary = namespaceDictionary;
+    }
+
     /**
      *
      * {@inheritDoc}
@@ -80,11 +121,35 @@ public class QNameBinarySerializer implements BinarySerializer
 
         final Namespace namespace = Namespace.getLiteral(namespaceURI);
 
+        int namespaceId = NamespaceDictionary.NO_NAMESPACE_ID;
+        if (namespace == Namespace.CUSTOM && this.useNamespaceDictionary && this.namespaceDictionary != null)
+        {
+            namespaceId = this.namespaceDictionary.getNamespaceId(namespaceURI);
+        }
+
+        byte namespaceType;
+        if (namespaceId == NamespaceDictionary.NO_NAMESPACE_ID)
+        {
+            namespaceType = (byte) namespace.ordinal();
+        }
+        else if (namespaceId <= MAX_INLINE_DICTIONARY_ID)
+        {
+            namespaceType = (byte) (DICTIONARY_ID_OFFSET + namespaceId);
+        }
+        else
+        {
+            namespaceType = DICTIONARY_ID_TYPE;
+        }
+
         if (this.useRawSerialForm)
         {
             final BinaryRawWriter rawWriter = writer.rawWriter();
-            rawWriter.writeByte((byte) namespace.ordinal());
-            if (namespace == Namespace.CUSTOM)
+            rawWriter.writeByte(namespaceType);
+            if (namespaceType == DICTIONARY_ID_TYPE)
+            {
+                rawWriter.writeInt(namespaceId);
+            }
+            else if (namespaceType == Namespace.CUSTOM.ordinal())
             {
                 rawWriter.writeString(namespaceURI);
             }
@@ -92,8 +157,12 @@ public class QNameBinarySerializer implements BinarySerializer
         }
         else
         {
-            writer.writeByte(NAMESPACE_TYPE, (byte) namespace.ordinal());
-            if (namespace == Namespace.CUSTOM)
+            writer.writeByte(NAMESPACE_TYPE, namespaceType);
+            if (namespaceType == DICTIONARY_ID_TYPE)
+            {
+                writer.writeInt(NAMESPACE_ID, namespaceId);
+            }
+            else if (namespaceType == Namespace.CUSTOM.ordinal())
             {
                 writer.writeString(NAMESPACE_URI, namespaceURI);
             }
@@ -121,28 +190,42 @@ public class QNameBinarySerializer implements BinarySerializer
         {
             final BinaryRawReader rawReader = reader.rawReader();
             final byte namespaceType = rawReader.readByte();
-            final Namespace namespace = Namespace.values()[namespaceType];
-            if (namespace == Namespace.CUSTOM)
+            if (namespaceType == DICTIONARY_ID_TYPE)
+            {
+                namespaceUri = this.resolveNamespaceId(rawReader.readInt());
+            }
+            else if (namespaceType > DICTIONARY_ID_OFFSET)
+            {
+                namespaceUri = this.resolveNamespaceId(namespaceType - DICTIONARY_ID_OFFSET);
+            }
+            else if (namespaceType == Namespace.CUSTOM.ordinal())
             {
                 namespaceUri = rawReader.readString();
             }
             else
             {
-                namespaceUri = namespace.getUri();
+                namespaceUri = Namespace.values()[namespaceType].getUri();
             }
             localName = rawReader.readString();
         }
         else
         {
             final byte namespaceType = reader.readByte(NAMESPACE_TYPE);
-            final Namespace namespace = Namespace.values()[namespaceType];
-            if (namespace == Namespace.CUSTOM)
+            if (namespaceType == DICTIONARY_ID_TYPE)
+            {
+                namespaceUri = this.resolveNamespaceId(reader.readInt(NAMESPACE_ID));
+            }
+            else if (namespaceType > DICTIONARY_ID_OFFSET)
+            {
+                namespaceUri = this.resolveNamespaceId(namespaceType - DICTIONARY_ID_OFFSET);
+            }
+            else if (namespaceType == Namespace.CUSTOM.ordinal())
             {
                 namespaceUri = reader.readString(NAMESPACE_URI);
             }
             else
             {
-                namespaceUri = namespace.getUri();
+                namespaceUri = Namespace.values()[namespaceType].getUri();
             }
             localName = reader.readString(LOCAL_NAME);
         }
@@ -158,4 +241,12 @@ public class QNameBinarySerializer implements BinarySerializer
         }
     }
 
+    protected String resolveNamespaceId(final int namespaceId)
+    {
+        if (this.namespaceDictionary == null)
+        {
+            throw new BinaryObjectException("No namespace dictionary available to resolve namespace ID " + namespaceId);
+        }
+        return this.namespaceDictionary.getNamespaceUri(namespaceId);
+    }
 }
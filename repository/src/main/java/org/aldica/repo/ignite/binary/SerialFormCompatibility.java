@@ -0,0 +1,268 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.binary;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import org.aldica.common.ignite.lifecycle.IgniteInstanceLifecycleAware;
+import org.alfresco.util.EqualsHelper;
+import org.alfresco.util.PropertyCheck;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.binary.BinarySerializer;
+import org.apache.ignite.cluster.ClusterNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * Instances of this class negotiate the version of the serial forms which {@link BinarySerializer serializers} may use when writing
+ * values, so that grid members running different versions of this module can share the same caches during a rolling upgrade. Each member
+ * advertises the highest version it is able to read via a node attribute, and the negotiated version is the lowest advertised version
+ * among all members in the current topology which (de-)serialise cache values. Members of older versions of this module which do not
+ * advertise any version are considered to only support the {@link #VERSION_BASELINE baseline} version.
+ *
+ * Serializers always read all versions of their serial forms up to the {@link #CURRENT_VERSION current version}, but only write forms
+ * introduced in later versions if the negotiated version allows. Once the last member of an older version has left the grid, all members
+ * switch to the newer forms without requiring a restart or clearing of caches.
+ *
+ * Only the serial forms of values may follow the negotiated version. Since Ignite compares and partitions keys by their serial form, a
+ * key must never change its serial form when members join or leave the grid. Serial forms used in keys, i.e. namespace IDs of qualified
+ * names and the precomputed affinity key of cache region (value) keys, are therefore determined by static configuration alone, which each
+ * member advertises via node attributes and which is validated when members join the grid.
+ *
+ * @author Axel Faust
+ */
+public class SerialFormCompatibility implements InitializingBean, IgniteInstanceLifecycleAware
+{
+
+    /**
+     * The version of the serial forms of all serializers prior to the introduction of version negotiation.
+     */
+    public static final int VERSION_BASELINE = 1;
+
+    /**
+     * The version which introduced compact date values and packed multi-valued properties for node properties, as well as the compact
+     * single-locale form of multi-lingual text values.
+     */
+    public static final int VERSION_COMPACT_VALUES = 2;
+
+    /**
+     * The version which introduced packed content URLs and string dictionary IDs for content data, property layouts and dictionary strings
+     * for node properties, and the bitmap form of node aspects.
+     */
+    public static final int VERSION_EXTENDED_FORMS = 3;
+
+    /**
+     * The highest version of serial forms supported by this module.
+     */
+    public static final int CURRENT_VERSION = VERSION_EXTENDED_FORMS;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SerialFormCompatibility.class);
+
+    protected String instanceName;
+
+    protected String versionAttributeKey;
+
+    protected int maxVersion = CURRENT_VERSION;
+
+    protected String nodeRoleAttributeKey;
+
+    protected Collection<String> serialisingNodeRoleAttributeValues = Collections.emptySet();
+
+    protected volatile Ignite instance;
+
+    protected volatile long negotiatedTopologyVersion = -1;
+
+    protected volatile int negotiatedVersion = VERSION_BASELINE;
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterPropertiesSet()
+    {
+        PropertyCheck.mandatory(this, "instanceName", this.instanceName);
+        PropertyCheck.mandatory(this, "versionAttributeKey", this.versionAttributeKey);
+
+        if (this.maxVersion < VERSION_BASELINE || this.maxVersion > CURRENT_VERSION)
+        {
+            throw new IllegalStateException(
+                    "The maxVersion must be between " + VERSION_BASELINE + " and " + CURRENT_VERSION + ": " + this.maxVersion);
+        }
+    }
+
+    /**
+     * @param instanceName
+     *            the name of the Ignite instance for which to negotiate the version
+     */
+    public void setInstanceName(final String instanceName)
+    {
+        this.instanceName = instanceName;
+    }
+
+    /**
+     * @param versionAttributeKey
+     *            the key of the node attribute via which members advertise their highest supported version
+     */
+    public void setVersionAttributeKey(final String versionAttributeKey)
+    {
+        this.versionAttributeKey = versionAttributeKey;
+    }
+
+    /**
+     * @param maxVersion
+     *            the highest version to use on this member, which must match the version advertised via the node attribute
+     */
+    public void setMaxVersion(final int maxVersion)
+    {
+        this.maxVersion = maxVersion;
+    }
+
+    /**
+     * @param nodeRoleAttributeKey
+     *            the key of the node attribute identifying the role of a member
+     */
+    public void setNodeRoleAttributeKey(final String nodeRoleAttributeKey)
+    {
+        this.nodeRoleAttributeKey = nodeRoleAttributeKey;
+    }
+
+    /**
+     * @param serialisingNodeRoleAttributeValues
+     *            the roles of members which (de-)serialise cache values and need to be considered in the negotiation even if they do not
+     *            advertise any version
+     */
+    public void setSerialisingNodeRoleAttributeValues(final Collection<String> serialisingNodeRoleAttributeValues)
+    {
+        this.serialisingNodeRoleAttributeValues = serialisingNodeRoleAttributeValues;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void beforeInstanceStartup(final String instanceName)
+    {
+        // NO-OP
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterInstanceStartup(final String instanceName)
+    {
+        if (EqualsHelper.nullSafeEquals(this.instanceName, instanceName))
+        {
+            this.negotiatedTopologyVersion = -1;
+            this.instance = Ignition.ignite(instanceName);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void beforeInstanceShutdown(final String instanceName)
+    {
+        if (EqualsHelper.nullSafeEquals(this.instanceName, instanceName))
+        {
+            this.instance = null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterInstanceShutdown(final String instanceName)
+    {
+        // NO-OP
+    }
+
+    /**
+     * Checks whether serial forms of a specific version may currently be written.
+     *
+     * @param version
+     *            the version of the serial form
+     * @return {@code true} if all relevant members of the grid are able to read the serial form, {@code false} otherwise
+     */
+    public boolean isSupported(final int version)
+    {
+        return version <= this.getNegotiatedVersion();
+    }
+
+    /**
+     * Retrieves the currently negotiated version, i.e. the highest version of serial forms which all relevant members of the grid are able
+     * to read.
+     *
+     * @return the negotiated version - {@link #VERSION_BASELINE} if the Ignite instance is not running
+     */
+    public int getNegotiatedVersion()
+    {
+        final Ignite instance = this.instance;
+        int negotiatedVersion = VERSION_BASELINE;
+        if (instance != null)
+        {
+            // topology version is a cheap volatile read, so negotiation only needs to be repeated when members join / leave
+            final long topologyVersion = instance.cluster().topologyVersion();
+            if (topologyVersion != this.negotiatedTopologyVersion)
+            {
+                negotiatedVersion = this.negotiateVersion(instance.cluster().nodes());
+                if (negotiatedVersion != this.negotiatedVersion)
+                {
+                    LOGGER.info("Negotiated serial form version {} for topology version {} of grid {}", negotiatedVersion, topologyVersion,
+                            this.instanceName);
+                }
+                this.negotiatedVersion = negotiatedVersion;
+                this.negotiatedTopologyVersion = topologyVersion;
+            }
+            else
+            {
+                negotiatedVersion = this.negotiatedVersion;
+            }
+        }
+        return negotiatedVersion;
+    }
+
+    protected int negotiateVersion(final Collection<ClusterNode> nodes)
+    {
+        int negotiatedVersion = this.maxVersion;
+        for (final ClusterNode node : nodes)
+        {
+            final Object versionAttribute = node.attribute(this.versionAttributeKey);
+            int nodeVersion;
+            if (versionAttribute != null)
+            {
+                try
+                {
+                    nodeVersion = Integer.parseInt(String.valueOf(versionAttribute).trim());
+                }
+                catch (final NumberFormatException nfex)
+                {
+                    LOGGER.warn("Member {} advertises invalid serial form version {} - assuming baseline version", node.id(),
+                            versionAttribute);
+                    nodeVersion = VERSION_BASELINE;
+                }
+            }
+            else if (this.nodeRoleAttributeKey != null
+                    && this.serialisingNodeRoleAttributeValues.contains(node.attribute(this.nodeRoleAttributeKey)))
+            {
+                LOGGER.debug("Member {} does not advertise any serial form version - assuming baseline version", node.id());
+                nodeVersion = VERSION_BASELINE;
+            }
+            else
+            {
+                // member does not (de-)serialise values, e.g. a repository companion
+                nodeVersion = negotiatedVersion;
+            }
+
+            negotiatedVersion = Math.max(VERSION_BASELINE, Math.min(negotiatedVersion, nodeVersion));
+        }
+        return negotiatedVersion;
+    }
+}
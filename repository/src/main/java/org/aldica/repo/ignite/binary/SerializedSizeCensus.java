@@ -0,0 +1,679 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.binary;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.cache.Cache;
+
+import org.aldica.common.ignite.binary.StringDictionary;
+import org.aldica.repo.ignite.cache.NodePropertiesCacheMap;
+import org.alfresco.repo.domain.node.ContentDataWithId;
+import org.alfresco.service.namespace.QName;
+import org.alfresco.util.ParameterCheck;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.IgniteCheckedException;
+import org.apache.ignite.binary.BinaryObject;
+import org.apache.ignite.cache.CachePeekMode;
+import org.apache.ignite.internal.binary.BinaryObjectExImpl;
+import org.apache.ignite.marshaller.Marshaller;
+
+/**
+ * Instances of this class conduct a census of the serialised sizes of the entries in the caches of an Ignite instance, based on a random
+ * sample of the entries held by the local grid member. Sizes are determined from the binary form in which keys and values are stored, i.e.
+ * reflect the serialisation configuration active at the time the entries were written. For caches of {@link NodePropertiesCacheMap node
+ * properties}, the census additionally breaks down the sampled entries by property and value type, and estimates the savings achieved /
+ * achievable by the ID-based optimisations of {@link NodePropertiesBinarySerializer} based on the structure of the sampled values.
+ *
+ * Savings estimates approximate the difference in size between the serial form with and without a specific optimisation, irrespective of
+ * whether the optimisation is currently enabled, and are extrapolated from the sample to the number of entries held by the local grid
+ * member. They do not account for the size of any shared dictionaries which some optimisations require. Individual property values are
+ * marshalled with the {@link StringDictionary#setLearningSuppressed(boolean) learning} of shared dictionaries suppressed, so that a census
+ * never alters any dictionary.
+ *
+ * @author Axel Faust
+ */
+public class SerializedSizeCensus
+{
+
+    /**
+     * Name of the optimisation flag for using IDs for property keys
+     */
+    public static final String FLAG_NODE_PROPERTIES_IDS_WHEN_REASONABLE = "nodeProperties.useIdsWhenReasonable";
+
+    /**
+     * Name of the optimisation flag for using IDs for content data values
+     */
+    public static final String FLAG_NODE_PROPERTIES_IDS_WHEN_POSSIBLE = "nodeProperties.useIdsWhenPossible";
+
+    /**
+     * Name of the optimisation flag for using shared property layouts
+     */
+    public static final String FLAG_NODE_PROPERTIES_PROPERTY_LAYOUTS = "nodeProperties.usePropertyLayouts";
+
+    /**
+     * Name of the optimisation flag for using the shared dictionary of textual property values
+     */
+    public static final String FLAG_NODE_PROPERTIES_VALUE_DICTIONARY = "nodeProperties.useValueDictionary";
+
+    private static final String NODE_PROPERTIES_TYPE_NAME = NodePropertiesCacheMap.class.getName();
+
+    // raw serial form of the ID of a QName / content data value
+    private static final int LONG_ID_SIZE = 8;
+
+    // variable-length raw serial form of the ID of a dictionary entry (up to 8191 entries)
+    private static final int VAR_ID_SIZE = 2;
+
+    // marker preceding a dictionary value written inline
+    private static final int LITERAL_MARKER_SIZE = 1;
+
+    // flag, key ID and value type byte of each property which are omitted when a property layout is used
+    private static final int LAYOUT_ENTRY_SIZE = 1 + LONG_ID_SIZE + 1;
+
+    /**
+     * Instances of this class hold the distribution of the serialised sizes of a sampled set of keys / values.
+     *
+     * @author Axel Faust
+     */
+    public static class SizeDistribution
+    {
+
+        protected final int count;
+
+        protected final int p50;
+
+        protected final int p95;
+
+        protected final int max;
+
+        protected final long total;
+
+        protected SizeDistribution(final int[] sizes, final int count)
+        {
+            final int[] sorted = Arrays.copyOf(sizes, count);
+            Arrays.sort(sorted);
+
+            long total = 0;
+            for (final int size : sorted)
+            {
+                total += size;
+            }
+
+            this.count = count;
+            this.p50 = percentile(sorted, 50);
+            this.p95 = percentile(sorted, 95);
+            this.max = count > 0 ? sorted[count - 1] : 0;
+            this.total = total;
+        }
+
+        /**
+         * @return the number of sampled keys / values
+         */
+        public int getCount()
+        {
+            return this.count;
+        }
+
+        /**
+         * @return the median size in bytes
+         */
+        public int getP50()
+        {
+            return this.p50;
+        }
+
+        /**
+         * @return the 95th percentile size in bytes
+         */
+        public int getP95()
+        {
+            return this.p95;
+        }
+
+        /**
+         * @return the maximum size in bytes
+         */
+        public int getMax()
+        {
+            return this.max;
+        }
+
+        /**
+         * @return the total size of all sampled keys / values in bytes
+         */
+        public long getTotal()
+        {
+            return this.total;
+        }
+
+        /**
+         * @return the average size in bytes
+         */
+        public double getAverage()
+        {
+            return this.count > 0 ? this.total / (double) this.count : 0;
+        }
+
+        private static int percentile(final int[] sorted, final int percentile)
+        {
+            int result = 0;
+            if (sorted.length > 0)
+            {
+                // nearest-rank method
+                final int rank = (int) Math.ceil(percentile / 100d * sorted.length);
+                result = sorted[Math.max(0, rank - 1)];
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Instances of this class hold the statistics for the values of a specific property and value type within a sample of node properties.
+     *
+     * @author Axel Faust
+     */
+    public static class PropertyValueStatistics
+    {
+
+        protected final QName property;
+
+        protected final String valueType;
+
+        protected int occurrences;
+
+        protected long totalSize;
+
+        protected PropertyValueStatistics(final QName property, final String valueType)
+        {
+            this.property = property;
+            this.valueType = valueType;
+        }
+
+        /**
+         * @return the property
+         */
+        public QName getProperty()
+        {
+            return this.property;
+        }
+
+        /**
+         * @return the simple name of the type of value
+         */
+        public String getValueType()
+        {
+            return this.valueType;
+        }
+
+        /**
+         * @return the number of occurrences of the property with the type of value within the sample
+         */
+        public int getOccurrences()
+        {
+            return this.occurrences;
+        }
+
+        /**
+         * @return the total size of the values in bytes, each marshalled as a standalone value
+         */
+        public long getTotalSize()
+        {
+            return this.totalSize;
+        }
+
+        /**
+         * @return the average size of the values in bytes, each marshalled as a standalone value
+         */
+        public double getAverageSize()
+        {
+            return this.occurrences > 0 ? this.totalSize / (double) this.occurrences : 0;
+        }
+    }
+
+    /**
+     * Instances of this class hold the estimated savings of a specific optimisation flag.
+     *
+     * @author Axel Faust
+     */
+    public static class SavingsEstimate
+    {
+
+        protected final String flag;
+
+        protected final long sampleSavings;
+
+        protected final long estimatedSavings;
+
+        protected SavingsEstimate(final String flag, final long sampleSavings, final long estimatedSavings)
+        {
+            this.flag = flag;
+            this.sampleSavings = sampleSavings;
+            this.estimatedSavings = estimatedSavings;
+        }
+
+        /**
+         * @return the name of the optimisation flag (relative to {@code aldica.core.binary.optimisation.})
+         */
+        public String getFlag()
+        {
+            return this.flag;
+        }
+
+        /**
+         * @return the savings in bytes within the sampled entries
+         */
+        public long getSampleSavings()
+        {
+            return this.sampleSavings;
+        }
+
+        /**
+         * @return the savings in bytes extrapolated to all entries held by the local grid member
+         */
+        public long getEstimatedSavings()
+        {
+            return this.estimatedSavings;
+        }
+    }
+
+    /**
+     * Instances of this class hold the census results for a single cache.
+     *
+     * @author Axel Faust
+     */
+    public static class CacheCensus
+    {
+
+        protected final String cacheName;
+
+        protected final int localSize;
+
+        protected SizeDistribution keySizes;
+
+        protected SizeDistribution valueSizes;
+
+        protected final Map<String, Integer> valueTypes = new HashMap<>();
+
+        protected final List<PropertyValueStatistics> propertyValues = new ArrayList<>();
+
+        protected final List<SavingsEstimate> savingsEstimates = new ArrayList<>();
+
+        protected CacheCensus(final String cacheName, final int localSize)
+        {
+            this.cacheName = cacheName;
+            this.localSize = localSize;
+        }
+
+        /**
+         * @return the name of the cache
+         */
+        public String getCacheName()
+        {
+            return this.cacheName;
+        }
+
+        /**
+         * @return the number of entries held by the local grid member
+         */
+        public int getLocalSize()
+        {
+            return this.localSize;
+        }
+
+        /**
+         * @return the size distribution of the sampled keys
+         */
+        public SizeDistribution getKeySizes()
+        {
+            return this.keySizes;
+        }
+
+        /**
+         * @return the size distribution of the sampled values
+         */
+        public SizeDistribution getValueSizes()
+        {
+            return this.valueSizes;
+        }
+
+        /**
+         * @return the number of sampled values per simple name of the value type
+         */
+        public Map<String, Integer> getValueTypes()
+        {
+            return Collections.unmodifiableMap(this.valueTypes);
+        }
+
+        /**
+         * @return the statistics for the values of node properties, sorted by descending total size
+         */
+        public List<PropertyValueStatistics> getPropertyValues()
+        {
+            return Collections.unmodifiableList(this.propertyValues);
+        }
+
+        /**
+         * @return the estimated savings of optimisation flags
+         */
+        public List<SavingsEstimate> getSavingsEstimates()
+        {
+            return Collections.unmodifiableList(this.savingsEstimates);
+        }
+    }
+
+    protected int sampleSize = 200;
+
+    protected int maxScannedEntries = 10000;
+
+    protected int maxDictionaryValuesPerProperty = 256;
+
+    protected int maxDictionaryValueLength = 256;
+
+    /**
+     * @param sampleSize
+     *            the maximum number of entries to sample per cache
+     */
+    public void setSampleSize(final int sampleSize)
+    {
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * @param maxScannedEntries
+     *            the maximum number of entries to scan per cache when selecting the random sample
+     */
+    public void setMaxScannedEntries(final int maxScannedEntries)
+    {
+        this.maxScannedEntries = maxScannedEntries;
+    }
+
+    /**
+     * @param maxDictionaryValuesPerProperty
+     *            the maximum number of distinct values of a property for its values to be considered in the estimate for the value
+     *            dictionary
+     */
+    public void setMaxDictionaryValuesPerProperty(final int maxDictionaryValuesPerProperty)
+    {
+        this.maxDictionaryValuesPerProperty = maxDictionaryValuesPerProperty;
+    }
+
+    /**
+     * @param maxDictionaryValueLength
+     *            the maximum length of values to be considered in the estimate for the value dictionary
+     */
+    public void setMaxDictionaryValueLength(final int maxDictionaryValueLength)
+    {
+        this.maxDictionaryValueLength = maxDictionaryValueLength;
+    }
+
+    /**
+     * Conducts a census of all caches of an Ignite instance.
+     *
+     * @param grid
+     *            the Ignite instance
+     * @return the census results of all caches, sorted by cache name
+     * @throws IgniteCheckedException
+     *             if any key / value cannot be marshalled
+     */
+    public List<CacheCensus> conductCensus(final Ignite grid) throws IgniteCheckedException
+    {
+        ParameterCheck.mandatory("grid", grid);
+
+        final List<CacheCensus> censuses = new ArrayList<>();
+        for (final String cacheName : new TreeSet<>(grid.cacheNames()))
+        {
+            censuses.add(this.conductCensus(grid, cacheName));
+        }
+        return censuses;
+    }
+
+    /**
+     * Conducts a census of a specific cache of an Ignite instance.
+     *
+     * @param grid
+     *            the Ignite instance
+     * @param cacheName
+     *            the name of the cache
+     * @return the census results
+     * @throws IgniteCheckedException
+     *             if any key / value cannot be marshalled
+     */
+    public CacheCensus conductCensus(final Ignite grid, final String cacheName) throws IgniteCheckedException
+    {
+        ParameterCheck.mandatory("grid", grid);
+        ParameterCheck.mandatoryString("cacheName", cacheName);
+
+        // entries are sampled in their stored binary form, so that their sizes can be determined without marshalling live data again
+        final IgniteCache<Object, Object> cache = grid.cache(cacheName).withKeepBinary();
+        final CacheCensus census = new CacheCensus(cacheName, cache.localSize(CachePeekMode.ALL));
+
+        final List<Cache.Entry<Object, Object>> sample = this.sampleEntries(cache);
+
+        final Marshaller marshaller = grid.configuration().getMarshaller();
+        final int[] keySizes = new int[sample.size()];
+        final int[] valueSizes = new int[sample.size()];
+        final List<NodePropertiesCacheMap> nodeProperties = new ArrayList<>();
+
+        // any marshalling must not add values to the shared dictionaries which would otherwise never be used
+        final boolean learningSuppressed = StringDictionary.setLearningSuppressed(true);
+        try
+        {
+            int idx = 0;
+            for (final Cache.Entry<Object, Object> entry : sample)
+            {
+                final Object value = entry.getValue();
+                keySizes[idx] = determineSize(entry.getKey(), marshaller);
+                valueSizes[idx] = determineSize(value, marshaller);
+                idx++;
+
+                census.valueTypes.merge(determineTypeName(value), 1, Integer::sum);
+                if (value instanceof BinaryObject && NODE_PROPERTIES_TYPE_NAME.equals(((BinaryObject) value).type().typeName()))
+                {
+                    nodeProperties.add(((BinaryObject) value).deserialize());
+                }
+            }
+
+            census.keySizes = new SizeDistribution(keySizes, idx);
+            census.valueSizes = new SizeDistribution(valueSizes, idx);
+
+            if (!nodeProperties.isEmpty())
+            {
+                this.analyseNodeProperties(census, nodeProperties, sample.size(), marshaller);
+            }
+        }
+        finally
+        {
+            StringDictionary.setLearningSuppressed(learningSuppressed);
+        }
+
+        return census;
+    }
+
+    protected List<Cache.Entry<Object, Object>> sampleEntries(final IgniteCache<Object, Object> cache)
+    {
+        final List<Cache.Entry<Object, Object>> sample = new ArrayList<>(Math.min(this.sampleSize, 1024));
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        // reservoir sampling over a bounded number of local entries
+        final Iterator<Cache.Entry<Object, Object>> entries = cache.localEntries(CachePeekMode.ALL).iterator();
+        int scanned = 0;
+        while (entries.hasNext() && scanned < this.maxScannedEntries)
+        {
+            final Cache.Entry<Object, Object> entry = entries.next();
+            if (sample.size() < this.sampleSize)
+            {
+                sample.add(entry);
+            }
+            else
+            {
+                final int replaceIdx = random.nextInt(scanned + 1);
+                if (replaceIdx < this.sampleSize)
+                {
+                    sample.set(replaceIdx, entry);
+                }
+            }
+            scanned++;
+        }
+
+        return sample;
+    }
+
+    protected void analyseNodeProperties(final CacheCensus census, final List<NodePropertiesCacheMap> nodeProperties, final int sampled,
+            final Marshaller marshaller) throws IgniteCheckedException
+    {
+        final Map<QName, Map<String, PropertyValueStatistics>> statistics = new HashMap<>();
+        final Map<QName, Map<String, Integer>> textValueCounts = new HashMap<>();
+        final Set<QName> highCardinalityProperties = new HashSet<>();
+        final Map<Set<QName>, Integer> layoutCounts = new HashMap<>();
+
+        long keyIdSavings = 0;
+        long valueIdSavings = 0;
+
+        for (final NodePropertiesCacheMap properties : nodeProperties)
+        {
+            layoutCounts.merge(new HashSet<>(properties.keySet()), 1, Integer::sum);
+
+            for (final Entry<QName, Serializable> entry : properties.entrySet())
+            {
+                final QName property = entry.getKey();
+                final Serializable value = entry.getValue();
+
+                keyIdSavings += marshaller.marshal(property).length - LONG_ID_SIZE;
+
+                final int valueSize = value != null ? marshaller.marshal(value).length : 0;
+                final PropertyValueStatistics valueStatistics = statistics.computeIfAbsent(property, k -> new HashMap<>())
+                        .computeIfAbsent(determineValueType(value), k -> new PropertyValueStatistics(property, k));
+                valueStatistics.occurrences++;
+                valueStatistics.totalSize += valueSize;
+
+                if (value instanceof ContentDataWithId)
+                {
+                    valueIdSavings += valueSize - LONG_ID_SIZE;
+                }
+                else if (value instanceof String && ((String) value).length() <= this.maxDictionaryValueLength
+                        && !highCardinalityProperties.contains(property))
+                {
+                    final Map<String, Integer> valueCounts = textValueCounts.computeIfAbsent(property, k -> new HashMap<>());
+                    valueCounts.merge((String) value, 1, Integer::sum);
+                    if (valueCounts.size() > this.maxDictionaryValuesPerProperty)
+                    {
+                        highCardinalityProperties.add(property);
+                        textValueCounts.remove(property);
+                    }
+                }
+            }
+        }
+
+        long layoutSavings = 0;
+        for (final Entry<Set<QName>, Integer> layoutCount : layoutCounts.entrySet())
+        {
+            // first occurrence still needs to be written in full to register the layout
+            final int layoutUses = layoutCount.getValue().intValue() - 1;
+            layoutSavings += (long) layoutUses * layoutCount.getKey().size() * LAYOUT_ENTRY_SIZE;
+        }
+
+        long dictionarySavings = 0;
+        for (final Map<String, Integer> valueCounts : textValueCounts.values())
+        {
+            for (final Entry<String, Integer> valueCount : valueCounts.entrySet())
+            {
+                final int valueSize = marshaller.marshal(valueCount.getKey()).length;
+                // first occurrence is written inline in addition to the literal marker
+                dictionarySavings -= LITERAL_MARKER_SIZE;
+                dictionarySavings += (long) (valueCount.getValue().intValue() - 1) * (valueSize - VAR_ID_SIZE);
+            }
+        }
+
+        statistics.values().stream().map(Map::values).flatMap(Collection::stream).forEach(census.propertyValues::add);
+        census.propertyValues.sort((s1, s2) -> Long.compare(s2.totalSize, s1.totalSize));
+
+        census.savingsEstimates.add(this.createEstimate(FLAG_NODE_PROPERTIES_IDS_WHEN_REASONABLE, keyIdSavings, sampled, census.localSize));
+        census.savingsEstimates.add(this.createEstimate(FLAG_NODE_PROPERTIES_IDS_WHEN_POSSIBLE, valueIdSavings, sampled, census.localSize));
+        census.savingsEstimates.add(this.createEstimate(FLAG_NODE_PROPERTIES_PROPERTY_LAYOUTS, layoutSavings, sampled, census.localSize));
+        census.savingsEstimates
+                .add(this.createEstimate(FLAG_NODE_PROPERTIES_VALUE_DICTIONARY, dictionarySavings, sampled, census.localSize));
+    }
+
+    protected static int determineSize(final Object value, final Marshaller marshaller) throws IgniteCheckedException
+    {
+        final int size;
+        if (value == null)
+        {
+            size = 0;
+        }
+        else if (value instanceof BinaryObjectExImpl)
+        {
+            size = ((BinaryObjectExImpl) value).length();
+        }
+        else
+        {
+            // primitives / well-known JDK types, or containers of objects in binary form, so no custom serialisers are involved
+            size = marshaller.marshal(value).length;
+        }
+        return size;
+    }
+
+    protected static String determineTypeName(final Object value)
+    {
+        final String typeName;
+        if (value == null)
+        {
+            typeName = "null";
+        }
+        else if (value instanceof BinaryObject)
+        {
+            final String binaryTypeName = ((BinaryObject) value).type().typeName();
+            typeName = binaryTypeName.substring(Math.max(binaryTypeName.lastIndexOf('.'), binaryTypeName.lastIndexOf('$')) + 1);
+        }
+        else
+        {
+            typeName = value.getClass().getSimpleName();
+        }
+        return typeName;
+    }
+
+    protected SavingsEstimate createEstimate(final String flag, final long sampleSavings, final int sampled, final int localSize)
+    {
+        final long estimatedSavings = sampled > 0 ? Math.round(sampleSavings * (localSize / (double) sampled)) : 0;
+        return new SavingsEstimate(flag, sampleSavings, estimatedSavings);
+    }
+
+    protected static String determineValueType(final Object value)
+    {
+        final String valueType;
+        if (value == null)
+        {
+            valueType = "null";
+        }
+        else if (value instanceof List<?>)
+        {
+            String elementType = null;
+            for (final Object element : (List<?>) value)
+            {
+                final String type = element != null ? element.getClass().getSimpleName() : "null";
+                elementType = elementType == null || elementType.equals(type) ? type : "?";
+            }
+            valueType = "List<" + (elementType != null ? elementType : "?") + ">";
+        }
+        else
+        {
+            valueType = value.getClass().getSimpleName();
+        }
+        return valueType;
+    }
+}
@@ -8,6 +8,7 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.TimeUnit;
 
@@ -18,8 +19,14 @@ import javax.cache.expiry.ExpiryPolicy;
 import javax.cache.expiry.ModifiedExpiryPolicy;
 
 import org.aldica.common.ignite.cache.CombinedExpiryPolicy;
+import org.aldica.common.ignite.cache.CostAwareEvictionPolicyFactory;
+import org.aldica.common.ignite.cache.TinyLfuEvictionPolicyFactory;
 import org.aldica.common.ignite.lifecycle.IgniteInstanceLifecycleAware;
 import org.aldica.common.ignite.lifecycle.SpringIgniteLifecycleBean;
+import org.aldica.repo.ignite.binary.CacheRegionAffinity;
+import org.aldica.repo.ignite.binary.CacheRegionKeyBinarySerializer;
+import org.aldica.repo.ignite.binary.CacheRegionValueKeyBinarySerializer;
+import org.aldica.repo.ignite.cache.CacheValueCompressor.RegionValueCompression;
 import org.alfresco.repo.cache.AbstractCacheFactory;
 import org.alfresco.repo.cache.DefaultSimpleCache;
 import org.alfresco.repo.cache.SimpleCache;
@@ -28,6 +35,9 @@ import org.alfresco.util.PropertyCheck;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteCache;
 import org.apache.ignite.Ignition;
+import org.apache.ignite.binary.BinarySerializer;
+import org.apache.ignite.binary.BinaryTypeConfiguration;
+import org.apache.ignite.cache.CacheKeyConfiguration;
 import org.apache.ignite.cache.CacheMode;
 import org.apache.ignite.cache.CacheRebalanceMode;
 import org.apache.ignite.cache.CacheWriteSynchronizationMode;
@@ -36,6 +46,7 @@ import org.apache.ignite.cache.eviction.AbstractEvictionPolicyFactory;
 import org.apache.ignite.cache.eviction.EvictionPolicy;
 import org.apache.ignite.cache.eviction.fifo.FifoEvictionPolicyFactory;
 import org.apache.ignite.cache.eviction.lru.LruEvictionPolicyFactory;
+import org.apache.ignite.configuration.BinaryConfiguration;
 import org.apache.ignite.configuration.CacheConfiguration;
 import org.apache.ignite.configuration.NearCacheConfiguration;
 import org.slf4j.Logger;
@@ -79,6 +90,15 @@ public class CacheFactoryImpl<K extends Serializable, V extends Serializable> ex
 
     private static final String EVICTION_POLICY_FIFO = "FIFO";
 
+    private static final String EVICTION_POLICY_TINY_LFU = "TINY_LFU";
+
+    /**
+     * Alias for {@link #EVICTION_POLICY_TINY_LFU} - the Alfresco terminology for frequency-based eviction
+     */
+    private static final String EVICTION_POLICY_ALFRESCO_LFU = "LFU";
+
+    private static final String EVICTION_POLICY_COST_AWARE = "COST_AWARE";
+
     private static final String EVICTION_POLICY_NONE = "NONE";
 
     protected ApplicationContext applicationContext;
@@ -105,6 +125,16 @@ public class CacheFactoryImpl<K extends Serializable, V extends Serializable> ex
 
     protected boolean disableAllStatistics;
 
+    protected boolean useCacheClassRegions;
+
+    protected ImmutableCacheSnapshotStore snapshotStore;
+
+    protected ExpirySweeper expirySweeper;
+
+    protected CacheTemperatureTracker temperatureTracker;
+
+    protected CacheValueCompressor valueCompressor;
+
     /**
      *
      * {@inheritDoc}
@@ -251,6 +281,51 @@ public class CacheFactoryImpl<K extends Serializable, V extends Serializable> ex
         this.disableAllStatistics = disableAllStatistics;
     }
 
+    /**
+     * @param useCacheClassRegions
+     *            the useCacheClassRegions to set
+     */
+    public void setUseCacheClassRegions(final boolean useCacheClassRegions)
+    {
+        this.useCacheClassRegions = useCacheClassRegions;
+    }
+
+    /**
+     * @param snapshotStore
+     *            the snapshotStore to set
+     */
+    public void setSnapshotStore(final ImmutableCacheSnapshotStore snapshotStore)
+    {
+        this.snapshotStore = snapshotStore;
+    }
+
+    /**
+     * @param expirySweeper
+     *            the expirySweeper to set
+     */
+    public void setExpirySweeper(final ExpirySweeper expirySweeper)
+    {
+        this.expirySweeper = expirySweeper;
+    }
+
+    /**
+     * @param temperatureTracker
+     *            the temperatureTracker to set
+     */
+    public void setTemperatureTracker(final CacheTemperatureTracker temperatureTracker)
+    {
+        this.temperatureTracker = temperatureTracker;
+    }
+
+    /**
+     * @param valueCompressor
+     *            the valueCompressor to set
+     */
+    public void setValueCompressor(final CacheValueCompressor valueCompressor)
+    {
+        this.valueCompressor = valueCompressor;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -343,7 +418,8 @@ public class CacheFactoryImpl<K extends Serializable, V extends Serializable> ex
                     break;
                 case CACHE_TYPE_INVALIDATING_DEFAULT_SIMPLE:
                     cache = this.createLocalDefaultSimpleCache(cacheName);
-                    cache = new InvalidatingCacheFacade<>(cacheName, cache, grid, alwaysInvalidateOnPut, allowValueSentinels);
+                    cache = new InvalidatingCacheFacade<>(cacheName, cache, grid, alwaysInvalidateOnPut, allowValueSentinels,
+                            this.createNegativeLookupCache(cacheName));
                     break;
                 case CACHE_TYPE_ALFRESCO_FULLY_DISTRIBUTED:
                 case CACHE_TYPE_PARTITIONED:
@@ -355,6 +431,20 @@ public class CacheFactoryImpl<K extends Serializable, V extends Serializable> ex
                 default:
                     throw new UnsupportedOperationException("Cache type " + cacheType + " is not supported");
             }
+
+            final boolean snapshotEnabled = Boolean
+                    .parseBoolean(this.getProperty(cacheName, "ignite.snapshot.enabled", "snapshot.enabled", "false"));
+            if (snapshotEnabled && this.snapshotStore != null)
+            {
+                this.snapshotStore.restoreAndRegister(cacheName, cache);
+            }
+
+            final boolean expirySweeperEnabled = Boolean
+                    .parseBoolean(this.getProperty(cacheName, "ignite.expirySweeper.enabled", "expirySweeper.enabled", "true"));
+            if (expirySweeperEnabled && this.expirySweeper != null)
+            {
+                this.expirySweeper.register(cacheName);
+            }
         }
         else
         {
@@ -447,7 +537,8 @@ public class CacheFactoryImpl<K extends Serializable, V extends Serializable> ex
 
         final IgniteCache<K, V> backingCache = grid.getOrCreateCache(cacheConfig);
         final SimpleIgniteBackedCache<K, V> localCache = new SimpleIgniteBackedCache<>(grid,
-                SimpleIgniteBackedCache.Mode.getLocalCacheMode(invalidate, alwaysInvalidateOnPut), backingCache, allowValueSentinels);
+                SimpleIgniteBackedCache.Mode.getLocalCacheMode(invalidate, alwaysInvalidateOnPut), backingCache, allowValueSentinels,
+                this.resolveValueCompression(grid, cacheName, backingCache), this.createNegativeLookupCache(cacheName));
         return localCache;
     }
 
@@ -472,6 +563,7 @@ public class CacheFactoryImpl<K extends Serializable, V extends Serializable> ex
 
         final RendezvousAffinityFunction affinityFunction = new RendezvousAffinityFunction(false, this.partitionsCount);
         cacheConfig.setAffinity(affinityFunction);
+        this.processKeyConfiguration(grid, cacheConfig);
 
         this.processMemoryConfig(cacheName, cacheConfig);
         this.processExpiryPolicy(cacheName, cacheConfig);
@@ -482,7 +574,8 @@ public class CacheFactoryImpl<K extends Serializable, V extends Serializable> ex
 
         final IgniteCache<K, V> backingCache = grid.getOrCreateCache(cacheConfig);
         final SimpleIgniteBackedCache<K, V> localCache = new SimpleIgniteBackedCache<>(grid, SimpleIgniteBackedCache.Mode.PARTITIONED,
-                backingCache, allowValueSentinels);
+                backingCache, allowValueSentinels, this.resolveValueCompression(grid, cacheName, backingCache),
+                this.createNegativeLookupCache(cacheName));
         return localCache;
     }
 
@@ -511,13 +604,63 @@ public class CacheFactoryImpl<K extends Serializable, V extends Serializable> ex
 
         final IgniteCache<K, V> backingCache = grid.getOrCreateCache(cacheConfig);
         final SimpleIgniteBackedCache<K, V> localCache = new SimpleIgniteBackedCache<>(grid, SimpleIgniteBackedCache.Mode.REPLICATED,
-                backingCache, allowValueSentinels);
+                backingCache, allowValueSentinels, this.resolveValueCompression(grid, cacheName, backingCache),
+                this.createNegativeLookupCache(cacheName));
         return localCache;
     }
 
+    protected void processKeyConfiguration(final Ignite grid, final CacheConfiguration<K, V> cacheConfig)
+    {
+        final BinaryConfiguration binaryConfiguration = grid.configuration().getBinaryConfiguration();
+        final Collection<BinaryTypeConfiguration> typeConfigurations = binaryConfiguration != null
+                ? binaryConfiguration.getTypeConfigurations()
+                : null;
+        if (typeConfigurations != null)
+        {
+            // affinity key field may only be configured if the active serializer actually writes it
+            final List<CacheKeyConfiguration> keyConfigurations = new ArrayList<>();
+            for (final BinaryTypeConfiguration typeConfiguration : typeConfigurations)
+            {
+                final BinarySerializer serializer = typeConfiguration.getSerializer();
+                final boolean useAffinityKey = (serializer instanceof CacheRegionKeyBinarySerializer
+                        && ((CacheRegionKeyBinarySerializer) serializer).isUseAffinityKey())
+                        || (serializer instanceof CacheRegionValueKeyBinarySerializer
+                                && ((CacheRegionValueKeyBinarySerializer) serializer).isUseAffinityKey());
+                if (useAffinityKey)
+                {
+                    keyConfigurations
+                            .add(new CacheKeyConfiguration(typeConfiguration.getTypeName(), CacheRegionAffinity.AFFINITY_KEY_FIELD));
+                }
+            }
+
+            if (!keyConfigurations.isEmpty())
+            {
+                LOGGER.debug("Using precomputed affinity keys {} for cache {}", keyConfigurations, cacheConfig.getName());
+                cacheConfig.setKeyConfiguration(keyConfigurations.toArray(new CacheKeyConfiguration[0]));
+            }
+        }
+    }
+
     protected void processMemoryConfig(final String cacheName, final CacheConfiguration<K, V> cacheConfig)
     {
-        final String dataRegionName = this.getProperty(cacheName, "ignite.dataRegionName", "dataRegionName", null);
+        String dataRegionName = this.getProperty(cacheName, "ignite.dataRegionName", "dataRegionName", null);
+        if (dataRegionName == null && this.useCacheClassRegions)
+        {
+            // cache classes (e.g. entity, node, transient) map to the data regions of the same name
+            dataRegionName = this.getProperty(cacheName, "ignite.cacheClass", "cacheClass", null);
+
+            if (dataRegionName != null && this.isTieredPlacementEnabled(cacheName, cacheConfig))
+            {
+                this.temperatureTracker.register(cacheName);
+                if (this.temperatureTracker.isColdPlacement(cacheName))
+                {
+                    LOGGER.debug("Placing cold cache {} in data region {} instead of {}", cacheName,
+                            this.temperatureTracker.getColdRegionName(), dataRegionName);
+                    dataRegionName = this.temperatureTracker.getColdRegionName();
+                }
+            }
+        }
+
         if (dataRegionName != null)
         {
             final String effectiveDataRegionName = this.instanceName + ".region." + dataRegionName;
@@ -527,6 +670,70 @@ public class CacheFactoryImpl<K extends Serializable, V extends Serializable> ex
         this.processEvictionPolicy(cacheName, cacheConfig);
     }
 
+    protected NegativeLookupCache<K, V> createNegativeLookupCache(final String cacheName)
+    {
+        NegativeLookupCache<K, V> negativeLookups = null;
+
+        final boolean negativeLookupsEnabled = Boolean
+                .parseBoolean(this.getProperty(cacheName, "ignite.negativeLookups.enabled", "negativeLookups.enabled", "false"));
+        if (negativeLookupsEnabled)
+        {
+            final int maxItems = Integer
+                    .parseInt(this.getProperty(cacheName, "ignite.negativeLookups.maxItems", "negativeLookups.maxItems", "10000"));
+            final int timeToLiveSeconds = Integer.parseInt(
+                    this.getProperty(cacheName, "ignite.negativeLookups.timeToLiveSeconds", "negativeLookups.timeToLiveSeconds", "60"));
+
+            LOGGER.debug("Recording up to {} negative lookups for {}s for cache {}", maxItems, timeToLiveSeconds, cacheName);
+            negativeLookups = new NegativeLookupCache<>(maxItems, timeToLiveSeconds);
+        }
+
+        return negativeLookups;
+    }
+
+    protected RegionValueCompression resolveValueCompression(final Ignite grid, final String cacheName,
+            final IgniteCache<K, V> backingCache)
+    {
+        RegionValueCompression valueCompression = null;
+
+        // a distributed cache may have been created by another member, so the data region of the actual cache is relevant
+        final CacheConfiguration<?, ?> cacheConfig = backingCache.getConfiguration(CacheConfiguration.class);
+        final String effectiveDataRegionName = cacheConfig.getDataRegionName();
+        final String regionPrefix = this.instanceName + ".region.";
+        if (this.valueCompressor != null && effectiveDataRegionName != null && effectiveDataRegionName.startsWith(regionPrefix))
+        {
+            final boolean compressionEnabled = Boolean
+                    .parseBoolean(this.getProperty(cacheName, "ignite.compression.enabled", "compression.enabled", "true"));
+            if (compressionEnabled && this.valueCompressor.isCompressedRegion(effectiveDataRegionName.substring(regionPrefix.length())))
+            {
+                LOGGER.debug("Compressing values of cache {} in data region {}", cacheName, effectiveDataRegionName);
+                final ClassLoader classLoader = grid.configuration().getClassLoader() != null ? grid.configuration().getClassLoader()
+                        : CacheFactoryImpl.class.getClassLoader();
+                valueCompression = this.valueCompressor.forRegion(effectiveDataRegionName, grid.configuration().getMarshaller(),
+                        classLoader);
+            }
+        }
+
+        return valueCompression;
+    }
+
+    protected boolean isTieredPlacementEnabled(final String cacheName, final CacheConfiguration<K, V> cacheConfig)
+    {
+        // only caches placed in cache class regions are subject to hot / cold placement, never explicitly placed caches
+        boolean enabled = this.temperatureTracker != null && this.useCacheClassRegions
+                && this.getProperty(cacheName, "ignite.dataRegionName", "dataRegionName", null) == null
+                && Boolean.parseBoolean(this.getProperty(cacheName, "ignite.tieredPlacement.enabled", "tieredPlacement.enabled", "false"));
+
+        // placement is determined per server, so it can only apply to local caches - the first creator of a distributed cache would
+        // otherwise determine its data region for the entire grid
+        if (enabled && cacheConfig.getCacheMode() != CacheMode.LOCAL)
+        {
+            LOGGER.warn("Cache {} is enabled for tiered placement, but only local caches can be placed based on their access temperature"
+                    + " - the {} cache remains in its regular data region", cacheName, cacheConfig.getCacheMode());
+            enabled = false;
+        }
+        return enabled;
+    }
+
     protected void processExpiryPolicy(final String cacheName, final CacheConfiguration<K, V> cacheConfig)
     {
         final int timeToLiveSeconds = Integer.parseInt(this.getProperty(cacheName, "ignite.timeToLiveSeconds", "timeToLiveSeconds", "0"));
@@ -540,7 +747,7 @@ public class CacheFactoryImpl<K extends Serializable, V extends Serializable> ex
 
         if (maxIdleSeconds > 0)
         {
-            policyFactories.add(AccessedExpiryPolicy.factoryOf(new Duration(TimeUnit.SECONDS, timeToLiveSeconds)));
+            policyFactories.add(AccessedExpiryPolicy.factoryOf(new Duration(TimeUnit.SECONDS, maxIdleSeconds)));
         }
 
         if (policyFactories.size() > 1)
@@ -579,14 +786,14 @@ public class CacheFactoryImpl<K extends Serializable, V extends Serializable> ex
                     : this.getProperty(cacheName, "ignite.heap.eviction-percentage", "heap.eviction-percentage", "eviction-percentage",
                             "0"));
 
-            final AbstractEvictionPolicyFactory<? extends EvictionPolicy<K, V>> evictPolicyFactory = this.createEvictionPolicy(maxMemory,
-                    maxItems, evictionPolicy, batchEvictionItems, evictionPercentage);
+            final AbstractEvictionPolicyFactory<? extends EvictionPolicy<K, V>> evictPolicyFactory = this.createEvictionPolicy(cacheName,
+                    maxMemory, maxItems, evictionPolicy, batchEvictionItems, evictionPercentage);
             cacheConfig.setEvictionPolicyFactory(evictPolicyFactory);
         }
     }
 
-    protected AbstractEvictionPolicyFactory<? extends EvictionPolicy<K, V>> createEvictionPolicy(final long maxMemory, int maxItems,
-            final String evictionPolicy, int batchEvictionItems, final int evictionPercentage)
+    protected AbstractEvictionPolicyFactory<? extends EvictionPolicy<K, V>> createEvictionPolicy(final String cacheName,
+            final long maxMemory, int maxItems, final String evictionPolicy, int batchEvictionItems, final int evictionPercentage)
     {
         AbstractEvictionPolicyFactory<? extends EvictionPolicy<K, V>> evictPolicyFactory;
         switch (evictionPolicy)
@@ -597,6 +804,18 @@ public class CacheFactoryImpl<K extends Serializable, V extends Serializable> ex
             case EVICTION_POLICY_LRU:
                 evictPolicyFactory = new LruEvictionPolicyFactory<>();
                 break;
+            case EVICTION_POLICY_TINY_LFU:
+            case EVICTION_POLICY_ALFRESCO_LFU:
+                evictPolicyFactory = new TinyLfuEvictionPolicyFactory<>();
+                break;
+            case EVICTION_POLICY_COST_AWARE:
+                final CostAwareEvictionPolicyFactory<K, V> costAwareFactory = new CostAwareEvictionPolicyFactory<>();
+                costAwareFactory.setLoadCost(Double
+                        .parseDouble(this.getProperty(cacheName, "ignite.heap.eviction.loadCost", "heap.eviction.loadCost", "1")));
+                costAwareFactory.setByteCost(Double
+                        .parseDouble(this.getProperty(cacheName, "ignite.heap.eviction.byteCost", "heap.eviction.byteCost", "0")));
+                evictPolicyFactory = costAwareFactory;
+                break;
             default:
                 throw new IllegalStateException("Unsupported eviction policy: " + evictionPolicy);
         }
@@ -656,7 +875,7 @@ public class CacheFactoryImpl<K extends Serializable, V extends Serializable> ex
             final int nearBatchEvictionPercentage = Integer.parseInt(this.getProperty(cacheName, "ignite.near.eviction-percentage",
                     "near.eviction-percentage", cacheBatchEvictionPercentage > 0 ? String.valueOf(cacheBatchEvictionPercentage) : "0"));
 
-            final AbstractEvictionPolicyFactory<? extends EvictionPolicy<K, V>> evictionPolicyFactory = this.createEvictionPolicy(
+            final AbstractEvictionPolicyFactory<? extends EvictionPolicy<K, V>> evictionPolicyFactory = this.createEvictionPolicy(cacheName,
                     nearMaxMemory, nearMaxItems, nearEvictionPolicy, nearBatchEvictionItems, nearBatchEvictionPercentage);
             nearCacheCfg.setNearEvictionPolicyFactory(evictionPolicyFactory);
         }
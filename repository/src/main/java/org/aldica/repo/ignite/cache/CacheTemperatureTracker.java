@@ -0,0 +1,415 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.aldica.common.ignite.lifecycle.IgniteInstanceLifecycleAware;
+import org.alfresco.util.EqualsHelper;
+import org.alfresco.util.PropertyCheck;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.cache.CacheMetrics;
+import org.apache.ignite.cache.CachePeekMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * Instances of this class track the access temperature of caches, i.e. the rate of read accesses per cached entry, in order to place caches
+ * with a long tail of rarely accessed entries into a swap-backed data region for cold data, while keeping caches with frequently accessed
+ * entries in regions purely backed by physical memory.
+ *
+ * As Ignite does not support moving caches between data regions while the data grid is running, the placement of caches is
+ * {@link #getPlacements() determined} during runtime, persisted in a placement file when the Ignite instance is shut down, and applied when
+ * the caches are created after the next startup. A cache switches between hot and cold placement only if its temperature crosses the
+ * threshold by a factor of two, to avoid flip-flopping between restarts.
+ *
+ * The access temperature and placement are determined per server. Only local caches may therefore be placed based on their temperature, as
+ * the data region of a distributed cache is determined by the server which first creates it, and applies to all servers in the data grid.
+ * Partitioned or replicated caches, such as the shared cache of node properties, are never tracked by this component.
+ *
+ * @author Axel Faust
+ */
+public class CacheTemperatureTracker implements InitializingBean, IgniteInstanceLifecycleAware
+{
+
+    /**
+     * The placement of a cache
+     *
+     * @author Axel Faust
+     */
+    public static enum Placement
+    {
+        /**
+         * The cache is frequently accessed and should be kept in its regular data region.
+         */
+        HOT,
+        /**
+         * The cache is rarely accessed and should be placed in the swap-backed data region for cold data.
+         */
+        COLD;
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheTemperatureTracker.class);
+
+    private static final double SMOOTHING_FACTOR = 0.3;
+
+    private static final int HYSTERESIS_FACTOR = 2;
+
+    protected final Map<String, TrackedCache> trackedCaches = new ConcurrentHashMap<>();
+
+    protected final Map<String, Placement> loadedPlacements = new HashMap<>();
+
+    protected String instanceName;
+
+    protected boolean enabled;
+
+    protected boolean applyPlacement;
+
+    protected String placementFilePath;
+
+    protected String coldRegionName;
+
+    protected double coldAccessRate = 0.005;
+
+    protected int minSamples = 10;
+
+    protected volatile Ignite instance;
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterPropertiesSet()
+    {
+        PropertyCheck.mandatory(this, "instanceName", this.instanceName);
+        if (this.enabled)
+        {
+            PropertyCheck.mandatory(this, "placementFilePath", this.placementFilePath);
+            PropertyCheck.mandatory(this, "coldRegionName", this.coldRegionName);
+
+            if (this.coldAccessRate <= 0)
+            {
+                throw new IllegalStateException("The coldAccessRate must be a positive value");
+            }
+
+            if (this.applyPlacement)
+            {
+                this.loadPlacementFile();
+            }
+        }
+    }
+
+    /**
+     * @param instanceName
+     *            the name of the Ignite instance to which the tracked caches are attached
+     */
+    public void setInstanceName(final String instanceName)
+    {
+        this.instanceName = instanceName;
+    }
+
+    /**
+     * @param enabled
+     *            the enabled to set
+     */
+    public void setEnabled(final boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param applyPlacement
+     *            {@code true} if the placement determined during runtime should be persisted on shutdown and applied on the next startup
+     */
+    public void setApplyPlacement(final boolean applyPlacement)
+    {
+        this.applyPlacement = applyPlacement;
+    }
+
+    /**
+     * @param placementFilePath
+     *            the path to the file in which to persist the placement of caches
+     */
+    public void setPlacementFilePath(final String placementFilePath)
+    {
+        this.placementFilePath = placementFilePath;
+    }
+
+    /**
+     * @param coldRegionName
+     *            the name of the swap-backed data region for cold caches
+     */
+    public void setColdRegionName(final String coldRegionName)
+    {
+        this.coldRegionName = coldRegionName;
+    }
+
+    /**
+     * @param coldAccessRate
+     *            the rate of read accesses per cached entry and second below which a cache is considered cold
+     */
+    public void setColdAccessRate(final double coldAccessRate)
+    {
+        this.coldAccessRate = coldAccessRate;
+    }
+
+    /**
+     * @param minSamples
+     *            the minimum number of samples required before the placement of a cache is changed
+     */
+    public void setMinSamples(final int minSamples)
+    {
+        this.minSamples = minSamples;
+    }
+
+    /**
+     * @return the name of the swap-backed data region for cold caches
+     */
+    public String getColdRegionName()
+    {
+        return this.coldRegionName;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void beforeInstanceStartup(final String instanceName)
+    {
+        // NO-OP
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterInstanceStartup(final String instanceName)
+    {
+        if (EqualsHelper.nullSafeEquals(this.instanceName, instanceName))
+        {
+            this.instance = Ignition.ignite(instanceName);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void beforeInstanceShutdown(final String instanceName)
+    {
+        if (EqualsHelper.nullSafeEquals(this.instanceName, instanceName))
+        {
+            if (this.enabled && this.applyPlacement)
+            {
+                this.writePlacementFile();
+            }
+            this.instance = null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterInstanceShutdown(final String instanceName)
+    {
+        // NO-OP
+    }
+
+    /**
+     * Registers a cache for which the access temperature should be tracked. This operation is a no-op if this component is not enabled.
+     *
+     * @param cacheName
+     *            the name of the cache
+     */
+    public void register(final String cacheName)
+    {
+        if (this.enabled)
+        {
+            this.trackedCaches.computeIfAbsent(cacheName,
+                    name -> new TrackedCache(name, this.loadedPlacements.getOrDefault(name, Placement.HOT)));
+        }
+    }
+
+    /**
+     * Checks whether a cache should be placed in the swap-backed data region for cold caches when it is being created.
+     *
+     * @param cacheName
+     *            the name of the cache
+     * @return {@code true} if the cache has been determined to be cold before the last shutdown and the placement is to be applied,
+     *         {@code false} otherwise
+     */
+    public boolean isColdPlacement(final String cacheName)
+    {
+        return this.enabled && this.applyPlacement && this.loadedPlacements.get(cacheName) == Placement.COLD;
+    }
+
+    /**
+     * Retrieves the currently determined placements of all tracked caches.
+     *
+     * @return the placements keyed by the name of the cache
+     */
+    public Map<String, Placement> getPlacements()
+    {
+        final Map<String, Placement> placements = new HashMap<>();
+        this.trackedCaches.values().forEach(trackedCache -> placements.put(trackedCache.cacheName, trackedCache.placement));
+        return Collections.unmodifiableMap(placements);
+    }
+
+    /**
+     * Samples the read accesses of all tracked caches and updates their temperature and placement. This operation is a no-op if this
+     * component is not enabled or the Ignite instance is not running.
+     */
+    public synchronized void sample()
+    {
+        final Ignite instance = this.instance;
+        if (this.enabled && instance != null)
+        {
+            final long now = System.currentTimeMillis();
+            this.trackedCaches.values().forEach(trackedCache -> {
+                final IgniteCache<?, ?> cache = instance.cache(trackedCache.cacheName);
+                if (cache != null)
+                {
+                    final CacheMetrics metrics = cache.localMetrics();
+                    // statistics may be disabled, in which case no temperature can be determined
+                    if (metrics.getCacheGets() > 0)
+                    {
+                        this.sample(trackedCache, metrics.getCacheGets(), cache.localSizeLong(CachePeekMode.PRIMARY, CachePeekMode.BACKUP),
+                                now);
+                    }
+                }
+            });
+        }
+    }
+
+    protected void sample(final TrackedCache trackedCache, final long gets, final long size, final long now)
+    {
+        if (trackedCache.lastSampleTime > 0 && now > trackedCache.lastSampleTime && gets >= trackedCache.lastGets)
+        {
+            final double seconds = (now - trackedCache.lastSampleTime) / 1000d;
+            final double accessRate = (gets - trackedCache.lastGets) / seconds / Math.max(1, size);
+
+            trackedCache.temperature = trackedCache.samples == 0 ? accessRate
+                    : SMOOTHING_FACTOR * accessRate + (1 - SMOOTHING_FACTOR) * trackedCache.temperature;
+            trackedCache.samples++;
+
+            if (trackedCache.samples >= this.minSamples)
+            {
+                Placement placement = trackedCache.placement;
+                if (placement == Placement.HOT && trackedCache.temperature < this.coldAccessRate)
+                {
+                    placement = Placement.COLD;
+                }
+                else if (placement == Placement.COLD && trackedCache.temperature > HYSTERESIS_FACTOR * this.coldAccessRate)
+                {
+                    placement = Placement.HOT;
+                }
+
+                if (placement != trackedCache.placement)
+                {
+                    LOGGER.info("Cache {} is now considered {} with {} read accesses per entry and second - placement applies on restart",
+                            trackedCache.cacheName, placement, trackedCache.temperature);
+                    trackedCache.placement = placement;
+                }
+            }
+        }
+
+        trackedCache.lastGets = gets;
+        trackedCache.lastSampleTime = now;
+    }
+
+    protected void loadPlacementFile()
+    {
+        final Path placementFile = Paths.get(this.placementFilePath);
+        if (Files.isRegularFile(placementFile))
+        {
+            final Properties placements = new Properties();
+            try (InputStream is = Files.newInputStream(placementFile))
+            {
+                placements.load(is);
+                placements.stringPropertyNames().forEach(cacheName -> {
+                    try
+                    {
+                        this.loadedPlacements.put(cacheName, Placement.valueOf(placements.getProperty(cacheName).trim()));
+                    }
+                    catch (final IllegalArgumentException iaex)
+                    {
+                        LOGGER.warn("Ignoring invalid placement {} of cache {}", placements.getProperty(cacheName), cacheName);
+                    }
+                });
+                LOGGER.info("Loaded placement of {} caches from {}", this.loadedPlacements.size(), placementFile);
+            }
+            catch (final IOException ioex)
+            {
+                LOGGER.warn("Failed to load placement of caches from {}", placementFile, ioex);
+            }
+        }
+    }
+
+    protected void writePlacementFile()
+    {
+        final Properties placements = new Properties();
+        // retain placements of caches which have not been created in this lifecycle
+        this.loadedPlacements.forEach((cacheName, placement) -> placements.setProperty(cacheName, placement.name()));
+        this.trackedCaches.values().forEach(trackedCache -> placements.setProperty(trackedCache.cacheName, trackedCache.placement.name()));
+
+        final Path placementFile = Paths.get(this.placementFilePath);
+        final Path tempFile = placementFile.resolveSibling(placementFile.getFileName() + ".tmp");
+        try
+        {
+            Files.createDirectories(placementFile.toAbsolutePath().getParent());
+            try (OutputStream os = Files.newOutputStream(tempFile))
+            {
+                placements.store(os, "Cache placement determined by access temperature");
+            }
+            Files.move(tempFile, placementFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (final IOException ioex)
+        {
+            LOGGER.warn("Failed to write placement of caches to {}", placementFile, ioex);
+        }
+    }
+
+    /**
+     * Instances of this class hold the temperature state of a single tracked cache.
+     *
+     * @author Axel Faust
+     */
+    protected static class TrackedCache
+    {
+
+        protected final String cacheName;
+
+        protected Placement placement;
+
+        protected long lastGets;
+
+        protected long lastSampleTime;
+
+        protected double temperature;
+
+        protected int samples;
+
+        protected TrackedCache(final String cacheName, final Placement placement)
+        {
+            this.cacheName = cacheName;
+            this.placement = placement;
+        }
+    }
+}
@@ -0,0 +1,522 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.aldica.common.ignite.cache.CompressedValue;
+import org.aldica.common.ignite.lifecycle.IgniteInstanceLifecycleAware;
+import org.alfresco.util.EqualsHelper;
+import org.alfresco.util.PropertyCheck;
+import org.apache.ignite.IgniteCheckedException;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.configuration.DataRegionConfiguration;
+import org.apache.ignite.configuration.DataStorageConfiguration;
+import org.apache.ignite.marshaller.Marshaller;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * Instances of this class compress the values of caches placed in specific data regions before they are stored in off-heap memory. Ignite
+ * does not provide any means to compress memory pages of data regions not backed by native persistence, including pages swapped to disk
+ * via memory-mapped files, so compressing the marshalled values is the only way to fit more entries into the same amount of memory / swap
+ * space. This trades CPU time on every read and write for space, and is thus only sensible for regions holding rarely accessed data with
+ * highly compressible values, e.g. the swap-backed region for cold caches.
+ *
+ * Values are only stored in compressed form if their marshalled form exceeds a minimum size and compression saves a significant amount of
+ * space. {@link #getMetrics() Metrics} on the compression ratio and CPU time are kept per data region.
+ *
+ * {@link Deflater} / {@link Inflater} instances hold native memory until they are explicitly ended. Instead of binding them to threads,
+ * which would leak native memory for every pooled thread that ever (de)compressed a value, instances are kept in bounded pools, ended when
+ * a pool is full, and all pooled instances are ended when the Ignite instance is shut down.
+ *
+ * @author Axel Faust
+ */
+public class CacheValueCompressor implements InitializingBean, IgniteInstanceLifecycleAware
+{
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheValueCompressor.class);
+
+    // compressed form must save at least 1/8 of the marshalled form to be worth the decompression cost on reads
+    private static final int MIN_SAVINGS_DIVISOR = 8;
+
+    private static final int MAX_POOLED_CODECS = Runtime.getRuntime().availableProcessors() * 2;
+
+    protected final Map<String, RegionCompressionMetrics> metrics = new ConcurrentHashMap<>();
+
+    protected final Set<String> regionNames = new HashSet<>();
+
+    protected final BlockingQueue<Deflater> deflaters = new ArrayBlockingQueue<>(MAX_POOLED_CODECS);
+
+    protected final BlockingQueue<Inflater> inflaters = new ArrayBlockingQueue<>(MAX_POOLED_CODECS);
+
+    protected String instanceName;
+
+    protected boolean enabled;
+
+    protected int minValueSize = 512;
+
+    protected int compressionLevel = Deflater.BEST_SPEED;
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterPropertiesSet()
+    {
+        PropertyCheck.mandatory(this, "instanceName", this.instanceName);
+
+        if (this.minValueSize < 0)
+        {
+            throw new IllegalStateException("The minValueSize must not be negative");
+        }
+
+        if (this.compressionLevel < Deflater.BEST_SPEED || this.compressionLevel > Deflater.BEST_COMPRESSION)
+        {
+            throw new IllegalStateException("The compressionLevel must be a value between " + Deflater.BEST_SPEED + " and "
+                    + Deflater.BEST_COMPRESSION);
+        }
+    }
+
+    /**
+     * @param instanceName
+     *            the name of the Ignite instance to which the caches with compressed values are attached
+     */
+    public void setInstanceName(final String instanceName)
+    {
+        this.instanceName = instanceName;
+    }
+
+    /**
+     * @return the name of the Ignite instance to which the caches with compressed values are attached
+     */
+    public String getInstanceName()
+    {
+        return this.instanceName;
+    }
+
+    /**
+     * @param enabled
+     *            the enabled to set
+     */
+    public void setEnabled(final boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param regionNames
+     *            the comma-separated names of the data regions in which cache values should be compressed
+     */
+    public void setRegionNames(final String regionNames)
+    {
+        this.regionNames.clear();
+        if (regionNames != null)
+        {
+            Arrays.stream(regionNames.split(",")).map(String::trim).filter(name -> !name.isEmpty()).forEach(this.regionNames::add);
+        }
+    }
+
+    /**
+     * @param minValueSize
+     *            the minimum size (in bytes) of the marshalled form of a value for it to be compressed
+     */
+    public void setMinValueSize(final int minValueSize)
+    {
+        this.minValueSize = minValueSize;
+    }
+
+    /**
+     * @param compressionLevel
+     *            the level of compression between {@code 1} (fastest) and {@code 9} (best compression)
+     */
+    public void setCompressionLevel(final int compressionLevel)
+    {
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void beforeInstanceStartup(final String instanceName)
+    {
+        // NO-OP
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterInstanceStartup(final String instanceName)
+    {
+        if (this.enabled && EqualsHelper.nullSafeEquals(this.instanceName, instanceName))
+        {
+            // regions may only be defined conditionally, e.g. the cold region for tiered placement
+            final Set<String> definedRegionNames = new HashSet<>();
+            final DataStorageConfiguration storageConfiguration = Ignition.ignite(instanceName).configuration()
+                    .getDataStorageConfiguration();
+            if (storageConfiguration != null && storageConfiguration.getDataRegionConfigurations() != null)
+            {
+                final String regionPrefix = instanceName + ".region.";
+                Arrays.stream(storageConfiguration.getDataRegionConfigurations()).map(DataRegionConfiguration::getName)
+                        .filter(name -> name != null && name.startsWith(regionPrefix))
+                        .forEach(name -> definedRegionNames.add(name.substring(regionPrefix.length())));
+            }
+
+            for (final String regionName : this.regionNames)
+            {
+                if (!definedRegionNames.contains(regionName))
+                {
+                    LOGGER.warn("Compression is enabled for data region {} which is not defined in Ignite instance {}"
+                            + " - no values will be compressed in that region", regionName, instanceName);
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void beforeInstanceShutdown(final String instanceName)
+    {
+        // NO-OP
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterInstanceShutdown(final String instanceName)
+    {
+        if (EqualsHelper.nullSafeEquals(this.instanceName, instanceName))
+        {
+            // release native memory of all pooled instances - instances still in use are ended when they are returned to a full pool
+            final List<Deflater> deflaters = new ArrayList<>();
+            this.deflaters.drainTo(deflaters);
+            deflaters.forEach(Deflater::end);
+
+            final List<Inflater> inflaters = new ArrayList<>();
+            this.inflaters.drainTo(inflaters);
+            inflaters.forEach(Inflater::end);
+        }
+    }
+
+    /**
+     * Checks whether values of caches placed in a specific data region should be compressed.
+     *
+     * @param regionName
+     *            the name of the data region as configured in the aldica module, i.e. without the prefix of the Ignite instance
+     * @return {@code true} if values should be compressed, {@code false} otherwise
+     */
+    public boolean isCompressedRegion(final String regionName)
+    {
+        return this.enabled && this.regionNames.contains(regionName);
+    }
+
+    /**
+     * Retrieves a handle for compressing / decompressing values of a cache placed in a specific data region.
+     *
+     * @param effectiveRegionName
+     *            the effective name of the data region in the Ignite instance
+     * @param marshaller
+     *            the marshaller to use to convert values into their binary form before compression
+     * @param classLoader
+     *            the class loader to use when unmarshalling decompressed values
+     * @return the compression handle
+     */
+    public RegionValueCompression forRegion(final String effectiveRegionName, final Marshaller marshaller, final ClassLoader classLoader)
+    {
+        final RegionCompressionMetrics regionMetrics = this.metrics.computeIfAbsent(effectiveRegionName, RegionCompressionMetrics::new);
+        return new RegionValueCompression(marshaller, classLoader, regionMetrics);
+    }
+
+    /**
+     * Retrieves the compression metrics for all data regions with caches for which values are compressed.
+     *
+     * @return the metrics keyed by the effective name of the data region
+     */
+    public Map<String, RegionCompressionMetrics> getMetrics()
+    {
+        return Collections.unmodifiableMap(this.metrics);
+    }
+
+    protected Deflater acquireDeflater()
+    {
+        final Deflater deflater = this.deflaters.poll();
+        return deflater != null ? deflater : new Deflater(this.compressionLevel);
+    }
+
+    protected void releaseDeflater(final Deflater deflater)
+    {
+        deflater.reset();
+        if (!this.deflaters.offer(deflater))
+        {
+            deflater.end();
+        }
+    }
+
+    protected Inflater acquireInflater()
+    {
+        final Inflater inflater = this.inflaters.poll();
+        return inflater != null ? inflater : new Inflater();
+    }
+
+    protected void releaseInflater(final Inflater inflater)
+    {
+        inflater.reset();
+        if (!this.inflaters.offer(inflater))
+        {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Instances of this class compress / decompress the values of caches placed in a specific data region.
+     *
+     * @author Axel Faust
+     */
+    public class RegionValueCompression
+    {
+
+        private final Marshaller marshaller;
+
+        private final ClassLoader classLoader;
+
+        private final RegionCompressionMetrics regionMetrics;
+
+        protected RegionValueCompression(final Marshaller marshaller, final ClassLoader classLoader,
+                final RegionCompressionMetrics regionMetrics)
+        {
+            this.marshaller = marshaller;
+            this.classLoader = classLoader;
+            this.regionMetrics = regionMetrics;
+        }
+
+        /**
+         * Compresses a value before it is stored in a cache.
+         *
+         * @param value
+         *            the value to compress
+         * @return the {@link CompressedValue compressed value}, or the value itself if it is too small or cannot be compressed
+         *         sufficiently
+         */
+        public Object compress(final Object value)
+        {
+            Object result = value;
+            if (value != null)
+            {
+                final long start = System.nanoTime();
+                try
+                {
+                    final byte[] marshalled = this.marshaller.marshal(value);
+                    if (marshalled.length >= CacheValueCompressor.this.minValueSize)
+                    {
+                        final Deflater deflater = CacheValueCompressor.this.acquireDeflater();
+                        try
+                        {
+                            deflater.setInput(marshalled);
+                            deflater.finish();
+
+                            final byte[] buffer = new byte[marshalled.length - marshalled.length / MIN_SAVINGS_DIVISOR];
+                            final int compressedLength = deflater.deflate(buffer);
+                            if (deflater.finished())
+                            {
+                                result = new CompressedValue(Arrays.copyOf(buffer, compressedLength), marshalled.length);
+                                this.regionMetrics.compressed(marshalled.length, compressedLength, System.nanoTime() - start);
+                            }
+                        }
+                        finally
+                        {
+                            CacheValueCompressor.this.releaseDeflater(deflater);
+                        }
+                    }
+
+                    if (result == value)
+                    {
+                        this.regionMetrics.uncompressed(System.nanoTime() - start);
+                    }
+                }
+                catch (final IgniteCheckedException icex)
+                {
+                    LOGGER.debug("Failed to marshal value of type {} for compression - storing it uncompressed", value.getClass(), icex);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Decompresses a value retrieved from a cache.
+         *
+         * @param value
+         *            the value to decompress
+         * @return the decompressed value, or the value itself if it is not a {@link CompressedValue compressed value}
+         */
+        public Object decompress(final Object value)
+        {
+            Object result = value;
+            if (value instanceof CompressedValue)
+            {
+                final long start = System.nanoTime();
+                final CompressedValue compressedValue = (CompressedValue) value;
+                final Inflater inflater = CacheValueCompressor.this.acquireInflater();
+                final byte[] marshalled = new byte[compressedValue.getUncompressedLength()];
+                try
+                {
+                    inflater.setInput(compressedValue.getData());
+                    final int length = inflater.inflate(marshalled);
+                    if (!inflater.finished() || length != marshalled.length)
+                    {
+                        throw new IllegalStateException("Compressed value is truncated or corrupted");
+                    }
+                }
+                catch (final DataFormatException dfex)
+                {
+                    throw new IllegalStateException("Failed to decompress cache value", dfex);
+                }
+                finally
+                {
+                    CacheValueCompressor.this.releaseInflater(inflater);
+                }
+
+                try
+                {
+                    result = this.marshaller.unmarshal(marshalled, this.classLoader);
+                }
+                catch (final IgniteCheckedException icex)
+                {
+                    throw new IllegalStateException("Failed to decompress cache value", icex);
+                }
+                this.regionMetrics.decompressed(System.nanoTime() - start);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Instances of this class hold the compression metrics of a single data region.
+     *
+     * @author Axel Faust
+     */
+    public static class RegionCompressionMetrics
+    {
+
+        private final String regionName;
+
+        private final LongAdder compressedValues = new LongAdder();
+
+        private final LongAdder uncompressedValues = new LongAdder();
+
+        private final LongAdder decompressedValues = new LongAdder();
+
+        private final LongAdder uncompressedBytes = new LongAdder();
+
+        private final LongAdder compressedBytes = new LongAdder();
+
+        private final LongAdder compressionNanos = new LongAdder();
+
+        private final LongAdder decompressionNanos = new LongAdder();
+
+        protected RegionCompressionMetrics(final String regionName)
+        {
+            this.regionName = regionName;
+        }
+
+        protected void compressed(final int uncompressedLength, final int compressedLength, final long nanos)
+        {
+            this.compressedValues.increment();
+            this.uncompressedBytes.add(uncompressedLength);
+            this.compressedBytes.add(compressedLength);
+            this.compressionNanos.add(nanos);
+        }
+
+        protected void uncompressed(final long nanos)
+        {
+            this.uncompressedValues.increment();
+            this.compressionNanos.add(nanos);
+        }
+
+        protected void decompressed(final long nanos)
+        {
+            this.decompressedValues.increment();
+            this.decompressionNanos.add(nanos);
+        }
+
+        /**
+         * @return the effective name of the data region
+         */
+        public String getRegionName()
+        {
+            return this.regionName;
+        }
+
+        /**
+         * @return the number of values stored in compressed form
+         */
+        public long getCompressedValues()
+        {
+            return this.compressedValues.sum();
+        }
+
+        /**
+         * @return the number of values stored in uncompressed form as they were too small or could not be compressed sufficiently
+         */
+        public long getUncompressedValues()
+        {
+            return this.uncompressedValues.sum();
+        }
+
+        /**
+         * @return the number of values decompressed
+         */
+        public long getDecompressedValues()
+        {
+            return this.decompressedValues.sum();
+        }
+
+        /**
+         * @return the ratio of the compressed size to the uncompressed size of all values stored in compressed form, or {@code 1} if no
+         *         value has been compressed yet
+         */
+        public double getCompressionRatio()
+        {
+            final long uncompressed = this.uncompressedBytes.sum();
+            return uncompressed != 0 ? ((double) this.compressedBytes.sum()) / uncompressed : 1;
+        }
+
+        /**
+         * @return the average CPU time (in microseconds) spent on compressing a value, including values stored in uncompressed form
+         */
+        public double getAverageCompressionMicros()
+        {
+            final long values = this.compressedValues.sum() + this.uncompressedValues.sum();
+            return values != 0 ? this.compressionNanos.sum() / 1000d / values : 0;
+        }
+
+        /**
+         * @return the average CPU time (in microseconds) spent on decompressing a value
+         */
+        public double getAverageDecompressionMicros()
+        {
+            final long values = this.decompressedValues.sum();
+            return values != 0 ? this.decompressionNanos.sum() / 1000d / values : 0;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.cache;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Instances of this interface are caches that are capable of retrieving the values of multiple keys in a single operation, e.g. to avoid
+ * individual network round trips for each key.
+ *
+ * @param <K>
+ *            the type of keys
+ * @param <V>
+ *            the type of values
+ * @author Axel Faust
+ */
+public interface CacheWithBulkRetrieval<K extends Serializable, V>
+{
+
+    /**
+     * Retrieves the values for a set of keys.
+     *
+     * @param keys
+     *            the keys for which to retrieve values
+     * @return the values mapped to their keys - keys without a value in this cache will not be contained in the result
+     */
+    Map<K, V> getAll(Set<K> keys);
+
+}
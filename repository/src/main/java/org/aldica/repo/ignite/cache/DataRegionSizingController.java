@@ -0,0 +1,621 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.aldica.common.ignite.lifecycle.IgniteInstanceLifecycleAware;
+import org.alfresco.util.EqualsHelper;
+import org.alfresco.util.PropertyCheck;
+import org.apache.ignite.DataRegionMetrics;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.configuration.DataRegionConfiguration;
+import org.apache.ignite.configuration.DataStorageConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * Instances of this class {@link #evaluate() evaluate} the {@link DataRegionMetrics metrics} of the custom data regions emitted by this
+ * module and derive recommendations for their maximum sizes, so that memory is shifted from under-used regions to regions which have to
+ * evict pages. All recommendations are kept within configured global bounds, i.e. the sum of all recommended sizes never exceeds the
+ * maximum total size, which defaults to the sum of the configured maximum sizes.
+ *
+ * Ignite does not support changing the size of a data region once it has been started. Recommendations can therefore only be applied by
+ * storing them in a sizing file on shutdown, which is read by the data region bean definition emitter on the next startup of the
+ * Repository. Each recommendation is stored together with the configured maximum size it was derived from, so that it is discarded instead
+ * of applied if the configuration of the data region has been changed in the meantime. Recommendations to shrink a data region are only
+ * made after a {@link #setMinSamples(int) minimum number of evaluations}, so that a short-lived instance does not release memory from a
+ * data region just because it has not yet been filled.
+ *
+ * @author Axel Faust
+ */
+public class DataRegionSizingController implements InitializingBean, IgniteInstanceLifecycleAware
+{
+
+    /**
+     * The reasons for a sizing recommendation.
+     *
+     * @author Axel Faust
+     */
+    public static enum SizingReason
+    {
+        /**
+         * The data region is evicting pages, or is about to, and would benefit from additional memory.
+         */
+        EVICTING,
+        /**
+         * The data region has never used a significant part of its memory and can release some of it.
+         */
+        UNDERUSED,
+        /**
+         * The size of the data region fits its usage.
+         */
+        BALANCED;
+    }
+
+    /**
+     * Instances of this class represent the sizing recommendation for an individual data region.
+     *
+     * @author Axel Faust
+     */
+    public static class SizingDecision
+    {
+
+        private final String regionName;
+
+        private final long configuredMaxSize;
+
+        private final long baseMaxSize;
+
+        private final long peakUsedSize;
+
+        private final float allocationRate;
+
+        private final float evictionRate;
+
+        private final float pagesFillFactor;
+
+        private final SizingReason reason;
+
+        private long recommendedMaxSize;
+
+        protected SizingDecision(final String regionName, final long configuredMaxSize, final long baseMaxSize, final long peakUsedSize,
+                final float allocationRate, final float evictionRate, final float pagesFillFactor, final SizingReason reason,
+                final long recommendedMaxSize)
+        {
+            this.regionName = regionName;
+            this.configuredMaxSize = configuredMaxSize;
+            this.baseMaxSize = baseMaxSize;
+            this.peakUsedSize = peakUsedSize;
+            this.allocationRate = allocationRate;
+            this.evictionRate = evictionRate;
+            this.pagesFillFactor = pagesFillFactor;
+            this.reason = reason;
+            this.recommendedMaxSize = recommendedMaxSize;
+        }
+
+        /**
+         * @return the regionName
+         */
+        public String getRegionName()
+        {
+            return this.regionName;
+        }
+
+        /**
+         * @return the configuredMaxSize
+         */
+        public long getConfiguredMaxSize()
+        {
+            return this.configuredMaxSize;
+        }
+
+        /**
+         * @return the maximum size configured for the data region, excluding any previously applied recommendation
+         */
+        public long getBaseMaxSize()
+        {
+            return this.baseMaxSize;
+        }
+
+        /**
+         * @return the peakUsedSize
+         */
+        public long getPeakUsedSize()
+        {
+            return this.peakUsedSize;
+        }
+
+        /**
+         * @return the allocationRate
+         */
+        public float getAllocationRate()
+        {
+            return this.allocationRate;
+        }
+
+        /**
+         * @return the evictionRate
+         */
+        public float getEvictionRate()
+        {
+            return this.evictionRate;
+        }
+
+        /**
+         * @return the pagesFillFactor
+         */
+        public float getPagesFillFactor()
+        {
+            return this.pagesFillFactor;
+        }
+
+        /**
+         * @return the reason
+         */
+        public SizingReason getReason()
+        {
+            return this.reason;
+        }
+
+        /**
+         * @return the recommendedMaxSize
+         */
+        public long getRecommendedMaxSize()
+        {
+            return this.recommendedMaxSize;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString()
+        {
+            final StringBuilder builder = new StringBuilder();
+            builder.append("SizingDecision [");
+            builder.append("regionName=").append(this.regionName);
+            builder.append(", configuredMaxSize=").append(this.configuredMaxSize);
+            builder.append(", baseMaxSize=").append(this.baseMaxSize);
+            builder.append(", peakUsedSize=").append(this.peakUsedSize);
+            builder.append(", evictionRate=").append(this.evictionRate);
+            builder.append(", reason=").append(this.reason);
+            builder.append(", recommendedMaxSize=").append(this.recommendedMaxSize);
+            builder.append("]");
+            return builder.toString();
+        }
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DataRegionSizingController.class);
+
+    private static final String MAX_SIZE_SUFFIX = ".maxSize";
+
+    private static final String BASE_MAX_SIZE_SUFFIX = ".baseMaxSize";
+
+    protected final Map<String, Long> peakUsedSizes = new ConcurrentHashMap<>();
+
+    protected final Map<String, Long> baseMaxSizes = new ConcurrentHashMap<>();
+
+    protected String instanceName;
+
+    protected boolean enabled;
+
+    protected boolean applyRecommendations;
+
+    protected String sizingFilePath;
+
+    protected long minRegionSize = 16 * 1024 * 1024;
+
+    protected long maxTotalSize;
+
+    protected double growthFactor = 1.25;
+
+    protected double shrinkUsageThreshold = 0.5;
+
+    protected double targetUsage = 0.75;
+
+    protected int minSamples = 12;
+
+    protected int samples;
+
+    protected volatile Ignite instance;
+
+    protected volatile List<SizingDecision> decisions = Collections.emptyList();
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterPropertiesSet()
+    {
+        PropertyCheck.mandatory(this, "instanceName", this.instanceName);
+        if (this.applyRecommendations)
+        {
+            PropertyCheck.mandatory(this, "sizingFilePath", this.sizingFilePath);
+        }
+
+        if (this.growthFactor < 1)
+        {
+            throw new IllegalStateException("The growthFactor must not be lower than 1: " + this.growthFactor);
+        }
+        if (this.shrinkUsageThreshold <= 0 || this.shrinkUsageThreshold >= this.targetUsage || this.targetUsage > 1)
+        {
+            throw new IllegalStateException(
+                    "The shrinkUsageThreshold must be positive and lower than the targetUsage, which must be at most 1: "
+                            + this.shrinkUsageThreshold + " / " + this.targetUsage);
+        }
+    }
+
+    /**
+     * @param instanceName
+     *            the name of the Ignite instance for which to evaluate data regions
+     */
+    public void setInstanceName(final String instanceName)
+    {
+        this.instanceName = instanceName;
+    }
+
+    /**
+     * @return the name of the Ignite instance for which data regions are evaluated
+     */
+    public String getInstanceName()
+    {
+        return this.instanceName;
+    }
+
+    /**
+     * @param enabled
+     *            the enabled to set
+     */
+    public void setEnabled(final boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param applyRecommendations
+     *            {@code true} if recommendations should be stored in the sizing file on shutdown to be applied on the next startup
+     */
+    public void setApplyRecommendations(final boolean applyRecommendations)
+    {
+        this.applyRecommendations = applyRecommendations;
+    }
+
+    /**
+     * @param sizingFilePath
+     *            the path to the sizing file in which to store the recommended sizes
+     */
+    public void setSizingFilePath(final String sizingFilePath)
+    {
+        this.sizingFilePath = sizingFilePath;
+    }
+
+    /**
+     * @param minRegionSize
+     *            the minimum size (in bytes) to recommend for any data region
+     */
+    public void setMinRegionSize(final long minRegionSize)
+    {
+        this.minRegionSize = minRegionSize;
+    }
+
+    /**
+     * @param maxTotalSize
+     *            the maximum total size (in bytes) of all recommendations - {@code 0} to use the sum of the configured sizes
+     */
+    public void setMaxTotalSize(final long maxTotalSize)
+    {
+        this.maxTotalSize = maxTotalSize;
+    }
+
+    /**
+     * @param growthFactor
+     *            the factor by which to grow the size of data regions evicting pages
+     */
+    public void setGrowthFactor(final double growthFactor)
+    {
+        this.growthFactor = growthFactor;
+    }
+
+    /**
+     * @param shrinkUsageThreshold
+     *            the ratio of peak usage to size below which a data region is considered under-used
+     */
+    public void setShrinkUsageThreshold(final double shrinkUsageThreshold)
+    {
+        this.shrinkUsageThreshold = shrinkUsageThreshold;
+    }
+
+    /**
+     * @param targetUsage
+     *            the ratio of peak usage to size to aim for when shrinking an under-used data region
+     */
+    public void setTargetUsage(final double targetUsage)
+    {
+        this.targetUsage = targetUsage;
+    }
+
+    /**
+     * @param minSamples
+     *            the minimum number of evaluations since startup before a data region may be recommended to shrink
+     */
+    public void setMinSamples(final int minSamples)
+    {
+        this.minSamples = minSamples;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void beforeInstanceStartup(final String instanceName)
+    {
+        // NO-OP
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void afterInstanceStartup(final String instanceName)
+    {
+        if (this.enabled && EqualsHelper.nullSafeEquals(this.instanceName, instanceName))
+        {
+            this.peakUsedSizes.clear();
+            this.samples = 0;
+            this.instance = Ignition.ignite(instanceName);
+            this.readSizingFile();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void beforeInstanceShutdown(final String instanceName)
+    {
+        if (this.enabled && EqualsHelper.nullSafeEquals(this.instanceName, instanceName) && this.instance != null)
+        {
+            // final evaluation to account for the most recent peak usage
+            try
+            {
+                this.evaluate();
+            }
+            catch (final RuntimeException rex)
+            {
+                LOGGER.warn("Failed to evaluate data region sizing of grid {}", this.instanceName, rex);
+            }
+
+            if (this.applyRecommendations)
+            {
+                this.writeSizingFile(this.decisions);
+            }
+
+            this.instance = null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterInstanceShutdown(final String instanceName)
+    {
+        // NO-OP
+    }
+
+    /**
+     * Retrieves the sizing recommendations of the most recent evaluation.
+     *
+     * @return the recommendations, mapped by the full name of their data region
+     */
+    public Map<String, SizingDecision> getDecisions()
+    {
+        final Map<String, SizingDecision> decisions = new HashMap<>();
+        this.decisions.forEach(decision -> decisions.put(decision.getRegionName(), decision));
+        return decisions;
+    }
+
+    /**
+     * Evaluates the current metrics of all custom data regions and updates the sizing recommendations. This operation is a no-op if the
+     * Ignite instance is not running.
+     */
+    public synchronized void evaluate()
+    {
+        final Ignite instance = this.instance;
+        if (instance != null)
+        {
+            this.samples++;
+
+            final DataStorageConfiguration storageConfiguration = instance.configuration().getDataStorageConfiguration();
+            final Map<String, DataRegionConfiguration> regionConfigurations = new HashMap<>();
+            final String regionNamePrefix = this.instanceName + ".region.";
+            if (storageConfiguration.getDataRegionConfigurations() != null)
+            {
+                for (final DataRegionConfiguration regionConfiguration : storageConfiguration.getDataRegionConfigurations())
+                {
+                    // only regions emitted by this module can be resized via the sizing file
+                    if (regionConfiguration.getName().startsWith(regionNamePrefix))
+                    {
+                        regionConfigurations.put(regionConfiguration.getName(), regionConfiguration);
+                    }
+                }
+            }
+
+            final List<SizingDecision> decisions = new ArrayList<>();
+            for (final DataRegionMetrics metrics : instance.dataRegionMetrics())
+            {
+                final DataRegionConfiguration regionConfiguration = regionConfigurations.get(metrics.getName());
+                if (regionConfiguration != null)
+                {
+                    decisions.add(this.evaluateRegion(regionConfiguration, metrics, storageConfiguration.getPageSize()));
+                }
+            }
+
+            this.applyGlobalBounds(decisions);
+
+            final Map<String, SizingDecision> previousDecisions = this.getDecisions();
+            decisions.forEach(decision -> {
+                final SizingDecision previousDecision = previousDecisions.get(decision.getRegionName());
+                if (previousDecision == null || previousDecision.getRecommendedMaxSize() != decision.getRecommendedMaxSize())
+                {
+                    LOGGER.info("Recommending maximum size {} for data region {} ({}, peak used size {} of {})",
+                            decision.getRecommendedMaxSize(), decision.getRegionName(), decision.getReason(), decision.getPeakUsedSize(),
+                            decision.getConfiguredMaxSize());
+                }
+            });
+            this.decisions = Collections.unmodifiableList(decisions);
+        }
+    }
+
+    protected SizingDecision evaluateRegion(final DataRegionConfiguration regionConfiguration, final DataRegionMetrics metrics,
+            final int storagePageSize)
+    {
+        final String regionName = regionConfiguration.getName();
+        final long maxSize = regionConfiguration.getMaxSize();
+        final int pageSize = metrics.getPageSize() != 0 ? metrics.getPageSize() : storagePageSize;
+        final long usedSize = metrics.getTotalUsedPages() * pageSize;
+        final long peakUsedSize = this.peakUsedSizes.merge(regionName, usedSize, Math::max);
+        final float evictionRate = metrics.getEvictionRate();
+
+        // the effective maximum size may be a previously applied recommendation based on an unchanged configured size
+        final Long appliedBaseMaxSize = this.baseMaxSizes.get(regionName);
+        final long baseMaxSize = appliedBaseMaxSize != null ? appliedBaseMaxSize.longValue() : maxSize;
+
+        final SizingReason reason;
+        long recommendedMaxSize;
+        if (evictionRate > 0 || usedSize >= maxSize * regionConfiguration.getEvictionThreshold())
+        {
+            reason = SizingReason.EVICTING;
+            recommendedMaxSize = Math.round(maxSize * this.growthFactor);
+        }
+        else if (peakUsedSize < maxSize * this.shrinkUsageThreshold && this.samples >= this.minSamples)
+        {
+            reason = SizingReason.UNDERUSED;
+            recommendedMaxSize = Math.round(peakUsedSize / this.targetUsage);
+        }
+        else
+        {
+            reason = SizingReason.BALANCED;
+            recommendedMaxSize = maxSize;
+        }
+        recommendedMaxSize = Math.max(recommendedMaxSize, Math.max(this.minRegionSize, regionConfiguration.getInitialSize()));
+
+        return new SizingDecision(regionName, maxSize, baseMaxSize, peakUsedSize, metrics.getAllocationRate(), evictionRate,
+                metrics.getPagesFillFactor(), reason, recommendedMaxSize);
+    }
+
+    protected void applyGlobalBounds(final Collection<SizingDecision> decisions)
+    {
+        long configuredTotal = 0;
+        long retainedTotal = 0;
+        long growthTotal = 0;
+        for (final SizingDecision decision : decisions)
+        {
+            configuredTotal += decision.getConfiguredMaxSize();
+            retainedTotal += Math.min(decision.getConfiguredMaxSize(), decision.getRecommendedMaxSize());
+            growthTotal += Math.max(0, decision.getRecommendedMaxSize() - decision.getConfiguredMaxSize());
+        }
+
+        final long effectiveMaxTotalSize = this.maxTotalSize > 0 ? this.maxTotalSize : configuredTotal;
+        final long availableGrowth = Math.max(0, effectiveMaxTotalSize - retainedTotal);
+        if (growthTotal > availableGrowth)
+        {
+            // growth can only be funded by memory released from other regions
+            final double growthRatio = (double) availableGrowth / growthTotal;
+            for (final SizingDecision decision : decisions)
+            {
+                final long growth = decision.getRecommendedMaxSize() - decision.getConfiguredMaxSize();
+                if (growth > 0)
+                {
+                    decision.recommendedMaxSize = decision.getConfiguredMaxSize() + (long) Math.floor(growth * growthRatio);
+                }
+            }
+        }
+    }
+
+    protected void readSizingFile()
+    {
+        this.baseMaxSizes.clear();
+
+        final Path sizingFile = this.applyRecommendations && this.sizingFilePath != null ? Paths.get(this.sizingFilePath) : null;
+        if (sizingFile != null && Files.isRegularFile(sizingFile))
+        {
+            final Properties sizes = new Properties();
+            try (InputStream is = Files.newInputStream(sizingFile))
+            {
+                sizes.load(is);
+            }
+            catch (final IOException ioex)
+            {
+                LOGGER.warn("Failed to read recommended data region sizes for grid {}", this.instanceName, ioex);
+            }
+
+            final DataRegionConfiguration[] regionConfigurations = this.instance.configuration().getDataStorageConfiguration()
+                    .getDataRegionConfigurations();
+            if (regionConfigurations != null)
+            {
+                final String regionNamePrefix = this.instanceName + ".region.";
+                for (final DataRegionConfiguration regionConfiguration : regionConfigurations)
+                {
+                    final String regionName = regionConfiguration.getName();
+                    if (regionName.startsWith(regionNamePrefix))
+                    {
+                        final String dataRegionName = regionName.substring(regionNamePrefix.length());
+                        final String maxSize = sizes.getProperty(dataRegionName + MAX_SIZE_SUFFIX);
+                        final String baseMaxSize = sizes.getProperty(dataRegionName + BASE_MAX_SIZE_SUFFIX);
+
+                        // recommendation has been applied on startup, so subsequent recommendations continue to be based on its base size
+                        if (maxSize != null && baseMaxSize != null && Long.parseLong(maxSize.trim()) == regionConfiguration.getMaxSize())
+                        {
+                            this.baseMaxSizes.put(regionName, Long.valueOf(baseMaxSize.trim()));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    protected void writeSizingFile(final Collection<SizingDecision> decisions)
+    {
+        final String regionNamePrefix = this.instanceName + ".region.";
+        final Properties sizes = new Properties();
+        decisions.forEach(decision -> {
+            final String dataRegionName = decision.getRegionName().substring(regionNamePrefix.length());
+            sizes.setProperty(dataRegionName + MAX_SIZE_SUFFIX, String.valueOf(decision.getRecommendedMaxSize()));
+            sizes.setProperty(dataRegionName + BASE_MAX_SIZE_SUFFIX, String.valueOf(decision.getBaseMaxSize()));
+        });
+
+        final Path sizingFile = Paths.get(this.sizingFilePath);
+        try
+        {
+            Files.createDirectories(sizingFile.toAbsolutePath().getParent());
+            try (OutputStream os = Files.newOutputStream(sizingFile))
+            {
+                sizes.store(os, "Recommended data region sizes for grid " + this.instanceName);
+            }
+            LOGGER.info("Stored recommended data region sizes {} for next startup of grid {}", sizes, this.instanceName);
+        }
+        catch (final IOException ioex)
+        {
+            LOGGER.warn("Failed to store recommended data region sizes for grid {}", this.instanceName, ioex);
+        }
+    }
+}
@@ -0,0 +1,476 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.aldica.common.ignite.lifecycle.IgniteInstanceLifecycleAware;
+import org.alfresco.util.EqualsHelper;
+import org.alfresco.util.PropertyCheck;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.IgniteCheckedException;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.apache.ignite.configuration.DataStorageConfiguration;
+import org.apache.ignite.internal.processors.cache.GridCacheContext;
+import org.apache.ignite.internal.processors.cache.GridCacheTtlManager;
+import org.apache.ignite.internal.processors.cache.IgniteCacheOffheapManager.CacheDataStore;
+import org.apache.ignite.internal.processors.cache.IgniteCacheProxy;
+import org.apache.ignite.internal.processors.cache.tree.PendingEntriesTree;
+import org.apache.ignite.internal.processors.cache.tree.PendingRow;
+import org.apache.ignite.internal.util.lang.GridCursor;
+import org.apache.ignite.internal.util.typedef.internal.CU;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * Instances of this class take over the removal of expired entries from Ignite-backed caches, which Ignite would otherwise perform in a
+ * single background thread as fast as possible for all caches. Bursts of expiring entries - e.g. tickets or sessions created at the start
+ * of a business day - can then stall checkpoint and eviction processing. This component removes due entries per data region with a limited
+ * number of entries per {@link #sweep() sweep}, so that removals are spread over time, and keeps {@link #getMetrics() metrics} about the
+ * backlog of entries awaiting expiry. The backlog is bounded: if a data region has been left with unprocessed expired entries for a
+ * {@link #setMaxBackloggedRuns(int) maximum number of consecutive sweeps}, the next sweep removes all of its expired entries regardless of
+ * the limit, so that expired entries cannot accumulate indefinitely if they expire at a higher rate than the limit allows to remove. The
+ * backlog is reported as the number of entries which are past their expiry time but have not been removed yet.
+ *
+ * Caches are only handled by this component if they have been {@link #register(String) registered} and use eager expiry. Ignite only
+ * tracks the expiry times of entries in caches using eager expiry, so this component does not disable it, but detaches the caches from the
+ * shared cleanup of Ignite on each sweep instead.
+ *
+ * @author Axel Faust
+ */
+public class ExpirySweeper implements InitializingBean, IgniteInstanceLifecycleAware
+{
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExpirySweeper.class);
+
+    protected final Map<String, SweptCache> sweptCaches = new ConcurrentHashMap<>();
+
+    protected final Map<String, Integer> regionSweepOffsets = new HashMap<>();
+
+    protected String instanceName;
+
+    protected boolean enabled;
+
+    protected int maxEntriesPerRun = 1000;
+
+    protected int maxBackloggedRuns = 12;
+
+    protected volatile Ignite instance;
+
+    protected volatile Map<String, RegionExpiryMetrics> metrics = Collections.emptyMap();
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterPropertiesSet()
+    {
+        PropertyCheck.mandatory(this, "instanceName", this.instanceName);
+
+        if (this.maxEntriesPerRun <= 0)
+        {
+            throw new IllegalStateException("The maxEntriesPerRun must be a positive value");
+        }
+    }
+
+    /**
+     * @param instanceName
+     *            the name of the Ignite instance to which the swept caches are attached
+     */
+    public void setInstanceName(final String instanceName)
+    {
+        this.instanceName = instanceName;
+    }
+
+    /**
+     * @return the name of the Ignite instance to which the swept caches are attached
+     */
+    public String getInstanceName()
+    {
+        return this.instanceName;
+    }
+
+    /**
+     * @param enabled
+     *            the enabled to set
+     */
+    public void setEnabled(final boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return the enabled
+     */
+    public boolean isEnabled()
+    {
+        return this.enabled;
+    }
+
+    /**
+     * @param maxEntriesPerRun
+     *            the maximum number of expired entries to remove from the caches of a single data region in one sweep
+     */
+    public void setMaxEntriesPerRun(final int maxEntriesPerRun)
+    {
+        this.maxEntriesPerRun = maxEntriesPerRun;
+    }
+
+    /**
+     * @param maxBackloggedRuns
+     *            the maximum number of consecutive sweeps a data region may be backlogged before all of its expired entries are removed in
+     *            the next sweep - {@code 0} to never remove more than the maximum number of entries per sweep
+     */
+    public void setMaxBackloggedRuns(final int maxBackloggedRuns)
+    {
+        this.maxBackloggedRuns = maxBackloggedRuns;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void beforeInstanceStartup(final String instanceName)
+    {
+        // NO-OP
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterInstanceStartup(final String instanceName)
+    {
+        if (EqualsHelper.nullSafeEquals(this.instanceName, instanceName))
+        {
+            this.instance = Ignition.ignite(instanceName);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void beforeInstanceShutdown(final String instanceName)
+    {
+        if (EqualsHelper.nullSafeEquals(this.instanceName, instanceName))
+        {
+            this.instance = null;
+            this.metrics = Collections.emptyMap();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterInstanceShutdown(final String instanceName)
+    {
+        // NO-OP
+    }
+
+    /**
+     * Registers a cache for which this component should take over the removal of expired entries. This operation is a no-op if this
+     * component is not enabled, in which case Ignite continues to remove expired entries on its own.
+     *
+     * @param cacheName
+     *            the name of the cache
+     */
+    public void register(final String cacheName)
+    {
+        if (this.enabled)
+        {
+            this.sweptCaches.computeIfAbsent(cacheName, SweptCache::new);
+        }
+    }
+
+    /**
+     * Retrieves the metrics of the last sweep for all data regions with registered caches.
+     *
+     * @return the metrics keyed by the name of the data region
+     */
+    public Map<String, RegionExpiryMetrics> getMetrics()
+    {
+        return this.metrics;
+    }
+
+    /**
+     * Removes expired entries from all registered caches, limited to a maximum number of entries per data region. This operation is a no-op
+     * if this component is not enabled or the Ignite instance is not running.
+     */
+    public synchronized void sweep()
+    {
+        final Ignite instance = this.instance;
+        if (this.enabled && instance != null)
+        {
+            final Map<String, List<SweptCache>> cachesByRegion = new LinkedHashMap<>();
+            this.sweptCaches.values().forEach(sweptCache -> {
+                final GridCacheContext<?, ?> context = this.resolveContext(instance, sweptCache);
+                if (context != null)
+                {
+                    cachesByRegion.computeIfAbsent(sweptCache.regionName, region -> new ArrayList<>()).add(sweptCache);
+                }
+            });
+
+            final Map<String, RegionExpiryMetrics> metrics = new HashMap<>();
+            cachesByRegion.forEach((regionName, caches) -> {
+                final RegionExpiryMetrics regionMetrics = this.sweepRegion(regionName, caches, this.metrics.get(regionName));
+                metrics.put(regionName, regionMetrics);
+            });
+            this.metrics = Collections.unmodifiableMap(metrics);
+        }
+    }
+
+    protected RegionExpiryMetrics sweepRegion(final String regionName, final List<SweptCache> caches,
+            final RegionExpiryMetrics previousMetrics)
+    {
+        final long previousExpiredTotal = previousMetrics != null ? previousMetrics.getExpiredTotal() : 0;
+        final int previousBackloggedRuns = previousMetrics != null ? previousMetrics.getBackloggedRuns() : 0;
+
+        // bound the backlog by removing all expired entries once the region has fallen behind for too long
+        final boolean drain = this.maxBackloggedRuns > 0 && previousBackloggedRuns >= this.maxBackloggedRuns;
+        if (drain)
+        {
+            LOGGER.warn("Expiry in data region {} has been backlogged for {} consecutive sweeps - removing all expired entries now",
+                    regionName, previousBackloggedRuns);
+        }
+
+        // rotate the starting cache so that no cache is starved when the budget is exhausted
+        final int offset = this.regionSweepOffsets.getOrDefault(regionName, 0) % caches.size();
+        this.regionSweepOffsets.put(regionName, offset + 1);
+
+        int budget = this.maxEntriesPerRun;
+        long expired = 0;
+        long overdueEntries = 0;
+        boolean backlogged = false;
+
+        for (int idx = 0; idx < caches.size(); idx++)
+        {
+            final SweptCache sweptCache = caches.get((offset + idx) % caches.size());
+            final GridCacheTtlManager ttlManager = sweptCache.context.ttl();
+            try
+            {
+                final long pendingBefore = ttlManager.pendingSize();
+                boolean more = false;
+                if (pendingBefore > 0)
+                {
+                    // cache is left unprocessed if budget has been exhausted by previous caches of the region
+                    more = drain ? ttlManager.expire(-1) : (budget <= 0 || ttlManager.expire(budget));
+                }
+                final long pendingAfter = ttlManager.pendingSize();
+
+                final long cacheExpired = Math.max(0, pendingBefore - pendingAfter);
+                budget -= (int) Math.min(budget, cacheExpired);
+                expired += cacheExpired;
+                backlogged = backlogged || more;
+                if (more)
+                {
+                    // only count when backlogged - all due entries have been removed otherwise
+                    overdueEntries += this.countOverdueEntries(sweptCache.context);
+                }
+            }
+            catch (final IgniteCheckedException icex)
+            {
+                LOGGER.warn("Failed to remove expired entries from cache {}", sweptCache.cacheName, icex);
+            }
+        }
+
+        final int backloggedRuns = backlogged ? previousBackloggedRuns + 1 : 0;
+        if (backlogged)
+        {
+            LOGGER.debug("Expiry in data region {} is backlogged for {} consecutive sweeps after removing {} entries", regionName,
+                    backloggedRuns, expired);
+        }
+        else if (previousBackloggedRuns > 0)
+        {
+            LOGGER.debug("Expiry in data region {} has caught up after {} backlogged sweeps", regionName, previousBackloggedRuns);
+        }
+
+        return new RegionExpiryMetrics(regionName, overdueEntries, expired, previousExpiredTotal + expired, backloggedRuns);
+    }
+
+    protected long countOverdueEntries(final GridCacheContext<?, ?> context) throws IgniteCheckedException
+    {
+        final long now = System.currentTimeMillis();
+        final int cacheId = context.group().sharedGroup() ? context.cacheId() : CU.UNDEFINED_CACHE_ID;
+        final PendingRow lower = context.group().sharedGroup() ? new PendingRow(cacheId) : null;
+        final PendingRow upper = new PendingRow(cacheId, now, 0);
+
+        // without persistence, all data stores of a cache group share the same tree
+        final Set<PendingEntriesTree> trees = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (final CacheDataStore dataStore : context.offheap().cacheDataStores())
+        {
+            final PendingEntriesTree tree = dataStore.pendingTree();
+            if (tree != null)
+            {
+                trees.add(tree);
+            }
+        }
+
+        long overdueEntries = 0;
+        for (final PendingEntriesTree tree : trees)
+        {
+            final GridCursor<PendingRow> cursor = tree.find(lower, upper);
+            while (cursor.next())
+            {
+                overdueEntries++;
+            }
+        }
+        return overdueEntries;
+    }
+
+    protected GridCacheContext<?, ?> resolveContext(final Ignite instance, final SweptCache sweptCache)
+    {
+        final IgniteCache<?, ?> cache = instance.cache(sweptCache.cacheName);
+        GridCacheContext<?, ?> context = null;
+        if (cache instanceof IgniteCacheProxy<?, ?>)
+        {
+            context = ((IgniteCacheProxy<?, ?>) cache).context();
+            if (context != sweptCache.context)
+            {
+                // (re-)resolve on first use and whenever the cache has been re-created
+                final CacheConfiguration<?, ?> config = context.config();
+                sweptCache.context = context;
+                sweptCache.regionName = config.getDataRegionName() != null ? config.getDataRegionName()
+                        : this.resolveDefaultRegionName(instance);
+                sweptCache.eagerTtl = config.isEagerTtl() && config.getExpiryPolicyFactory() != null;
+            }
+
+            if (sweptCache.eagerTtl)
+            {
+                // Ignite re-registers the TTL manager if the cache is re-created, so detaching needs to be repeated / ensured
+                context.shared().ttl().unregister(context.ttl());
+            }
+            else
+            {
+                context = null;
+            }
+        }
+        return context;
+    }
+
+    protected String resolveDefaultRegionName(final Ignite instance)
+    {
+        final DataStorageConfiguration storageConfiguration = instance.configuration().getDataStorageConfiguration();
+        String regionName = DataStorageConfiguration.DFLT_DATA_REG_DEFAULT_NAME;
+        if (storageConfiguration != null && storageConfiguration.getDefaultDataRegionConfiguration() != null)
+        {
+            regionName = storageConfiguration.getDefaultDataRegionConfiguration().getName();
+        }
+        return regionName;
+    }
+
+    /**
+     * Instances of this class hold the state of a single registered cache.
+     *
+     * @author Axel Faust
+     */
+    protected static class SweptCache
+    {
+
+        protected final String cacheName;
+
+        protected GridCacheContext<?, ?> context;
+
+        protected String regionName;
+
+        protected boolean eagerTtl;
+
+        protected SweptCache(final String cacheName)
+        {
+            this.cacheName = cacheName;
+        }
+    }
+
+    /**
+     * Instances of this class hold the expiry metrics of a single data region.
+     *
+     * @author Axel Faust
+     */
+    public static class RegionExpiryMetrics
+    {
+
+        private final String regionName;
+
+        private final long overdueEntries;
+
+        private final long expiredLastRun;
+
+        private final long expiredTotal;
+
+        private final int backloggedRuns;
+
+        protected RegionExpiryMetrics(final String regionName, final long overdueEntries, final long expiredLastRun,
+                final long expiredTotal, final int backloggedRuns)
+        {
+            this.regionName = regionName;
+            this.overdueEntries = overdueEntries;
+            this.expiredLastRun = expiredLastRun;
+            this.expiredTotal = expiredTotal;
+            this.backloggedRuns = backloggedRuns;
+        }
+
+        /**
+         * @return the name of the data region
+         */
+        public String getRegionName()
+        {
+            return this.regionName;
+        }
+
+        /**
+         * @return the number of entries which were past their expiry time but still held in the caches of the data region after the last
+         *         sweep
+         */
+        public long getOverdueEntries()
+        {
+            return this.overdueEntries;
+        }
+
+        /**
+         * @return the number of entries removed in the last sweep
+         */
+        public long getExpiredLastRun()
+        {
+            return this.expiredLastRun;
+        }
+
+        /**
+         * @return the number of entries removed since the Ignite instance has been started
+         */
+        public long getExpiredTotal()
+        {
+            return this.expiredTotal;
+        }
+
+        /**
+         * @return {@code true} if the last sweep left entries unprocessed due to the limit of entries per sweep, {@code false} otherwise
+         */
+        public boolean isBacklogged()
+        {
+            return this.backloggedRuns > 0;
+        }
+
+        /**
+         * @return the number of consecutive sweeps, up to and including the last sweep, which left entries unprocessed due to the limit of
+         *         entries per sweep
+         */
+        public int getBackloggedRuns()
+        {
+            return this.backloggedRuns;
+        }
+    }
+}
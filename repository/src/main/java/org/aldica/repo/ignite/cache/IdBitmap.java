@@ -0,0 +1,544 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.cache;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Instances of this class represent an immutable, compressed set of non-negative IDs, e.g. the IDs of {@code QName} instances as
+ * maintained by Alfresco. The structure is modelled after roaring bitmaps, with IDs being partitioned into containers based on their high
+ * bits, and each container using either a sorted array or a bitmap of the low 16 bits of its IDs, depending on which is more compact.
+ *
+ * Since entity IDs in Alfresco are typically small and dense, the majority of sets will consist of a single container. In its serial form,
+ * container keys and array values are delta- and variable-length-encoded, and bitmaps are trimmed to their highest non-empty word, so that
+ * a set of a handful of IDs will only require a few bytes.
+ *
+ * @author Axel Faust
+ */
+public final class IdBitmap
+{
+
+    private static final int CONTAINER_BITS = 16;
+
+    private static final int CONTAINER_MASK = (1 << CONTAINER_BITS) - 1;
+
+    private static final byte CONTAINER_TYPE_ARRAY = 0;
+
+    private static final byte CONTAINER_TYPE_BITMAP = 1;
+
+    private static final IdBitmap EMPTY = new IdBitmap(new long[0], new char[0][], new long[0][], 0);
+
+    private final long[] containerKeys;
+
+    private final char[][] arrayContainers;
+
+    private final long[][] bitmapContainers;
+
+    private final int cardinality;
+
+    private IdBitmap(final long[] containerKeys, final char[][] arrayContainers, final long[][] bitmapContainers, final int cardinality)
+    {
+        this.containerKeys = containerKeys;
+        this.arrayContainers = arrayContainers;
+        this.bitmapContainers = bitmapContainers;
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * Creates a bitmap for a set of IDs.
+     *
+     * @param ids
+     *            the IDs to include in the bitmap - may contain duplicates and does not need to be sorted
+     * @return the bitmap
+     */
+    public static IdBitmap of(final long[] ids)
+    {
+        if (ids.length == 0)
+        {
+            return EMPTY;
+        }
+
+        final long[] sortedIds = Arrays.copyOf(ids, ids.length);
+        Arrays.sort(sortedIds);
+        if (sortedIds[0] < 0)
+        {
+            throw new IllegalArgumentException("IDs must not be negative");
+        }
+
+        int containerCount = 0;
+        long lastKey = -1;
+        for (final long id : sortedIds)
+        {
+            final long key = id >>> CONTAINER_BITS;
+            if (key != lastKey)
+            {
+                containerCount++;
+                lastKey = key;
+            }
+        }
+
+        final long[] containerKeys = new long[containerCount];
+        final char[][] arrayContainers = new char[containerCount][];
+        final long[][] bitmapContainers = new long[containerCount][];
+
+        int cardinality = 0;
+        int containerIdx = -1;
+        int start = 0;
+        for (int idx = 0; idx <= sortedIds.length; idx++)
+        {
+            final boolean containerEnd = idx == sortedIds.length
+                    || (idx > start && (sortedIds[idx] >>> CONTAINER_BITS) != (sortedIds[start] >>> CONTAINER_BITS));
+            if (containerEnd)
+            {
+                containerIdx++;
+                containerKeys[containerIdx] = sortedIds[start] >>> CONTAINER_BITS;
+
+                final char[] values = new char[idx - start];
+                int valueCount = 0;
+                for (int valueIdx = start; valueIdx < idx; valueIdx++)
+                {
+                    final char value = (char) (sortedIds[valueIdx] & CONTAINER_MASK);
+                    if (valueCount == 0 || values[valueCount - 1] != value)
+                    {
+                        values[valueCount++] = value;
+                    }
+                }
+                cardinality += valueCount;
+
+                final char[] distinctValues = valueCount == values.length ? values : Arrays.copyOf(values, valueCount);
+                final long[] bitmap = toBitmap(distinctValues);
+                if (bitmapSize(bitmap) < arraySize(distinctValues))
+                {
+                    bitmapContainers[containerIdx] = bitmap;
+                }
+                else
+                {
+                    arrayContainers[containerIdx] = distinctValues;
+                }
+
+                start = idx;
+            }
+        }
+
+        return new IdBitmap(containerKeys, arrayContainers, bitmapContainers, cardinality);
+    }
+
+    /**
+     * Reconstructs a bitmap from its serial form.
+     *
+     * @param bytes
+     *            the serial form of the bitmap as created via {@link #toBytes()}
+     * @return the bitmap
+     * @throws IllegalArgumentException
+     *             if the serial form is invalid, truncated or contains trailing bytes
+     */
+    public static IdBitmap fromBytes(final byte[] bytes)
+    {
+        if (bytes == null || bytes.length == 0)
+        {
+            throw new IllegalArgumentException("Serial form must not be empty");
+        }
+
+        final int[] offset = new int[1];
+        // each container requires at least two bytes (key delta and header)
+        final long containerCount = readVarLong(bytes, offset);
+        if (containerCount > (bytes.length - offset[0]) / 2)
+        {
+            throw new IllegalArgumentException("Declared number of containers " + containerCount + " exceeds serial form");
+        }
+        if (containerCount == 0)
+        {
+            checkFullyConsumed(bytes, offset);
+            return EMPTY;
+        }
+
+        final long[] containerKeys = new long[(int) containerCount];
+        final char[][] arrayContainers = new char[(int) containerCount][];
+        final long[][] bitmapContainers = new long[(int) containerCount][];
+        int cardinality = 0;
+
+        long lastKey = 0;
+        for (int containerIdx = 0; containerIdx < containerCount; containerIdx++)
+        {
+            final long keyDelta = readVarLong(bytes, offset);
+            if ((containerIdx > 0 && keyDelta == 0) || keyDelta > (Long.MAX_VALUE >>> CONTAINER_BITS) - lastKey)
+            {
+                throw new IllegalArgumentException("Invalid container key delta " + keyDelta);
+            }
+            lastKey += keyDelta;
+            containerKeys[containerIdx] = lastKey;
+
+            final long header = readVarLong(bytes, offset);
+            final long length = header >>> 1;
+            if ((header & 1) == CONTAINER_TYPE_BITMAP)
+            {
+                if (length == 0 || length > (CONTAINER_MASK + 1) / Long.SIZE || length * Long.BYTES > bytes.length - offset[0])
+                {
+                    throw new IllegalArgumentException("Invalid / truncated bitmap container of " + length + " words");
+                }
+
+                final long[] bitmap = new long[(int) length];
+                for (int wordIdx = 0; wordIdx < length; wordIdx++)
+                {
+                    long word = 0;
+                    for (int byteIdx = 0; byteIdx < Long.BYTES; byteIdx++)
+                    {
+                        word |= (bytes[offset[0]++] & 0xffL) << (byteIdx * Byte.SIZE);
+                    }
+                    bitmap[wordIdx] = word;
+                    cardinality += Long.bitCount(word);
+                }
+                bitmapContainers[containerIdx] = bitmap;
+            }
+            else
+            {
+                // each value requires at least one byte
+                if (length == 0 || length > CONTAINER_MASK + 1 || length > bytes.length - offset[0])
+                {
+                    throw new IllegalArgumentException("Invalid / truncated array container of " + length + " values");
+                }
+
+                final char[] values = new char[(int) length];
+                int lastValue = -1;
+                for (int valueIdx = 0; valueIdx < length; valueIdx++)
+                {
+                    final long valueDelta = readVarLong(bytes, offset);
+                    if (valueDelta > CONTAINER_MASK - lastValue - 1)
+                    {
+                        throw new IllegalArgumentException("Invalid array container value");
+                    }
+                    lastValue += (int) valueDelta + 1;
+                    values[valueIdx] = (char) lastValue;
+                }
+                arrayContainers[containerIdx] = values;
+                cardinality += (int) length;
+            }
+        }
+        checkFullyConsumed(bytes, offset);
+
+        return new IdBitmap(containerKeys, arrayContainers, bitmapContainers, cardinality);
+    }
+
+    /**
+     * Retrieves the serial form of this bitmap.
+     *
+     * @return the serial form of this bitmap
+     */
+    public byte[] toBytes()
+    {
+        int size = varLongSize(this.containerKeys.length);
+        long lastKey = 0;
+        for (int containerIdx = 0; containerIdx < this.containerKeys.length; containerIdx++)
+        {
+            size += varLongSize(this.containerKeys[containerIdx] - lastKey);
+            lastKey = this.containerKeys[containerIdx];
+
+            size += this.bitmapContainers[containerIdx] != null ? bitmapSize(this.bitmapContainers[containerIdx])
+                    : arraySize(this.arrayContainers[containerIdx]);
+        }
+
+        final byte[] bytes = new byte[size];
+        final int[] offset = new int[1];
+        writeVarLong(this.containerKeys.length, bytes, offset);
+
+        lastKey = 0;
+        for (int containerIdx = 0; containerIdx < this.containerKeys.length; containerIdx++)
+        {
+            writeVarLong(this.containerKeys[containerIdx] - lastKey, bytes, offset);
+            lastKey = this.containerKeys[containerIdx];
+
+            final long[] bitmap = this.bitmapContainers[containerIdx];
+            if (bitmap != null)
+            {
+                writeVarLong(((long) bitmap.length << 1) | CONTAINER_TYPE_BITMAP, bytes, offset);
+                for (final long word : bitmap)
+                {
+                    for (int byteIdx = 0; byteIdx < Long.BYTES; byteIdx++)
+                    {
+                        bytes[offset[0]++] = (byte) (word >>> (byteIdx * Byte.SIZE));
+                    }
+                }
+            }
+            else
+            {
+                final char[] values = this.arrayContainers[containerIdx];
+                writeVarLong(((long) values.length << 1) | CONTAINER_TYPE_ARRAY, bytes, offset);
+                int lastValue = -1;
+                for (final char value : values)
+                {
+                    writeVarLong(value - lastValue - 1, bytes, offset);
+                    lastValue = value;
+                }
+            }
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Retrieves the number of IDs contained in this bitmap.
+     *
+     * @return the number of IDs
+     */
+    public int getCardinality()
+    {
+        return this.cardinality;
+    }
+
+    /**
+     * Checks whether a specific ID is contained in this bitmap.
+     *
+     * @param id
+     *            the ID to check
+     * @return {@code true} if the ID is contained in this bitmap, {@code false} otherwise
+     */
+    public boolean contains(final long id)
+    {
+        boolean contained = false;
+        if (id >= 0)
+        {
+            final int containerIdx = Arrays.binarySearch(this.containerKeys, id >>> CONTAINER_BITS);
+            if (containerIdx >= 0)
+            {
+                final int value = (int) (id & CONTAINER_MASK);
+                final long[] bitmap = this.bitmapContainers[containerIdx];
+                if (bitmap != null)
+                {
+                    final int wordIdx = value >>> 6;
+                    contained = wordIdx < bitmap.length && (bitmap[wordIdx] & (1L << value)) != 0;
+                }
+                else
+                {
+                    contained = Arrays.binarySearch(this.arrayContainers[containerIdx], (char) value) >= 0;
+                }
+            }
+        }
+        return contained;
+    }
+
+    /**
+     * Retrieves an iterator over the IDs contained in this bitmap in ascending order.
+     *
+     * @return the iterator
+     */
+    public PrimitiveIterator.OfLong iterator()
+    {
+        return new IdIterator();
+    }
+
+    /**
+     * Retrieves the IDs contained in this bitmap in ascending order.
+     *
+     * @return the IDs
+     */
+    public long[] toArray()
+    {
+        final long[] ids = new long[this.cardinality];
+        final PrimitiveIterator.OfLong iterator = this.iterator();
+        int idx = 0;
+        while (iterator.hasNext())
+        {
+            ids[idx++] = iterator.nextLong();
+        }
+        return ids;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode()
+    {
+        return Arrays.hashCode(this.toArray());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(final Object obj)
+    {
+        if (this == obj)
+        {
+            return true;
+        }
+        if (!(obj instanceof IdBitmap))
+        {
+            return false;
+        }
+        final IdBitmap other = (IdBitmap) obj;
+        return this.cardinality == other.cardinality && Arrays.equals(this.toArray(), other.toArray());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return "IdBitmap " + Arrays.toString(this.toArray());
+    }
+
+    private static long[] toBitmap(final char[] values)
+    {
+        final long[] bitmap = new long[(values[values.length - 1] >>> 6) + 1];
+        for (final char value : values)
+        {
+            bitmap[value >>> 6] |= 1L << value;
+        }
+        return bitmap;
+    }
+
+    private static int bitmapSize(final long[] bitmap)
+    {
+        return varLongSize((long) bitmap.length << 1) + bitmap.length * Long.BYTES;
+    }
+
+    private static int arraySize(final char[] values)
+    {
+        int size = varLongSize((long) values.length << 1);
+        int lastValue = -1;
+        for (final char value : values)
+        {
+            size += varLongSize(value - lastValue - 1);
+            lastValue = value;
+        }
+        return size;
+    }
+
+    private static int varLongSize(final long value)
+    {
+        int size = 1;
+        long remainder = value >>> 7;
+        while (remainder != 0)
+        {
+            size++;
+            remainder >>>= 7;
+        }
+        return size;
+    }
+
+    private static void writeVarLong(final long value, final byte[] bytes, final int[] offset)
+    {
+        long remainder = value;
+        while ((remainder & ~0x7fL) != 0)
+        {
+            bytes[offset[0]++] = (byte) ((remainder & 0x7f) | 0x80);
+            remainder >>>= 7;
+        }
+        bytes[offset[0]++] = (byte) remainder;
+    }
+
+    private static void checkFullyConsumed(final byte[] bytes, final int[] offset)
+    {
+        if (offset[0] != bytes.length)
+        {
+            throw new IllegalArgumentException("Serial form contains " + (bytes.length - offset[0]) + " unexpected trailing bytes");
+        }
+    }
+
+    private static long readVarLong(final byte[] bytes, final int[] offset)
+    {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do
+        {
+            if (offset[0] >= bytes.length || shift > 63)
+            {
+                throw new IllegalArgumentException("Invalid / truncated variable-length value");
+            }
+            b = bytes[offset[0]++];
+            value |= (b & 0x7fL) << shift;
+            shift += 7;
+        }
+        while ((b & 0x80) != 0);
+
+        // all values written by this class are non-negative
+        if (value < 0)
+        {
+            throw new IllegalArgumentException("Invalid variable-length value");
+        }
+        return value;
+    }
+
+    /**
+     * Iterates over the IDs of all containers in ascending order.
+     *
+     * @author Axel Faust
+     */
+    private class IdIterator implements PrimitiveIterator.OfLong
+    {
+
+        private int containerIdx = 0;
+
+        // array index or bit index, depending on container type
+        private int valueIdx = -1;
+
+        private IdIterator()
+        {
+            this.advance();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean hasNext()
+        {
+            return this.containerIdx < IdBitmap.this.containerKeys.length;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long nextLong()
+        {
+            if (!this.hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+
+            final long key = IdBitmap.this.containerKeys[this.containerIdx];
+            final char[] values = IdBitmap.this.arrayContainers[this.containerIdx];
+            final int value = values != null ? values[this.valueIdx] : this.valueIdx;
+            this.advance();
+
+            return (key << CONTAINER_BITS) | value;
+        }
+
+        private void advance()
+        {
+            while (this.containerIdx < IdBitmap.this.containerKeys.length)
+            {
+                final long[] bitmap = IdBitmap.this.bitmapContainers[this.containerIdx];
+                if (bitmap != null)
+                {
+                    int bitIdx = this.valueIdx + 1;
+                    while (bitIdx < bitmap.length * Long.SIZE)
+                    {
+                        final long word = bitmap[bitIdx >>> 6] & (-1L << bitIdx);
+                        if (word != 0)
+                        {
+                            this.valueIdx = ((bitIdx >>> 6) << 6) + Long.numberOfTrailingZeros(word);
+                            return;
+                        }
+                        bitIdx = ((bitIdx >>> 6) + 1) << 6;
+                    }
+                }
+                else if (this.valueIdx + 1 < IdBitmap.this.arrayContainers[this.containerIdx].length)
+                {
+                    this.valueIdx++;
+                    return;
+                }
+
+                this.containerIdx++;
+                this.valueIdx = -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,447 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.aldica.common.ignite.lifecycle.IgniteInstanceLifecycleAware;
+import org.alfresco.repo.cache.SimpleCache;
+import org.alfresco.repo.cache.TransactionalCache.ValueHolder;
+import org.alfresco.repo.domain.node.NodeDAO;
+import org.alfresco.repo.domain.node.Transaction;
+import org.alfresco.service.transaction.TransactionService;
+import org.alfresco.util.EqualsHelper;
+import org.alfresco.util.Pair;
+import org.alfresco.util.PropertyCheck;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.core.Ordered;
+import org.springframework.util.SerializationUtils;
+
+/**
+ * Instances of this class store the contents of caches for immutable entities in snapshot files when the Ignite instance is shut down, and
+ * restore them when the caches are (re-)created after the next startup of the instance. This avoids having to reload all these entities from
+ * the database, one query at a time, after the restart of a Repository server.
+ *
+ * Snapshots are validated against a generation marker derived from the database, which consists of the ID and commit time of the latest
+ * transaction at the time a snapshot was written. A snapshot is discarded if that transaction no longer exists with the same commit time,
+ * e.g. if the database has been restored from a backup or the server has been pointed to a different database. As the marker cannot detect
+ * modifications of individual entities, snapshots must only be enabled for caches with entries that never change once created. Negative
+ * lookup results are never included in a snapshot, and each snapshot is deleted once it has been read, so that only a clean shutdown
+ * produces a snapshot for the next startup.
+ *
+ * Cache entries are stored in their Java serial form instead of the binary form of the data grid, as the IDs used by the various dictionaries
+ * of the optimised serializers are only valid for the lifetime of the grid. Since the dictionaries become unavailable when the Ignite
+ * instance is shut down, this component requests to be {@link Ordered ordered} before all other lifecycle-aware components.
+ *
+ * @author Axel Faust
+ */
+public class ImmutableCacheSnapshotStore implements InitializingBean, ApplicationContextAware, IgniteInstanceLifecycleAware, Ordered
+{
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImmutableCacheSnapshotStore.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x414C4353;
+
+    private static final int SNAPSHOT_FORMAT_VERSION = 1;
+
+    private static final String SNAPSHOT_FILE_SUFFIX = ".snapshot";
+
+    private static final String SNAPSHOT_TEMP_FILE_SUFFIX = ".snapshot.tmp";
+
+    // value copied from EntityLookupCache (not accessible there)
+    private static final Serializable VALUE_NULL = "@@VALUE_NULL@@";
+
+    // value copied from EntityLookupCache (not accessible there)
+    private static final Serializable VALUE_NOT_FOUND = "@@VALUE_NOT_FOUND@@";
+
+    protected final Map<String, SimpleCache<Serializable, Object>> registeredCaches = new ConcurrentHashMap<>();
+
+    protected ApplicationContext applicationContext;
+
+    protected String instanceName;
+
+    protected boolean enabled;
+
+    protected String directory;
+
+    protected String nodeDAOBeanName = "nodeDAO";
+
+    protected String transactionServiceBeanName = "transactionService";
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterPropertiesSet()
+    {
+        PropertyCheck.mandatory(this, "applicationContext", this.applicationContext);
+        PropertyCheck.mandatory(this, "instanceName", this.instanceName);
+        if (this.enabled)
+        {
+            PropertyCheck.mandatory(this, "directory", this.directory);
+            PropertyCheck.mandatory(this, "nodeDAOBeanName", this.nodeDAOBeanName);
+            PropertyCheck.mandatory(this, "transactionServiceBeanName", this.transactionServiceBeanName);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setApplicationContext(final ApplicationContext applicationContext)
+    {
+        this.applicationContext = applicationContext;
+    }
+
+    /**
+     * @param instanceName
+     *            the name of the Ignite instance to which the snapshotted caches are attached
+     */
+    public void setInstanceName(final String instanceName)
+    {
+        this.instanceName = instanceName;
+    }
+
+    /**
+     * @param enabled
+     *            the enabled to set
+     */
+    public void setEnabled(final boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param directory
+     *            the path to the directory in which to store the snapshot files
+     */
+    public void setDirectory(final String directory)
+    {
+        this.directory = directory;
+    }
+
+    /**
+     * @param nodeDAOBeanName
+     *            the name of the node DAO bean used to determine the generation marker - the bean is looked up lazily as it depends on
+     *            caches itself
+     */
+    public void setNodeDAOBeanName(final String nodeDAOBeanName)
+    {
+        this.nodeDAOBeanName = nodeDAOBeanName;
+    }
+
+    /**
+     * @param transactionServiceBeanName
+     *            the name of the transaction service bean used to determine the generation marker - the bean is looked up lazily as it
+     *            depends on caches itself
+     */
+    public void setTransactionServiceBeanName(final String transactionServiceBeanName)
+    {
+        this.transactionServiceBeanName = transactionServiceBeanName;
+    }
+
+    /**
+     * @return the enabled
+     */
+    public boolean isEnabled()
+    {
+        return this.enabled;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getOrder()
+    {
+        // must run before dictionaries become unavailable on shutdown
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void beforeInstanceStartup(final String instanceName)
+    {
+        // NO-OP
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterInstanceStartup(final String instanceName)
+    {
+        // NO-OP
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void beforeInstanceShutdown(final String instanceName)
+    {
+        if (this.enabled && EqualsHelper.nullSafeEquals(this.instanceName, instanceName) && !this.registeredCaches.isEmpty())
+        {
+            final Pair<Long, Long> generationMarker = this.determineGenerationMarker();
+            if (generationMarker != null)
+            {
+                this.registeredCaches.forEach((cacheName, cache) -> {
+                    this.writeSnapshot(cacheName, cache, generationMarker);
+                });
+            }
+            else
+            {
+                LOGGER.info("Not writing cache snapshots for grid {} as no generation marker could be determined", instanceName);
+            }
+            this.registeredCaches.clear();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterInstanceShutdown(final String instanceName)
+    {
+        // NO-OP
+    }
+
+    /**
+     * Restores the contents of a cache from a snapshot, if a valid one exists, and registers the cache so its contents will be stored in a
+     * snapshot when the Ignite instance is shut down.
+     *
+     * @param cacheName
+     *            the name of the cache
+     * @param cache
+     *            the cache instance to restore / register
+     */
+    @SuppressWarnings("unchecked")
+    public <K extends Serializable, V> void restoreAndRegister(final String cacheName, final SimpleCache<K, V> cache)
+    {
+        if (this.enabled)
+        {
+            final SimpleCache<Serializable, Object> effectiveCache = (SimpleCache<Serializable, Object>) cache;
+            this.restoreSnapshot(cacheName, effectiveCache);
+            this.registeredCaches.put(cacheName, effectiveCache);
+        }
+    }
+
+    protected void restoreSnapshot(final String cacheName, final SimpleCache<Serializable, Object> cache)
+    {
+        final Path snapshotFile = this.resolveSnapshotFile(cacheName, SNAPSHOT_FILE_SUFFIX);
+        if (Files.isRegularFile(snapshotFile))
+        {
+            try
+            {
+                try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ))
+                {
+                    final MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+
+                    if (buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != SNAPSHOT_FORMAT_VERSION)
+                    {
+                        LOGGER.info("Discarding snapshot of cache {} as it has an unsupported format", cacheName);
+                    }
+                    else if (!this.isValidGenerationMarker(buffer.getLong(), buffer.getLong()))
+                    {
+                        LOGGER.info("Discarding snapshot of cache {} as it does not match the current state of the database", cacheName);
+                    }
+                    else
+                    {
+                        this.restoreEntries(cacheName, cache, buffer);
+                    }
+                }
+                catch (final BufferUnderflowException buex)
+                {
+                    LOGGER.warn("Discarding truncated snapshot of cache {}", cacheName);
+                }
+            }
+            catch (final IOException ioex)
+            {
+                LOGGER.warn("Failed to read snapshot of cache {}", cacheName, ioex);
+            }
+            finally
+            {
+                this.deleteSnapshot(cacheName, snapshotFile);
+            }
+        }
+    }
+
+    protected void restoreEntries(final String cacheName, final SimpleCache<Serializable, Object> cache, final MappedByteBuffer buffer)
+    {
+        final int entryCount = buffer.getInt();
+        int restoredEntries = 0;
+        for (int idx = 0; idx < entryCount; idx++)
+        {
+            final byte[] keyBytes = new byte[buffer.getInt()];
+            buffer.get(keyBytes);
+            final byte[] valueBytes = new byte[buffer.getInt()];
+            buffer.get(valueBytes);
+
+            try
+            {
+                final Serializable key = (Serializable) SerializationUtils.deserialize(keyBytes);
+                final Object value = SerializationUtils.deserialize(valueBytes);
+
+                // another member may already have loaded an entry in a shared cache
+                if (!cache.contains(key))
+                {
+                    cache.put(key, value);
+                    restoredEntries++;
+                }
+            }
+            catch (final IllegalArgumentException | IllegalStateException ex)
+            {
+                // classes of cached entities may have been changed by an upgrade
+                LOGGER.debug("Skipping entry in snapshot of cache {} which cannot be deserialised", cacheName, ex);
+            }
+        }
+
+        LOGGER.info("Restored {} of {} entries from snapshot of cache {}", restoredEntries, entryCount, cacheName);
+    }
+
+    protected void writeSnapshot(final String cacheName, final SimpleCache<Serializable, Object> cache,
+            final Pair<Long, Long> generationMarker)
+    {
+        final List<byte[]> serialisedEntries = new ArrayList<>();
+        for (final Serializable key : cache.getKeys())
+        {
+            final Object value = cache.get(key);
+            Object effectiveValue = value;
+            if (effectiveValue instanceof ValueHolder)
+            {
+                effectiveValue = ((ValueHolder<?>) effectiveValue).getValue();
+            }
+
+            // negative lookups may no longer be valid after restart
+            if (value instanceof Serializable && !VALUE_NOT_FOUND.equals(effectiveValue) && !VALUE_NULL.equals(effectiveValue))
+            {
+                try
+                {
+                    final byte[] keyBytes = SerializationUtils.serialize(key);
+                    final byte[] valueBytes = SerializationUtils.serialize(value);
+                    serialisedEntries.add(keyBytes);
+                    serialisedEntries.add(valueBytes);
+                }
+                catch (final IllegalArgumentException iaex)
+                {
+                    LOGGER.debug("Skipping entry with key {} in cache {} which cannot be serialised", key, cacheName, iaex);
+                }
+            }
+        }
+
+        final Path snapshotFile = this.resolveSnapshotFile(cacheName, SNAPSHOT_FILE_SUFFIX);
+        final Path tempFile = this.resolveSnapshotFile(cacheName, SNAPSHOT_TEMP_FILE_SUFFIX);
+        try
+        {
+            Files.createDirectories(tempFile.getParent());
+            try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile))))
+            {
+                dos.writeInt(SNAPSHOT_MAGIC);
+                dos.writeInt(SNAPSHOT_FORMAT_VERSION);
+                dos.writeLong(generationMarker.getFirst());
+                dos.writeLong(generationMarker.getSecond());
+                dos.writeInt(serialisedEntries.size() / 2);
+                for (final byte[] serialisedEntry : serialisedEntries)
+                {
+                    dos.writeInt(serialisedEntry.length);
+                    dos.write(serialisedEntry);
+                }
+            }
+            // never leave a partially written snapshot behind
+            Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            LOGGER.info("Wrote snapshot of {} entries of cache {}", serialisedEntries.size() / 2, cacheName);
+        }
+        catch (final IOException ioex)
+        {
+            LOGGER.warn("Failed to write snapshot of cache {}", cacheName, ioex);
+            this.deleteSnapshot(cacheName, tempFile);
+        }
+    }
+
+    protected void deleteSnapshot(final String cacheName, final Path snapshotFile)
+    {
+        try
+        {
+            Files.deleteIfExists(snapshotFile);
+        }
+        catch (final IOException ioex)
+        {
+            LOGGER.warn("Failed to delete snapshot file {} of cache {}", snapshotFile, cacheName, ioex);
+        }
+    }
+
+    protected Path resolveSnapshotFile(final String cacheName, final String suffix)
+    {
+        final String effectiveCacheName = cacheName.startsWith("cache.") ? cacheName.substring(6) : cacheName;
+        return Paths.get(this.directory, effectiveCacheName.replaceAll("[^A-Za-z0-9._-]", "_") + suffix);
+    }
+
+    protected Pair<Long, Long> determineGenerationMarker()
+    {
+        Pair<Long, Long> generationMarker = null;
+        try
+        {
+            final NodeDAO nodeDAO = this.applicationContext.getBean(this.nodeDAOBeanName, NodeDAO.class);
+            final TransactionService transactionService = this.applicationContext.getBean(this.transactionServiceBeanName,
+                    TransactionService.class);
+
+            generationMarker = transactionService.getRetryingTransactionHelper().doInTransaction(() -> {
+                final Long maxTxnId = nodeDAO.getMaxTxnId();
+                final Transaction txn = maxTxnId != null ? nodeDAO.getTxnById(maxTxnId) : null;
+                return txn != null ? new Pair<>(txn.getId(), txn.getCommitTimeMs()) : null;
+            }, true, true);
+        }
+        catch (final RuntimeException rex)
+        {
+            LOGGER.warn("Failed to determine generation marker for cache snapshots", rex);
+        }
+        return generationMarker;
+    }
+
+    protected boolean isValidGenerationMarker(final long txnId, final long commitTimeMs)
+    {
+        boolean valid = false;
+        try
+        {
+            final NodeDAO nodeDAO = this.applicationContext.getBean(this.nodeDAOBeanName, NodeDAO.class);
+            final TransactionService transactionService = this.applicationContext.getBean(this.transactionServiceBeanName,
+                    TransactionService.class);
+
+            valid = transactionService.getRetryingTransactionHelper().doInTransaction(() -> {
+                final Transaction txn = nodeDAO.getTxnById(txnId);
+                return txn != null && txn.getCommitTimeMs() != null && txn.getCommitTimeMs().longValue() == commitTimeMs;
+            }, true, true);
+        }
+        catch (final RuntimeException rex)
+        {
+            // e.g. database schema not yet bootstrapped
+            LOGGER.debug("Failed to validate generation marker of cache snapshot", rex);
+        }
+        return valid;
+    }
+}
@@ -5,6 +5,10 @@ package org.aldica.repo.ignite.cache;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 import org.alfresco.repo.cache.SimpleCache;
 import org.alfresco.repo.cache.TransactionalCache.ValueHolder;
@@ -19,7 +23,7 @@ import org.slf4j.LoggerFactory;
 /**
  * @author Axel Faust
  */
-public class InvalidatingCacheFacade<K extends Serializable, V> implements SimpleCache<K, V>, CacheWithMetrics
+public class InvalidatingCacheFacade<K extends Serializable, V> implements SimpleCache<K, V>, CacheWithMetrics, CacheWithBulkRetrieval<K, V>
 {
 
     // value copied from EntityLookupCache (not accessible there)
@@ -40,10 +44,14 @@ public class InvalidatingCacheFacade<K extends Serializable, V> implements Simpl
 
     protected final boolean allowSentinelsInBackingCache;
 
+    protected final NegativeLookupCache<K, V> negativeLookups;
+
     protected final String invalidationTopic;
 
     protected final String bulkInvalidationTopic;
 
+    protected final String negativeLookupInvalidationTopic;
+
     protected final SimpleCacheMetrics localMetrics;
 
     /**
@@ -66,6 +74,33 @@ public class InvalidatingCacheFacade<K extends Serializable, V> implements Simpl
      */
     public InvalidatingCacheFacade(final String cacheName, final SimpleCache<K, V> backingCache, final Ignite grid,
             final boolean alwaysInvalidateOnPut, final boolean allowSentinelsInBackingCache)
+    {
+        this(cacheName, backingCache, grid, alwaysInvalidateOnPut, allowSentinelsInBackingCache, null);
+    }
+
+    /**
+     *
+     * Creates a facade for a local cache that uses Ignite-backed data grid for communication with other grid nodes concerning invalidation
+     * of cache entries.
+     *
+     * @param cacheName
+     *            the name of the backing cache
+     * @param backingCache
+     *            the low-level local cache instance
+     * @param grid
+     *            the Ignite grid instance to use for communication
+     * @param alwaysInvalidateOnPut
+     *            {@code true} if this facade should always send invalidation messages to other nodes on the same data grid when values are
+     *            put into the backing cache, {@code false} otherwise
+     * @param allowSentinelsInBackingCache
+     *            {@code true} if sentinels for dummy values (defined by {@link EntityLookupCache}) are allowed to be stored in the cache
+     * @param negativeLookups
+     *            the structure in which to hold sentinels for dummy values instead of the backing cache - may be {@code null} if sentinels
+     *            should be handled according to {@code allowSentinelsInBackingCache}
+     */
+    public InvalidatingCacheFacade(final String cacheName, final SimpleCache<K, V> backingCache, final Ignite grid,
+            final boolean alwaysInvalidateOnPut, final boolean allowSentinelsInBackingCache,
+            final NegativeLookupCache<K, V> negativeLookups)
     {
         ParameterCheck.mandatoryString("cacheName", cacheName);
         ParameterCheck.mandatory("backingCache", backingCache);
@@ -76,8 +111,10 @@ public class InvalidatingCacheFacade<K extends Serializable, V> implements Simpl
         this.grid = grid;
         this.alwaysInvalidateOnPut = alwaysInvalidateOnPut;
         this.allowSentinelsInBackingCache = allowSentinelsInBackingCache;
+        this.negativeLookups = negativeLookups;
         this.invalidationTopic = this.cacheName + "-invalidate";
         this.bulkInvalidationTopic = this.cacheName + "-bulkInvalidate";
+        this.negativeLookupInvalidationTopic = this.cacheName + "-invalidateNegativeLookup";
 
         this.instanceLogger = LoggerFactory.getLogger(this.getClass().getName() + "." + this.cacheName);
 
@@ -86,6 +123,7 @@ public class InvalidatingCacheFacade<K extends Serializable, V> implements Simpl
             @SuppressWarnings("unchecked")
             final K typedKey = (K) key;
             this.backingCache.remove(typedKey);
+            this.removeNegativeLookup(typedKey);
 
             // keep listening
             return true;
@@ -99,12 +137,26 @@ public class InvalidatingCacheFacade<K extends Serializable, V> implements Simpl
                 final Collection<K> keyCollection = (Collection<K>) col;
                 keyCollection.forEach(key -> {
                     this.backingCache.remove(key);
+                    this.removeNegativeLookup(key);
                 });
             }
             // keep listening
             return true;
         });
 
+        if (negativeLookups != null)
+        {
+            grid.message().localListen(this.negativeLookupInvalidationTopic, (uuid, key) -> {
+                this.instanceLogger.debug("Received negative lookup invalidation message for {}", key);
+                @SuppressWarnings("unchecked")
+                final K typedKey = (K) key;
+                this.removeNegativeLookup(typedKey);
+
+                // keep listening
+                return true;
+            });
+        }
+
         if (!(backingCache instanceof CacheWithMetrics))
         {
             this.localMetrics = new SimpleCacheMetrics();
@@ -123,7 +175,8 @@ public class InvalidatingCacheFacade<K extends Serializable, V> implements Simpl
     {
         this.instanceLogger.debug("Checking for containment of {}", key);
 
-        final boolean containsKey = this.backingCache.contains(key);
+        final boolean containsKey = (this.negativeLookups != null && this.negativeLookups.get(key) != null)
+                || this.backingCache.contains(key);
 
         this.instanceLogger.debug("Cache contains key {}: {}", key, containsKey);
 
@@ -160,7 +213,11 @@ public class InvalidatingCacheFacade<K extends Serializable, V> implements Simpl
     {
         this.instanceLogger.debug("Getting value for key {}", key);
 
-        final V value = this.backingCache.get(key);
+        V value = this.negativeLookups != null ? this.negativeLookups.get(key) : null;
+        if (value == null)
+        {
+            value = this.backingCache.get(key);
+        }
         if (this.localMetrics != null)
         {
             if (value != null)
@@ -180,6 +237,70 @@ public class InvalidatingCacheFacade<K extends Serializable, V> implements Simpl
         return value;
     }
 
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<K, V> getAll(final Set<K> keys)
+    {
+        this.instanceLogger.debug("Getting values for {} keys", keys.size());
+
+        final Map<K, V> values = new HashMap<>(keys.size() * 4 / 3 + 1);
+        Set<K> remainingKeys = keys;
+        if (this.negativeLookups != null)
+        {
+            remainingKeys = new HashSet<>(keys);
+            for (final K key : keys)
+            {
+                final V negativeLookup = this.negativeLookups.get(key);
+                if (negativeLookup != null)
+                {
+                    values.put(key, negativeLookup);
+                    remainingKeys.remove(key);
+                }
+            }
+        }
+
+        if (this.backingCache instanceof CacheWithBulkRetrieval<?, ?>)
+        {
+            @SuppressWarnings("unchecked")
+            final CacheWithBulkRetrieval<K, V> bulkCache = (CacheWithBulkRetrieval<K, V>) this.backingCache;
+            values.putAll(bulkCache.getAll(remainingKeys));
+        }
+        else
+        {
+            // local backing cache - no benefit in bulk retrieval apart from API consistency
+            for (final K key : remainingKeys)
+            {
+                final V value = this.backingCache.get(key);
+                if (value != null)
+                {
+                    values.put(key, value);
+                }
+            }
+        }
+
+        if (this.localMetrics != null)
+        {
+            for (int idx = 0, max = keys.size(); idx < max; idx++)
+            {
+                if (idx < values.size())
+                {
+                    this.localMetrics.recordHit();
+                }
+                else
+                {
+                    this.localMetrics.recordMiss();
+                }
+            }
+        }
+
+        this.instanceLogger.debug("Retrieved {} values for {} keys", values.size(), keys.size());
+
+        return values;
+    }
+
     /**
      *
      * {@inheritDoc}
@@ -207,6 +328,15 @@ public class InvalidatingCacheFacade<K extends Serializable, V> implements Simpl
         {
             this.instanceLogger.debug("Call to put with null-value for key {} instead of proper remove", key);
 
+            this.backingCache.remove(key);
+            this.removeNegativeLookup(key);
+            invalidate = invalidate || oldValue != null;
+        }
+        else if (this.negativeLookups != null && NegativeLookupCache.isSentinel(value))
+        {
+            this.instanceLogger.debug("Call to put with sentinel-value for key {} will be recorded as a negative lookup", key);
+
+            this.negativeLookups.put(key, value);
             this.backingCache.remove(key);
             invalidate = invalidate || oldValue != null;
         }
@@ -223,6 +353,14 @@ public class InvalidatingCacheFacade<K extends Serializable, V> implements Simpl
         {
             this.backingCache.put(key, value);
             invalidate = invalidate || (oldValue != null && !EqualsHelper.nullSafeEquals(oldValue, value));
+
+            // the old value is only looked up locally, so it cannot tell a newly created value from one (re-)loaded after a local miss
+            // a value is typically created after a failed lookup on the same member, so only the negative lookup recorded here indicates
+            // that other members may still consider the key as not existing - any others are bound by the time-to-live
+            if (this.negativeLookups != null && this.negativeLookups.remove(key) && !invalidate)
+            {
+                this.sendInvalidationMessage(this.negativeLookupInvalidationTopic, key);
+            }
         }
 
         if (invalidate)
@@ -241,6 +379,7 @@ public class InvalidatingCacheFacade<K extends Serializable, V> implements Simpl
         this.instanceLogger.debug("Removing value for key {}", key);
 
         this.backingCache.remove(key);
+        this.removeNegativeLookup(key);
 
         this.sendInvalidationMessage(this.invalidationTopic, key);
     }
@@ -257,6 +396,10 @@ public class InvalidatingCacheFacade<K extends Serializable, V> implements Simpl
         final Collection<K> keys = this.getKeys();
 
         this.backingCache.clear();
+        if (this.negativeLookups != null)
+        {
+            this.negativeLookups.clear();
+        }
 
         if (!keys.isEmpty())
         {
@@ -303,6 +446,14 @@ public class InvalidatingCacheFacade<K extends Serializable, V> implements Simpl
         return this.localMetrics == null ? ((CacheWithMetrics) this.backingCache).localSize() : this.backingCache.getKeys().size();
     }
 
+    protected void removeNegativeLookup(final K key)
+    {
+        if (this.negativeLookups != null)
+        {
+            this.negativeLookups.remove(key);
+        }
+    }
+
     protected void sendInvalidationMessage(final String topic, final Object msg)
     {
         final Object msgLogLabel = this.instanceLogger.isDebugEnabled()
@@ -0,0 +1,183 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.cache;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.alfresco.repo.cache.TransactionalCache.ValueHolder;
+import org.alfresco.repo.cache.lookup.EntityLookupCache;
+
+/**
+ * Instances of this class hold the results of negative lookups, i.e. the sentinels for {@code null} / not-found values defined by
+ * {@link EntityLookupCache}, for a single cache in a bounded, local on-heap structure with a short time-to-live, so that the sentinels
+ * neither need to be dropped - triggering repeated database lookups for entities which do not exist - nor stored in the backing cache,
+ * where they would compete for space with actual entries. Clients are responsible for removing negative lookups whenever an actual value
+ * is stored for the same key on any member of the data grid.
+ *
+ * @author Axel Faust
+ */
+public class NegativeLookupCache<K extends Serializable, V>
+{
+
+    // value copied from EntityLookupCache (not accessible there)
+    private static final Serializable VALUE_NULL = "@@VALUE_NULL@@";
+
+    // value copied from EntityLookupCache (not accessible there)
+    private static final Serializable VALUE_NOT_FOUND = "@@VALUE_NOT_FOUND@@";
+
+    protected final Map<K, NegativeLookup<V>> lookups = new ConcurrentHashMap<>();
+
+    protected final int maxEntries;
+
+    protected final long timeToLiveMillis;
+
+    /**
+     * Creates a new instance of this class.
+     *
+     * @param maxEntries
+     *            the maximum number of negative lookups to hold
+     * @param timeToLiveSeconds
+     *            the time-to-live (in s) of negative lookups
+     */
+    public NegativeLookupCache(final int maxEntries, final int timeToLiveSeconds)
+    {
+        if (maxEntries <= 0)
+        {
+            throw new IllegalArgumentException("Maximum number of entries must be a positive value");
+        }
+        if (timeToLiveSeconds <= 0)
+        {
+            throw new IllegalArgumentException("Time-to-live must be a positive value");
+        }
+
+        this.maxEntries = maxEntries;
+        this.timeToLiveMillis = timeToLiveSeconds * 1000L;
+    }
+
+    /**
+     * Checks whether a value is a sentinel for a negative lookup.
+     *
+     * @param value
+     *            the value to check - may be wrapped in a {@link ValueHolder}
+     * @return {@code true} if the value is a sentinel for a negative lookup, {@code false} otherwise
+     */
+    public static boolean isSentinel(final Object value)
+    {
+        // TransactionalCache always wraps values in holder
+        Object effectiveValue = value;
+        if (effectiveValue instanceof ValueHolder)
+        {
+            effectiveValue = ((ValueHolder<?>) effectiveValue).getValue();
+        }
+        return VALUE_NOT_FOUND.equals(effectiveValue) || VALUE_NULL.equals(effectiveValue);
+    }
+
+    /**
+     * Retrieves the sentinel value of a negative lookup.
+     *
+     * @param key
+     *            the key of the lookup
+     * @return the sentinel value, or {@code null} if no negative lookup has been recorded for the key or it has expired
+     */
+    public V get(final K key)
+    {
+        V value = null;
+        final NegativeLookup<V> lookup = this.lookups.get(key);
+        if (lookup != null)
+        {
+            if (lookup.expiresAt > System.currentTimeMillis())
+            {
+                value = lookup.value;
+            }
+            else
+            {
+                this.lookups.remove(key, lookup);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Records a negative lookup.
+     *
+     * @param key
+     *            the key of the lookup
+     * @param value
+     *            the sentinel value to return for subsequent lookups
+     */
+    public void put(final K key, final V value)
+    {
+        final long now = System.currentTimeMillis();
+        if (this.lookups.size() >= this.maxEntries)
+        {
+            this.prune(now);
+        }
+        this.lookups.put(key, new NegativeLookup<>(value, now + this.timeToLiveMillis));
+    }
+
+    /**
+     * Removes a negative lookup.
+     *
+     * @param key
+     *            the key of the lookup
+     * @return {@code true} if a negative lookup was recorded for the key, {@code false} otherwise
+     */
+    public boolean remove(final K key)
+    {
+        return this.lookups.remove(key) != null;
+    }
+
+    /**
+     * Removes all negative lookups.
+     */
+    public void clear()
+    {
+        this.lookups.clear();
+    }
+
+    /**
+     * @return the number of recorded negative lookups, including any which have expired but not yet been removed
+     */
+    public int size()
+    {
+        return this.lookups.size();
+    }
+
+    protected void prune(final long now)
+    {
+        this.lookups.values().removeIf(lookup -> lookup.expiresAt <= now);
+
+        // negative lookups are cheap to recompute, so just drop arbitrary entries to leave room for new ones
+        final int targetSize = this.maxEntries - this.maxEntries / 4;
+        final Iterator<Entry<K, NegativeLookup<V>>> iterator = this.lookups.entrySet().iterator();
+        while (this.lookups.size() > targetSize && iterator.hasNext())
+        {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Instances of this class hold a single negative lookup.
+     *
+     * @author Axel Faust
+     */
+    protected static class NegativeLookup<V>
+    {
+
+        protected final V value;
+
+        protected final long expiresAt;
+
+        protected NegativeLookup(final V value, final long expiresAt)
+        {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
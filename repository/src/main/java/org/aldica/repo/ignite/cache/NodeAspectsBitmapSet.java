@@ -0,0 +1,212 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.cache;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.alfresco.service.namespace.QName;
+
+/**
+ * Instances of this class provide an immutable view on a set of node aspects backed by a {@link IdBitmap bitmap} of the aspect IDs.
+ * Membership checks only require resolution of the checked aspect to its ID, and aspects are only resolved from their IDs - in a single
+ * bulk operation - when the view is iterated for the first time. The resolved aspects are retained for subsequent iterations, e.g. by
+ * {@link #hashCode()}, {@link #equals(Object)} or streams.
+ *
+ * @author Axel Faust
+ */
+public class NodeAspectsBitmapSet extends AbstractSet<QName> implements Serializable
+{
+
+    private static final long serialVersionUID = 4209817722460925934L;
+
+    private final transient IdBitmap bitmap;
+
+    private final transient Function<long[], QName[]> qnameResolver;
+
+    private final transient Function<QName, Long> qnameIdResolver;
+
+    // benign race - concurrent resolutions yield equal results
+    private transient volatile QName[] resolvedQNames;
+
+    /**
+     * Creates a new instance of this class.
+     *
+     * @param bitmap
+     *            the bitmap of the aspect IDs
+     * @param qnameResolver
+     *            the function to resolve aspect IDs to their qualified names in bulk
+     * @param qnameIdResolver
+     *            the function to resolve an aspect qualified name to its ID - may return {@code null} if the qualified name has no ID
+     */
+    public NodeAspectsBitmapSet(final IdBitmap bitmap, final Function<long[], QName[]> qnameResolver,
+            final Function<QName, Long> qnameIdResolver)
+    {
+        this.bitmap = bitmap;
+        this.qnameResolver = qnameResolver;
+        this.qnameIdResolver = qnameIdResolver;
+    }
+
+    /**
+     * Retrieves the bitmap backing this instance.
+     *
+     * @return the bitmap
+     */
+    public IdBitmap getBitmap()
+    {
+        return this.bitmap;
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public int size()
+    {
+        return this.bitmap.getCardinality();
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEmpty()
+    {
+        return this.bitmap.getCardinality() == 0;
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains(final Object o)
+    {
+        boolean contained = false;
+        if (o instanceof QName && !this.isEmpty())
+        {
+            final Long id = this.qnameIdResolver.apply((QName) o);
+            contained = id != null && this.bitmap.contains(id.longValue());
+        }
+        return contained;
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<QName> iterator()
+    {
+        final Iterator<QName> iterator;
+        if (this.isEmpty())
+        {
+            iterator = Collections.emptyIterator();
+        }
+        else
+        {
+            QName[] qnames = this.resolvedQNames;
+            if (qnames == null)
+            {
+                qnames = this.qnameResolver.apply(this.bitmap.toArray());
+                this.resolvedQNames = qnames;
+            }
+            iterator = Collections.unmodifiableList(Arrays.asList(qnames)).iterator();
+        }
+        return iterator;
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean add(final QName e)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove(final Object o)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean addAll(final Collection<? extends QName> c)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean removeAll(final Collection<?> c)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean retainAll(final Collection<?> c)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean removeIf(final Predicate<? super QName> filter)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Replaces this instance with a regular set of resolved aspects when serialised via default Java serialisation, as the bitmap and
+     * resolvers are transient.
+     *
+     * @return the replacement
+     * @throws ObjectStreamException
+     *             never thrown
+     */
+    protected Object writeReplace() throws ObjectStreamException
+    {
+        return new HashSet<>(this);
+    }
+}
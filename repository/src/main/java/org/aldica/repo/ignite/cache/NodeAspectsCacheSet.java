@@ -3,8 +3,11 @@
  * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
 package org.aldica.repo.ignite.cache;
 
+import java.io.ObjectStreamException;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Set;
+import java.util.Spliterator;
 
 import org.alfresco.service.namespace.QName;
 import org.apache.ignite.marshaller.Marshaller;
@@ -13,6 +16,10 @@ import org.apache.ignite.marshaller.Marshaller;
  * Instances of this class are simply used to differentiate a node aspects set inside a cache from any regular set for the purpose of
  * {@link Marshaller marshalling}, and allows us to apply special serialisation handling based on this type.
  *
+ * Instances of this class may additionally be backed by an immutable {@link NodeAspectsBitmapSet bitmap view} when deserialised from a
+ * bitmap serial form. Such instances can answer {@link #size() size} and {@link #contains(Object) membership} checks directly from the
+ * bitmap, and will only materialise the set of aspects when it is iterated or modified.
+ *
  * @author Axel Faust
  *
  */
@@ -21,6 +28,9 @@ public class NodeAspectsCacheSet extends HashSet<QName>
 
     private static final long serialVersionUID = -5207020576251149198L;
 
+    // only ever set during deserialisation, and reset to null once the set has been materialised
+    private transient volatile NodeAspectsBitmapSet bitmapView;
+
     /**
      * Creates a new empty instance.
      *
@@ -41,4 +51,163 @@ public class NodeAspectsCacheSet extends HashSet<QName>
         super(s);
     }
 
+    /**
+     * Sets the bitmap view backing this instance. This operation is only meant to be used during deserialisation of a set instance, before
+     * it is handed to any other client code.
+     *
+     * @param bitmapView
+     *            the bitmap view backing this instance
+     */
+    public void setBitmapView(final NodeAspectsBitmapSet bitmapView)
+    {
+        synchronized (this)
+        {
+            super.clear();
+            this.bitmapView = bitmapView;
+        }
+    }
+
+    /**
+     * Retrieves the bitmap view backing this instance, if this instance has not been materialised yet.
+     *
+     * @return the bitmap view backing this instance or {@code null} if this instance is not backed by a bitmap view
+     */
+    public NodeAspectsBitmapSet getBitmapView()
+    {
+        return this.bitmapView;
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public int size()
+    {
+        final NodeAspectsBitmapSet bitmapView = this.bitmapView;
+        return bitmapView != null ? bitmapView.size() : super.size();
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEmpty()
+    {
+        final NodeAspectsBitmapSet bitmapView = this.bitmapView;
+        return bitmapView != null ? bitmapView.isEmpty() : super.isEmpty();
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains(final Object o)
+    {
+        final NodeAspectsBitmapSet bitmapView = this.bitmapView;
+        return bitmapView != null ? bitmapView.contains(o) : super.contains(o);
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<QName> iterator()
+    {
+        this.materialiseIfNecessary();
+        return super.iterator();
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Spliterator<QName> spliterator()
+    {
+        this.materialiseIfNecessary();
+        return super.spliterator();
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean add(final QName e)
+    {
+        this.materialiseIfNecessary();
+        return super.add(e);
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove(final Object o)
+    {
+        this.materialiseIfNecessary();
+        return super.remove(o);
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear()
+    {
+        synchronized (this)
+        {
+            this.bitmapView = null;
+            super.clear();
+        }
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Object clone()
+    {
+        this.materialiseIfNecessary();
+        return super.clone();
+    }
+
+    /**
+     * Materialises all aspects before this instance is serialised via default Java serialisation, as the bitmap view is transient.
+     *
+     * @return this instance
+     * @throws ObjectStreamException
+     *             never thrown
+     */
+    protected Object writeReplace() throws ObjectStreamException
+    {
+        this.materialiseIfNecessary();
+        return this;
+    }
+
+    protected void materialiseIfNecessary()
+    {
+        if (this.bitmapView != null)
+        {
+            synchronized (this)
+            {
+                final NodeAspectsBitmapSet bitmapView = this.bitmapView;
+                if (bitmapView != null)
+                {
+                    for (final QName aspect : bitmapView)
+                    {
+                        super.add(aspect);
+                    }
+                    this.bitmapView = null;
+                }
+            }
+        }
+    }
 }
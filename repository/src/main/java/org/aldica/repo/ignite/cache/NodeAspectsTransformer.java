@@ -26,8 +26,17 @@ public class NodeAspectsTransformer implements CacheValueTransformer<Serializabl
     public Serializable transformToExternalValue(final Serializable cacheValue)
     {
         // we use a wrapped / sub-classed map in cache representation, keeping all value contracts intact
-        // can just pass the cache value as-is
-        return cacheValue;
+        // can just pass the cache value as-is, unless it is backed by an immutable bitmap view
+        Serializable externalValue = cacheValue;
+        if (cacheValue instanceof NodeAspectsCacheSet)
+        {
+            final NodeAspectsBitmapSet bitmapView = ((NodeAspectsCacheSet) cacheValue).getBitmapView();
+            if (bitmapView != null)
+            {
+                externalValue = bitmapView;
+            }
+        }
+        return externalValue;
     }
 
     /**
@@ -38,7 +47,14 @@ public class NodeAspectsTransformer implements CacheValueTransformer<Serializabl
     public Serializable transformToCacheValue(final Serializable externalValue)
     {
         Serializable cacheValue = externalValue;
-        if (cacheValue instanceof Set<?>)
+        if (cacheValue instanceof NodeAspectsBitmapSet)
+        {
+            // avoid resolving aspects only to re-encode them as the same bitmap
+            final NodeAspectsCacheSet cacheSet = new NodeAspectsCacheSet();
+            cacheSet.setBitmapView((NodeAspectsBitmapSet) cacheValue);
+            cacheValue = cacheSet;
+        }
+        else if (cacheValue instanceof Set<?>)
         {
             @SuppressWarnings("unchecked")
             final Set<QName> externalSet = (Set<QName>) cacheValue;
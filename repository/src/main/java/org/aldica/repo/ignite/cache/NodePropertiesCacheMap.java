@@ -3,9 +3,17 @@
  * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
 package org.aldica.repo.ignite.cache;
 
+import java.io.ObjectStreamException;
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import org.alfresco.service.namespace.QName;
 import org.apache.ignite.marshaller.Marshaller;
@@ -14,6 +22,14 @@ import org.apache.ignite.marshaller.Marshaller;
  * Instances of this class are simply used to differentiate a node properties map inside a cache from any regular map for the purpose of
  * {@link Marshaller marshalling}, and allows us to apply special serialisation handling based on this type.
  *
+ * Instances of this class additionally support lazily decoded values, which are only resolved when a specific entry is accessed for the
+ * first time. Any operation which exposes all the values of the map (e.g. iteration via {@link #entrySet() entry set} or
+ * {@link #values() values}) will resolve all pending values before proceeding. Lazily decoded values are only used for content data values
+ * substituted with their ID, as resolving these may require lookups on a partitioned cache on remote grid members. Deferring the decoding
+ * of the raw bytes of the whole map is not supported, as the binary reader handed to a serializer is only valid during deserialisation, so
+ * the bytes would need to be copied and retained alongside the reader state, and keys need to be decoded eagerly anyway to populate this
+ * map. All other values are decoded from local data only (including replicated dictionaries) at a cost comparable to copying their bytes.
+ *
  * @author Axel Faust
  *
  */
@@ -22,6 +38,9 @@ public class NodePropertiesCacheMap extends HashMap<QName, Serializable>
 
     private static final long serialVersionUID = -5207020576251149198L;
 
+    // only ever set during deserialisation, and reset to null once all values have been resolved
+    private transient volatile Map<QName, Supplier<Serializable>> lazyValues;
+
     /**
      * Creates a new empty instance.
      *
@@ -42,4 +61,386 @@ public class NodePropertiesCacheMap extends HashMap<QName, Serializable>
         super(m);
     }
 
+    /**
+     * Puts a property into this map with a value which will only be decoded / resolved on first access. This operation is only meant to be
+     * used during deserialisation of a map instance, before it is handed to any other client code.
+     *
+     * @param key
+     *            the key of the property
+     * @param valueSupplier
+     *            the supplier to decode / resolve the value of the property
+     */
+    public void putLazy(final QName key, final Supplier<Serializable> valueSupplier)
+    {
+        synchronized (this)
+        {
+            if (this.lazyValues == null)
+            {
+                this.lazyValues = new HashMap<>();
+            }
+            super.put(key, null);
+            this.lazyValues.put(key, valueSupplier);
+        }
+    }
+
+    /**
+     * Checks whether this instance still holds values which have not yet been decoded / resolved.
+     *
+     * @return {@code true} if this instance holds values which have not yet been decoded / resolved, {@code false} otherwise
+     */
+    public boolean hasLazyValues()
+    {
+        return this.lazyValues != null;
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Serializable get(final Object key)
+    {
+        Serializable value;
+        if (this.lazyValues != null)
+        {
+            synchronized (this)
+            {
+                this.resolveLazyValue(key);
+                value = super.get(key);
+            }
+        }
+        else
+        {
+            value = super.get(key);
+        }
+        return value;
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Serializable getOrDefault(final Object key, final Serializable defaultValue)
+    {
+        Serializable value;
+        if (this.lazyValues != null)
+        {
+            synchronized (this)
+            {
+                this.resolveLazyValue(key);
+                value = super.getOrDefault(key, defaultValue);
+            }
+        }
+        else
+        {
+            value = super.getOrDefault(key, defaultValue);
+        }
+        return value;
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Serializable put(final QName key, final Serializable value)
+    {
+        this.resolveLazyValueIfNecessary(key);
+        return super.put(key, value);
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void putAll(final Map<? extends QName, ? extends Serializable> m)
+    {
+        this.resolveLazyValues();
+        super.putAll(m);
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Serializable remove(final Object key)
+    {
+        this.resolveLazyValueIfNecessary(key);
+        return super.remove(key);
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear()
+    {
+        synchronized (this)
+        {
+            this.lazyValues = null;
+            super.clear();
+        }
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsValue(final Object value)
+    {
+        this.resolveLazyValues();
+        return super.containsValue(value);
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<Serializable> values()
+    {
+        this.resolveLazyValues();
+        return super.values();
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Entry<QName, Serializable>> entrySet()
+    {
+        this.resolveLazyValues();
+        return super.entrySet();
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Serializable putIfAbsent(final QName key, final Serializable value)
+    {
+        this.resolveLazyValueIfNecessary(key);
+        return super.putIfAbsent(key, value);
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove(final Object key, final Object value)
+    {
+        this.resolveLazyValueIfNecessary(key);
+        return super.remove(key, value);
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean replace(final QName key, final Serializable oldValue, final Serializable newValue)
+    {
+        this.resolveLazyValueIfNecessary(key);
+        return super.replace(key, oldValue, newValue);
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Serializable replace(final QName key, final Serializable value)
+    {
+        this.resolveLazyValueIfNecessary(key);
+        return super.replace(key, value);
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Serializable computeIfAbsent(final QName key, final Function<? super QName, ? extends Serializable> mappingFunction)
+    {
+        this.resolveLazyValueIfNecessary(key);
+        return super.computeIfAbsent(key, mappingFunction);
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Serializable computeIfPresent(final QName key,
+            final BiFunction<? super QName, ? super Serializable, ? extends Serializable> remappingFunction)
+    {
+        this.resolveLazyValueIfNecessary(key);
+        return super.computeIfPresent(key, remappingFunction);
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Serializable compute(final QName key, final BiFunction<? super QName, ? super Serializable, ? extends Serializable> remappingFunction)
+    {
+        this.resolveLazyValueIfNecessary(key);
+        return super.compute(key, remappingFunction);
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Serializable merge(final QName key, final Serializable value,
+            final BiFunction<? super Serializable, ? super Serializable, ? extends Serializable> remappingFunction)
+    {
+        this.resolveLazyValueIfNecessary(key);
+        return super.merge(key, value, remappingFunction);
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void forEach(final BiConsumer<? super QName, ? super Serializable> action)
+    {
+        this.resolveLazyValues();
+        super.forEach(action);
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void replaceAll(final BiFunction<? super QName, ? super Serializable, ? extends Serializable> function)
+    {
+        this.resolveLazyValues();
+        super.replaceAll(function);
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Object clone()
+    {
+        this.resolveLazyValues();
+        return super.clone();
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(final Object o)
+    {
+        this.resolveLazyValues();
+        return super.equals(o);
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode()
+    {
+        this.resolveLazyValues();
+        return super.hashCode();
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        this.resolveLazyValues();
+        return super.toString();
+    }
+
+    /**
+     * Resolves all pending values before this instance is serialised via default Java serialisation, as the lazy value suppliers are
+     * transient.
+     *
+     * @return this instance
+     * @throws ObjectStreamException
+     *             never thrown
+     */
+    protected Object writeReplace() throws ObjectStreamException
+    {
+        this.resolveLazyValues();
+        return this;
+    }
+
+    protected void resolveLazyValueIfNecessary(final Object key)
+    {
+        if (this.lazyValues != null)
+        {
+            synchronized (this)
+            {
+                this.resolveLazyValue(key);
+            }
+        }
+    }
+
+    protected void resolveLazyValues()
+    {
+        if (this.lazyValues != null)
+        {
+            synchronized (this)
+            {
+                final Map<QName, Supplier<Serializable>> lazyValues = this.lazyValues;
+                if (lazyValues != null)
+                {
+                    for (final Entry<QName, Supplier<Serializable>> lazyEntry : lazyValues.entrySet())
+                    {
+                        // key may have been removed via key set in the meantime
+                        final QName key = lazyEntry.getKey();
+                        if (super.containsKey(key))
+                        {
+                            super.put(key, lazyEntry.getValue().get());
+                        }
+                    }
+                    this.lazyValues = null;
+                }
+            }
+        }
+    }
+
+    // must only be called while synchronised on this instance
+    private void resolveLazyValue(final Object key)
+    {
+        final Map<QName, Supplier<Serializable>> lazyValues = this.lazyValues;
+        if (lazyValues != null)
+        {
+            final Supplier<Serializable> valueSupplier = lazyValues.remove(key);
+            // key may have been removed via key set in the meantime
+            if (valueSupplier != null && super.containsKey(key))
+            {
+                super.put((QName) key, valueSupplier.get());
+            }
+
+            if (lazyValues.isEmpty())
+            {
+                this.lazyValues = null;
+            }
+        }
+    }
 }
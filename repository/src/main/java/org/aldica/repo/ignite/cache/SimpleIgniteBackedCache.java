@@ -5,8 +5,14 @@ package org.aldica.repo.ignite.cache;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 
+import org.aldica.common.ignite.cache.CompressedValue;
+import org.aldica.repo.ignite.cache.CacheValueCompressor.RegionValueCompression;
 import org.alfresco.repo.cache.SimpleCache;
 import org.alfresco.repo.cache.TransactionalCache.ValueHolder;
 import org.alfresco.repo.cache.lookup.EntityLookupCache;
@@ -27,7 +33,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author Axel Faust
  */
-public class SimpleIgniteBackedCache<K extends Serializable, V> implements SimpleCache<K, V>, CacheWithMetrics
+public class SimpleIgniteBackedCache<K extends Serializable, V> implements SimpleCache<K, V>, CacheWithMetrics, CacheWithBulkRetrieval<K, V>
 {
 
     /**
@@ -119,12 +125,20 @@ public class SimpleIgniteBackedCache<K extends Serializable, V> implements Simpl
 
     protected final boolean allowSentinelsInBackingCache;
 
+    protected final RegionValueCompression valueCompression;
+
+    protected final NegativeLookupCache<K, V> negativeLookups;
+
     protected volatile boolean informedUnserializableValueType = false;
 
+    protected volatile boolean informedUnexpectedCompressedValue = false;
+
     protected final String invalidationTopic;
 
     protected final String bulkInvalidationTopic;
 
+    protected final String negativeLookupInvalidationTopic;
+
     /**
      * Creates a simple Ignite-backed cache that is capable of communicating with other grid nodes that also host an instance of the same
      * underlying cache.
@@ -140,6 +154,54 @@ public class SimpleIgniteBackedCache<K extends Serializable, V> implements Simpl
      */
     public SimpleIgniteBackedCache(final Ignite grid, final Mode cacheMode, final IgniteCache<K, V> backingCache,
             final boolean allowSentinelsInBackingCache)
+    {
+        this(grid, cacheMode, backingCache, allowSentinelsInBackingCache, null);
+    }
+
+    /**
+     * Creates a simple Ignite-backed cache that is capable of communicating with other grid nodes that also host an instance of the same
+     * underlying cache.
+     *
+     * @param grid
+     *            the Ignite grid instance to use for communication
+     * @param cacheMode
+     *            the mode of operation for this cache instance
+     * @param backingCache
+     *            the low-level Ignite cache instance
+     * @param allowSentinelsInBackingCache
+     *            {@code true} if sentinels for dummy values (defined by {@link EntityLookupCache}) are allowed to be stored in the cache
+     * @param valueCompression
+     *            the handle to compress values before they are stored in the backing cache - may be {@code null} if values should be
+     *            stored as-is
+     */
+    public SimpleIgniteBackedCache(final Ignite grid, final Mode cacheMode, final IgniteCache<K, V> backingCache,
+            final boolean allowSentinelsInBackingCache, final RegionValueCompression valueCompression)
+    {
+        this(grid, cacheMode, backingCache, allowSentinelsInBackingCache, valueCompression, null);
+    }
+
+    /**
+     * Creates a simple Ignite-backed cache that is capable of communicating with other grid nodes that also host an instance of the same
+     * underlying cache.
+     *
+     * @param grid
+     *            the Ignite grid instance to use for communication
+     * @param cacheMode
+     *            the mode of operation for this cache instance
+     * @param backingCache
+     *            the low-level Ignite cache instance
+     * @param allowSentinelsInBackingCache
+     *            {@code true} if sentinels for dummy values (defined by {@link EntityLookupCache}) are allowed to be stored in the cache
+     * @param valueCompression
+     *            the handle to compress values before they are stored in the backing cache - may be {@code null} if values should be
+     *            stored as-is
+     * @param negativeLookups
+     *            the structure in which to hold sentinels for dummy values instead of the backing cache - may be {@code null} if sentinels
+     *            should be handled according to {@code allowSentinelsInBackingCache}
+     */
+    public SimpleIgniteBackedCache(final Ignite grid, final Mode cacheMode, final IgniteCache<K, V> backingCache,
+            final boolean allowSentinelsInBackingCache, final RegionValueCompression valueCompression,
+            final NegativeLookupCache<K, V> negativeLookups)
     {
         ParameterCheck.mandatory("grid", grid);
         ParameterCheck.mandatory("cacheMode", cacheMode);
@@ -150,8 +212,11 @@ public class SimpleIgniteBackedCache<K extends Serializable, V> implements Simpl
         this.backingCache = backingCache;
         this.cacheName = backingCache.getName();
         this.allowSentinelsInBackingCache = allowSentinelsInBackingCache;
+        this.valueCompression = valueCompression;
+        this.negativeLookups = negativeLookups;
         this.invalidationTopic = this.cacheName + "-invalidate";
         this.bulkInvalidationTopic = this.cacheName + "-bulkInvalidate";
+        this.negativeLookupInvalidationTopic = this.cacheName + "-invalidateNegativeLookup";
 
         this.instanceLogger = LoggerFactory.getLogger(this.getClass().getName() + "." + this.cacheName);
 
@@ -162,6 +227,7 @@ public class SimpleIgniteBackedCache<K extends Serializable, V> implements Simpl
                 @SuppressWarnings("unchecked")
                 final K typedKey = (K) key;
                 this.backingCache.remove(typedKey);
+                this.removeNegativeLookup(typedKey);
 
                 // keep listening
                 return true;
@@ -175,12 +241,26 @@ public class SimpleIgniteBackedCache<K extends Serializable, V> implements Simpl
                     final Collection<K> keyCollection = (Collection<K>) col;
                     keyCollection.forEach(key -> {
                         this.backingCache.remove(key);
+                        this.removeNegativeLookup(key);
                     });
                 }
                 // keep listening
                 return true;
             });
         }
+
+        if (negativeLookups != null)
+        {
+            grid.message().localListen(this.negativeLookupInvalidationTopic, (uuid, key) -> {
+                this.instanceLogger.debug("Received negative lookup invalidation message for {}", key);
+                @SuppressWarnings("unchecked")
+                final K typedKey = (K) key;
+                this.removeNegativeLookup(typedKey);
+
+                // keep listening
+                return true;
+            });
+        }
     }
 
     /**
@@ -192,7 +272,7 @@ public class SimpleIgniteBackedCache<K extends Serializable, V> implements Simpl
     {
         this.instanceLogger.debug("Checking for containment of {}", key);
 
-        final boolean containsKey = this.backingCache.containsKey(key);
+        final boolean containsKey = this.getNegativeLookup(key) != null || this.backingCache.containsKey(key);
 
         this.instanceLogger.debug("Cache contains key {}: {}", key, containsKey);
 
@@ -259,13 +339,56 @@ public class SimpleIgniteBackedCache<K extends Serializable, V> implements Simpl
     {
         this.instanceLogger.debug("Getting value for key {}", key);
 
-        final V value = this.getImpl(key);
+        V value = this.getNegativeLookup(key);
+        if (value == null)
+        {
+            value = this.getImpl(key);
+        }
 
         this.instanceLogger.debug("Retrieved value {} for key {}", value, key);
 
         return value;
     }
 
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<K, V> getAll(final Set<K> keys)
+    {
+        this.instanceLogger.debug("Getting values for {} keys", keys.size());
+
+        final Map<K, V> values;
+        if (this.negativeLookups != null)
+        {
+            values = new HashMap<>(keys.size() * 4 / 3 + 1);
+            final Set<K> remainingKeys = new HashSet<>(keys);
+            for (final K key : keys)
+            {
+                final V negativeLookup = this.getNegativeLookup(key);
+                if (negativeLookup != null)
+                {
+                    values.put(key, negativeLookup);
+                    remainingKeys.remove(key);
+                }
+            }
+
+            if (!remainingKeys.isEmpty())
+            {
+                values.putAll(this.getAllImpl(remainingKeys));
+            }
+        }
+        else
+        {
+            values = this.getAllImpl(keys);
+        }
+
+        this.instanceLogger.debug("Retrieved {} values for {} keys", values.size(), keys.size());
+
+        return values;
+    }
+
     /**
      *
      * {@inheritDoc}
@@ -295,6 +418,14 @@ public class SimpleIgniteBackedCache<K extends Serializable, V> implements Simpl
             this.instanceLogger.debug("Call to put with null-value for key {} instead of proper remove", key);
 
             invalidate = this.backingCache.remove(key) || invalidate;
+            this.removeNegativeLookup(key);
+        }
+        else if (this.negativeLookups != null && NegativeLookupCache.isSentinel(value))
+        {
+            this.instanceLogger.debug("Call to put with sentinel-value for key {} will be recorded as a negative lookup", key);
+
+            this.negativeLookups.put(key, value);
+            invalidate = this.backingCache.remove(key) || invalidate;
         }
         else if (!this.allowSentinelsInBackingCache && (VALUE_NOT_FOUND.equals(effectiveValue) || VALUE_NULL.equals(effectiveValue)))
         {
@@ -309,6 +440,17 @@ public class SimpleIgniteBackedCache<K extends Serializable, V> implements Simpl
             final V oldValue = this.getAndPutImpl(key, value);
             invalidate = invalidate
                     || (this.cacheMode.isHandleInvalidations() && oldValue != null && !EqualsHelper.nullSafeEquals(oldValue, value));
+
+            if (this.negativeLookups != null)
+            {
+                final boolean negativeLookupRecorded = this.negativeLookups.remove(key);
+                // this member considered the key as not existing, so others may still do so as well
+                // members of a replicated cache check the negative lookups against their local copy of the backing cache instead
+                if (negativeLookupRecorded && this.cacheMode != Mode.LOCAL && this.cacheMode != Mode.REPLICATED)
+                {
+                    this.sendInvalidationMessage(this.negativeLookupInvalidationTopic, key);
+                }
+            }
         }
 
         if (this.cacheMode.isHandleInvalidations() && invalidate)
@@ -327,6 +469,7 @@ public class SimpleIgniteBackedCache<K extends Serializable, V> implements Simpl
         this.instanceLogger.debug("Removing value for key {}", key);
 
         this.backingCache.remove(key);
+        this.removeNegativeLookup(key);
     }
 
     /**
@@ -339,6 +482,10 @@ public class SimpleIgniteBackedCache<K extends Serializable, V> implements Simpl
         this.instanceLogger.debug("Clearing all data");
 
         this.backingCache.clear();
+        if (this.negativeLookups != null)
+        {
+            this.negativeLookups.clear();
+        }
     }
 
     /**
@@ -387,15 +534,53 @@ public class SimpleIgniteBackedCache<K extends Serializable, V> implements Simpl
         final V value;
         if (cacheValue instanceof BinaryObject)
         {
-            value = ((BinaryObject) cacheValue).deserialize();
+            value = (V) this.decompress(((BinaryObject) cacheValue).deserialize());
         }
         else
         {
-            value = (V) cacheValue;
+            value = (V) this.decompress(cacheValue);
         }
         return value;
     }
 
+    /**
+     * Performs the actual retrieval of multiple values from the backing cache.
+     *
+     * @param keys
+     *            the keys to use in the lookup
+     * @return the resolved values
+     */
+    @SuppressWarnings("unchecked")
+    protected Map<K, V> getAllImpl(final Set<K> keys)
+    {
+        // using withKeepBinary avoids and deserialisation happening in Ignite async threads, which might potentially block them with
+        // cascading lookups due to serialisation optimisations
+        final IgniteCache<K, Object> cache = this.backingCache.withKeepBinary();
+        final Map<K, Object> cacheValues = cache.getAll(keys);
+
+        final Map<K, V> values = new HashMap<>(cacheValues.size() * 4 / 3 + 1);
+        cacheValues.forEach((cacheKey, cacheValue) -> {
+            // keys of user types are also returned in binary form, which would never match any of the requested keys in lookups
+            final K key = cacheKey instanceof BinaryObject ? ((BinaryObject) cacheKey).<K> deserialize() : cacheKey;
+
+            final V value;
+            if (cacheValue instanceof BinaryObject)
+            {
+                value = (V) this.decompress(((BinaryObject) cacheValue).deserialize());
+            }
+            else
+            {
+                value = (V) this.decompress(cacheValue);
+            }
+            // value may have been dropped as it could not be decompressed
+            if (value != null)
+            {
+                values.put(key, value);
+            }
+        });
+        return values;
+    }
+
     /**
      * Performs the actual retrieval and update of a single entry in the backing cache.
      *
@@ -411,20 +596,79 @@ public class SimpleIgniteBackedCache<K extends Serializable, V> implements Simpl
         // using withKeepBinary avoids and deserialisation happening in Ignite async threads, which might potentially block them with
         // cascading lookups due to serialisation optimisations
         final IgniteCache<K, Object> cache = this.backingCache.withKeepBinary();
-        final Object cacheValue = cache.getAndPut(key, newValue);
+        final Object storedValue = this.valueCompression != null ? this.valueCompression.compress(newValue) : newValue;
+        final Object cacheValue = cache.getAndPut(key, storedValue);
 
         final V oldValue;
         if (cacheValue instanceof BinaryObject)
         {
-            oldValue = ((BinaryObject) cacheValue).deserialize();
+            oldValue = (V) this.decompress(((BinaryObject) cacheValue).deserialize());
         }
         else
         {
-            oldValue = (V) cacheValue;
+            oldValue = (V) this.decompress(cacheValue);
         }
         return oldValue;
     }
 
+    /**
+     * Decompresses a value retrieved from the backing cache if it has been stored in compressed form.
+     *
+     * @param cacheValue
+     *            the value retrieved from the backing cache
+     * @return the decompressed value, or {@code null} if the value has been stored in compressed form by another grid member but
+     *         compression is not enabled for this instance
+     */
+    protected Object decompress(final Object cacheValue)
+    {
+        Object value = cacheValue;
+        if (cacheValue instanceof CompressedValue)
+        {
+            if (this.valueCompression != null)
+            {
+                value = this.valueCompression.decompress(cacheValue);
+            }
+            else
+            {
+                if (!this.informedUnexpectedCompressedValue)
+                {
+                    this.instanceLogger.warn("Encountered compressed value while compression is not enabled"
+                            + " - compression of data regions must be configured consistently on all members");
+                    this.informedUnexpectedCompressedValue = true;
+                }
+                // treat as cache miss
+                value = null;
+            }
+        }
+        return value;
+    }
+
+    protected V getNegativeLookup(final K key)
+    {
+        V negativeLookup = this.negativeLookups != null ? this.negativeLookups.get(key) : null;
+        if (negativeLookup != null && this.cacheMode == Mode.REPLICATED)
+        {
+            // creation of values is not broadcast for replicated caches, but each member holds a copy of all entries
+            // use withKeepBinary to avoid unnecessary deseralisation of values
+            final IgniteCache<K, ?> cache = this.backingCache.withKeepBinary();
+            if (cache.localPeek(key, CachePeekMode.PRIMARY, CachePeekMode.BACKUP) != null)
+            {
+                this.instanceLogger.debug("Dropping negative lookup for {} as the key exists in the backing cache", key);
+                this.negativeLookups.remove(key);
+                negativeLookup = null;
+            }
+        }
+        return negativeLookup;
+    }
+
+    protected void removeNegativeLookup(final K key)
+    {
+        if (this.negativeLookups != null)
+        {
+            this.negativeLookups.remove(key);
+        }
+    }
+
     protected void sendInvalidationMessage(final String topic, final Object msg)
     {
         final Object msgLogLabel = this.instanceLogger.isDebugEnabled()
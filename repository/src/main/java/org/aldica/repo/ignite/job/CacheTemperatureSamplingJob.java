@@ -0,0 +1,31 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.job;
+
+import org.aldica.repo.ignite.cache.CacheTemperatureTracker;
+
+import de.acosix.alfresco.utility.repo.job.GenericJob;
+import de.acosix.alfresco.utility.repo.job.JobUtilities;
+
+/**
+ * Instances of this class execute the simple job of {@link CacheTemperatureTracker#sample() sampling} the access temperature of caches.
+ *
+ * @author Axel Faust
+ */
+public class CacheTemperatureSamplingJob implements GenericJob
+{
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute(final Object jobExecutionContext)
+    {
+        final CacheTemperatureTracker cacheTemperatureTracker = JobUtilities.getJobDataValue(jobExecutionContext, "cacheTemperatureTracker",
+                CacheTemperatureTracker.class);
+        cacheTemperatureTracker.sample();
+    }
+
+}
@@ -0,0 +1,32 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.job;
+
+import org.aldica.repo.ignite.cache.DataRegionSizingController;
+
+import de.acosix.alfresco.utility.repo.job.GenericJob;
+import de.acosix.alfresco.utility.repo.job.JobUtilities;
+
+/**
+ * Instances of this class execute the simple job of {@link DataRegionSizingController#evaluate() evaluating} the sizing of data regions
+ * based on their current metrics.
+ *
+ * @author Axel Faust
+ */
+public class DataRegionSizingEvaluationJob implements GenericJob
+{
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute(final Object jobExecutionContext)
+    {
+        final DataRegionSizingController dataRegionSizingController = JobUtilities.getJobDataValue(jobExecutionContext,
+                "dataRegionSizingController", DataRegionSizingController.class);
+        dataRegionSizingController.evaluate();
+    }
+
+}
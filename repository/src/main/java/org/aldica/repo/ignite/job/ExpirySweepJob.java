@@ -0,0 +1,30 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.job;
+
+import org.aldica.repo.ignite.cache.ExpirySweeper;
+
+import de.acosix.alfresco.utility.repo.job.GenericJob;
+import de.acosix.alfresco.utility.repo.job.JobUtilities;
+
+/**
+ * Instances of this class execute the simple job of {@link ExpirySweeper#sweep() sweeping} expired entries from caches.
+ *
+ * @author Axel Faust
+ */
+public class ExpirySweepJob implements GenericJob
+{
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute(final Object jobExecutionContext)
+    {
+        final ExpirySweeper expirySweeper = JobUtilities.getJobDataValue(jobExecutionContext, "expirySweeper", ExpirySweeper.class);
+        expirySweeper.sweep();
+    }
+
+}
@@ -0,0 +1,172 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.web.scripts;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.aldica.repo.ignite.binary.SerializedSizeCensus;
+import org.aldica.repo.ignite.binary.SerializedSizeCensus.CacheCensus;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCheckedException;
+import org.apache.ignite.Ignition;
+import org.springframework.extensions.webscripts.Cache;
+import org.springframework.extensions.webscripts.DeclarativeWebScript;
+import org.springframework.extensions.webscripts.Status;
+import org.springframework.extensions.webscripts.WebScriptException;
+import org.springframework.extensions.webscripts.WebScriptRequest;
+
+/**
+ * Instances of this web script conduct a {@link SerializedSizeCensus census} of the serialised sizes of entries in the caches held by the
+ * local member of all grids of which the Repository is a member.
+ *
+ * @author Axel Faust
+ */
+public class CacheCensusGet extends DeclarativeWebScript
+{
+
+    protected int defaultSampleSize = 200;
+
+    protected int maxSampleSize = 10000;
+
+    protected int maxScannedEntries = 10000;
+
+    protected int maxDictionaryValuesPerProperty = 256;
+
+    protected int maxDictionaryValueLength = 256;
+
+    /**
+     * @param defaultSampleSize
+     *            the defaultSampleSize to set
+     */
+    public void setDefaultSampleSize(final int defaultSampleSize)
+    {
+        this.defaultSampleSize = defaultSampleSize;
+    }
+
+    /**
+     * @param maxSampleSize
+     *            the maxSampleSize to set
+     */
+    public void setMaxSampleSize(final int maxSampleSize)
+    {
+        this.maxSampleSize = maxSampleSize;
+    }
+
+    /**
+     * @param maxScannedEntries
+     *            the maxScannedEntries to set
+     */
+    public void setMaxScannedEntries(final int maxScannedEntries)
+    {
+        this.maxScannedEntries = maxScannedEntries;
+    }
+
+    /**
+     * @param maxDictionaryValuesPerProperty
+     *            the maxDictionaryValuesPerProperty to set
+     */
+    public void setMaxDictionaryValuesPerProperty(final int maxDictionaryValuesPerProperty)
+    {
+        this.maxDictionaryValuesPerProperty = maxDictionaryValuesPerProperty;
+    }
+
+    /**
+     * @param maxDictionaryValueLength
+     *            the maxDictionaryValueLength to set
+     */
+    public void setMaxDictionaryValueLength(final int maxDictionaryValueLength)
+    {
+        this.maxDictionaryValueLength = maxDictionaryValueLength;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Map<String, Object> executeImpl(final WebScriptRequest req, final Status status, final Cache cache)
+    {
+        final Map<String, Object> model = new HashMap<>();
+
+        final String igniteInstanceName = req.getParameter("instance");
+        final String cacheName = req.getParameter("cache");
+
+        int sampleSize = this.defaultSampleSize;
+        final String sampleSizeParam = req.getParameter("sampleSize");
+        if (sampleSizeParam != null)
+        {
+            try
+            {
+                sampleSize = Integer.parseInt(sampleSizeParam);
+            }
+            catch (final NumberFormatException nfe)
+            {
+                throw new WebScriptException(Status.STATUS_BAD_REQUEST, "Invalid sample size: " + sampleSizeParam);
+            }
+
+            if (sampleSize <= 0 || sampleSize > this.maxSampleSize)
+            {
+                throw new WebScriptException(Status.STATUS_BAD_REQUEST,
+                        "Sample size must be between 1 and " + this.maxSampleSize + ": " + sampleSize);
+            }
+        }
+
+        final SerializedSizeCensus census = new SerializedSizeCensus();
+        census.setSampleSize(sampleSize);
+        census.setMaxScannedEntries(Math.max(sampleSize, this.maxScannedEntries));
+        census.setMaxDictionaryValuesPerProperty(this.maxDictionaryValuesPerProperty);
+        census.setMaxDictionaryValueLength(this.maxDictionaryValueLength);
+
+        final List<Ignite> grids = new ArrayList<>();
+        if (igniteInstanceName != null)
+        {
+            // Ignition.ignite(String) fails with an IgniteIllegalStateException for unknown instances
+            Ignition.allGrids().stream().filter(grid -> igniteInstanceName.equals(grid.name())).forEach(grids::add);
+            if (grids.isEmpty())
+            {
+                throw new WebScriptException(Status.STATUS_NOT_FOUND, "Unknown Ignite instance: " + igniteInstanceName);
+            }
+        }
+        else
+        {
+            grids.addAll(Ignition.allGrids());
+        }
+
+        final List<Object> gridCensuses = new ArrayList<>();
+        for (final Ignite grid : grids)
+        {
+            final Map<String, Object> gridModel = new HashMap<>();
+            gridCensuses.add(gridModel);
+
+            gridModel.put("grid", grid.name());
+
+            final List<CacheCensus> cacheCensuses = new ArrayList<>();
+            try
+            {
+                if (cacheName != null)
+                {
+                    if (grid.cacheNames().contains(cacheName))
+                    {
+                        cacheCensuses.add(census.conductCensus(grid, cacheName));
+                    }
+                }
+                else
+                {
+                    cacheCensuses.addAll(census.conductCensus(grid));
+                }
+            }
+            catch (final IgniteCheckedException icex)
+            {
+                throw new WebScriptException(Status.STATUS_INTERNAL_SERVER_ERROR, "Failed to conduct census of grid " + grid.name(), icex);
+            }
+            gridModel.put("cacheCensuses", cacheCensuses);
+        }
+        model.put("gridCensuses", gridCensuses);
+        model.put("sampleSize", Integer.valueOf(sampleSize));
+
+        return model;
+    }
+}
@@ -9,24 +9,43 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.aldica.repo.ignite.cache.CacheValueCompressor;
+import org.aldica.repo.ignite.cache.DataRegionSizingController;
+import org.aldica.repo.ignite.cache.ExpirySweeper;
 import org.apache.ignite.DataRegionMetrics;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.Ignition;
 import org.apache.ignite.cluster.ClusterGroup;
 import org.apache.ignite.cluster.ClusterNode;
+import org.springframework.beans.BeansException;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
 import org.springframework.extensions.webscripts.Cache;
 import org.springframework.extensions.webscripts.DeclarativeWebScript;
 import org.springframework.extensions.webscripts.Status;
 import org.springframework.extensions.webscripts.WebScriptRequest;
 
 /**
- * Instances of this web script preload data region metrics of all members of all grids that of which the Repository is a member.
+ * Instances of this web script preload data region metrics of all members of all grids that of which the Repository is a member, as well as
+ * the sizing recommendations, expiry and compression metrics for data regions of the local member if adaptive sizing / expiry sweeping /
+ * value compression is enabled.
  *
  * @author Axel Faust
  */
-public class DataRegionsGet extends DeclarativeWebScript
+public class DataRegionsGet extends DeclarativeWebScript implements ApplicationContextAware
 {
 
+    protected ApplicationContext applicationContext;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setApplicationContext(final ApplicationContext applicationContext) throws BeansException
+    {
+        this.applicationContext = applicationContext;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -52,12 +71,26 @@ public class DataRegionsGet extends DeclarativeWebScript
             grids.addAll(Ignition.allGrids());
         }
 
+        final Map<String, Object> sizingDecisionsByGrid = new HashMap<>();
+        // controllers are only instantiated for enabled grids, so their availability must not be assumed
+        this.applicationContext.getBeansOfType(DataRegionSizingController.class, false, false).values()
+                .forEach(controller -> sizingDecisionsByGrid.put(controller.getInstanceName(), controller.getDecisions()));
+        final Map<String, Object> expiryMetricsByGrid = new HashMap<>();
+        this.applicationContext.getBeansOfType(ExpirySweeper.class, false, false).values()
+                .forEach(sweeper -> expiryMetricsByGrid.put(sweeper.getInstanceName(), sweeper.getMetrics()));
+        final Map<String, Object> compressionMetricsByGrid = new HashMap<>();
+        this.applicationContext.getBeansOfType(CacheValueCompressor.class, false, false).values()
+                .forEach(compressor -> compressionMetricsByGrid.put(compressor.getInstanceName(), compressor.getMetrics()));
+
         final List<Object> gridRegionMetrics = new ArrayList<>();
         grids.forEach(grid -> {
             final Map<String, Object> gridModel = new HashMap<>();
             gridRegionMetrics.add(gridModel);
 
             gridModel.put("grid", grid.name());
+            gridModel.put("sizingDecisions", sizingDecisionsByGrid.getOrDefault(grid.name(), new HashMap<>()));
+            gridModel.put("expiryMetrics", expiryMetricsByGrid.getOrDefault(grid.name(), new HashMap<>()));
+            gridModel.put("compressionMetrics", compressionMetricsByGrid.getOrDefault(grid.name(), new HashMap<>()));
 
             final List<Object> gridNodeRegionMetrics = new ArrayList<>();
             gridModel.put("gridNodeRegionMetrics", gridNodeRegionMetrics);
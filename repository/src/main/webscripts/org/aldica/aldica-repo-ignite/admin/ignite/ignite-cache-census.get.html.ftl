@@ -0,0 +1,115 @@
+<#-- This Source Code Form is subject to the terms of the Mozilla Public
+   - License, v. 2.0. If a copy of the MPL was not distributed with this
+   - file, You can obtain one at https://mozilla.org/MPL/2.0/. -->
+
+<#include "/org/orderofthebee/support-tools/admin/admin-template.ftl" />
+
+<#function formatSize size>
+    <#local result=size?c />
+        <#if size &gt;= (1024 * 1024 * 1024)>
+            <#local result = (size/1024/1024/1024)?string('0.##') + " " + msg("ignite.census.unit.GiB") />
+        <#elseif size &gt;= (1024 * 1024)>
+            <#local result = (size/1024/1024)?string('0.##') + " " + msg("ignite.census.unit.MiB") />
+        <#elseif size &gt;= (1024)>
+            <#local result = (size/1024)?string('0.##') + " " + msg("ignite.census.unit.KiB") />
+        </#if>
+    <#return result />
+</#function>
+
+<@page title=msg("ignite.census.title") readonly=true>
+
+    <div class="column-full">
+        <p class="intro">${msg("ignite.census.intro", sampleSize?c)?html}</p>
+
+        <div class="control">
+            <table class="results data grids" width="100%">
+                <thead>
+                    <tr>
+                        <th title="${msg("ignite.census.attr.grid.title")?xml}">${msg("ignite.census.attr.grid.label")?html}</th>
+                        <th title="${msg("ignite.census.attr.cache.title")?xml}">${msg("ignite.census.attr.cache.label")?html}</th>
+                        <th title="${msg("ignite.census.attr.entries.title")?xml}">${msg("ignite.census.attr.entries.label")?html}</th>
+                        <th title="${msg("ignite.census.attr.sampled.title")?xml}">${msg("ignite.census.attr.sampled.label")?html}</th>
+                        <th title="${msg("ignite.census.attr.keyP50.title")?xml}">${msg("ignite.census.attr.keyP50.label")?html}</th>
+                        <th title="${msg("ignite.census.attr.keyP95.title")?xml}">${msg("ignite.census.attr.keyP95.label")?html}</th>
+                        <th title="${msg("ignite.census.attr.keyMax.title")?xml}">${msg("ignite.census.attr.keyMax.label")?html}</th>
+                        <th title="${msg("ignite.census.attr.valueP50.title")?xml}">${msg("ignite.census.attr.valueP50.label")?html}</th>
+                        <th title="${msg("ignite.census.attr.valueP95.title")?xml}">${msg("ignite.census.attr.valueP95.label")?html}</th>
+                        <th title="${msg("ignite.census.attr.valueMax.title")?xml}">${msg("ignite.census.attr.valueMax.label")?html}</th>
+                        <th title="${msg("ignite.census.attr.valueTypes.title")?xml}">${msg("ignite.census.attr.valueTypes.label")?html}</th>
+                    </tr>
+                </thead>
+                <tbody>
+                    <#list gridCensuses as gridCensus>
+                        <#list gridCensus.cacheCensuses as census>
+                            <tr>
+                                <td>${gridCensus.grid?html}</td>
+                                <td>${census.cacheName?html}</td>
+                                <td>${census.localSize?c}</td>
+                                <td>${census.keySizes.count?c}</td>
+                                <td title="${census.keySizes.p50?c}">${formatSize(census.keySizes.p50)?html}</td>
+                                <td title="${census.keySizes.p95?c}">${formatSize(census.keySizes.p95)?html}</td>
+                                <td title="${census.keySizes.max?c}">${formatSize(census.keySizes.max)?html}</td>
+                                <td title="${census.valueSizes.p50?c}">${formatSize(census.valueSizes.p50)?html}</td>
+                                <td title="${census.valueSizes.p95?c}">${formatSize(census.valueSizes.p95)?html}</td>
+                                <td title="${census.valueSizes.max?c}">${formatSize(census.valueSizes.max)?html}</td>
+                                <td><#list census.valueTypes?keys as valueType>${valueType?html} (${census.valueTypes[valueType]?c})<#if valueType_has_next>, </#if></#list></td>
+                            </tr>
+                        </#list>
+                    </#list>
+                </tbody>
+            </table>
+        </div>
+
+        <#list gridCensuses as gridCensus>
+            <#list gridCensus.cacheCensuses as census>
+                <#if census.savingsEstimates?has_content>
+                    <h3>${msg("ignite.census.properties.title", gridCensus.grid, census.cacheName)?html}</h3>
+                    <div class="control">
+                        <table class="results data grids" width="100%">
+                            <thead>
+                                <tr>
+                                    <th title="${msg("ignite.census.attr.flag.title")?xml}">${msg("ignite.census.attr.flag.label")?html}</th>
+                                    <th title="${msg("ignite.census.attr.sampleSavings.title")?xml}">${msg("ignite.census.attr.sampleSavings.label")?html}</th>
+                                    <th title="${msg("ignite.census.attr.estimatedSavings.title")?xml}">${msg("ignite.census.attr.estimatedSavings.label")?html}</th>
+                                </tr>
+                            </thead>
+                            <tbody>
+                                <#list census.savingsEstimates as estimate>
+                                    <tr>
+                                        <td>${estimate.flag?html}</td>
+                                        <td title="${estimate.sampleSavings?c}">${formatSize(estimate.sampleSavings)?html}</td>
+                                        <td title="${estimate.estimatedSavings?c}">${formatSize(estimate.estimatedSavings)?html}</td>
+                                    </tr>
+                                </#list>
+                            </tbody>
+                        </table>
+                    </div>
+                    <div class="control">
+                        <table class="results data grids" width="100%">
+                            <thead>
+                                <tr>
+                                    <th title="${msg("ignite.census.attr.property.title")?xml}">${msg("ignite.census.attr.property.label")?html}</th>
+                                    <th title="${msg("ignite.census.attr.valueType.title")?xml}">${msg("ignite.census.attr.valueType.label")?html}</th>
+                                    <th title="${msg("ignite.census.attr.occurrences.title")?xml}">${msg("ignite.census.attr.occurrences.label")?html}</th>
+                                    <th title="${msg("ignite.census.attr.totalSize.title")?xml}">${msg("ignite.census.attr.totalSize.label")?html}</th>
+                                    <th title="${msg("ignite.census.attr.avgSize.title")?xml}">${msg("ignite.census.attr.avgSize.label")?html}</th>
+                                </tr>
+                            </thead>
+                            <tbody>
+                                <#list census.propertyValues as propertyValue>
+                                    <tr>
+                                        <td>${propertyValue.property.toString()?html}</td>
+                                        <td>${propertyValue.valueType?html}</td>
+                                        <td>${propertyValue.occurrences?c}</td>
+                                        <td title="${propertyValue.totalSize?c}">${formatSize(propertyValue.totalSize)?html}</td>
+                                        <td>${propertyValue.averageSize?string('0.#')}</td>
+                                    </tr>
+                                </#list>
+                            </tbody>
+                        </table>
+                    </div>
+                </#if>
+            </#list>
+        </#list>
+    </div>
+</@page>
\ No newline at end of file
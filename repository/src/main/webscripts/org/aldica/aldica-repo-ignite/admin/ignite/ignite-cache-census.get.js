@@ -0,0 +1,9 @@
+<import resource="classpath:alfresco/templates/webscripts/org/alfresco/repository/admin/admin-common.lib.js">
+
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+
+// census itself is conducted in Java-backed part of web script
+model.tools = Admin.getConsoleTools("ignite-cache-census");
+model.metadata = Admin.getServerMetaData();
\ No newline at end of file
@@ -0,0 +1,54 @@
+<#-- This Source Code Form is subject to the terms of the Mozilla Public
+   - License, v. 2.0. If a copy of the MPL was not distributed with this
+   - file, You can obtain one at https://mozilla.org/MPL/2.0/. --><#compress>
+<#setting locale="en"><#-- need to make sure we use this locale for proper number formatting -->
+<#macro sizeDistribution sizes>{
+                "count" : ${sizes.count?c},
+                "p50" : ${sizes.p50?c},
+                "p95" : ${sizes.p95?c},
+                "max" : ${sizes.max?c},
+                "avg" : ${sizes.average?string["0.#"]},
+                "total" : ${sizes.total?c}
+            }</#macro>
+<#escape x as jsonUtils.encodeJSONString(x)>
+{
+    "sampleSize" : ${sampleSize?c},
+    "caches" : [
+        <#list gridCensuses as gridCensus>
+        <#list gridCensus.cacheCensuses as census>
+        {
+            "grid" : "${gridCensus.grid}",
+            "name" : "${census.cacheName}",
+            "localEntryCount" : ${census.localSize?c},
+            "keySizes" : <@sizeDistribution census.keySizes />,
+            "valueSizes" : <@sizeDistribution census.valueSizes />,
+            "valueTypes" : {
+                <#list census.valueTypes?keys as valueType>
+                "${valueType}" : ${census.valueTypes[valueType]?c}<#if valueType_has_next>,</#if>
+                </#list>
+            },
+            "propertyValues" : [
+                <#list census.propertyValues as propertyValue>
+                {
+                    "property" : "${propertyValue.property}",
+                    "valueType" : "${propertyValue.valueType}",
+                    "occurrences" : ${propertyValue.occurrences?c},
+                    "totalSize" : ${propertyValue.totalSize?c},
+                    "avgSize" : ${propertyValue.averageSize?string["0.#"]}
+                }<#if propertyValue_has_next>,</#if>
+                </#list>
+            ],
+            "savingsEstimates" : {
+                <#list census.savingsEstimates as estimate>
+                "${estimate.flag}" : {
+                    "sample" : ${estimate.sampleSavings?c},
+                    "estimated" : ${estimate.estimatedSavings?c}
+                }<#if estimate_has_next>,</#if>
+                </#list>
+            }
+        }<#if census_has_next || gridCensus_has_next>,</#if>
+        </#list>
+        </#list>
+    ]
+}
+</#escape></#compress>
\ No newline at end of file
@@ -38,6 +38,9 @@
                         <th title="${msg("ignite.regions.attr.pageFillFactor.title")?xml}">${msg("ignite.regions.attr.pageFillFactor.label")?html}</th>
                         <th title="${msg("ignite.regions.attr.usedPages.title")?xml}">${msg("ignite.regions.attr.usedPages.label")?html}</th>
                         <th title="${msg("ignite.regions.attr.usedSize.title")?xml}">${msg("ignite.regions.attr.usedSize.label")?html}</th>
+                        <th title="${msg("ignite.regions.attr.recommendedMaxSize.title")?xml}">${msg("ignite.regions.attr.recommendedMaxSize.label")?html}</th>
+                        <th title="${msg("ignite.regions.attr.expiryBacklog.title")?xml}">${msg("ignite.regions.attr.expiryBacklog.label")?html}</th>
+                        <th title="${msg("ignite.regions.attr.compressionRatio.title")?xml}">${msg("ignite.regions.attr.compressionRatio.label")?html}</th>
                     </tr>
                 </thead>
                 <tbody>
@@ -68,6 +71,24 @@
                                     <#else>
                                         <td></td>
                                     </#if>
+                                    <#if gridNodeRegionMetric.node.isLocal() && gridRegionMetricModel.sizingDecisions[regionMetrics.name]??>
+                                        <#assign sizingDecision = gridRegionMetricModel.sizingDecisions[regionMetrics.name] />
+                                        <td title="${msg("ignite.regions.sizingReason." + sizingDecision.reason?string)?xml}">${formatSize(sizingDecision.recommendedMaxSize)?html}</td>
+                                    <#else>
+                                        <td></td>
+                                    </#if>
+                                    <#if gridNodeRegionMetric.node.isLocal() && gridRegionMetricModel.expiryMetrics[regionMetrics.name]??>
+                                        <#assign expiryMetrics = gridRegionMetricModel.expiryMetrics[regionMetrics.name] />
+                                        <td title="${msg("ignite.regions.expiry.details", expiryMetrics.expiredLastRun?c, expiryMetrics.expiredTotal?c)?xml}">${expiryMetrics.overdueEntries?c}<#if expiryMetrics.backlogged> (${msg("ignite.regions.expiry.backlogged", expiryMetrics.backloggedRuns?c)?html})</#if></td>
+                                    <#else>
+                                        <td></td>
+                                    </#if>
+                                    <#if gridNodeRegionMetric.node.isLocal() && gridRegionMetricModel.compressionMetrics[regionMetrics.name]??>
+                                        <#assign compressionMetrics = gridRegionMetricModel.compressionMetrics[regionMetrics.name] />
+                                        <td title="${msg("ignite.regions.compression.details", compressionMetrics.compressedValues?c, compressionMetrics.uncompressedValues?c, compressionMetrics.averageCompressionMicros?string('0.##'), compressionMetrics.averageDecompressionMicros?string('0.##'))?xml}">${compressionMetrics.compressionRatio?string('0.##')}</td>
+                                    <#else>
+                                        <td></td>
+                                    </#if>
                                 </tr>
                             </#list>
                         </#list>
@@ -11,12 +11,15 @@ import java.util.UUID;
 
 import org.aldica.common.ignite.GridTestsBase;
 import org.alfresco.repo.cache.lookup.CacheRegionKey;
+import org.alfresco.repo.domain.node.NodeVersionKey;
 import org.apache.ignite.DataRegionMetrics;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteCache;
 import org.apache.ignite.Ignition;
 import org.apache.ignite.binary.BinaryTypeConfiguration;
+import org.apache.ignite.cache.CacheKeyConfiguration;
 import org.apache.ignite.cache.CacheMode;
+import org.apache.ignite.cache.affinity.Affinity;
 import org.apache.ignite.configuration.BinaryConfiguration;
 import org.apache.ignite.configuration.CacheConfiguration;
 import org.apache.ignite.configuration.DataPageEvictionMode;
@@ -37,6 +40,12 @@ public class CacheRegionKeyBinarySerializerTests extends GridTestsBase
     private static final Logger LOGGER = LoggerFactory.getLogger(CacheRegionKeyBinarySerializerTests.class);
 
     protected static IgniteConfiguration createConfiguration(final boolean serialForm, final String... regionNames)
+    {
+        return createConfiguration(serialForm, false, regionNames);
+    }
+
+    protected static IgniteConfiguration createConfiguration(final boolean serialForm, final boolean useAffinityKey,
+            final String... regionNames)
     {
         final IgniteConfiguration conf = createConfiguration(1, false, null);
 
@@ -46,6 +55,7 @@ public class CacheRegionKeyBinarySerializerTests extends GridTestsBase
         binaryTypeConfigurationForCacheRegionKey.setTypeName(CacheRegionKey.class.getName());
         final CacheRegionKeyBinarySerializer serializer = new CacheRegionKeyBinarySerializer();
         serializer.setUseRawSerialForm(serialForm);
+        serializer.setUseAffinityKey(useAffinityKey);
         binaryTypeConfigurationForCacheRegionKey.setSerializer(serializer);
 
         binaryConfiguration.setTypeConfigurations(Arrays.asList(binaryTypeConfigurationForCacheRegionKey));
@@ -145,6 +155,42 @@ public class CacheRegionKeyBinarySerializerTests extends GridTestsBase
         }
     }
 
+    @Test
+    public void affinityKeyCorrectness()
+    {
+        final IgniteConfiguration conf = createConfiguration(true, true);
+        try (Ignite grid = Ignition.start(conf))
+        {
+            final CacheConfiguration<CacheRegionKey, String> cacheConfig = new CacheConfiguration<>();
+            cacheConfig.setName("cacheRegionKeyAffinity");
+            cacheConfig.setCacheMode(CacheMode.PARTITIONED);
+            cacheConfig.setKeyConfiguration(
+                    new CacheKeyConfiguration(CacheRegionKey.class.getName(), CacheRegionAffinity.AFFINITY_KEY_FIELD));
+            final IgniteCache<CacheRegionKey, String> cache = grid.getOrCreateCache(cacheConfig);
+
+            final CacheRegionKey nodeKey = new CacheRegionKey(CacheRegion.NODES.getCacheRegionName(), Long.valueOf(1234l));
+            final CacheRegionKey aspectsKey = new CacheRegionKey(CacheRegion.NODES_ASPECTS.getCacheRegionName(),
+                    new NodeVersionKey(Long.valueOf(1234l), Long.valueOf(5l)));
+            final CacheRegionKey customKey = new CacheRegionKey(UUID.randomUUID().toString(), "value1");
+
+            cache.put(nodeKey, "node");
+            cache.put(aspectsKey, "aspects");
+            cache.put(customKey, "custom");
+
+            // lookups with equal but not identical keys
+            Assert.assertEquals("node", cache.get(new CacheRegionKey(CacheRegion.NODES.getCacheRegionName(), Long.valueOf(1234l))));
+            Assert.assertEquals("aspects", cache.get(new CacheRegionKey(CacheRegion.NODES_ASPECTS.getCacheRegionName(),
+                    new NodeVersionKey(Long.valueOf(1234l), Long.valueOf(5l)))));
+            Assert.assertEquals("custom", cache.get(new CacheRegionKey(customKey.getCacheRegion(), "value1")));
+
+            // related regions for same node are colocated
+            final Affinity<Object> affinity = grid.affinity(cacheConfig.getName());
+            Assert.assertEquals(affinity.partition(nodeKey), affinity.partition(aspectsKey));
+            Assert.assertEquals(affinity.partition(Integer.valueOf(CacheRegionAffinity.computeAffinityKey(Long.valueOf(1234l)))),
+                    affinity.partition(nodeKey));
+        }
+    }
+
     protected void correctnessImpl(final IgniteConfiguration conf)
     {
         try (Ignite grid = Ignition.start(conf))
@@ -6,17 +6,28 @@ package org.aldica.repo.ignite.binary;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.UUID;
 
 import org.aldica.common.ignite.GridTestsBase;
 import org.alfresco.repo.cache.lookup.CacheRegionValueKey;
+import org.alfresco.service.cmr.repository.StoreRef;
+import org.alfresco.util.Pair;
 import org.apache.ignite.DataRegionMetrics;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteCache;
 import org.apache.ignite.Ignition;
 import org.apache.ignite.binary.BinaryTypeConfiguration;
+import org.apache.ignite.cache.CacheKeyConfiguration;
 import org.apache.ignite.cache.CacheMode;
+import org.apache.ignite.cache.affinity.Affinity;
 import org.apache.ignite.configuration.BinaryConfiguration;
 import org.apache.ignite.configuration.CacheConfiguration;
 import org.apache.ignite.configuration.DataPageEvictionMode;
@@ -37,6 +48,12 @@ public class CacheRegionValueKeyBinarySerializerTests extends GridTestsBase
     private static final Logger LOGGER = LoggerFactory.getLogger(CacheRegionValueKeyBinarySerializerTests.class);
 
     protected static IgniteConfiguration createConfiguration(final boolean serialForm, final String... regionNames)
+    {
+        return createConfiguration(serialForm, false, regionNames);
+    }
+
+    protected static IgniteConfiguration createConfiguration(final boolean serialForm, final boolean useAffinityKey,
+            final String... regionNames)
     {
         final IgniteConfiguration conf = createConfiguration(1, false, null);
 
@@ -46,6 +63,7 @@ public class CacheRegionValueKeyBinarySerializerTests extends GridTestsBase
         binaryTypeConfigurationForCacheRegionValueKey.setTypeName(CacheRegionValueKey.class.getName());
         final CacheRegionValueKeyBinarySerializer serializer = new CacheRegionValueKeyBinarySerializer();
         serializer.setUseRawSerialForm(serialForm);
+        serializer.setUseAffinityKey(useAffinityKey);
         binaryTypeConfigurationForCacheRegionValueKey.setSerializer(serializer);
 
         binaryConfiguration.setTypeConfigurations(Arrays.asList(binaryTypeConfigurationForCacheRegionValueKey));
@@ -145,6 +163,76 @@ public class CacheRegionValueKeyBinarySerializerTests extends GridTestsBase
         }
     }
 
+    @Test
+    public void affinityKeyCorrectness()
+    {
+        final IgniteConfiguration conf = createConfiguration(true, true);
+        try (Ignite grid = Ignition.start(conf))
+        {
+            final CacheConfiguration<CacheRegionValueKey, String> cacheConfig = new CacheConfiguration<>();
+            cacheConfig.setName("cacheRegionValueKeyAffinity");
+            cacheConfig.setCacheMode(CacheMode.PARTITIONED);
+            cacheConfig.setKeyConfiguration(
+                    new CacheKeyConfiguration(CacheRegionValueKey.class.getName(), CacheRegionAffinity.AFFINITY_KEY_FIELD));
+            final IgniteCache<CacheRegionValueKey, String> cache = grid.getOrCreateCache(cacheConfig);
+
+            final Pair<Long, String> qnameValueKey = new Pair<>(Long.valueOf(6l), "content");
+            final CacheRegionValueKey qnameKey = new CacheRegionValueKey(CacheRegion.QNAME.getCacheRegionName(), qnameValueKey);
+            final CacheRegionValueKey storeKey = new CacheRegionValueKey(CacheRegion.DEFAULT.getCacheRegionName(),
+                    StoreRef.STORE_REF_WORKSPACE_SPACESSTORE);
+            final CacheRegionValueKey enumKey = new CacheRegionValueKey(CacheRegion.DEFAULT.getCacheRegionName(),
+                    new Pair<>(CacheRegion.NODES, "value1"));
+            final String customRegion = UUID.randomUUID().toString();
+            final CacheRegionValueKey customKey = new CacheRegionValueKey(customRegion, "value1");
+
+            cache.put(qnameKey, "qname");
+            cache.put(storeKey, "store");
+            cache.put(enumKey, "enum");
+            cache.put(customKey, "custom");
+
+            // lookups with equal but not identical keys
+            Assert.assertEquals("qname", cache.get(new CacheRegionValueKey(CacheRegion.QNAME.getCacheRegionName(),
+                    new Pair<>(Long.valueOf(6l), "content"))));
+            Assert.assertEquals("store", cache.get(new CacheRegionValueKey(CacheRegion.DEFAULT.getCacheRegionName(),
+                    new StoreRef(StoreRef.PROTOCOL_WORKSPACE, "SpacesStore"))));
+            Assert.assertEquals("enum",
+                    cache.get(new CacheRegionValueKey(CacheRegion.DEFAULT.getCacheRegionName(), new Pair<>(CacheRegion.NODES, "value1"))));
+            Assert.assertEquals("custom", cache.get(new CacheRegionValueKey(customRegion, "value1")));
+
+            // partition is determined by the value key only
+            final Affinity<Object> affinity = grid.affinity(cacheConfig.getName());
+            Assert.assertEquals(affinity.partition(Integer.valueOf(CacheRegionAffinity.computeAffinityKey(qnameValueKey))),
+                    affinity.partition(qnameKey));
+            Assert.assertEquals(affinity.partition(customKey),
+                    affinity.partition(new CacheRegionValueKey(CacheRegion.DEFAULT.getCacheRegionName(), "value1")));
+
+            // enumeration literals and types without stable hash codes must not use identity-based hash codes
+            Assert.assertEquals(31 * CacheRegion.NODES.name().hashCode() + "value1".hashCode(),
+                    CacheRegionAffinity.computeAffinityKey(new Pair<>(CacheRegion.NODES, "value1")));
+            Assert.assertEquals(Object.class.getName().hashCode(), CacheRegionAffinity.computeAffinityKey(new Object()));
+
+            // common value types must be distributed by their state
+            final Date date = new Date(1234567890l);
+            Assert.assertEquals(Long.hashCode(date.getTime()), CacheRegionAffinity.computeAffinityKey(date));
+            Assert.assertEquals(CacheRegionAffinity.computeAffinityKey(date),
+                    CacheRegionAffinity.computeAffinityKey(new Date(date.getTime())));
+            Assert.assertNotEquals(CacheRegionAffinity.computeAffinityKey(date),
+                    CacheRegionAffinity.computeAffinityKey(new Date(date.getTime() + 1)));
+            final UUID uuid = UUID.randomUUID();
+            Assert.assertEquals(uuid.hashCode(), CacheRegionAffinity.computeAffinityKey(uuid));
+            Assert.assertEquals(CacheRegionAffinity.computeAffinityKey(new HashSet<>(Arrays.asList("a", "b", CacheRegion.NODES))),
+                    CacheRegionAffinity.computeAffinityKey(new LinkedHashSet<>(Arrays.asList(CacheRegion.NODES, "b", "a"))));
+            final Map<Object, Object> map = new HashMap<>();
+            map.put(Locale.ENGLISH, "value1");
+            map.put(CacheRegion.NODES, date);
+            Assert.assertEquals(CacheRegionAffinity.computeAffinityKey(map),
+                    CacheRegionAffinity.computeAffinityKey(new LinkedHashMap<>(map)));
+            Assert.assertEquals(CacheRegionAffinity.computeAffinityKey(Arrays.asList("a", CacheRegion.NODES)),
+                    CacheRegionAffinity.computeAffinityKey(new Object[] { "a", CacheRegion.NODES }));
+            Assert.assertEquals(Arrays.hashCode(new byte[] { 1, 2, 3 }), CacheRegionAffinity.computeAffinityKey(new byte[] { 1, 2, 3 }));
+        }
+    }
+
     protected void correctnessImpl(final IgniteConfiguration conf)
     {
         try (Ignite grid = Ignition.start(conf))
@@ -3,10 +3,13 @@
  * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
 package org.aldica.repo.ignite.binary;
 
+import java.lang.reflect.Field;
 import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
 import java.util.List;
 import java.util.Locale;
 import java.util.UUID;
@@ -28,7 +31,13 @@ import org.apache.ignite.DataRegionMetrics;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteCache;
 import org.apache.ignite.Ignition;
+import org.apache.ignite.binary.BinaryObjectException;
+import org.apache.ignite.binary.BinaryRawReader;
+import org.apache.ignite.binary.BinaryRawWriter;
+import org.apache.ignite.binary.BinaryReader;
+import org.apache.ignite.binary.BinarySerializer;
 import org.apache.ignite.binary.BinaryTypeConfiguration;
+import org.apache.ignite.binary.BinaryWriter;
 import org.apache.ignite.cache.CacheMode;
 import org.apache.ignite.configuration.BinaryConfiguration;
 import org.apache.ignite.configuration.CacheConfiguration;
@@ -36,6 +45,7 @@ import org.apache.ignite.configuration.DataPageEvictionMode;
 import org.apache.ignite.configuration.DataRegionConfiguration;
 import org.apache.ignite.configuration.DataStorageConfiguration;
 import org.apache.ignite.configuration.IgniteConfiguration;
+import org.apache.ignite.marshaller.Marshaller;
 import org.easymock.EasyMock;
 import org.junit.Assert;
 import org.junit.Test;
@@ -108,6 +118,13 @@ public class ContentDataBinarySerializerTests extends GridTestsBase
     protected static IgniteConfiguration createConfiguration(final ApplicationContext applicationContext,
             final boolean idsWhenReasonable,
             final boolean serialForm, final String... regionNames)
+    {
+        return createConfiguration(applicationContext, idsWhenReasonable, serialForm, false, regionNames);
+    }
+
+    protected static IgniteConfiguration createConfiguration(final ApplicationContext applicationContext,
+            final boolean idsWhenReasonable,
+            final boolean serialForm, final boolean packedContentUrls, final String... regionNames)
     {
         final IgniteConfiguration conf = createConfiguration(1, false, null);
 
@@ -117,6 +134,7 @@ public class ContentDataBinarySerializerTests extends GridTestsBase
         serializer.setApplicationContext(applicationContext);
         serializer.setUseIdsWhenReasonable(idsWhenReasonable);
         serializer.setUseRawSerialForm(serialForm);
+        serializer.setUsePackedContentUrls(packedContentUrls);
 
         final BinaryTypeConfiguration binaryTypeConfigurationForContentData = new BinaryTypeConfiguration();
         binaryTypeConfigurationForContentData.setTypeName(ContentData.class.getName());
@@ -239,6 +257,95 @@ public class ContentDataBinarySerializerTests extends GridTestsBase
         }
     }
 
+    @Test
+    public void defaultFormPackedContentUrlCorrectness()
+    {
+        final IgniteConfiguration conf = createConfiguration(null, false, false, true);
+        this.correctnessImpl(conf);
+    }
+
+    @Test
+    public void rawSerialFormPackedContentUrlCorrectness()
+    {
+        try (final GenericApplicationContext appContext = createApplicationContext())
+        {
+            final IgniteConfiguration conf = createConfiguration(appContext, true, true, true);
+            this.correctnessImpl(conf);
+        }
+    }
+
+    @Test
+    public void rawSerialFormBaselineCompatibility() throws Exception
+    {
+        final IgniteConfiguration conf = createConfiguration(null, false, true, false);
+
+        final IgniteConfiguration baselineConf = createConfiguration(null, false, true, false);
+        baselineConf.setIgniteInstanceName(baselineConf.getIgniteInstanceName() + "-baseline");
+        for (final BinaryTypeConfiguration typeConfig : baselineConf.getBinaryConfiguration().getTypeConfigurations())
+        {
+            typeConfig.setSerializer(new BaselineRawSerialFormSerializer());
+        }
+
+        try
+        {
+            final Ignite grid = Ignition.start(conf);
+            final Ignite baselineGrid = Ignition.start(baselineConf);
+
+            final Marshaller marshaller = grid.configuration().getMarshaller();
+            final Marshaller baselineMarshaller = baselineGrid.configuration().getMarshaller();
+            final ClassLoader classLoader = ContentDataBinarySerializerTests.class.getClassLoader();
+
+            // content URL in default layout would be packed if enabled
+            final ContentData controlValue = new ContentData(createDefaultLayoutContentUrl(), MimetypeMap.MIMETYPE_PDF, 123l,
+                    StandardCharsets.UTF_8.name(), Locale.ENGLISH);
+
+            // without packing, the raw serial form must be identical to the baseline form in both directions
+            final ContentData baselineValue = baselineMarshaller.unmarshal(marshaller.marshal(controlValue), classLoader);
+            Assert.assertEquals(controlValue, baselineValue);
+
+            final ContentData value = marshaller.unmarshal(baselineMarshaller.marshal(controlValue), classLoader);
+            Assert.assertEquals(controlValue, value);
+        }
+        finally
+        {
+            Ignition.stopAll(true);
+        }
+    }
+
+    @Test
+    public void packedContentUrlEfficiency()
+    {
+        try (final GenericApplicationContext appContext = createApplicationContext())
+        {
+            final IgniteConfiguration referenceConf = createConfiguration(appContext, true, true, false, "comparison1");
+            referenceConf.setIgniteInstanceName(referenceConf.getIgniteInstanceName() + "-reference");
+
+            final IgniteConfiguration packedConf = createConfiguration(appContext, true, true, true, "comparison1");
+
+            try
+            {
+                final Ignite referenceGrid = Ignition.start(referenceConf);
+                final Ignite packedGrid = Ignition.start(packedConf);
+
+                final CacheConfiguration<Long, ContentData> cacheConfig = new CacheConfiguration<>();
+                cacheConfig.setCacheMode(CacheMode.LOCAL);
+
+                cacheConfig.setName("comparison1");
+                cacheConfig.setDataRegionName("comparison1");
+                final IgniteCache<Long, ContentData> referenceCache1 = referenceGrid.getOrCreateCache(cacheConfig);
+                final IgniteCache<Long, ContentData> cache1 = packedGrid.getOrCreateCache(cacheConfig);
+
+                // content URL is the single largest field in ID substitution mode - 15%
+                this.efficiencyImpl(referenceGrid, packedGrid, referenceCache1, cache1, "aldica raw serial (packed content URL)",
+                        "aldica raw serial", 0.15, true);
+            }
+            finally
+            {
+                Ignition.stopAll(true);
+            }
+        }
+    }
+
     @Test
     public void rawSerialFormEfficiency()
     {
@@ -354,6 +461,37 @@ public class ContentDataBinarySerializerTests extends GridTestsBase
             Assert.assertEquals(controlValue, cacheValue);
             // check deep serialisation was actually involved (different value instances)
             Assert.assertFalse(controlValue == cacheValue);
+
+            // test content URL in default file content store layout
+            controlValue = new ContentData(createDefaultLayoutContentUrl(), MimetypeMap.MIMETYPE_PDF, 123l, StandardCharsets.UTF_8.name(),
+                    Locale.ENGLISH);
+            controlValue = new ContentDataWithId(controlValue, 5l);
+
+            cache.put(5l, controlValue);
+
+            cacheValue = cache.get(5l);
+
+            Assert.assertEquals(controlValue, cacheValue);
+            // check deep serialisation was actually involved (different value instances)
+            Assert.assertFalse(controlValue == cacheValue);
+
+            // test content URLs close to default layout, but not exactly reconstructable (leading zero, upper case UUID, other protocol)
+            final String[] nearMatchUrls = { FileContentStore.STORE_PROTOCOL + "://2020/01/2/3/4/" + UUID.randomUUID().toString() + ".bin",
+                    FileContentStore.STORE_PROTOCOL + "://2020/1/2/3/4/" + UUID.randomUUID().toString().toUpperCase(Locale.ENGLISH) + ".bin",
+                    "s3://2020/1/2/3/4/" + UUID.randomUUID().toString() + ".bin" };
+            for (int idx = 0; idx < nearMatchUrls.length; idx++)
+            {
+                controlValue = new ContentData(nearMatchUrls[idx], MimetypeMap.MIMETYPE_PDF, 123l, StandardCharsets.UTF_8.name(),
+                        Locale.ENGLISH);
+
+                cache.put(6l + idx, controlValue);
+
+                cacheValue = cache.get(6l + idx);
+
+                Assert.assertEquals(controlValue, cacheValue);
+                // check deep serialisation was actually involved (different value instances)
+                Assert.assertFalse(controlValue == cacheValue);
+            }
         }
     }
 
@@ -361,13 +499,23 @@ public class ContentDataBinarySerializerTests extends GridTestsBase
             final IgniteCache<Long, ContentData> cache, final String serialisationType,
             final String referenceSerialisationType,
             final double marginFraction)
+    {
+        this.efficiencyImpl(referenceGrid, defaultGrid, referenceCache, cache, serialisationType, referenceSerialisationType, marginFraction,
+                false);
+    }
+
+    protected void efficiencyImpl(final Ignite referenceGrid, final Ignite defaultGrid, final IgniteCache<Long, ContentData> referenceCache,
+            final IgniteCache<Long, ContentData> cache, final String serialisationType,
+            final String referenceSerialisationType,
+            final double marginFraction, final boolean defaultLayoutContentUrls)
     {
         LOGGER.info(
                 "Running ContentData serialisation benchmark of 100k instances, comparing {} vs. {} serialisation, expecting relative improvement margin / difference fraction of {}",
                 referenceSerialisationType, serialisationType, marginFraction);
 
         // default Alfresco classes are inaccessible (package-protected visibility)
-        final FileContentUrlProvider urlProvider = () -> FileContentStore.STORE_PROTOCOL + "://" + UUID.randomUUID().toString();
+        final FileContentUrlProvider urlProvider = defaultLayoutContentUrls ? ContentDataBinarySerializerTests::createDefaultLayoutContentUrl
+                : () -> FileContentStore.STORE_PROTOCOL + "://" + UUID.randomUUID().toString();
 
         final SecureRandom rnJesus = new SecureRandom();
         for (int idx = 0; idx < 100000; idx++)
@@ -400,4 +548,110 @@ public class ContentDataBinarySerializerTests extends GridTestsBase
                 allowedMax);
         Assert.assertTrue(totalUsedPages <= allowedMax);
     }
+
+    protected static String createDefaultLayoutContentUrl()
+    {
+        // mirrors the (package-protected) default layout of FileContentStore / TimeBasedFileContentUrlProvider
+        final Calendar calendar = new GregorianCalendar();
+        final StringBuilder sb = new StringBuilder(64);
+        sb.append(FileContentStore.STORE_PROTOCOL).append("://");
+        sb.append(calendar.get(Calendar.YEAR)).append('/');
+        sb.append(calendar.get(Calendar.MONTH) + 1).append('/');
+        sb.append(calendar.get(Calendar.DAY_OF_MONTH)).append('/');
+        sb.append(calendar.get(Calendar.HOUR_OF_DAY)).append('/');
+        sb.append(calendar.get(Calendar.MINUTE)).append('/');
+        sb.append(UUID.randomUUID().toString()).append(".bin");
+        return sb.toString();
+    }
+
+    /**
+     * Mirrors the raw serial form of {@link ContentDataBinarySerializer} prior to the introduction of packed content URLs and dictionary
+     * IDs, restricted to the variant without ID substitution.
+     *
+     * @author Axel Faust
+     */
+    protected static class BaselineRawSerialFormSerializer implements BinarySerializer
+    {
+
+        private static final byte FLAG_MIMETYPE_NULL = 1;
+
+        private static final byte FLAG_ENCODING_NULL = 4;
+
+        private static final byte FLAG_LOCALE_NULL = 16;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void writeBinary(final Object obj, final BinaryWriter writer) throws BinaryObjectException
+        {
+            final ContentData contentData = (ContentData) obj;
+            final BinaryRawWriter rawWriter = writer.rawWriter();
+            if (contentData instanceof ContentDataWithId)
+            {
+                rawWriter.writeLong(((ContentDataWithId) contentData).getId());
+            }
+
+            rawWriter.writeString(contentData.getContentUrl());
+            rawWriter.writeLong(contentData.getSize());
+
+            byte flags = 0;
+            flags = (byte) (flags | (contentData.getMimetype() == null ? FLAG_MIMETYPE_NULL : 0));
+            flags = (byte) (flags | (contentData.getEncoding() == null ? FLAG_ENCODING_NULL : 0));
+            flags = (byte) (flags | (contentData.getLocale() == null ? FLAG_LOCALE_NULL : 0));
+            rawWriter.writeByte(flags);
+
+            if (contentData.getMimetype() != null)
+            {
+                rawWriter.writeString(contentData.getMimetype());
+            }
+            if (contentData.getEncoding() != null)
+            {
+                rawWriter.writeString(contentData.getEncoding());
+            }
+            if (contentData.getLocale() != null)
+            {
+                rawWriter.writeObject(contentData.getLocale());
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void readBinary(final Object obj, final BinaryReader reader) throws BinaryObjectException
+        {
+            final BinaryRawReader rawReader = reader.rawReader();
+            if (obj instanceof ContentDataWithId)
+            {
+                setField(ContentDataWithId.class, obj, "id", rawReader.readLong());
+            }
+
+            setField(ContentData.class, obj, "contentUrl", rawReader.readString());
+            setField(ContentData.class, obj, "size", rawReader.readLong());
+
+            final byte flags = rawReader.readByte();
+            if ((flags & ~(FLAG_MIMETYPE_NULL | FLAG_ENCODING_NULL | FLAG_LOCALE_NULL)) != 0)
+            {
+                throw new BinaryObjectException("Unsupported flags " + flags);
+            }
+            setField(ContentData.class, obj, "mimetype", (flags & FLAG_MIMETYPE_NULL) == 0 ? rawReader.readString() : null);
+            setField(ContentData.class, obj, "encoding", (flags & FLAG_ENCODING_NULL) == 0 ? rawReader.readString() : null);
+            setField(ContentData.class, obj, "locale", (flags & FLAG_LOCALE_NULL) == 0 ? rawReader.readObject() : null);
+        }
+
+        private static void setField(final Class<?> cls, final Object obj, final String fieldName, final Object value)
+        {
+            try
+            {
+                final Field field = cls.getDeclaredField(fieldName);
+                field.setAccessible(true);
+                field.set(obj, value);
+            }
+            catch (final NoSuchFieldException | IllegalAccessException ex)
+            {
+                throw new BinaryObjectException("Failed to set field " + fieldName, ex);
+            }
+        }
+    }
 }
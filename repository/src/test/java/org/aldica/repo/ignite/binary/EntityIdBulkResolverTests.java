@@ -0,0 +1,87 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.binary;
+
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.aldica.common.ignite.GridTestsBase;
+import org.aldica.repo.ignite.cache.SimpleIgniteBackedCache;
+import org.alfresco.repo.cache.lookup.CacheRegionKey;
+import org.alfresco.repo.domain.qname.QNameDAO;
+import org.alfresco.service.namespace.QName;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.cache.CacheMode;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.context.support.GenericApplicationContext;
+
+/**
+ * The tests in this class validate the bulk resolution of entity IDs against actual Ignite-backed caches.
+ *
+ * @author Axel Faust
+ */
+public class EntityIdBulkResolverTests extends GridTestsBase
+{
+
+    private static final String QNAME_CACHE_REGION = CacheRegion.QNAME.getCacheRegionName();
+
+    @Test
+    public void bulkResolutionFromIgniteBackedCache()
+    {
+        final IgniteConfiguration conf = createConfiguration(1, false, null);
+
+        // strict mock without expectations - any individual resolution of an ID fails the test
+        final QNameDAO qnameDAO = EasyMock.createStrictMock(QNameDAO.class);
+        EasyMock.replay(qnameDAO);
+
+        try (final GenericApplicationContext appContext = new GenericApplicationContext())
+        {
+            final Ignite grid = Ignition.start(conf);
+
+            final CacheConfiguration<Serializable, Object> cacheConfig = new CacheConfiguration<>();
+            cacheConfig.setName("immutableEntitySharedCache");
+            cacheConfig.setCacheMode(CacheMode.PARTITIONED);
+            final IgniteCache<Serializable, Object> backingCache = grid.getOrCreateCache(cacheConfig);
+            final SimpleIgniteBackedCache<Serializable, Object> cache = new SimpleIgniteBackedCache<>(grid,
+                    SimpleIgniteBackedCache.Mode.PARTITIONED, backingCache, true);
+
+            appContext.getBeanFactory().registerSingleton("immutableEntitySharedCache", cache);
+            appContext.refresh();
+
+            final long[] ids = new long[20];
+            final QName[] qnames = new QName[ids.length];
+            final Set<Serializable> keys = new HashSet<>();
+            for (int idx = 0; idx < ids.length; idx++)
+            {
+                ids[idx] = idx + 1;
+                qnames[idx] = QName.createQName("http://www.example.org/model/bulk/1.0", "name" + idx);
+                final CacheRegionKey key = new CacheRegionKey(QNAME_CACHE_REGION, Long.valueOf(ids[idx]));
+                cache.put(key, qnames[idx]);
+                keys.add(key);
+            }
+
+            // keys of bulk retrieval must match the requested keys, not their binary representation
+            final Map<Serializable, Object> values = cache.getAll(keys);
+            Assert.assertEquals(keys, values.keySet());
+
+            final EntityIdBulkResolver resolver = new EntityIdBulkResolver(appContext, qnameDAO, null);
+            final QName[] resolvedQNames = resolver.resolveQNames(ids);
+            Assert.assertArrayEquals(qnames, resolvedQNames);
+
+            EasyMock.verify(qnameDAO);
+        }
+        finally
+        {
+            Ignition.stopAll(true);
+        }
+    }
+}
@@ -69,6 +69,13 @@ public class MLTextBinarySerializerTests extends GridTestsBase
     protected static IgniteConfiguration createConfiguration(final ApplicationContext applicationContext,
             final boolean idsWhenReasonable,
             final boolean serialForm, final String... regionNames)
+    {
+        return createConfiguration(applicationContext, idsWhenReasonable, serialForm, false, null, regionNames);
+    }
+
+    protected static IgniteConfiguration createConfiguration(final ApplicationContext applicationContext,
+            final boolean idsWhenReasonable, final boolean serialForm, final boolean compactSingleLocaleForm, final Locale defaultLocale,
+            final String... regionNames)
     {
         final IgniteConfiguration conf = createConfiguration(1, false, null);
 
@@ -80,6 +87,8 @@ public class MLTextBinarySerializerTests extends GridTestsBase
         serializer.setApplicationContext(applicationContext);
         serializer.setUseIdsWhenReasonable(idsWhenReasonable);
         serializer.setUseRawSerialForm(serialForm);
+        serializer.setUseCompactSingleLocaleForm(compactSingleLocaleForm);
+        serializer.setDefaultLocale(defaultLocale);
         binaryTypeConfigurationForMLText.setSerializer(serializer);
 
         binaryConfiguration.setTypeConfigurations(Arrays.asList(binaryTypeConfigurationForMLText));
@@ -252,6 +261,50 @@ public class MLTextBinarySerializerTests extends GridTestsBase
         }
     }
 
+    @Test
+    public void rawSerialFormCompactSingleLocaleCorrectness()
+    {
+        final IgniteConfiguration conf = createConfiguration(null, false, true, true, Locale.ENGLISH);
+        this.correctnessImpl(conf);
+        this.singleLocaleCorrectnessImpl(conf);
+    }
+
+    @Test
+    public void rawSerialFormCompactSingleLocaleIdSubstitutionCorrectness()
+    {
+        try (final GenericApplicationContext appContext = createApplicationContext())
+        {
+            final IgniteConfiguration conf = createConfiguration(appContext, true, true, true, Locale.ENGLISH);
+            this.correctnessImpl(conf);
+            this.singleLocaleCorrectnessImpl(conf);
+        }
+    }
+
+    protected void singleLocaleCorrectnessImpl(final IgniteConfiguration conf)
+    {
+        try (Ignite grid = Ignition.start(conf))
+        {
+            final CacheConfiguration<Long, MLText> cacheConfig = new CacheConfiguration<>();
+            cacheConfig.setName("mlText");
+            cacheConfig.setCacheMode(CacheMode.LOCAL);
+            final IgniteCache<Long, MLText> cache = grid.getOrCreateCache(cacheConfig);
+
+            // default locale, locale with ID (if enabled), locale without ID, empty
+            final MLText[] controlValues = { new MLText(Locale.ENGLISH, "English text"), new MLText(Locale.GERMAN, "German text"),
+                    new MLText(Locale.UK, "English text"), new MLText() };
+
+            for (int idx = 0; idx < controlValues.length; idx++)
+            {
+                cache.put(Long.valueOf(idx), controlValues[idx]);
+                final MLText cacheValue = cache.get(Long.valueOf(idx));
+
+                Assert.assertEquals(controlValues[idx], cacheValue);
+                // check deep serialisation was actually involved (different value instances)
+                Assert.assertFalse(controlValues[idx] == cacheValue);
+            }
+        }
+    }
+
     protected void correctnessImpl(final IgniteConfiguration conf)
     {
         try (Ignite grid = Ignition.start(conf))
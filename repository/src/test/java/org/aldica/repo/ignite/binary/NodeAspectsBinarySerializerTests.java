@@ -0,0 +1,432 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.binary;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.aldica.common.ignite.GridTestsBase;
+import org.aldica.repo.ignite.cache.IdBitmap;
+import org.aldica.repo.ignite.cache.NodeAspectsBitmapSet;
+import org.aldica.repo.ignite.cache.NodeAspectsCacheSet;
+import org.aldica.repo.ignite.cache.NodeAspectsTransformer;
+import org.alfresco.model.ContentModel;
+import org.alfresco.repo.domain.qname.QNameDAO;
+import org.alfresco.repo.domain.qname.ibatis.QNameDAOImpl;
+import org.alfresco.service.namespace.QName;
+import org.alfresco.util.Pair;
+import org.apache.ignite.DataRegionMetrics;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.binary.BinaryObjectException;
+import org.apache.ignite.binary.BinaryTypeConfiguration;
+import org.apache.ignite.cache.CacheMode;
+import org.apache.ignite.configuration.BinaryConfiguration;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.apache.ignite.configuration.DataPageEvictionMode;
+import org.apache.ignite.configuration.DataRegionConfiguration;
+import org.apache.ignite.configuration.DataStorageConfiguration;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+
+/**
+ * @author Axel Faust
+ */
+public class NodeAspectsBinarySerializerTests extends GridTestsBase
+{
+
+    private static final QName[] ASPECT_QNAMES = { ContentModel.ASPECT_AUDITABLE, ContentModel.ASPECT_TITLED,
+            ContentModel.ASPECT_AUTHOR, ContentModel.ASPECT_VERSIONABLE, ContentModel.ASPECT_LOCKABLE, ContentModel.ASPECT_TAGGABLE,
+            ContentModel.ASPECT_GEN_CLASSIFIABLE, ContentModel.ASPECT_REFERENCEABLE, ContentModel.ASPECT_LOCALIZED,
+            ContentModel.ASPECT_WORKING_COPY };
+
+    private static final int DENSE_ASPECT_COUNT = 200;
+
+    // IDs spread across multiple bitmap containers
+    private static final long[] SPARSE_ASPECT_IDS = { 70000, 70001, 140000, 1000000, 5000000000l };
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NodeAspectsBinarySerializerTests.class);
+
+    protected static GenericApplicationContext createApplicationContext()
+    {
+        final GenericApplicationContext appContext = new GenericApplicationContext();
+
+        final QNameDAO qnameDAO = EasyMock.partialMockBuilder(QNameDAOImpl.class).addMockedMethod("getQName", Long.class)
+                .addMockedMethod("getQName", QName.class).createMock();
+        appContext.getBeanFactory().registerSingleton("qnameDAO", qnameDAO);
+        appContext.refresh();
+
+        for (int idx = 0; idx < ASPECT_QNAMES.length; idx++)
+        {
+            EasyMock.expect(qnameDAO.getQName(Long.valueOf(idx))).andStubReturn(new Pair<>(Long.valueOf(idx), ASPECT_QNAMES[idx]));
+            EasyMock.expect(qnameDAO.getQName(ASPECT_QNAMES[idx])).andStubReturn(new Pair<>(Long.valueOf(idx), ASPECT_QNAMES[idx]));
+        }
+        for (int idx = ASPECT_QNAMES.length; idx < DENSE_ASPECT_COUNT; idx++)
+        {
+            final QName aspectQName = createDenseAspectQName(idx);
+            EasyMock.expect(qnameDAO.getQName(Long.valueOf(idx))).andStubReturn(new Pair<>(Long.valueOf(idx), aspectQName));
+            EasyMock.expect(qnameDAO.getQName(aspectQName)).andStubReturn(new Pair<>(Long.valueOf(idx), aspectQName));
+        }
+        for (final long id : SPARSE_ASPECT_IDS)
+        {
+            final QName aspectQName = createSparseAspectQName(id);
+            EasyMock.expect(qnameDAO.getQName(Long.valueOf(id))).andStubReturn(new Pair<>(Long.valueOf(id), aspectQName));
+            EasyMock.expect(qnameDAO.getQName(aspectQName)).andStubReturn(new Pair<>(Long.valueOf(id), aspectQName));
+        }
+        EasyMock.expect(qnameDAO.getQName(EasyMock.anyObject(QName.class))).andStubReturn(null);
+
+        EasyMock.replay(qnameDAO);
+
+        return appContext;
+    }
+
+    protected static QName createDenseAspectQName(final int idx)
+    {
+        return QName.createQName("http://aldica.org/model/test/1.0", "denseAspect" + idx);
+    }
+
+    protected static QName createSparseAspectQName(final long id)
+    {
+        return QName.createQName("http://aldica.org/model/test/1.0", "sparseAspect" + id);
+    }
+
+    protected static IgniteConfiguration createConfiguration(final ApplicationContext applicationContext, final boolean idsWhenReasonable,
+            final boolean serialForm, final boolean bitmapForm, final String... regionNames)
+    {
+        final IgniteConfiguration conf = createConfiguration(1, false, null);
+
+        final BinaryConfiguration binaryConfiguration = new BinaryConfiguration();
+
+        final NodeAspectsBinarySerializer serializer = new NodeAspectsBinarySerializer();
+        serializer.setApplicationContext(applicationContext);
+        serializer.setUseIdsWhenReasonable(idsWhenReasonable);
+        serializer.setUseRawSerialForm(serialForm);
+        serializer.setUseBitmapSerialForm(bitmapForm);
+
+        final BinaryTypeConfiguration binaryTypeConfigurationForNodeAspectsCacheSet = new BinaryTypeConfiguration();
+        binaryTypeConfigurationForNodeAspectsCacheSet.setTypeName(NodeAspectsCacheSet.class.getName());
+        binaryTypeConfigurationForNodeAspectsCacheSet.setSerializer(serializer);
+
+        binaryConfiguration.setTypeConfigurations(Arrays.asList(binaryTypeConfigurationForNodeAspectsCacheSet));
+        conf.setBinaryConfiguration(binaryConfiguration);
+
+        final DataStorageConfiguration dataConf = new DataStorageConfiguration();
+        final List<DataRegionConfiguration> regionConfs = new ArrayList<>();
+        for (final String regionName : regionNames)
+        {
+            final DataRegionConfiguration regionConf = new DataRegionConfiguration();
+            regionConf.setName(regionName);
+            // all regions are 10-250 MiB
+            regionConf.setInitialSize(10 * 1024 * 1024);
+            regionConf.setMaxSize(250 * 1024 * 1024);
+            regionConf.setPageEvictionMode(DataPageEvictionMode.RANDOM_2_LRU);
+            regionConf.setMetricsEnabled(true);
+            regionConfs.add(regionConf);
+        }
+        dataConf.setDataRegionConfigurations(regionConfs.toArray(new DataRegionConfiguration[0]));
+        conf.setDataStorageConfiguration(dataConf);
+
+        return conf;
+    }
+
+    @Test
+    public void defaultFormCorrectness()
+    {
+        try (final GenericApplicationContext appContext = createApplicationContext())
+        {
+            final IgniteConfiguration conf = createConfiguration(null, false, false, false);
+            this.correctnessImpl(conf, false);
+        }
+    }
+
+    @Test
+    public void defaultFormQNameIdSubstitutionCorrectness()
+    {
+        try (final GenericApplicationContext appContext = createApplicationContext())
+        {
+            final IgniteConfiguration conf = createConfiguration(appContext, true, false, false);
+            this.correctnessImpl(conf, false);
+        }
+    }
+
+    @Test
+    public void defaultFormBitmapCorrectness()
+    {
+        try (final GenericApplicationContext appContext = createApplicationContext())
+        {
+            final IgniteConfiguration conf = createConfiguration(appContext, true, false, true);
+            this.correctnessImpl(conf, true);
+        }
+    }
+
+    @Test
+    public void rawSerialFormCorrectness()
+    {
+        try (final GenericApplicationContext appContext = createApplicationContext())
+        {
+            final IgniteConfiguration conf = createConfiguration(null, false, true, false);
+            this.correctnessImpl(conf, false);
+        }
+    }
+
+    @Test
+    public void rawSerialFormQNameIdSubstitutionCorrectness()
+    {
+        try (final GenericApplicationContext appContext = createApplicationContext())
+        {
+            final IgniteConfiguration conf = createConfiguration(appContext, true, true, false);
+            this.correctnessImpl(conf, false);
+        }
+    }
+
+    @Test
+    public void rawSerialFormBitmapCorrectness()
+    {
+        try (final GenericApplicationContext appContext = createApplicationContext())
+        {
+            final IgniteConfiguration conf = createConfiguration(appContext, true, true, true);
+            this.correctnessImpl(conf, true);
+        }
+    }
+
+    @Test
+    public void invalidBitmapSerialForm()
+    {
+        final NodeAspectsBinarySerializer serializer = new NodeAspectsBinarySerializer();
+
+        final long[] denseIds = new long[DENSE_ASPECT_COUNT];
+        for (int idx = 0; idx < denseIds.length; idx++)
+        {
+            denseIds[idx] = idx;
+        }
+
+        for (final long[] ids : Arrays.asList(denseIds, SPARSE_ASPECT_IDS))
+        {
+            final byte[] bytes = IdBitmap.of(ids).toBytes();
+            Assert.assertArrayEquals(ids, serializer.toBitmapView(bytes).getBitmap().toArray());
+
+            // any truncation or trailing garbage must be rejected as invalid serial form instead of failing with arbitrary exceptions
+            for (int length = 0; length < bytes.length; length++)
+            {
+                this.assertInvalidBitmapSerialForm(serializer, Arrays.copyOf(bytes, length));
+            }
+            this.assertInvalidBitmapSerialForm(serializer, Arrays.copyOf(bytes, bytes.length + 1));
+        }
+
+        // container count exceeding payload, bitmap container exceeding the maximum number of words, overlong variable-length value
+        this.assertInvalidBitmapSerialForm(serializer, new byte[] { 100, 0, 2 });
+        this.assertInvalidBitmapSerialForm(serializer, new byte[] { 1, 0, (byte) 0x83, 0x10, 0, 0, 0, 0, 0, 0, 0, 0 });
+        this.assertInvalidBitmapSerialForm(serializer,
+                new byte[] { (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+                        (byte) 0xff, (byte) 0xff, 0x01 });
+    }
+
+    @Test
+    public void bitmapViewResolvesOnce()
+    {
+        final AtomicInteger resolutions = new AtomicInteger();
+        final NodeAspectsBitmapSet view = new NodeAspectsBitmapSet(IdBitmap.of(SPARSE_ASPECT_IDS), ids -> {
+            resolutions.incrementAndGet();
+            return Arrays.stream(ids).mapToObj(NodeAspectsBinarySerializerTests::createSparseAspectQName).toArray(QName[]::new);
+        }, qname -> null);
+
+        final Set<QName> expected = new HashSet<>();
+        for (final long id : SPARSE_ASPECT_IDS)
+        {
+            expected.add(createSparseAspectQName(id));
+        }
+
+        // hashCode, equals, toString and streams all iterate the view
+        Assert.assertEquals(expected.hashCode(), view.hashCode());
+        Assert.assertEquals(expected, view);
+        Assert.assertNotNull(view.toString());
+        Assert.assertEquals(expected.size(), view.stream().count());
+        Assert.assertEquals(1, resolutions.get());
+    }
+
+    protected void assertInvalidBitmapSerialForm(final NodeAspectsBinarySerializer serializer, final byte[] bytes)
+    {
+        try
+        {
+            serializer.toBitmapView(bytes);
+            Assert.fail("Invalid serial form " + Arrays.toString(bytes) + " should have been rejected");
+        }
+        catch (final BinaryObjectException expected)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void rawSerialFormBitmapEfficiency()
+    {
+        try (final GenericApplicationContext appContext = createApplicationContext())
+        {
+            final IgniteConfiguration referenceConf = createConfiguration(appContext, true, true, false, "comparison1");
+            referenceConf.setIgniteInstanceName(referenceConf.getIgniteInstanceName() + "-reference");
+            final IgniteConfiguration bitmapConf = createConfiguration(appContext, true, true, true, "comparison1");
+
+            try
+            {
+                final Ignite referenceGrid = Ignition.start(referenceConf);
+                final Ignite bitmapGrid = Ignition.start(bitmapConf);
+
+                final CacheConfiguration<Long, NodeAspectsCacheSet> cacheConfig = new CacheConfiguration<>();
+                cacheConfig.setCacheMode(CacheMode.LOCAL);
+
+                cacheConfig.setName("comparison1");
+                cacheConfig.setDataRegionName("comparison1");
+                final IgniteCache<Long, NodeAspectsCacheSet> referenceCache1 = referenceGrid.getOrCreateCache(cacheConfig);
+                final IgniteCache<Long, NodeAspectsCacheSet> cache1 = bitmapGrid.getOrCreateCache(cacheConfig);
+
+                // each ID of a small, dense set only requires a single byte instead of a long
+                // 20%
+                this.efficiencyImpl(referenceGrid, bitmapGrid, referenceCache1, cache1, "aldica raw serial (ID bitmap)",
+                        "aldica raw serial (ID substitution)", 0.2);
+            }
+            finally
+            {
+                Ignition.stopAll(true);
+            }
+        }
+    }
+
+    protected void correctnessImpl(final IgniteConfiguration conf, final boolean expectBitmapView)
+    {
+        try (Ignite grid = Ignition.start(conf))
+        {
+            final CacheConfiguration<Long, NodeAspectsCacheSet> cacheConfig = new CacheConfiguration<>();
+            cacheConfig.setName("nodeAspects");
+            cacheConfig.setCacheMode(CacheMode.LOCAL);
+            final IgniteCache<Long, NodeAspectsCacheSet> cache = grid.getOrCreateCache(cacheConfig);
+
+            final NodeAspectsTransformer transformer = new NodeAspectsTransformer();
+
+            NodeAspectsCacheSet controlValue;
+            NodeAspectsCacheSet cacheValue;
+
+            // empty
+            controlValue = new NodeAspectsCacheSet();
+            cache.put(1l, controlValue);
+            cacheValue = cache.get(1l);
+            Assert.assertEquals(controlValue, cacheValue);
+
+            // typical small set
+            controlValue = new NodeAspectsCacheSet(new HashSet<>(Arrays.asList(ContentModel.ASPECT_AUDITABLE, ContentModel.ASPECT_TITLED,
+                    ContentModel.ASPECT_AUTHOR, ContentModel.ASPECT_VERSIONABLE)));
+            cache.put(2l, controlValue);
+            cacheValue = cache.get(2l);
+            Assert.assertEquals(controlValue, cacheValue);
+            Assert.assertFalse(controlValue == cacheValue);
+
+            if (expectBitmapView)
+            {
+                // comparison via equals materialised previous instance
+                cacheValue = cache.get(2l);
+                Assert.assertNotNull(cacheValue.getBitmapView());
+
+                // membership checks do not materialise the set
+                Assert.assertEquals(controlValue.size(), cacheValue.size());
+                Assert.assertTrue(cacheValue.contains(ContentModel.ASPECT_TITLED));
+                Assert.assertFalse(cacheValue.contains(ContentModel.ASPECT_LOCKABLE));
+                Assert.assertFalse(cacheValue.contains(createSparseAspectQName(-1)));
+                Assert.assertNotNull(cacheValue.getBitmapView());
+
+                // callers are handed the immutable view
+                final Set<?> externalValue = (Set<?>) transformer.transformToExternalValue(cacheValue);
+                Assert.assertTrue(externalValue instanceof NodeAspectsBitmapSet);
+                Assert.assertEquals(controlValue, externalValue);
+                try
+                {
+                    ((NodeAspectsBitmapSet) externalValue).add(ContentModel.ASPECT_LOCKABLE);
+                    Assert.fail("Bitmap view should be immutable");
+                }
+                catch (final UnsupportedOperationException expected)
+                {
+                    // NO-OP
+                }
+
+                // a view put back into the cache does not have to be resolved
+                final NodeAspectsCacheSet reCacheValue = (NodeAspectsCacheSet) transformer
+                        .transformToCacheValue((NodeAspectsBitmapSet) externalValue);
+                Assert.assertNotNull(reCacheValue.getBitmapView());
+                cache.put(3l, reCacheValue);
+                Assert.assertEquals(controlValue, cache.get(3l));
+
+                // mutation materialises the set
+                cacheValue.add(ContentModel.ASPECT_LOCKABLE);
+                Assert.assertNull(cacheValue.getBitmapView());
+                Assert.assertTrue(cacheValue.contains(ContentModel.ASPECT_LOCKABLE));
+                Assert.assertTrue(cacheValue.containsAll(controlValue));
+            }
+
+            // dense set (bitmap container) and sparse set (multiple containers)
+            controlValue = new NodeAspectsCacheSet();
+            for (int idx = ASPECT_QNAMES.length; idx < DENSE_ASPECT_COUNT; idx++)
+            {
+                controlValue.add(createDenseAspectQName(idx));
+            }
+            for (final long id : SPARSE_ASPECT_IDS)
+            {
+                controlValue.add(createSparseAspectQName(id));
+            }
+            cache.put(4l, controlValue);
+            cacheValue = cache.get(4l);
+            Assert.assertEquals(controlValue, cacheValue);
+            Assert.assertEquals(controlValue, transformer.transformToExternalValue(cacheValue));
+            Assert.assertTrue(cacheValue.contains(createSparseAspectQName(SPARSE_ASPECT_IDS[SPARSE_ASPECT_IDS.length - 1])));
+            Assert.assertTrue(cacheValue.contains(createDenseAspectQName(DENSE_ASPECT_COUNT - 1)));
+            Assert.assertFalse(cacheValue.contains(ContentModel.ASPECT_AUDITABLE));
+        }
+    }
+
+    protected void efficiencyImpl(final Ignite referenceGrid, final Ignite grid, final IgniteCache<Long, NodeAspectsCacheSet> referenceCache,
+            final IgniteCache<Long, NodeAspectsCacheSet> cache, final String serialisationType, final String referenceSerialisationType,
+            final double marginFraction)
+    {
+        LOGGER.info(
+                "Running NodeAspectsCacheSet serialisation benchmark of 100k instances, comparing {} vs. {} serialisation, expecting relative improvement margin / difference fraction of {}",
+                referenceSerialisationType, serialisationType, marginFraction);
+
+        final SecureRandom rnJesus = new SecureRandom();
+        for (int idx = 0; idx < 100000; idx++)
+        {
+            final NodeAspectsCacheSet value = new NodeAspectsCacheSet();
+            value.add(ContentModel.ASPECT_AUDITABLE);
+            value.add(ContentModel.ASPECT_REFERENCEABLE);
+            for (int aspectIdx = 0; aspectIdx < 4; aspectIdx++)
+            {
+                value.add(ASPECT_QNAMES[rnJesus.nextInt(ASPECT_QNAMES.length)]);
+            }
+
+            referenceCache.put(Long.valueOf(idx), value);
+            cache.put(Long.valueOf(idx), value);
+        }
+
+        @SuppressWarnings("unchecked")
+        final String regionName = cache.getConfiguration(CacheConfiguration.class).getDataRegionName();
+        final DataRegionMetrics referenceMetrics = referenceGrid.dataRegionMetrics(regionName);
+        final DataRegionMetrics metrics = grid.dataRegionMetrics(regionName);
+
+        // sufficient to compare used pages - byte-exact memory usage cannot be determined due to potential partial page fill
+        final long referenceTotalUsedPages = referenceMetrics.getTotalUsedPages();
+        final long totalUsedPages = metrics.getTotalUsedPages();
+        final long allowedMax = referenceTotalUsedPages - (long) (marginFraction * referenceTotalUsedPages);
+        LOGGER.info("Benchmark resulted in {} vs {} (expected max of {}) total used pages", referenceTotalUsedPages, totalUsedPages,
+                allowedMax);
+        Assert.assertTrue(totalUsedPages <= allowedMax);
+    }
+}
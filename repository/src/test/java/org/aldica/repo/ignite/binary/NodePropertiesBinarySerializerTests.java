@@ -3,6 +3,7 @@
  * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
 package org.aldica.repo.ignite.binary;
 
+import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 import java.time.LocalDateTime;
@@ -12,13 +13,19 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.aldica.common.ignite.GridTestsBase;
 import org.aldica.repo.ignite.cache.NodePropertiesCacheMap;
+import org.aldica.repo.ignite.cache.SimpleIgniteBackedCache;
 import org.alfresco.model.ContentModel;
+import org.alfresco.repo.cache.lookup.CacheRegionKey;
 import org.alfresco.repo.content.MimetypeMap;
 import org.alfresco.repo.content.filestore.FileContentStore;
 import org.alfresco.repo.content.filestore.FileContentUrlProvider;
@@ -45,12 +52,14 @@ import org.apache.ignite.configuration.DataRegionConfiguration;
 import org.apache.ignite.configuration.DataStorageConfiguration;
 import org.apache.ignite.configuration.IgniteConfiguration;
 import org.easymock.EasyMock;
+import org.easymock.IAnswer;
 import org.junit.Assert;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.util.SerializationUtils;
 
 /**
  * @author Axel Faust
@@ -85,6 +94,14 @@ public class NodePropertiesBinarySerializerTests extends GridTestsBase
                 .addMockedMethod("getContentData", Long.class).createMock();
         appContext.getBeanFactory().registerSingleton("qnameDAO", qnameDAO);
         appContext.getBeanFactory().registerSingleton("contentDataDAO", contentDataDAO);
+
+        @SuppressWarnings("unchecked")
+        final SimpleIgniteBackedCache<Serializable, Object> immutableEntitySharedCache = EasyMock.createMock(SimpleIgniteBackedCache.class);
+        @SuppressWarnings("unchecked")
+        final SimpleIgniteBackedCache<Serializable, Object> contentDataSharedCache = EasyMock.createMock(SimpleIgniteBackedCache.class);
+        appContext.getBeanFactory().registerSingleton("immutableEntitySharedCache", immutableEntitySharedCache);
+        appContext.getBeanFactory().registerSingleton("contentDataSharedCache", contentDataSharedCache);
+        appContext.getBeanFactory().registerSingleton("bulkRetrievalCounter", new AtomicInteger());
         appContext.refresh();
 
         for (int idx = 0; idx < PROP_QNAMES.length; idx++)
@@ -107,14 +124,85 @@ public class NodePropertiesBinarySerializerTests extends GridTestsBase
             EasyMock.expect(contentDataDAO.getContentData(Long.valueOf(idx))).andStubReturn(new Pair<>(Long.valueOf(idx), value));
         }
 
+        // shared caches only contain entities with even IDs so that individual resolution of misses is covered as well
+        final AtomicInteger bulkRetrievalCounter = appContext.getBean("bulkRetrievalCounter", AtomicInteger.class);
+        final IAnswer<Map<Serializable, Object>> bulkRetrievalAnswer = () -> {
+            bulkRetrievalCounter.incrementAndGet();
+
+            @SuppressWarnings("unchecked")
+            final Set<Serializable> keys = (Set<Serializable>) EasyMock.getCurrentArguments()[0];
+            final Map<Serializable, Object> values = new HashMap<>();
+            for (final Serializable key : keys)
+            {
+                final CacheRegionKey regionKey = (CacheRegionKey) key;
+                final Long id = (Long) regionKey.getCacheKey();
+                if (id.longValue() % 2 == 0)
+                {
+                    if (CacheRegion.QNAME.getCacheRegionName().equals(regionKey.getCacheRegion()))
+                    {
+                        values.put(key, qnameDAO.getQName(id).getSecond());
+                    }
+                    else if (CacheRegion.CONTENT_DATA.getCacheRegionName().equals(regionKey.getCacheRegion()))
+                    {
+                        values.put(key, contentDataDAO.getContentData(id).getSecond());
+                    }
+                }
+            }
+            return values;
+        };
+        EasyMock.expect(immutableEntitySharedCache.getAll(EasyMock.anyObject())).andStubAnswer(bulkRetrievalAnswer);
+        EasyMock.expect(contentDataSharedCache.getAll(EasyMock.anyObject())).andStubAnswer(bulkRetrievalAnswer);
+
         EasyMock.replay(qnameDAO);
         EasyMock.replay(contentDataDAO);
+        EasyMock.replay(immutableEntitySharedCache);
+        EasyMock.replay(contentDataSharedCache);
 
         return appContext;
     }
 
     protected static IgniteConfiguration createConfiguration(final ApplicationContext applicationContext, final boolean idsWhenReasonable,
             final boolean idsWhenPossible, final boolean serialForm, final String... regionNames)
+    {
+        return createConfiguration(applicationContext, idsWhenReasonable, idsWhenPossible, serialForm, false, regionNames);
+    }
+
+    protected static IgniteConfiguration createConfiguration(final ApplicationContext applicationContext, final boolean idsWhenReasonable,
+            final boolean idsWhenPossible, final boolean serialForm, final boolean decodeLazily, final String... regionNames)
+    {
+        return createConfiguration(applicationContext, idsWhenReasonable, idsWhenPossible, serialForm, decodeLazily, null, regionNames);
+    }
+
+    protected static IgniteConfiguration createConfiguration(final ApplicationContext applicationContext, final boolean idsWhenReasonable,
+            final boolean idsWhenPossible, final boolean serialForm, final boolean decodeLazily,
+            final PropertyLayoutDictionary propertyLayoutDictionary, final String... regionNames)
+    {
+        return createConfiguration(applicationContext, idsWhenReasonable, idsWhenPossible, serialForm, decodeLazily,
+                propertyLayoutDictionary, false, regionNames);
+    }
+
+    protected static IgniteConfiguration createConfiguration(final ApplicationContext applicationContext, final boolean idsWhenReasonable,
+            final boolean idsWhenPossible, final boolean serialForm, final boolean decodeLazily,
+            final PropertyLayoutDictionary propertyLayoutDictionary, final boolean resolveIdsInBulk, final String... regionNames)
+    {
+        return createConfiguration(applicationContext, idsWhenReasonable, idsWhenPossible, serialForm, decodeLazily,
+                propertyLayoutDictionary, resolveIdsInBulk, null, regionNames);
+    }
+
+    protected static IgniteConfiguration createConfiguration(final ApplicationContext applicationContext, final boolean idsWhenReasonable,
+            final boolean idsWhenPossible, final boolean serialForm, final boolean decodeLazily,
+            final PropertyLayoutDictionary propertyLayoutDictionary, final boolean resolveIdsInBulk,
+            final PropertyValueDictionary propertyValueDictionary, final String... regionNames)
+    {
+        return createConfiguration(applicationContext, idsWhenReasonable, idsWhenPossible, serialForm, decodeLazily,
+                propertyLayoutDictionary, resolveIdsInBulk, propertyValueDictionary, false, false, regionNames);
+    }
+
+    protected static IgniteConfiguration createConfiguration(final ApplicationContext applicationContext, final boolean idsWhenReasonable,
+            final boolean idsWhenPossible, final boolean serialForm, final boolean decodeLazily,
+            final PropertyLayoutDictionary propertyLayoutDictionary, final boolean resolveIdsInBulk,
+            final PropertyValueDictionary propertyValueDictionary, final boolean compactDates, final boolean homogeneousLists,
+            final String... regionNames)
     {
         final IgniteConfiguration conf = createConfiguration(1, false, null);
 
@@ -125,6 +213,22 @@ public class NodePropertiesBinarySerializerTests extends GridTestsBase
         serializer.setUseIdsWhenReasonable(idsWhenReasonable);
         serializer.setUseIdsWhenPossible(idsWhenPossible);
         serializer.setUseRawSerialForm(serialForm);
+        serializer.setDecodeLazily(decodeLazily);
+        serializer.setUsePropertyLayouts(propertyLayoutDictionary != null);
+        serializer.setPropertyLayoutDictionary(propertyLayoutDictionary);
+        serializer.setResolveIdsInBulk(resolveIdsInBulk);
+        if (propertyLayoutDictionary != null)
+        {
+            propertyLayoutDictionary.setInstanceName(conf.getIgniteInstanceName());
+        }
+        serializer.setUseValueDictionary(propertyValueDictionary != null);
+        serializer.setPropertyValueDictionary(propertyValueDictionary);
+        if (propertyValueDictionary != null)
+        {
+            propertyValueDictionary.setInstanceName(conf.getIgniteInstanceName());
+        }
+        serializer.setUseCompactDates(compactDates);
+        serializer.setUseHomogeneousLists(homogeneousLists);
 
         final BinaryTypeConfiguration binaryTypeConfigurationForNodePropertiesCacheMap = new BinaryTypeConfiguration();
         binaryTypeConfigurationForNodePropertiesCacheMap.setTypeName(NodePropertiesCacheMap.class.getName());
@@ -318,6 +422,207 @@ public class NodePropertiesBinarySerializerTests extends GridTestsBase
         }
     }
 
+    @Test
+    public void defaultFormBulkIdResolutionCorrectness()
+    {
+        try (final GenericApplicationContext appContext = createApplicationContext())
+        {
+            final IgniteConfiguration conf = createConfiguration(appContext, true, true, false, false, null, true);
+            final ContentDataDAO contentDataDAO = appContext.getBean("contentDataDAO", ContentDataDAO.class);
+            this.bulkIdResolutionCorrectnessImpl(conf, contentDataDAO, appContext.getBean("bulkRetrievalCounter", AtomicInteger.class));
+        }
+    }
+
+    @Test
+    public void rawSerialFormBulkIdResolutionCorrectness()
+    {
+        try (final GenericApplicationContext appContext = createApplicationContext())
+        {
+            final IgniteConfiguration conf = createConfiguration(appContext, true, true, true, false, null, true);
+            final ContentDataDAO contentDataDAO = appContext.getBean("contentDataDAO", ContentDataDAO.class);
+            this.bulkIdResolutionCorrectnessImpl(conf, contentDataDAO, appContext.getBean("bulkRetrievalCounter", AtomicInteger.class));
+        }
+    }
+
+    @Test
+    public void defaultFormLazyDecodingCorrectness()
+    {
+        try (final GenericApplicationContext appContext = createApplicationContext())
+        {
+            final IgniteConfiguration conf = createConfiguration(appContext, true, true, false, true);
+            final ContentDataDAO contentDataDAO = appContext.getBean("contentDataDAO", ContentDataDAO.class);
+            this.lazyDecodingCorrectnessImpl(conf, contentDataDAO);
+        }
+    }
+
+    @Test
+    public void rawSerialFormLazyDecodingCorrectness()
+    {
+        try (final GenericApplicationContext appContext = createApplicationContext())
+        {
+            final IgniteConfiguration conf = createConfiguration(appContext, true, true, true, true);
+            final ContentDataDAO contentDataDAO = appContext.getBean("contentDataDAO", ContentDataDAO.class);
+            this.lazyDecodingCorrectnessImpl(conf, contentDataDAO);
+        }
+    }
+
+    @Test
+    public void rawSerialFormPropertyLayoutCorrectness()
+    {
+        try (final GenericApplicationContext appContext = createApplicationContext())
+        {
+            final PropertyLayoutDictionary propertyLayoutDictionary = new PropertyLayoutDictionary();
+            final IgniteConfiguration conf = createConfiguration(appContext, true, true, true, false, propertyLayoutDictionary);
+            final ContentDataDAO contentDataDAO = appContext.getBean("contentDataDAO", ContentDataDAO.class);
+            this.propertyLayoutCorrectnessImpl(conf, propertyLayoutDictionary, contentDataDAO);
+        }
+    }
+
+    @Test
+    public void rawSerialFormPropertyValueDictionaryCorrectness() throws Exception
+    {
+        try (final GenericApplicationContext appContext = createApplicationContext())
+        {
+            final PropertyLayoutDictionary propertyLayoutDictionary = new PropertyLayoutDictionary();
+            final PropertyValueDictionary propertyValueDictionary = new PropertyValueDictionary();
+            propertyValueDictionary.setMaxValuesPerProperty(5);
+            final IgniteConfiguration conf = createConfiguration(appContext, true, true, true, false, propertyLayoutDictionary, false,
+                    propertyValueDictionary);
+            this.propertyValueDictionaryCorrectnessImpl(conf, propertyLayoutDictionary, propertyValueDictionary);
+        }
+    }
+
+    @Test
+    public void rawSerialFormPropertyValueDictionaryEfficiency() throws Exception
+    {
+        try (final GenericApplicationContext appContext = createApplicationContext())
+        {
+            final IgniteConfiguration referenceConf = createConfiguration(appContext, true, true, true, false, null, false);
+            referenceConf.setIgniteInstanceName(referenceConf.getIgniteInstanceName() + "-reference");
+            final PropertyValueDictionary propertyValueDictionary = new PropertyValueDictionary();
+            final IgniteConfiguration conf = createConfiguration(appContext, true, true, true, false, null, false, propertyValueDictionary);
+
+            try
+            {
+                final Ignite referenceGrid = Ignition.start(referenceConf);
+                final Ignite grid = Ignition.start(conf);
+                propertyValueDictionary.afterInstanceStartup(conf.getIgniteInstanceName());
+
+                final NodePropertiesCacheMap value = new NodePropertiesCacheMap();
+                value.put(ContentModel.PROP_CREATOR, "admin");
+
+                final int referenceSize = referenceGrid.configuration().getMarshaller().marshal(value).length;
+
+                // first occurrence of value is written as literal - overhead limited to single byte marker
+                final int literalSize = grid.configuration().getMarshaller().marshal(value).length;
+                Assert.assertEquals(referenceSize + 1, literalSize);
+
+                // repeated occurrence of value is written as ID once it has been learned asynchronously
+                int idSize = grid.configuration().getMarshaller().marshal(value).length;
+                for (int attempt = 0; attempt < 100 && idSize >= referenceSize; attempt++)
+                {
+                    Thread.sleep(50);
+                    idSize = grid.configuration().getMarshaller().marshal(value).length;
+                }
+                Assert.assertTrue("Value substituted by ID should be smaller than literal value", idSize < referenceSize);
+
+                propertyValueDictionary.beforeInstanceShutdown(conf.getIgniteInstanceName());
+            }
+            finally
+            {
+                Ignition.stopAll(true);
+            }
+        }
+    }
+
+    @Test
+    public void rawSerialFormCompactDatesCorrectness()
+    {
+        try (final GenericApplicationContext appContext = createApplicationContext())
+        {
+            final IgniteConfiguration conf = createConfiguration(appContext, true, true, true, false, null, false, null, true, false);
+            final ContentDataDAO contentDataDAO = appContext.getBean("contentDataDAO", ContentDataDAO.class);
+            this.correctnessImpl(conf, contentDataDAO);
+        }
+    }
+
+    @Test
+    public void rawSerialFormCompactDatesPropertyLayoutCorrectness()
+    {
+        try (final GenericApplicationContext appContext = createApplicationContext())
+        {
+            final PropertyLayoutDictionary propertyLayoutDictionary = new PropertyLayoutDictionary();
+            final IgniteConfiguration conf = createConfiguration(appContext, true, true, true, false, propertyLayoutDictionary, false,
+                    null, true, false);
+            this.compactDatesCorrectnessImpl(conf, propertyLayoutDictionary);
+        }
+    }
+
+    @Test
+    public void rawSerialFormHomogeneousListsCorrectness()
+    {
+        try (final GenericApplicationContext appContext = createApplicationContext())
+        {
+            final IgniteConfiguration conf = createConfiguration(appContext, true, true, true, false, null, false, null, false, true);
+            final ContentDataDAO contentDataDAO = appContext.getBean("contentDataDAO", ContentDataDAO.class);
+            this.correctnessImpl(conf, contentDataDAO);
+            this.homogeneousListsCorrectnessImpl(conf, null);
+        }
+    }
+
+    @Test
+    public void rawSerialFormHomogeneousListsPropertyValueDictionaryCorrectness()
+    {
+        try (final GenericApplicationContext appContext = createApplicationContext())
+        {
+            final PropertyValueDictionary propertyValueDictionary = new PropertyValueDictionary();
+            final IgniteConfiguration conf = createConfiguration(appContext, true, true, true, false, null, false, propertyValueDictionary,
+                    true, true);
+            this.homogeneousListsCorrectnessImpl(conf, propertyValueDictionary);
+        }
+    }
+
+    @Test
+    public void rawSerialFormPropertyLayoutEfficiency()
+    {
+        try (final GenericApplicationContext appContext = createApplicationContext())
+        {
+            final IgniteConfiguration referenceConf = createConfiguration(appContext, true, true, true, "comparison1");
+            referenceConf.setIgniteInstanceName(referenceConf.getIgniteInstanceName() + "-reference");
+
+            final PropertyLayoutDictionary propertyLayoutDictionary = new PropertyLayoutDictionary();
+            final IgniteConfiguration layoutConf = createConfiguration(appContext, true, true, true, false, propertyLayoutDictionary,
+                    "comparison1");
+
+            final ContentDataDAO contentDataDAO = appContext.getBean("contentDataDAO", ContentDataDAO.class);
+
+            try
+            {
+                final Ignite referenceGrid = Ignition.start(referenceConf);
+                final Ignite layoutGrid = Ignition.start(layoutConf);
+                propertyLayoutDictionary.afterInstanceStartup(layoutConf.getIgniteInstanceName());
+
+                final CacheConfiguration<Long, NodePropertiesCacheMap> cacheConfig = new CacheConfiguration<>();
+                cacheConfig.setCacheMode(CacheMode.LOCAL);
+
+                cacheConfig.setName("comparison1");
+                cacheConfig.setDataRegionName("comparison1");
+                final IgniteCache<Long, NodePropertiesCacheMap> referenceCache1 = referenceGrid.getOrCreateCache(cacheConfig);
+                final IgniteCache<Long, NodePropertiesCacheMap> cache1 = layoutGrid.getOrCreateCache(cacheConfig);
+
+                // flags, key ID and value type of each entry are replaced by a single layout ID
+                // 15%
+                this.efficiencyImpl(referenceGrid, layoutGrid, referenceCache1, cache1, contentDataDAO,
+                        "aldica raw serial (QName + ContentData ID substitution + property layout)",
+                        "aldica raw serial (QName + ContentData ID substitution)", 0.15);
+            }
+            finally
+            {
+                Ignition.stopAll(true);
+            }
+        }
+    }
+
     @Test
     public void rawSerialFormEfficiency()
     {
@@ -451,6 +756,363 @@ public class NodePropertiesBinarySerializerTests extends GridTestsBase
         }
     }
 
+    protected void homogeneousListsCorrectnessImpl(final IgniteConfiguration conf, final PropertyValueDictionary propertyValueDictionary)
+    {
+        try (Ignite grid = Ignition.start(conf))
+        {
+            if (propertyValueDictionary != null)
+            {
+                propertyValueDictionary.afterInstanceStartup(conf.getIgniteInstanceName());
+            }
+
+            final CacheConfiguration<Long, NodePropertiesCacheMap> cacheConfig = new CacheConfiguration<>();
+            cacheConfig.setName("homogeneousLists");
+            cacheConfig.setCacheMode(CacheMode.LOCAL);
+            final IgniteCache<Long, NodePropertiesCacheMap> cache = grid.getOrCreateCache(cacheConfig);
+
+            NodePropertiesCacheMap controlValue1;
+            NodePropertiesCacheMap controlValue2;
+            NodePropertiesCacheMap controlValue3;
+            NodePropertiesCacheMap cacheValue;
+
+            // homogeneous lists of all packed element types
+            controlValue1 = new NodePropertiesCacheMap();
+            controlValue1.put(ContentModel.PROP_CATEGORIES,
+                    new ArrayList<>(Arrays.asList(new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, UUID.randomUUID().toString()),
+                            new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, UUID.randomUUID().toString()),
+                            new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, UUID.randomUUID().toString()))));
+            controlValue1.put(ContentModel.PROP_CREATOR, new ArrayList<>(Arrays.asList("admin", "editor", "admin")));
+            controlValue1.put(ContentModel.PROP_NAME, new ArrayList<>(Arrays.asList(Long.valueOf(1), Long.valueOf(Long.MIN_VALUE))));
+            controlValue1.put(ContentModel.PROP_MODIFIER, new ArrayList<>(Arrays.asList(Integer.valueOf(42), Integer.valueOf(-1))));
+            controlValue1.put(ContentModel.PROP_CONTENT, new ArrayList<>(Arrays.asList(Double.valueOf(Math.PI), Double.valueOf(Math.E))));
+            controlValue1.put(ContentModel.PROP_MODIFIED,
+                    new ArrayList<>(Arrays.asList(Date.from(LocalDateTime.of(2020, Month.JULY, 1, 23, 12, 45).toInstant(ZoneOffset.UTC)),
+                            Date.from(LocalDateTime.of(2021, Month.JANUARY, 1, 0, 0, 0).toInstant(ZoneOffset.UTC)))));
+
+            // node references from different stores / with non-UUID IDs, empty list
+            controlValue2 = new NodePropertiesCacheMap();
+            controlValue2.put(ContentModel.PROP_CATEGORIES,
+                    new ArrayList<>(Arrays.asList(new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, UUID.randomUUID().toString()),
+                            new NodeRef(StoreRef.STORE_REF_ARCHIVE_SPACESSTORE, UUID.randomUUID().toString()))));
+            controlValue2.put(ContentModel.PROP_MODIFIED, new ArrayList<>(Arrays.asList(
+                    new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, "company_home"),
+                    new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, UUID.randomUUID().toString().toUpperCase(Locale.ENGLISH)))));
+            controlValue2.put(ContentModel.PROP_CREATOR, new ArrayList<>());
+
+            // mixed lists, including null elements and nested lists
+            controlValue3 = new NodePropertiesCacheMap();
+            controlValue3.put(ContentModel.PROP_CATEGORIES, new ArrayList<>(
+                    Arrays.asList(new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, UUID.randomUUID().toString()), null, "text")));
+            controlValue3.put(ContentModel.PROP_CREATOR, new ArrayList<>(Arrays.asList("admin", Integer.valueOf(1), Boolean.TRUE)));
+            controlValue3.put(ContentModel.PROP_MODIFIER,
+                    new ArrayList<>(Arrays.asList(new ArrayList<>(Arrays.asList("a", "b")), new ArrayList<>(Arrays.asList("c")))));
+
+            cache.put(1l, controlValue1);
+            cache.put(2l, controlValue2);
+            cache.put(3l, controlValue3);
+
+            // repeat to cover use of property value dictionary IDs (assigned on second occurrence)
+            for (int i = 0; i < 2; i++)
+            {
+                Assert.assertEquals(controlValue1, cache.get(1l));
+                Assert.assertEquals(controlValue2, cache.get(2l));
+                Assert.assertEquals(controlValue3, cache.get(3l));
+
+                cache.put(1l, controlValue1);
+                cache.put(2l, controlValue2);
+                cache.put(3l, controlValue3);
+            }
+
+            // list views must be read-only but yield regular lists when copied via Java serialisation (as done by Alfresco)
+            cacheValue = cache.get(1l);
+            final Serializable categories = cacheValue.get(ContentModel.PROP_CATEGORIES);
+            try
+            {
+                @SuppressWarnings("unchecked")
+                final List<NodeRef> categoriesList = (List<NodeRef>) categories;
+                categoriesList.add(new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, UUID.randomUUID().toString()));
+                Assert.fail("List view should not support modifications");
+            }
+            catch (final UnsupportedOperationException expected)
+            {
+                // NO-OP
+            }
+
+            final Object categoriesCopy = SerializationUtils.deserialize(SerializationUtils.serialize(categories));
+            Assert.assertTrue(categoriesCopy instanceof ArrayList<?>);
+            Assert.assertEquals(controlValue1.get(ContentModel.PROP_CATEGORIES), categoriesCopy);
+        }
+        finally
+        {
+            if (propertyValueDictionary != null)
+            {
+                propertyValueDictionary.beforeInstanceShutdown(conf.getIgniteInstanceName());
+            }
+        }
+    }
+
+    protected void compactDatesCorrectnessImpl(final IgniteConfiguration conf, final PropertyLayoutDictionary propertyLayoutDictionary)
+    {
+        try (Ignite grid = Ignition.start(conf))
+        {
+            propertyLayoutDictionary.afterInstanceStartup(conf.getIgniteInstanceName());
+
+            final CacheConfiguration<Long, NodePropertiesCacheMap> cacheConfig = new CacheConfiguration<>();
+            cacheConfig.setName("compactDates");
+            cacheConfig.setCacheMode(CacheMode.LOCAL);
+            final IgniteCache<Long, NodePropertiesCacheMap> cache = grid.getOrCreateCache(cacheConfig);
+
+            NodePropertiesCacheMap controlValue1;
+            NodePropertiesCacheMap controlValue2;
+            NodePropertiesCacheMap controlValue3;
+
+            // dates before the epoch base and modification date before the creation date (e.g. imported content)
+            controlValue1 = new NodePropertiesCacheMap();
+            controlValue1.put(ContentModel.PROP_CREATED,
+                    Date.from(LocalDateTime.of(1999, Month.DECEMBER, 31, 23, 59, 59).toInstant(ZoneOffset.UTC)));
+            controlValue1.put(ContentModel.PROP_MODIFIED,
+                    Date.from(LocalDateTime.of(1970, Month.JANUARY, 1, 0, 0, 0).toInstant(ZoneOffset.UTC)));
+
+            // same layout as 1, but without creation date value
+            controlValue2 = new NodePropertiesCacheMap();
+            controlValue2.put(ContentModel.PROP_CREATED, null);
+            controlValue2.put(ContentModel.PROP_MODIFIED,
+                    Date.from(LocalDateTime.of(2042, Month.MARCH, 15, 12, 30, 0).toInstant(ZoneOffset.UTC)));
+
+            // no creation date and multi-valued dates, including the extreme values of the type
+            controlValue3 = new NodePropertiesCacheMap();
+            controlValue3.put(ContentModel.PROP_MODIFIED, new ArrayList<>(Arrays.asList(new Date(Long.MIN_VALUE), new Date(Long.MAX_VALUE),
+                    Date.from(LocalDateTime.of(2020, Month.JULY, 1, 23, 12, 45).toInstant(ZoneOffset.UTC)))));
+
+            cache.put(1l, controlValue1);
+            cache.put(2l, controlValue2);
+            cache.put(3l, controlValue3);
+
+            Assert.assertEquals(controlValue1, cache.get(1l));
+            Assert.assertEquals(controlValue2, cache.get(2l));
+            Assert.assertEquals(controlValue3, cache.get(3l));
+        }
+        finally
+        {
+            propertyLayoutDictionary.beforeInstanceShutdown(conf.getIgniteInstanceName());
+        }
+    }
+
+    protected void propertyLayoutCorrectnessImpl(final IgniteConfiguration conf, final PropertyLayoutDictionary propertyLayoutDictionary,
+            final ContentDataDAO contentDataDAO)
+    {
+        try (Ignite grid = Ignition.start(conf))
+        {
+            propertyLayoutDictionary.afterInstanceStartup(conf.getIgniteInstanceName());
+
+            final CacheConfiguration<Long, NodePropertiesCacheMap> cacheConfig = new CacheConfiguration<>();
+            cacheConfig.setName("contentData");
+            cacheConfig.setCacheMode(CacheMode.LOCAL);
+            final IgniteCache<Long, NodePropertiesCacheMap> cache = grid.getOrCreateCache(cacheConfig);
+
+            NodePropertiesCacheMap controlValue1;
+            NodePropertiesCacheMap controlValue2;
+            NodePropertiesCacheMap controlValue3;
+            NodePropertiesCacheMap controlValue4;
+
+            controlValue1 = new NodePropertiesCacheMap();
+            controlValue1.put(ContentModel.PROP_CREATOR, "admin");
+            controlValue1.put(ContentModel.PROP_CREATED,
+                    Date.from(LocalDateTime.of(2020, Month.JANUARY, 1, 6, 0, 0).toInstant(ZoneOffset.UTC)));
+            controlValue1.put(ContentModel.PROP_NAME, UUID.randomUUID().toString());
+            controlValue1.put(ContentModel.PROP_CONTENT, contentDataDAO.getContentData(1l).getSecond());
+
+            // same layout as 1, but inserted in different order
+            controlValue2 = new NodePropertiesCacheMap();
+            controlValue2.put(ContentModel.PROP_CONTENT, contentDataDAO.getContentData(2l).getSecond());
+            controlValue2.put(ContentModel.PROP_NAME, UUID.randomUUID().toString());
+            controlValue2.put(ContentModel.PROP_CREATED,
+                    Date.from(LocalDateTime.of(2020, Month.JULY, 1, 23, 12, 45).toInstant(ZoneOffset.UTC)));
+            controlValue2.put(ContentModel.PROP_CREATOR, "editor");
+
+            // same keys as 1, but different value types / flags
+            controlValue3 = new NodePropertiesCacheMap();
+            controlValue3.put(ContentModel.PROP_CREATOR, null);
+            controlValue3.put(ContentModel.PROP_CREATED,
+                    Date.from(LocalDateTime.of(2020, Month.JANUARY, 1, 6, 0, 0).toInstant(ZoneOffset.UTC)));
+            controlValue3.put(ContentModel.PROP_NAME, UUID.randomUUID().toString());
+            controlValue3.put(ContentModel.PROP_CONTENT, new ArrayList<>(
+                    Arrays.asList(contentDataDAO.getContentData(2l).getSecond(), contentDataDAO.getContentData(3l).getSecond())));
+
+            // completely different layout
+            controlValue4 = new NodePropertiesCacheMap();
+            controlValue4.put(ContentModel.PROP_MODIFIER, "editor");
+            controlValue4.put(ContentModel.PROP_MODIFIED,
+                    Date.from(LocalDateTime.of(2020, Month.JULY, 1, 23, 12, 45).toInstant(ZoneOffset.UTC)));
+
+            cache.put(1l, controlValue1);
+            cache.put(2l, controlValue2);
+            cache.put(3l, controlValue3);
+            cache.put(4l, controlValue4);
+            // empty map is never subject to layout
+            cache.put(5l, new NodePropertiesCacheMap());
+
+            Assert.assertEquals(controlValue1, cache.get(1l));
+            Assert.assertEquals(controlValue2, cache.get(2l));
+            Assert.assertEquals(controlValue3, cache.get(3l));
+            Assert.assertEquals(controlValue4, cache.get(4l));
+            Assert.assertEquals(new NodePropertiesCacheMap(), cache.get(5l));
+        }
+        finally
+        {
+            propertyLayoutDictionary.beforeInstanceShutdown(conf.getIgniteInstanceName());
+        }
+    }
+
+    protected void propertyValueDictionaryCorrectnessImpl(final IgniteConfiguration conf,
+            final PropertyLayoutDictionary propertyLayoutDictionary, final PropertyValueDictionary propertyValueDictionary)
+            throws InterruptedException
+    {
+        try (Ignite grid = Ignition.start(conf))
+        {
+            propertyLayoutDictionary.afterInstanceStartup(conf.getIgniteInstanceName());
+            propertyValueDictionary.afterInstanceStartup(conf.getIgniteInstanceName());
+
+            final CacheConfiguration<Long, NodePropertiesCacheMap> cacheConfig = new CacheConfiguration<>();
+            cacheConfig.setName("contentData");
+            cacheConfig.setCacheMode(CacheMode.LOCAL);
+            final IgniteCache<Long, NodePropertiesCacheMap> cache = grid.getOrCreateCache(cacheConfig);
+
+            final String[] users = { "admin", "editor", "guest" };
+            final List<NodePropertiesCacheMap> controlValues = new ArrayList<>();
+            for (int idx = 0; idx < 20; idx++)
+            {
+                final NodePropertiesCacheMap controlValue = new NodePropertiesCacheMap();
+                // low cardinality
+                controlValue.put(ContentModel.PROP_CREATOR, users[idx % users.length]);
+                controlValue.put(ContentModel.PROP_MODIFIER, users[(idx + 1) % users.length]);
+                // high cardinality
+                controlValue.put(ContentModel.PROP_NAME, UUID.randomUUID().toString());
+                // values of multi-valued properties are never substituted
+                controlValue.put(ContentModel.PROP_CATEGORIES, new ArrayList<>(Arrays.asList(users)));
+                controlValues.add(controlValue);
+
+                cache.put(Long.valueOf(idx), controlValue);
+            }
+
+            for (int idx = 0; idx < controlValues.size(); idx++)
+            {
+                Assert.assertEquals(controlValues.get(idx), cache.get(Long.valueOf(idx)));
+            }
+
+            Assert.assertTrue(propertyValueDictionary.isDictionaryCandidate(ContentModel.PROP_CREATOR));
+            Assert.assertTrue(propertyValueDictionary.isDictionaryCandidate(ContentModel.PROP_MODIFIER));
+            Assert.assertFalse(propertyValueDictionary.isDictionaryCandidate(ContentModel.PROP_NAME));
+            for (final String user : users)
+            {
+                // IDs are assigned asynchronously
+                int valueId = propertyValueDictionary.getValueId(ContentModel.PROP_CREATOR, user);
+                for (int attempt = 0; attempt < 100 && valueId == PropertyValueDictionary.NO_VALUE_ID; attempt++)
+                {
+                    Thread.sleep(50);
+                    valueId = propertyValueDictionary.getValueId(ContentModel.PROP_CREATOR, user);
+                }
+                Assert.assertNotEquals(PropertyValueDictionary.NO_VALUE_ID, valueId);
+            }
+            Assert.assertEquals(PropertyValueDictionary.NO_VALUE_ID,
+                    propertyValueDictionary.getValueId(ContentModel.PROP_NAME, UUID.randomUUID().toString()));
+        }
+        finally
+        {
+            propertyValueDictionary.beforeInstanceShutdown(conf.getIgniteInstanceName());
+            propertyLayoutDictionary.beforeInstanceShutdown(conf.getIgniteInstanceName());
+        }
+    }
+
+    protected void bulkIdResolutionCorrectnessImpl(final IgniteConfiguration conf, final ContentDataDAO contentDataDAO,
+            final AtomicInteger bulkRetrievalCounter)
+    {
+        try (Ignite grid = Ignition.start(conf))
+        {
+            final CacheConfiguration<Long, NodePropertiesCacheMap> cacheConfig = new CacheConfiguration<>();
+            cacheConfig.setName("contentData");
+            cacheConfig.setCacheMode(CacheMode.LOCAL);
+            final IgniteCache<Long, NodePropertiesCacheMap> cache = grid.getOrCreateCache(cacheConfig);
+
+            NodePropertiesCacheMap controlValue;
+            NodePropertiesCacheMap cacheValue;
+
+            controlValue = new NodePropertiesCacheMap();
+            controlValue.put(ContentModel.PROP_CREATOR, "admin");
+            controlValue.put(ContentModel.PROP_CREATED,
+                    Date.from(LocalDateTime.of(2020, Month.JANUARY, 1, 6, 0, 0).toInstant(ZoneOffset.UTC)));
+            controlValue.put(ContentModel.PROP_MODIFIER, "editor");
+            controlValue.put(ContentModel.PROP_NAME, UUID.randomUUID().toString());
+            controlValue.put(ContentModel.PROP_CONTENT, contentDataDAO.getContentData(1l).getSecond());
+            // not semantically correct, but we need a multi-valued ContentData property
+            controlValue.put(ContentModel.PROP_CATEGORIES, new ArrayList<>(
+                    Arrays.asList(contentDataDAO.getContentData(2l).getSecond(), contentDataDAO.getContentData(3l).getSecond())));
+
+            cache.put(1l, controlValue);
+
+            bulkRetrievalCounter.set(0);
+            cacheValue = cache.get(1l);
+
+            Assert.assertEquals(controlValue, cacheValue);
+            // one lookup for all QName keys, one for all ContentData values
+            Assert.assertEquals(2, bulkRetrievalCounter.get());
+        }
+    }
+
+    protected void lazyDecodingCorrectnessImpl(final IgniteConfiguration conf, final ContentDataDAO contentDataDAO)
+    {
+        try (Ignite grid = Ignition.start(conf))
+        {
+            final CacheConfiguration<Long, NodePropertiesCacheMap> cacheConfig = new CacheConfiguration<>();
+            cacheConfig.setName("contentData");
+            cacheConfig.setCacheMode(CacheMode.LOCAL);
+            final IgniteCache<Long, NodePropertiesCacheMap> cache = grid.getOrCreateCache(cacheConfig);
+
+            NodePropertiesCacheMap controlValue;
+            NodePropertiesCacheMap cacheValue;
+
+            controlValue = new NodePropertiesCacheMap();
+            controlValue.put(ContentModel.PROP_CREATOR, "admin");
+            controlValue.put(ContentModel.PROP_NAME, UUID.randomUUID().toString());
+            controlValue.put(ContentModel.PROP_CONTENT, contentDataDAO.getContentData(1l).getSecond());
+            // not semantically correct, but we need a multi-valued ContentData property
+            controlValue.put(ContentModel.PROP_CATEGORIES, new ArrayList<>(
+                    Arrays.asList(contentDataDAO.getContentData(2l).getSecond(), contentDataDAO.getContentData(3l).getSecond())));
+
+            cache.put(1l, controlValue);
+
+            // single key access only resolves the specific value
+            cacheValue = cache.get(1l);
+            Assert.assertTrue(cacheValue.hasLazyValues());
+            Assert.assertEquals(controlValue.size(), cacheValue.size());
+            Assert.assertTrue(cacheValue.containsKey(ContentModel.PROP_CONTENT));
+            Assert.assertTrue(cacheValue.hasLazyValues());
+            Assert.assertEquals(controlValue.get(ContentModel.PROP_NAME), cacheValue.get(ContentModel.PROP_NAME));
+            Assert.assertEquals(controlValue.get(ContentModel.PROP_CONTENT), cacheValue.get(ContentModel.PROP_CONTENT));
+            Assert.assertTrue(cacheValue.hasLazyValues());
+            Assert.assertEquals(controlValue.get(ContentModel.PROP_CATEGORIES), cacheValue.get(ContentModel.PROP_CATEGORIES));
+            Assert.assertFalse(cacheValue.hasLazyValues());
+
+            // bulk access resolves all values
+            cacheValue = cache.get(1l);
+            Assert.assertTrue(cacheValue.hasLazyValues());
+            Assert.assertEquals(controlValue.entrySet(), cacheValue.entrySet());
+            Assert.assertFalse(cacheValue.hasLazyValues());
+
+            // copies (e.g. via Alfresco copyPropertiesAgainstModification) resolve all values
+            cacheValue = cache.get(1l);
+            Assert.assertEquals(controlValue, new NodePropertiesCacheMap(cacheValue));
+
+            // mutation of a lazy key must not be overridden by later resolution
+            cacheValue = cache.get(1l);
+            cacheValue.put(ContentModel.PROP_CONTENT, null);
+            Assert.assertNull(cacheValue.get(ContentModel.PROP_CONTENT));
+            cacheValue.remove(ContentModel.PROP_CATEGORIES);
+            Assert.assertFalse(cacheValue.containsKey(ContentModel.PROP_CATEGORIES));
+            Assert.assertFalse(cacheValue.hasLazyValues());
+        }
+    }
+
     protected void efficiencyImpl(final Ignite referenceGrid, final Ignite defaultGrid,
             final IgniteCache<Long, NodePropertiesCacheMap> referenceCache, final IgniteCache<Long, NodePropertiesCacheMap> cache,
             final ContentDataDAO contentDataDAO, final String serialisationType,
@@ -13,6 +13,7 @@ import java.util.UUID;
 
 import org.aldica.common.ignite.GridTestsBase;
 import org.alfresco.model.ContentModel;
+import org.alfresco.service.namespace.NamespaceService;
 import org.alfresco.service.namespace.QName;
 import org.apache.ignite.DataRegionMetrics;
 import org.apache.ignite.Ignite;
@@ -41,6 +42,12 @@ public class QNameBinarySerializerTests extends GridTestsBase
 
     private static final QName[] QNAMES;
 
+    private static final QName[] CUSTOM_QNAMES;
+
+    private static final String CUSTOM_NAMESPACE_URI_PATTERN = "http://www.example.org/model/custom%d/1.0";
+
+    private static final String REGISTERED_NAMESPACE_URI_PATTERN = "http://www.example.org/model/registered%d/1.0";
+
     static
     {
         try
@@ -57,6 +64,18 @@ public class QNameBinarySerializerTests extends GridTestsBase
                 }
             }
             QNAMES = qnames.toArray(new QName[0]);
+
+            // 200 custom namespaces to cover both inline and separate dictionary IDs
+            final List<QName> customQNames = new ArrayList<>();
+            for (int nsIdx = 0; nsIdx < 200; nsIdx++)
+            {
+                final String namespaceUri = String.format(CUSTOM_NAMESPACE_URI_PATTERN, nsIdx);
+                for (final QName qname : QNAMES)
+                {
+                    customQNames.add(QName.createQName(namespaceUri, qname.getLocalName()));
+                }
+            }
+            CUSTOM_QNAMES = customQNames.toArray(new QName[0]);
         }
         catch (final IllegalAccessException iaex)
         {
@@ -65,6 +84,12 @@ public class QNameBinarySerializerTests extends GridTestsBase
     }
 
     protected static IgniteConfiguration createConfiguration(final boolean serialForm, final String... regionNames)
+    {
+        return createConfiguration(serialForm, null, regionNames);
+    }
+
+    protected static IgniteConfiguration createConfiguration(final boolean serialForm, final NamespaceDictionary namespaceDictionary,
+            final String... regionNames)
     {
         final IgniteConfiguration conf = createConfiguration(1, false, null);
 
@@ -74,6 +99,11 @@ public class QNameBinarySerializerTests extends GridTestsBase
         binaryTypeConfigurationForQName.setTypeName(QName.class.getName());
         final QNameBinarySerializer serializer = new QNameBinarySerializer();
         serializer.setUseRawSerialForm(serialForm);
+        if (namespaceDictionary != null)
+        {
+            serializer.setUseNamespaceDictionary(true);
+            serializer.setNamespaceDictionary(namespaceDictionary);
+        }
         binaryTypeConfigurationForQName.setSerializer(serializer);
 
         binaryConfiguration.setTypeConfigurations(Arrays.asList(binaryTypeConfigurationForQName));
@@ -128,7 +158,7 @@ public class QNameBinarySerializerTests extends GridTestsBase
             final IgniteCache<Long, QName> cache = grid.getOrCreateCache(cacheConfig);
 
             // savings on namespace should be substantial - 27%
-            this.efficiencyImpl(referenceGrid, grid, referenceCache, cache, "aldica optimised", "Ignite default", 0.27);
+            this.efficiencyImpl(referenceGrid, grid, referenceCache, cache, QNAMES, "aldica optimised", "Ignite default", 0.27);
         }
         finally
         {
@@ -164,7 +194,93 @@ public class QNameBinarySerializerTests extends GridTestsBase
             final IgniteCache<Long, QName> cache1 = grid.getOrCreateCache(cacheConfig);
 
             // saving potential is limited - 2%
-            this.efficiencyImpl(referenceGrid, grid, referenceCache1, cache1, "aldica raw serial", "aldica optimised", 0.02);
+            this.efficiencyImpl(referenceGrid, grid, referenceCache1, cache1, QNAMES, "aldica raw serial", "aldica optimised", 0.02);
+        }
+        finally
+        {
+            Ignition.stopAll(true);
+        }
+    }
+
+    protected static NamespaceDictionary createNamespaceDictionary(final String namespaceUriPattern, final int count,
+            final String... extraNamespaceUris)
+    {
+        final StringBuilder namespaceUris = new StringBuilder();
+        for (int idx = 0; idx < count; idx++)
+        {
+            namespaceUris.append(String.format(namespaceUriPattern, idx)).append(',');
+        }
+        for (final String extraNamespaceUri : extraNamespaceUris)
+        {
+            namespaceUris.append(extraNamespaceUri).append(',');
+        }
+
+        final NamespaceDictionary namespaceDictionary = new NamespaceDictionary();
+        namespaceDictionary.setNamespaceUris(namespaceUris.toString());
+        return namespaceDictionary;
+    }
+
+    @Test
+    public void namespaceDictionaryFingerprint()
+    {
+        final String namespaceUris = "http://www.example.org/model/a/1.0, http://www.example.org/model/b/1.0";
+
+        Assert.assertEquals(NamespaceDictionary.NO_FINGERPRINT, NamespaceDictionary.fingerprint(false, namespaceUris));
+        Assert.assertEquals(NamespaceDictionary.NO_FINGERPRINT, NamespaceDictionary.fingerprint(true, ""));
+        Assert.assertEquals(NamespaceDictionary.NO_FINGERPRINT,
+                NamespaceDictionary.fingerprint(true, NamespaceService.CONTENT_MODEL_1_0_URI));
+
+        // only effective URIs and their order determine the fingerprint
+        final String fingerprint = NamespaceDictionary.fingerprint(true, namespaceUris);
+        Assert.assertNotEquals(NamespaceDictionary.NO_FINGERPRINT, fingerprint);
+        Assert.assertEquals(fingerprint, NamespaceDictionary.fingerprint(true,
+                "http://www.example.org/model/a/1.0," + NamespaceService.CONTENT_MODEL_1_0_URI + ",http://www.example.org/model/b/1.0"));
+        Assert.assertNotEquals(fingerprint,
+                NamespaceDictionary.fingerprint(true, "http://www.example.org/model/b/1.0,http://www.example.org/model/a/1.0"));
+    }
+
+    @Test
+    public void defaultFormNamespaceDictionaryCorrectness()
+    {
+        final NamespaceDictionary namespaceDictionary = createNamespaceDictionary(REGISTERED_NAMESPACE_URI_PATTERN, 200,
+                NamespaceService.CONTENT_MODEL_1_0_URI);
+        final IgniteConfiguration conf = createConfiguration(false, namespaceDictionary);
+        this.namespaceDictionaryCorrectnessImpl(conf, namespaceDictionary);
+    }
+
+    @Test
+    public void rawSerialFormNamespaceDictionaryCorrectness()
+    {
+        final NamespaceDictionary namespaceDictionary = createNamespaceDictionary(REGISTERED_NAMESPACE_URI_PATTERN, 200,
+                NamespaceService.CONTENT_MODEL_1_0_URI);
+        final IgniteConfiguration conf = createConfiguration(true, namespaceDictionary);
+        this.namespaceDictionaryCorrectnessImpl(conf, namespaceDictionary);
+    }
+
+    @Test
+    public void rawSerialFormNamespaceDictionaryEfficiency()
+    {
+        final IgniteConfiguration referenceConf = createConfiguration(true, "values");
+        referenceConf.setIgniteInstanceName(referenceConf.getIgniteInstanceName() + "-reference");
+        final NamespaceDictionary namespaceDictionary = createNamespaceDictionary(CUSTOM_NAMESPACE_URI_PATTERN, 200);
+        final IgniteConfiguration conf = createConfiguration(true, namespaceDictionary, "values");
+
+        try
+        {
+            final Ignite referenceGrid = Ignition.start(referenceConf);
+            final Ignite grid = Ignition.start(conf);
+
+            final CacheConfiguration<Long, QName> cacheConfig = new CacheConfiguration<>();
+            cacheConfig.setCacheMode(CacheMode.LOCAL);
+
+            cacheConfig.setName("values");
+            cacheConfig.setDataRegionName("values");
+            final IgniteCache<Long, QName> referenceCache = referenceGrid.getOrCreateCache(cacheConfig);
+            final IgniteCache<Long, QName> cache = grid.getOrCreateCache(cacheConfig);
+
+            // savings on custom namespace should be substantial - 25%
+            this.efficiencyImpl(referenceGrid, grid, referenceCache, cache, CUSTOM_QNAMES, "aldica namespace dictionary",
+                    "aldica raw serial", 0.25);
         }
         finally
         {
@@ -172,6 +288,60 @@ public class QNameBinarySerializerTests extends GridTestsBase
         }
     }
 
+    protected void namespaceDictionaryCorrectnessImpl(final IgniteConfiguration conf, final NamespaceDictionary namespaceDictionary)
+    {
+        try (Ignite grid = Ignition.start(conf))
+        {
+            final CacheConfiguration<Long, QName> cacheConfig = new CacheConfiguration<>();
+            cacheConfig.setName("qname");
+            cacheConfig.setCacheMode(CacheMode.LOCAL);
+            final IgniteCache<Long, QName> cache = grid.getOrCreateCache(cacheConfig);
+
+            QName controlValue;
+            QName cacheValue;
+
+            // well-known namespace is never added to the dictionary
+            controlValue = ContentModel.ASPECT_AUDITABLE;
+            cache.put(1l, controlValue);
+
+            cacheValue = cache.get(1l);
+
+            Assert.assertEquals(controlValue, cacheValue);
+            Assert.assertFalse(controlValue == cacheValue);
+            Assert.assertTrue(controlValue.getNamespaceURI() == cacheValue.getNamespaceURI());
+
+            // covers both IDs inlined into the namespace type and IDs written separately
+            for (int idx = 0; idx < 200; idx++)
+            {
+                controlValue = QName.createQName(String.format(REGISTERED_NAMESPACE_URI_PATTERN, idx), UUID.randomUUID().toString());
+                cache.put(Long.valueOf(idx + 2), controlValue);
+
+                cacheValue = cache.get(Long.valueOf(idx + 2));
+
+                Assert.assertEquals(controlValue, cacheValue);
+                Assert.assertFalse(controlValue == cacheValue);
+                Assert.assertFalse(controlValue.getLocalName() == cacheValue.getLocalName());
+            }
+
+            // IDs assigned in order of configuration, well-known namespace ignored
+            Assert.assertEquals(1, namespaceDictionary.getNamespaceId(String.format(REGISTERED_NAMESPACE_URI_PATTERN, 0)));
+            Assert.assertEquals(200, namespaceDictionary.getNamespaceId(String.format(REGISTERED_NAMESPACE_URI_PATTERN, 199)));
+            Assert.assertEquals(NamespaceDictionary.NO_NAMESPACE_ID,
+                    namespaceDictionary.getNamespaceId(NamespaceService.CONTENT_MODEL_1_0_URI));
+
+            // namespace never configured is written as a literal and never learned, so that serial forms remain stable
+            final String unregisteredUri = UUID.randomUUID().toString();
+            controlValue = QName.createQName(unregisteredUri, UUID.randomUUID().toString());
+            cache.put(1000l, controlValue);
+
+            cacheValue = cache.get(1000l);
+
+            Assert.assertEquals(controlValue, cacheValue);
+            Assert.assertFalse(controlValue == cacheValue);
+            Assert.assertEquals(NamespaceDictionary.NO_NAMESPACE_ID, namespaceDictionary.getNamespaceId(unregisteredUri));
+        }
+    }
+
     protected void correctnessImpl(final IgniteConfiguration conf)
     {
         try (Ignite grid = Ignition.start(conf))
@@ -211,8 +381,8 @@ public class QNameBinarySerializerTests extends GridTestsBase
     }
 
     protected void efficiencyImpl(final Ignite referenceGrid, final Ignite grid, final IgniteCache<Long, QName> referenceCache,
-            final IgniteCache<Long, QName> cache, final String serialisationType, final String referenceSerialisationType,
-            final double marginFraction)
+            final IgniteCache<Long, QName> cache, final QName[] qnames, final String serialisationType,
+            final String referenceSerialisationType, final double marginFraction)
     {
         LOGGER.info(
                 "Running QName serialisation benchmark of 100k instances, comparing {} vs. {} serialisation, expecting relative improvement margin / difference fraction of {}",
@@ -221,7 +391,7 @@ public class QNameBinarySerializerTests extends GridTestsBase
         final SecureRandom rnJesus = new SecureRandom();
         for (int idx = 0; idx < 100000; idx++)
         {
-            final QName value = QNAMES[rnJesus.nextInt(QNAMES.length)];
+            final QName value = qnames[rnJesus.nextInt(qnames.length)];
             referenceCache.put(Long.valueOf(idx), value);
             cache.put(Long.valueOf(idx), value);
         }
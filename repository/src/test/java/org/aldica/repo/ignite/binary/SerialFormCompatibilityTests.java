@@ -0,0 +1,421 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.binary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.aldica.common.ignite.GridTestsBase;
+import org.aldica.common.ignite.binary.StringDictionary;
+import org.aldica.repo.ignite.cache.NodeAspectsCacheSet;
+import org.aldica.repo.ignite.cache.NodePropertiesCacheMap;
+import org.alfresco.model.ContentModel;
+import org.alfresco.repo.cache.lookup.CacheRegionKey;
+import org.alfresco.repo.cache.lookup.CacheRegionValueKey;
+import org.alfresco.service.cmr.repository.ContentData;
+import org.alfresco.service.cmr.repository.MLText;
+import org.alfresco.service.namespace.QName;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.binary.BinaryObject;
+import org.apache.ignite.binary.BinarySerializer;
+import org.apache.ignite.binary.BinaryTypeConfiguration;
+import org.apache.ignite.cache.CacheMode;
+import org.apache.ignite.configuration.BinaryConfiguration;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.apache.ignite.internal.binary.BinaryObjectExImpl;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.context.support.GenericApplicationContext;
+
+/**
+ * @author Axel Faust
+ */
+public class SerialFormCompatibilityTests extends GridTestsBase
+{
+
+    private static final String VERSION_ATTRIBUTE_KEY = "test.serialFormVersion";
+
+    private static final String ROLE_ATTRIBUTE_KEY = "test.role";
+
+    private static final String ROLE_SERVER = "repository-server";
+
+    private static final String ROLE_COMPANION = "repository-companion";
+
+    private static final String MIXED_VERSION_CACHE = "mixedVersion";
+
+    private static final String MIXED_VERSION_NAMESPACE_URI = "http://www.example.org/model/mixedVersion/1.0";
+
+    protected static SerialFormCompatibility createCompatibility(final IgniteConfiguration conf, final int maxVersion)
+    {
+        final SerialFormCompatibility compatibility = new SerialFormCompatibility();
+        compatibility.setInstanceName(conf.getIgniteInstanceName());
+        compatibility.setVersionAttributeKey(VERSION_ATTRIBUTE_KEY);
+        compatibility.setMaxVersion(maxVersion);
+        compatibility.setNodeRoleAttributeKey(ROLE_ATTRIBUTE_KEY);
+        compatibility.setSerialisingNodeRoleAttributeValues(Collections.singleton(ROLE_SERVER));
+        compatibility.afterPropertiesSet();
+        return compatibility;
+    }
+
+    protected static IgniteConfiguration createConfiguration(final int no, final boolean assumeExisting, final String role,
+            final Integer advertisedVersion, final SerialFormCompatibility compatibility)
+    {
+        final IgniteConfiguration conf = createConfiguration(no, assumeExisting);
+
+        final Map<String, Object> userAttributes = new HashMap<>();
+        userAttributes.put(ROLE_ATTRIBUTE_KEY, role);
+        if (advertisedVersion != null)
+        {
+            // attributes defined via Spring XML are always textual
+            userAttributes.put(VERSION_ATTRIBUTE_KEY, String.valueOf(advertisedVersion));
+        }
+        conf.setUserAttributes(userAttributes);
+
+        final BinaryConfiguration binaryConfiguration = new BinaryConfiguration();
+
+        final BinaryTypeConfiguration binaryTypeConfigurationForMLText = new BinaryTypeConfiguration();
+        binaryTypeConfigurationForMLText.setTypeName(MLText.class.getName());
+        final MLTextBinarySerializer serializer = new MLTextBinarySerializer();
+        serializer.setUseRawSerialForm(true);
+        serializer.setUseCompactSingleLocaleForm(true);
+        serializer.setDefaultLocale(Locale.ENGLISH);
+        serializer.setSerialFormCompatibility(compatibility);
+        binaryTypeConfigurationForMLText.setSerializer(serializer);
+
+        binaryConfiguration.setTypeConfigurations(Arrays.asList(binaryTypeConfigurationForMLText));
+        conf.setBinaryConfiguration(binaryConfiguration);
+
+        return conf;
+    }
+
+    @Test
+    public void versionNegotiation()
+    {
+        final SerialFormCompatibility compatibility = createCompatibility(createConfiguration(1, false),
+                SerialFormCompatibility.CURRENT_VERSION);
+        final IgniteConfiguration conf1Versioned = createConfiguration(1, false, ROLE_SERVER,
+                Integer.valueOf(SerialFormCompatibility.CURRENT_VERSION), compatibility);
+
+        try
+        {
+            // instance not yet running
+            Assert.assertEquals(SerialFormCompatibility.VERSION_BASELINE, compatibility.getNegotiatedVersion());
+
+            Ignition.start(conf1Versioned);
+            compatibility.afterInstanceStartup(conf1Versioned.getIgniteInstanceName());
+            Assert.assertEquals(SerialFormCompatibility.CURRENT_VERSION, compatibility.getNegotiatedVersion());
+
+            // server of older module version without any advertised version
+            final IgniteConfiguration conf2 = createConfiguration(2, true, ROLE_SERVER, null, null);
+            Ignition.start(conf2);
+            Assert.assertEquals(SerialFormCompatibility.VERSION_BASELINE, compatibility.getNegotiatedVersion());
+            Assert.assertFalse(compatibility.isSupported(SerialFormCompatibility.VERSION_COMPACT_VALUES));
+
+            Ignition.stop(conf2.getIgniteInstanceName(), true);
+            Assert.assertEquals(SerialFormCompatibility.CURRENT_VERSION, compatibility.getNegotiatedVersion());
+            Assert.assertTrue(compatibility.isSupported(SerialFormCompatibility.VERSION_COMPACT_VALUES));
+
+            // companion does not (de-)serialise values and is irrelevant for negotiation
+            final IgniteConfiguration conf3 = createConfiguration(2, true, ROLE_COMPANION, null, null);
+            Ignition.start(conf3);
+            Assert.assertEquals(SerialFormCompatibility.CURRENT_VERSION, compatibility.getNegotiatedVersion());
+
+            compatibility.beforeInstanceShutdown(conf1Versioned.getIgniteInstanceName());
+            Assert.assertEquals(SerialFormCompatibility.VERSION_BASELINE, compatibility.getNegotiatedVersion());
+        }
+        finally
+        {
+            Ignition.stopAll(true);
+        }
+    }
+
+    @Test
+    public void mixedVersionCorrectness()
+    {
+        final SerialFormCompatibility compatibility1 = createCompatibility(createConfiguration(1, false),
+                SerialFormCompatibility.CURRENT_VERSION);
+        final IgniteConfiguration conf1 = createConfiguration(1, false, ROLE_SERVER,
+                Integer.valueOf(SerialFormCompatibility.CURRENT_VERSION), compatibility1);
+
+        // member pinned to baseline version, e.g. during a rolling upgrade
+        final SerialFormCompatibility compatibility2 = createCompatibility(createConfiguration(2, true),
+                SerialFormCompatibility.VERSION_BASELINE);
+        final IgniteConfiguration conf2 = createConfiguration(2, true, ROLE_SERVER,
+                Integer.valueOf(SerialFormCompatibility.VERSION_BASELINE), compatibility2);
+
+        try
+        {
+            final Ignite grid1 = Ignition.start(conf1);
+            compatibility1.afterInstanceStartup(conf1.getIgniteInstanceName());
+            final Ignite grid2 = Ignition.start(conf2);
+            compatibility2.afterInstanceStartup(conf2.getIgniteInstanceName());
+
+            Assert.assertEquals(SerialFormCompatibility.VERSION_BASELINE, compatibility1.getNegotiatedVersion());
+            Assert.assertEquals(SerialFormCompatibility.VERSION_BASELINE, compatibility2.getNegotiatedVersion());
+
+            final CacheConfiguration<Long, MLText> cacheConfig = new CacheConfiguration<>();
+            cacheConfig.setName("mlText");
+            cacheConfig.setCacheMode(CacheMode.REPLICATED);
+            final IgniteCache<Long, MLText> cache1 = grid1.getOrCreateCache(cacheConfig);
+            final IgniteCache<Long, MLText> cache2 = grid2.getOrCreateCache(cacheConfig);
+
+            final MLText controlValue1 = new MLText(Locale.ENGLISH, "English text 1");
+            final MLText controlValue2 = new MLText(Locale.ENGLISH, "English text 2");
+            final MLText controlValue3 = new MLText(Locale.ENGLISH, "English text 3");
+
+            // both members must write the baseline form
+            cache1.put(1l, controlValue1);
+            cache2.put(2l, controlValue2);
+
+            Assert.assertEquals(controlValue1, cache2.get(1l));
+            Assert.assertEquals(controlValue2, cache1.get(2l));
+
+            compatibility2.beforeInstanceShutdown(conf2.getIgniteInstanceName());
+            Ignition.stop(conf2.getIgniteInstanceName(), true);
+
+            Assert.assertEquals(SerialFormCompatibility.CURRENT_VERSION, compatibility1.getNegotiatedVersion());
+
+            // compact form written once the baseline member has left, older forms must still be readable
+            cache1.put(3l, controlValue3);
+
+            Assert.assertEquals(controlValue1, cache1.get(1l));
+            Assert.assertEquals(controlValue2, cache1.get(2l));
+            Assert.assertEquals(controlValue3, cache1.get(3l));
+        }
+        finally
+        {
+            Ignition.stopAll(true);
+        }
+    }
+
+    @Test
+    public void mixedVersionContentData()
+    {
+        try (final GenericApplicationContext appContext = ContentDataBinarySerializerTests.createApplicationContext())
+        {
+            final IgniteConfiguration conf = ContentDataBinarySerializerTests.createConfiguration(appContext, false, true, true);
+
+            final StringDictionary stringDictionary = new StringDictionary();
+            stringDictionary.setInstanceName(conf.getIgniteInstanceName());
+            stringDictionary.setCacheName("strings");
+            stringDictionary.afterPropertiesSet();
+            final ContentDataBinarySerializer serializer = (ContentDataBinarySerializer) conf.getBinaryConfiguration()
+                    .getTypeConfigurations().iterator().next().getSerializer();
+            serializer.setUseStringDictionary(true);
+            serializer.setStringDictionary(stringDictionary);
+
+            final ControllableSerialFormCompatibility compatibility = new ControllableSerialFormCompatibility();
+            applySerialFormCompatibility(conf, compatibility);
+
+            try (Ignite grid = Ignition.start(conf))
+            {
+                stringDictionary.afterInstanceStartup(grid.name());
+                // values are otherwise only learned asynchronously on first use
+                stringDictionary.register(Arrays.asList("text/plain", "UTF-8"));
+
+                // packed content URL and dictionary IDs for mimetype / encoding
+                final ContentData value = new ContentData(ContentDataBinarySerializerTests.createDefaultLayoutContentUrl(), "text/plain",
+                        1234l, "UTF-8", Locale.ENGLISH);
+                final int[] sizes = mixedVersionRoundTrip(grid, compatibility, value);
+                Assert.assertTrue("Extended form should be smaller than baseline form", sizes[0] < sizes[1]);
+
+                stringDictionary.beforeInstanceShutdown(grid.name());
+            }
+        }
+    }
+
+    @Test
+    public void mixedVersionNodeProperties()
+    {
+        try (final GenericApplicationContext appContext = NodePropertiesBinarySerializerTests.createApplicationContext())
+        {
+            final PropertyLayoutDictionary propertyLayoutDictionary = new PropertyLayoutDictionary();
+            final PropertyValueDictionary propertyValueDictionary = new PropertyValueDictionary();
+            final IgniteConfiguration conf = NodePropertiesBinarySerializerTests.createConfiguration(appContext, true, false, true, false,
+                    propertyLayoutDictionary, false, propertyValueDictionary);
+
+            final ControllableSerialFormCompatibility compatibility = new ControllableSerialFormCompatibility();
+            applySerialFormCompatibility(conf, compatibility);
+
+            try (Ignite grid = Ignition.start(conf))
+            {
+                propertyLayoutDictionary.afterInstanceStartup(grid.name());
+                propertyValueDictionary.afterInstanceStartup(grid.name());
+
+                // property layout and dictionary values
+                final NodePropertiesCacheMap value = new NodePropertiesCacheMap();
+                value.put(ContentModel.PROP_CREATOR, "admin");
+                value.put(ContentModel.PROP_MODIFIER, "admin");
+                final int[] sizes = mixedVersionRoundTrip(grid, compatibility, value);
+                Assert.assertTrue("Extended form should be smaller than baseline form", sizes[0] < sizes[1]);
+
+                propertyValueDictionary.beforeInstanceShutdown(grid.name());
+                propertyLayoutDictionary.beforeInstanceShutdown(grid.name());
+            }
+        }
+    }
+
+    @Test
+    public void mixedVersionNodeAspects()
+    {
+        try (final GenericApplicationContext appContext = NodeAspectsBinarySerializerTests.createApplicationContext())
+        {
+            final IgniteConfiguration conf = NodeAspectsBinarySerializerTests.createConfiguration(appContext, true, true, true);
+
+            final ControllableSerialFormCompatibility compatibility = new ControllableSerialFormCompatibility();
+            applySerialFormCompatibility(conf, compatibility);
+
+            try (Ignite grid = Ignition.start(conf))
+            {
+                final NodeAspectsCacheSet value = new NodeAspectsCacheSet(
+                        new HashSet<>(Arrays.asList(ContentModel.ASPECT_AUDITABLE, ContentModel.ASPECT_TITLED)));
+                mixedVersionRoundTrip(grid, compatibility, value);
+
+                // only the extended form is read as bitmap view
+                final IgniteCache<Long, NodeAspectsCacheSet> cache = grid.cache(MIXED_VERSION_CACHE);
+                Assert.assertNotNull(cache.get(1l).getBitmapView());
+                Assert.assertNull(cache.get(2l).getBitmapView());
+            }
+        }
+    }
+
+    @Test
+    public void mixedVersionQName()
+    {
+        final NamespaceDictionary namespaceDictionary = QNameBinarySerializerTests.createNamespaceDictionary(MIXED_VERSION_NAMESPACE_URI, 0,
+                MIXED_VERSION_NAMESPACE_URI);
+        final IgniteConfiguration conf = QNameBinarySerializerTests.createConfiguration(true, namespaceDictionary);
+
+        final ControllableSerialFormCompatibility compatibility = new ControllableSerialFormCompatibility();
+        applySerialFormCompatibility(conf, compatibility);
+
+        try (Ignite grid = Ignition.start(conf))
+        {
+            // keys must retain their serial form (namespace ID) regardless of the negotiated version
+            final QName value = QName.createQName(MIXED_VERSION_NAMESPACE_URI, "name");
+            final int[] sizes = mixedVersionRoundTrip(grid, compatibility, value);
+            Assert.assertEquals("Key form must not depend on negotiated version", sizes[0], sizes[1]);
+
+            final IgniteCache<Long, BinaryObjectExImpl> cache = grid.cache(MIXED_VERSION_CACHE).withKeepBinary();
+            Assert.assertEquals(cache.get(1l), cache.get(2l));
+        }
+    }
+
+    @Test
+    public void mixedVersionCacheRegionKeys()
+    {
+        final IgniteConfiguration conf = CacheRegionKeyBinarySerializerTests.createConfiguration(true, true);
+        final IgniteConfiguration valueKeyConf = CacheRegionValueKeyBinarySerializerTests.createConfiguration(true, true);
+
+        final List<BinaryTypeConfiguration> typeConfigurations = new ArrayList<>(conf.getBinaryConfiguration().getTypeConfigurations());
+        typeConfigurations.addAll(valueKeyConf.getBinaryConfiguration().getTypeConfigurations());
+        conf.getBinaryConfiguration().setTypeConfigurations(typeConfigurations);
+
+        final ControllableSerialFormCompatibility compatibility = new ControllableSerialFormCompatibility();
+        applySerialFormCompatibility(conf, compatibility);
+
+        try (Ignite grid = Ignition.start(conf))
+        {
+            // keys must retain their serial form (affinity key field) regardless of the negotiated version
+            for (final Object value : Arrays.asList(new CacheRegionKey(CacheRegion.NODES.getCacheRegionName(), Long.valueOf(1234l)),
+                    new CacheRegionValueKey(CacheRegion.QNAME.getCacheRegionName(), "value")))
+            {
+                mixedVersionRoundTrip(grid, compatibility, value);
+
+                final IgniteCache<Long, BinaryObject> cache = grid.cache(MIXED_VERSION_CACHE).withKeepBinary();
+                Assert.assertTrue(cache.get(1l).hasField(CacheRegionAffinity.AFFINITY_KEY_FIELD));
+                Assert.assertTrue(cache.get(2l).hasField(CacheRegionAffinity.AFFINITY_KEY_FIELD));
+                Assert.assertEquals(cache.get(1l), cache.get(2l));
+                grid.destroyCache(MIXED_VERSION_CACHE);
+            }
+        }
+    }
+
+    /**
+     * Writes a value once with all serial forms enabled and once with the negotiated version lowered to the baseline version, and checks
+     * that both forms can be read while the negotiated version is lowered, i.e. while a member of an older version is part of the grid.
+     *
+     * @return the sizes of the value in the extended and baseline serial forms
+     */
+    protected static <V> int[] mixedVersionRoundTrip(final Ignite grid, final ControllableSerialFormCompatibility compatibility,
+            final V value)
+    {
+        final CacheConfiguration<Long, V> cacheConfig = new CacheConfiguration<>();
+        cacheConfig.setName(MIXED_VERSION_CACHE);
+        cacheConfig.setCacheMode(CacheMode.LOCAL);
+        final IgniteCache<Long, V> cache = grid.getOrCreateCache(cacheConfig);
+
+        compatibility.setNegotiatedVersion(SerialFormCompatibility.CURRENT_VERSION);
+        // repeated write, as dictionaries may only substitute values on repeated occurrence
+        cache.put(1l, value);
+        cache.put(1l, value);
+
+        compatibility.setNegotiatedVersion(SerialFormCompatibility.VERSION_BASELINE);
+        cache.put(2l, value);
+
+        Assert.assertEquals(value, cache.get(1l));
+        Assert.assertEquals(value, cache.get(2l));
+
+        final IgniteCache<Long, BinaryObjectExImpl> binaryCache = cache.withKeepBinary();
+        return new int[] { binaryCache.get(1l).length(), binaryCache.get(2l).length() };
+    }
+
+    protected static void applySerialFormCompatibility(final IgniteConfiguration conf, final SerialFormCompatibility compatibility)
+    {
+        for (final BinaryTypeConfiguration typeConfiguration : conf.getBinaryConfiguration().getTypeConfigurations())
+        {
+            final BinarySerializer serializer = typeConfiguration.getSerializer();
+            if (serializer instanceof ContentDataBinarySerializer)
+            {
+                ((ContentDataBinarySerializer) serializer).setSerialFormCompatibility(compatibility);
+            }
+            else if (serializer instanceof NodePropertiesBinarySerializer)
+            {
+                ((NodePropertiesBinarySerializer) serializer).setSerialFormCompatibility(compatibility);
+            }
+            else if (serializer instanceof NodeAspectsBinarySerializer)
+            {
+                ((NodeAspectsBinarySerializer) serializer).setSerialFormCompatibility(compatibility);
+            }
+        }
+    }
+
+    /**
+     * Instances of this class simulate a negotiated version, e.g. to emulate a member of an older version joining the grid.
+     *
+     * @author Axel Faust
+     */
+    protected static class ControllableSerialFormCompatibility extends SerialFormCompatibility
+    {
+
+        protected volatile int version = CURRENT_VERSION;
+
+        /**
+         * @param version
+         *            the negotiated version to simulate
+         */
+        public void setNegotiatedVersion(final int version)
+        {
+            this.version = version;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int getNegotiatedVersion()
+        {
+            return this.version;
+        }
+    }
+}
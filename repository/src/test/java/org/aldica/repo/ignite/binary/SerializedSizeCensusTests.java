@@ -0,0 +1,118 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.binary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import javax.cache.Cache;
+
+import org.aldica.common.ignite.GridTestsBase;
+import org.aldica.common.ignite.binary.StringDictionary;
+import org.aldica.repo.ignite.binary.SerializedSizeCensus.CacheCensus;
+import org.aldica.repo.ignite.cache.NodePropertiesCacheMap;
+import org.alfresco.model.ContentModel;
+import org.alfresco.repo.domain.contentdata.ContentDataDAO;
+import org.alfresco.repo.domain.node.ContentDataWithId;
+import org.alfresco.service.cmr.repository.ContentData;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.binary.BinaryTypeConfiguration;
+import org.apache.ignite.cache.CacheMode;
+import org.apache.ignite.cache.CachePeekMode;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.apache.ignite.internal.binary.BinaryObjectExImpl;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.context.support.GenericApplicationContext;
+
+/**
+ * The tests in this class validate that a {@link SerializedSizeCensus census} of cache entries reports the sizes of the stored binary
+ * forms and never alters any of the shared dictionaries used by serializers.
+ *
+ * @author Axel Faust
+ */
+public class SerializedSizeCensusTests extends GridTestsBase
+{
+
+    @Test
+    public void censusOfNodeProperties() throws Exception
+    {
+        try (final GenericApplicationContext appContext = NodePropertiesBinarySerializerTests.createApplicationContext())
+        {
+            final IgniteConfiguration conf = NodePropertiesBinarySerializerTests.createConfiguration(appContext, true, true, true);
+
+            final StringDictionary stringDictionary = new StringDictionary();
+            stringDictionary.setInstanceName(conf.getIgniteInstanceName());
+            stringDictionary.setCacheName("strings");
+
+            final ContentDataBinarySerializer contentDataSerializer = new ContentDataBinarySerializer();
+            contentDataSerializer.setApplicationContext(appContext);
+            contentDataSerializer.setUseRawSerialForm(true);
+            contentDataSerializer.setUseStringDictionary(true);
+            contentDataSerializer.setStringDictionary(stringDictionary);
+
+            final BinaryTypeConfiguration binaryTypeConfigurationForContentData = new BinaryTypeConfiguration();
+            binaryTypeConfigurationForContentData.setTypeName(ContentData.class.getName());
+            binaryTypeConfigurationForContentData.setSerializer(contentDataSerializer);
+
+            final BinaryTypeConfiguration binaryTypeConfigurationForContentDataWithId = new BinaryTypeConfiguration();
+            binaryTypeConfigurationForContentDataWithId.setTypeName(ContentDataWithId.class.getName());
+            binaryTypeConfigurationForContentDataWithId.setSerializer(contentDataSerializer);
+
+            final List<BinaryTypeConfiguration> typeConfigurations = new ArrayList<>(
+                    conf.getBinaryConfiguration().getTypeConfigurations());
+            typeConfigurations.addAll(Arrays.asList(binaryTypeConfigurationForContentData, binaryTypeConfigurationForContentDataWithId));
+            conf.getBinaryConfiguration().setTypeConfigurations(typeConfigurations);
+
+            try (Ignite grid = Ignition.start(conf))
+            {
+                stringDictionary.afterInstanceStartup(grid.name());
+
+                final CacheConfiguration<Long, NodePropertiesCacheMap> cacheConfig = new CacheConfiguration<>();
+                cacheConfig.setName("nodeProperties");
+                cacheConfig.setCacheMode(CacheMode.LOCAL);
+                final IgniteCache<Long, NodePropertiesCacheMap> cache = grid.getOrCreateCache(cacheConfig);
+
+                final ContentDataDAO contentDataDAO = appContext.getBean("contentDataDAO", ContentDataDAO.class);
+                for (int idx = 0; idx < 10; idx++)
+                {
+                    final NodePropertiesCacheMap value = new NodePropertiesCacheMap();
+                    value.put(ContentModel.PROP_NAME, UUID.randomUUID().toString());
+                    value.put(ContentModel.PROP_CREATOR, "admin");
+                    value.put(ContentModel.PROP_CONTENT, contentDataDAO.getContentData(Long.valueOf(idx)).getSecond());
+                    cache.put(Long.valueOf(idx), value);
+                }
+
+                // content data is written as an ID, so the dictionary has never been used
+                final IgniteCache<Object, Object> dictionaryValues = grid.cache("strings.values");
+                Assert.assertEquals(0, dictionaryValues.localSize(CachePeekMode.ALL));
+
+                final SerializedSizeCensus census = new SerializedSizeCensus();
+                final CacheCensus cacheCensus = census.conductCensus(grid, "nodeProperties");
+
+                // analysis of individual values must not have taught the dictionary any value
+                Assert.assertEquals(0, dictionaryValues.localSize(CachePeekMode.ALL));
+
+                long expectedTotal = 0;
+                for (final Cache.Entry<Object, Object> entry : cache.withKeepBinary().localEntries(CachePeekMode.ALL))
+                {
+                    expectedTotal += ((BinaryObjectExImpl) entry.getValue()).length();
+                }
+
+                Assert.assertEquals(10, cacheCensus.getValueSizes().getCount());
+                Assert.assertEquals(expectedTotal, cacheCensus.getValueSizes().getTotal());
+                Assert.assertEquals(Integer.valueOf(10), cacheCensus.getValueTypes().get(NodePropertiesCacheMap.class.getSimpleName()));
+                Assert.assertFalse(cacheCensus.getPropertyValues().isEmpty());
+                Assert.assertFalse(StringDictionary.isLearningSuppressed());
+
+                stringDictionary.beforeInstanceShutdown(grid.name());
+            }
+        }
+    }
+}
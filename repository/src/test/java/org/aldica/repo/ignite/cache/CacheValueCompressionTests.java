@@ -0,0 +1,112 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.cache;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.aldica.common.ignite.GridTestsBase;
+import org.aldica.common.ignite.cache.CompressedValue;
+import org.aldica.repo.ignite.cache.CacheValueCompressor.RegionCompressionMetrics;
+import org.aldica.repo.ignite.cache.CacheValueCompressor.RegionValueCompression;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.cache.CacheMode;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The tests in this class validate the compression of cache values stored in off-heap memory by {@link SimpleIgniteBackedCache} instances.
+ *
+ * @author Axel Faust
+ */
+public class CacheValueCompressionTests extends GridTestsBase
+{
+
+    private static final String REGION_NAME = "testGrid.region.cold";
+
+    @Test
+    public void compressedValueRoundTrip()
+    {
+        try
+        {
+            final IgniteConfiguration conf = createConfiguration(1, false);
+            final Ignite grid = Ignition.start(conf);
+
+            final CacheConfiguration<Serializable, Object> cacheConfig = new CacheConfiguration<>();
+            cacheConfig.setName("compressedCache");
+            cacheConfig.setCacheMode(CacheMode.LOCAL);
+            final IgniteCache<Serializable, Object> backingCache = grid.getOrCreateCache(cacheConfig);
+
+            final CacheValueCompressor compressor = new CacheValueCompressor();
+            compressor.setInstanceName(grid.name());
+            compressor.setEnabled(true);
+            compressor.setRegionNames("cold");
+            compressor.setMinValueSize(128);
+            compressor.afterPropertiesSet();
+
+            Assert.assertTrue(compressor.isCompressedRegion("cold"));
+            Assert.assertFalse(compressor.isCompressedRegion("entity"));
+
+            final RegionValueCompression compression = compressor.forRegion(REGION_NAME, grid.configuration().getMarshaller(),
+                    CacheValueCompressionTests.class.getClassLoader());
+            final SimpleIgniteBackedCache<Serializable, Object> cache = new SimpleIgniteBackedCache<>(grid,
+                    SimpleIgniteBackedCache.Mode.LOCAL, backingCache, true, compression);
+
+            final HashMap<String, String> largeValue = new HashMap<>();
+            for (int idx = 0; idx < 100; idx++)
+            {
+                largeValue.put("{http://www.alfresco.org/model/content/1.0}property" + idx, "workspace://SpacesStore/value-" + idx);
+            }
+            final String smallValue = "small";
+
+            cache.put("large", largeValue);
+            cache.put("small", smallValue);
+
+            // large value is stored in compressed form, small value as-is
+            Assert.assertTrue(backingCache.get("large") instanceof CompressedValue);
+            Assert.assertEquals(smallValue, backingCache.get("small"));
+
+            Assert.assertEquals(largeValue, cache.get("large"));
+            Assert.assertEquals(smallValue, cache.get("small"));
+
+            final Map<Serializable, Object> values = cache.getAll(new HashSet<>(Arrays.asList("large", "small")));
+            Assert.assertEquals(largeValue, values.get("large"));
+            Assert.assertEquals(smallValue, values.get("small"));
+
+            final RegionCompressionMetrics metrics = compressor.getMetrics().get(REGION_NAME);
+            Assert.assertNotNull(metrics);
+            Assert.assertEquals(1, metrics.getCompressedValues());
+            Assert.assertEquals(1, metrics.getUncompressedValues());
+            Assert.assertEquals(2, metrics.getDecompressedValues());
+            Assert.assertTrue("Compression ratio should be significant: " + metrics.getCompressionRatio(),
+                    metrics.getCompressionRatio() < 0.5);
+
+            // cache without compression must not expose compressed values of misconfigured members
+            final SimpleIgniteBackedCache<Serializable, Object> uncompressedCache = new SimpleIgniteBackedCache<>(grid,
+                    SimpleIgniteBackedCache.Mode.LOCAL, backingCache, true);
+            Assert.assertNull(uncompressedCache.get("large"));
+            Assert.assertEquals(Collections.singletonMap("small", smallValue),
+                    uncompressedCache.getAll(new HashSet<>(Arrays.asList("large", "small"))));
+
+            // (de)compression must return codecs to the pools, which are emptied when the instance shuts down
+            Assert.assertFalse(compressor.deflaters.isEmpty());
+            Assert.assertFalse(compressor.inflaters.isEmpty());
+            compressor.afterInstanceShutdown(grid.name());
+            Assert.assertTrue(compressor.deflaters.isEmpty());
+            Assert.assertTrue(compressor.inflaters.isEmpty());
+        }
+        finally
+        {
+            Ignition.stopAll(true);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.cache;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.aldica.common.ignite.GridTestsBase;
+import org.alfresco.repo.cache.DefaultSimpleCache;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.cache.CacheMode;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The tests in this class validate the handling of negative lookups, i.e. the sentinels for {@code null} / not-found values, in
+ * Ignite-backed caches.
+ *
+ * @author Axel Faust
+ */
+public class NegativeLookupCacheTests extends GridTestsBase
+{
+
+    private static final Serializable VALUE_NOT_FOUND = "@@VALUE_NOT_FOUND@@";
+
+    @Test
+    public void negativeLookupExpiryAndBounds() throws Exception
+    {
+        final NegativeLookupCache<Long, Serializable> negativeLookups = new NegativeLookupCache<>(100, 1);
+
+        negativeLookups.put(Long.valueOf(0), VALUE_NOT_FOUND);
+        Assert.assertEquals(VALUE_NOT_FOUND, negativeLookups.get(Long.valueOf(0)));
+
+        Thread.sleep(1100);
+        Assert.assertNull(negativeLookups.get(Long.valueOf(0)));
+
+        for (long idx = 0; idx < 1000; idx++)
+        {
+            negativeLookups.put(Long.valueOf(idx), VALUE_NOT_FOUND);
+        }
+        Assert.assertTrue("Negative lookups should be bounded: " + negativeLookups.size(), negativeLookups.size() <= 100);
+
+        Assert.assertTrue(NegativeLookupCache.isSentinel(VALUE_NOT_FOUND));
+        Assert.assertTrue(NegativeLookupCache.isSentinel("@@VALUE_NULL@@"));
+        Assert.assertFalse(NegativeLookupCache.isSentinel("value"));
+    }
+
+    @Test
+    public void negativeLookupsInPartitionedCache() throws Exception
+    {
+        try
+        {
+            final IgniteConfiguration conf1 = createConfiguration(1, false);
+            final IgniteConfiguration conf2 = createConfiguration(2, true);
+
+            final CacheConfiguration<Long, Serializable> cacheConfig = new CacheConfiguration<>();
+            cacheConfig.setName("partitionedCache");
+            cacheConfig.setCacheMode(CacheMode.PARTITIONED);
+
+            final Ignite grid1 = Ignition.start(conf1);
+            final IgniteCache<Long, Serializable> backingCache1 = grid1.getOrCreateCache(cacheConfig);
+            final SimpleIgniteBackedCache<Long, Serializable> cache1 = new SimpleIgniteBackedCache<>(grid1,
+                    SimpleIgniteBackedCache.Mode.PARTITIONED, backingCache1, true, null, new NegativeLookupCache<>(1000, 60));
+
+            final Ignite grid2 = Ignition.start(conf2);
+            final IgniteCache<Long, Serializable> backingCache2 = grid2.getOrCreateCache(cacheConfig);
+            final SimpleIgniteBackedCache<Long, Serializable> cache2 = new SimpleIgniteBackedCache<>(grid2,
+                    SimpleIgniteBackedCache.Mode.PARTITIONED, backingCache2, true, null, new NegativeLookupCache<>(1000, 60));
+
+            final AtomicInteger negativeLookupInvalidations = new AtomicInteger();
+            grid1.message().localListen("partitionedCache-invalidateNegativeLookup", (uuid, key) -> {
+                negativeLookupInvalidations.incrementAndGet();
+                return true;
+            });
+
+            // filling the cache without a preceding failed lookup must not be broadcast to other members
+            cache2.put(Long.valueOf(0), "value0");
+            Thread.sleep(500);
+            Assert.assertEquals(0, negativeLookupInvalidations.get());
+
+            final Long key = Long.valueOf(1);
+            cache1.put(key, VALUE_NOT_FOUND);
+            cache2.put(key, VALUE_NOT_FOUND);
+
+            // sentinel is only recorded locally and never stored in the backing cache
+            Assert.assertEquals(VALUE_NOT_FOUND, cache1.get(key));
+            Assert.assertTrue(cache1.contains(key));
+            Assert.assertFalse(backingCache1.containsKey(key));
+
+            // creation of the entity after a failed lookup on another member must invalidate the negative lookup
+            cache2.put(key, "value");
+            Thread.sleep(500);
+            Assert.assertEquals(1, negativeLookupInvalidations.get());
+            Assert.assertEquals("value", cache1.get(key));
+
+            cache1.remove(key);
+            Assert.assertNull(cache1.get(key));
+        }
+        finally
+        {
+            Ignition.stopAll(true);
+        }
+    }
+
+    @Test
+    public void negativeLookupsInReplicatedCache() throws Exception
+    {
+        try
+        {
+            final IgniteConfiguration conf1 = createConfiguration(1, false);
+            final IgniteConfiguration conf2 = createConfiguration(2, true);
+
+            final CacheConfiguration<Long, Serializable> cacheConfig = new CacheConfiguration<>();
+            cacheConfig.setName("replicatedCache");
+            cacheConfig.setCacheMode(CacheMode.REPLICATED);
+
+            final Ignite grid1 = Ignition.start(conf1);
+            final IgniteCache<Long, Serializable> backingCache1 = grid1.getOrCreateCache(cacheConfig);
+            final SimpleIgniteBackedCache<Long, Serializable> cache1 = new SimpleIgniteBackedCache<>(grid1,
+                    SimpleIgniteBackedCache.Mode.REPLICATED, backingCache1, true, null, new NegativeLookupCache<>(1000, 60));
+
+            final Ignite grid2 = Ignition.start(conf2);
+            final IgniteCache<Long, Serializable> backingCache2 = grid2.getOrCreateCache(cacheConfig);
+            final SimpleIgniteBackedCache<Long, Serializable> cache2 = new SimpleIgniteBackedCache<>(grid2,
+                    SimpleIgniteBackedCache.Mode.REPLICATED, backingCache2, true, null, new NegativeLookupCache<>(1000, 60));
+
+            final AtomicInteger negativeLookupInvalidations = new AtomicInteger();
+            grid1.message().localListen("replicatedCache-invalidateNegativeLookup", (uuid, key) -> {
+                negativeLookupInvalidations.incrementAndGet();
+                return true;
+            });
+
+            final Long key = Long.valueOf(1);
+            cache1.put(key, VALUE_NOT_FOUND);
+            cache2.put(key, VALUE_NOT_FOUND);
+            Assert.assertEquals(VALUE_NOT_FOUND, cache1.get(key));
+
+            // creation of the entity on another member is detected via the local copy instead of a broadcast
+            cache2.put(key, "value");
+            Thread.sleep(500);
+            Assert.assertEquals(0, negativeLookupInvalidations.get());
+            Assert.assertTrue(cache1.contains(key));
+            Assert.assertEquals("value", cache1.get(key));
+            Assert.assertEquals("value", cache1.getAll(Collections.singleton(key)).get(key));
+        }
+        finally
+        {
+            Ignition.stopAll(true);
+        }
+    }
+
+    @Test
+    public void negativeLookupsInInvalidatingCacheFacade() throws Exception
+    {
+        try
+        {
+            final IgniteConfiguration conf1 = createConfiguration(1, false);
+            final IgniteConfiguration conf2 = createConfiguration(2, true);
+
+            final Ignite grid1 = Ignition.start(conf1);
+            final DefaultSimpleCache<Long, Serializable> backingCache1 = new DefaultSimpleCache<>(1000, "invalidatingCache");
+            final InvalidatingCacheFacade<Long, Serializable> cache1 = new InvalidatingCacheFacade<>("invalidatingCache", backingCache1,
+                    grid1, false, false, new NegativeLookupCache<>(1000, 60));
+
+            final Ignite grid2 = Ignition.start(conf2);
+            final DefaultSimpleCache<Long, Serializable> backingCache2 = new DefaultSimpleCache<>(1000, "invalidatingCache");
+            final InvalidatingCacheFacade<Long, Serializable> cache2 = new InvalidatingCacheFacade<>("invalidatingCache", backingCache2,
+                    grid2, false, false, new NegativeLookupCache<>(1000, 60));
+
+            final AtomicInteger negativeLookupInvalidations = new AtomicInteger();
+            grid2.message().localListen("invalidatingCache-invalidateNegativeLookup", (uuid, key) -> {
+                negativeLookupInvalidations.incrementAndGet();
+                return true;
+            });
+
+            // loading a value after a local miss must not be broadcast to other members
+            cache1.put(Long.valueOf(1), "value1");
+            Thread.sleep(500);
+            Assert.assertEquals(0, negativeLookupInvalidations.get());
+
+            final Long key = Long.valueOf(2);
+            cache1.put(key, VALUE_NOT_FOUND);
+            cache2.put(key, VALUE_NOT_FOUND);
+
+            // sentinel is only recorded locally and never stored in the backing cache
+            Assert.assertEquals(VALUE_NOT_FOUND, cache1.get(key));
+            Assert.assertTrue(cache1.contains(key));
+            Assert.assertFalse(backingCache1.contains(key));
+
+            // creation of the entity after a failed lookup must invalidate the negative lookups on other members
+            cache1.put(key, "value2");
+            Thread.sleep(500);
+            Assert.assertEquals(1, negativeLookupInvalidations.get());
+            Assert.assertEquals("value2", cache1.get(key));
+            Assert.assertNull(cache2.get(key));
+            Assert.assertFalse(cache2.contains(key));
+        }
+        finally
+        {
+            Ignition.stopAll(true);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.aldica.common.ignite.GridTestsBase;
+import org.aldica.common.ignite.binary.StringDictionary;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCheckedException;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.binary.BinarySerializer;
+import org.apache.ignite.binary.BinaryTypeConfiguration;
+import org.apache.ignite.configuration.BinaryConfiguration;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.apache.ignite.marshaller.Marshaller;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.support.GenericApplicationContext;
+
+/**
+ * Base class for benchmarks of the (de-)serialisation of a specific type of value via the binary marshaller of an Ignite instance, either
+ * using the default reflective handling of Ignite or a custom {@link BinarySerializer serializer} in one of its modes. Each benchmark
+ * operates on a fixed set of pre-generated, realistic fixtures which are cycled through to avoid overly optimistic results from repeatedly
+ * processing the same value.
+ *
+ * Apart from the throughput of both operations, the average size of the serial form of the fixtures (bytes per operation) is logged at the
+ * start of each trial. The allocation rate per operation can be measured by running the benchmarks with the JMH GC profiler
+ * ({@code -prof gc}, metric {@code gc.alloc.rate.norm}).
+ *
+ * @author Axel Faust
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "--add-exports=java.base/jdk.internal.misc=ALL-UNNAMED",
+        "--add-exports=java.base/sun.nio.ch=ALL-UNNAMED", "--add-exports=java.management/com.sun.jmx.mbeanserver=ALL-UNNAMED",
+        "--add-exports=jdk.internal.jvmstat/sun.jvmstat.monitor=ALL-UNNAMED",
+        "--add-exports=java.base/sun.reflect.generics.reflectiveObjects=ALL-UNNAMED", "--illegal-access=permit",
+        "-DIGNITE_PERFORMANCE_SUGGESTIONS_DISABLED=true", "-DIGNITE_QUIET=true", "-DIGNITE_NO_ASCII=true",
+        "-DIGNITE_UPDATE_NOTIFIER=false", "-Xms1g", "-Xmx1g" })
+public abstract class AbstractSerializerBenchmark extends GridTestsBase
+{
+
+    /**
+     * Mode using the default reflective handling of the Ignite binary marshaller without any custom serializer.
+     */
+    public static final String MODE_REFLECTIVE = "reflective";
+
+    /**
+     * Mode using the regular serial form of a custom serializer, i.e. with field metadata.
+     */
+    public static final String MODE_REGULAR = "regular";
+
+    /**
+     * Mode using the raw serial form of a custom serializer, i.e. without field metadata.
+     */
+    public static final String MODE_RAW = "raw";
+
+    /**
+     * Mode using the regular serial form of a custom serializer, substituting values with IDs where supported.
+     */
+    public static final String MODE_REGULAR_IDS = "regularIds";
+
+    /**
+     * Mode using the raw serial form of a custom serializer, substituting values with IDs where supported.
+     */
+    public static final String MODE_RAW_IDS = "rawIds";
+
+    /**
+     * Mode using the regular serial form of a custom serializer, substituting values with IDs from shared dictionaries where supported.
+     */
+    public static final String MODE_REGULAR_DICTIONARY = "regularDictionary";
+
+    /**
+     * Mode using the raw serial form of a custom serializer, substituting values with IDs from shared dictionaries where supported.
+     */
+    public static final String MODE_RAW_DICTIONARY = "rawDictionary";
+
+    // power of two to allow cycling via bit mask
+    protected static final int FIXTURE_COUNT = 1024;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractSerializerBenchmark.class);
+
+    protected GenericApplicationContext applicationContext;
+
+    protected final List<StringDictionary> dictionaries = new ArrayList<>();
+
+    protected Ignite grid;
+
+    protected Marshaller marshaller;
+
+    protected ClassLoader classLoader;
+
+    protected Object[] fixtures;
+
+    protected byte[][] serialisedFixtures;
+
+    protected int index;
+
+    /**
+     * Sets up the Ignite instance and fixtures for a single trial of a benchmark.
+     *
+     * @throws IgniteCheckedException
+     *             if any fixture cannot be serialised
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IgniteCheckedException
+    {
+        final String mode = this.getMode();
+
+        this.applicationContext = BenchmarkFixtures.createApplicationContext();
+
+        final Random random = new Random(BenchmarkFixtures.SEED);
+        this.fixtures = new Object[FIXTURE_COUNT];
+        for (int idx = 0; idx < FIXTURE_COUNT; idx++)
+        {
+            this.fixtures[idx] = this.createFixture(random);
+        }
+
+        final IgniteConfiguration conf = createConfiguration(1, false);
+        if (!MODE_REFLECTIVE.equals(mode))
+        {
+            final List<BinaryTypeConfiguration> typeConfigurations = new ArrayList<>();
+            this.addTypeConfigurations(mode, conf.getIgniteInstanceName(), typeConfigurations);
+
+            final BinaryConfiguration binaryConfiguration = new BinaryConfiguration();
+            binaryConfiguration.setTypeConfigurations(typeConfigurations);
+            conf.setBinaryConfiguration(binaryConfiguration);
+        }
+
+        this.grid = Ignition.start(conf);
+        for (final StringDictionary dictionary : this.dictionaries)
+        {
+            dictionary.afterInstanceStartup(conf.getIgniteInstanceName());
+        }
+
+        this.marshaller = this.grid.configuration().getMarshaller();
+        this.classLoader = this.getClass().getClassLoader();
+
+        // serialise twice so that (adaptive) dictionaries have learned all relevant values
+        this.serialisedFixtures = new byte[FIXTURE_COUNT][];
+        for (int pass = 0; pass < 2; pass++)
+        {
+            for (int idx = 0; idx < FIXTURE_COUNT; idx++)
+            {
+                this.serialisedFixtures[idx] = this.marshaller.marshal(this.fixtures[idx]);
+            }
+        }
+
+        long totalBytes = 0;
+        for (final byte[] serialisedFixture : this.serialisedFixtures)
+        {
+            totalBytes += serialisedFixture.length;
+        }
+        LOGGER.info("{} in mode {}: {} bytes per op (average serial size of {} fixtures)", this.getClass().getSimpleName(), mode,
+                String.format(Locale.ENGLISH, "%.2f", Double.valueOf(totalBytes / (double) FIXTURE_COUNT)), Integer.valueOf(FIXTURE_COUNT));
+    }
+
+    /**
+     * Tears down the Ignite instance at the end of a single trial of a benchmark.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        try
+        {
+            for (final StringDictionary dictionary : this.dictionaries)
+            {
+                dictionary.beforeInstanceShutdown(this.grid.name());
+            }
+            this.dictionaries.clear();
+            Ignition.stopAll(true);
+        }
+        finally
+        {
+            this.applicationContext.close();
+        }
+    }
+
+    /**
+     * Benchmarks the serialisation of the fixtures.
+     *
+     * @return the serial form of a fixture
+     * @throws IgniteCheckedException
+     *             if the fixture cannot be serialised
+     */
+    @Benchmark
+    public byte[] serialise() throws IgniteCheckedException
+    {
+        return this.marshaller.marshal(this.fixtures[this.nextIndex()]);
+    }
+
+    /**
+     * Benchmarks the deserialisation of the fixtures.
+     *
+     * @return the deserialised fixture
+     * @throws IgniteCheckedException
+     *             if the fixture cannot be deserialised
+     */
+    @Benchmark
+    public Object deserialise() throws IgniteCheckedException
+    {
+        return this.marshaller.unmarshal(this.serialisedFixtures[this.nextIndex()], this.classLoader);
+    }
+
+    protected int nextIndex()
+    {
+        final int idx = this.index;
+        this.index = (idx + 1) & (FIXTURE_COUNT - 1);
+        return idx;
+    }
+
+    protected <D extends StringDictionary> D registerDictionary(final D dictionary, final String instanceName)
+    {
+        dictionary.setInstanceName(instanceName);
+        dictionary.afterPropertiesSet();
+        this.dictionaries.add(dictionary);
+        return dictionary;
+    }
+
+    protected static BinaryTypeConfiguration createTypeConfiguration(final Class<?> type, final BinarySerializer serializer)
+    {
+        final BinaryTypeConfiguration typeConfiguration = new BinaryTypeConfiguration();
+        typeConfiguration.setTypeName(type.getName());
+        typeConfiguration.setSerializer(serializer);
+        return typeConfiguration;
+    }
+
+    protected static boolean isRawMode(final String mode)
+    {
+        return mode.startsWith(MODE_RAW);
+    }
+
+    protected static boolean isIdMode(final String mode)
+    {
+        return mode.endsWith("Ids");
+    }
+
+    protected static boolean isDictionaryMode(final String mode)
+    {
+        return mode.endsWith("Dictionary");
+    }
+
+    /**
+     * Retrieves the mode of the serializer to benchmark, as specified via a JMH parameter of the specific benchmark.
+     *
+     * @return the mode
+     */
+    protected abstract String getMode();
+
+    /**
+     * Creates a single fixture for the benchmark.
+     *
+     * @param random
+     *            the random generator to use
+     * @return the fixture
+     */
+    protected abstract Object createFixture(Random random);
+
+    /**
+     * Adds the binary type configurations with custom serializers for a specific mode.
+     *
+     * @param mode
+     *            the mode of the serializers
+     * @param instanceName
+     *            the name of the Ignite instance to be started
+     * @param typeConfigurations
+     *            the list of type configurations to add to
+     */
+    protected abstract void addTypeConfigurations(String mode, String instanceName, List<BinaryTypeConfiguration> typeConfigurations);
+}
@@ -0,0 +1,518 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.benchmark;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import org.aldica.repo.ignite.binary.CacheRegion;
+import org.aldica.repo.ignite.cache.NodeAspectsCacheSet;
+import org.aldica.repo.ignite.cache.NodePropertiesCacheMap;
+import org.alfresco.model.ContentModel;
+import org.alfresco.repo.cache.lookup.CacheRegionKey;
+import org.alfresco.repo.cache.lookup.CacheRegionValueKey;
+import org.alfresco.repo.content.MimetypeMap;
+import org.alfresco.repo.content.filestore.FileContentStore;
+import org.alfresco.repo.domain.contentdata.ibatis.ContentDataDAOImpl;
+import org.alfresco.repo.domain.encoding.ibatis.EncodingDAOImpl;
+import org.alfresco.repo.domain.locale.ibatis.LocaleDAOImpl;
+import org.alfresco.repo.domain.mimetype.ibatis.MimetypeDAOImpl;
+import org.alfresco.repo.domain.node.ContentDataWithId;
+import org.alfresco.repo.domain.qname.ibatis.QNameDAOImpl;
+import org.alfresco.service.cmr.repository.ContentData;
+import org.alfresco.service.cmr.repository.MLText;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.repository.StoreRef;
+import org.alfresco.service.namespace.NamespaceService;
+import org.alfresco.service.namespace.QName;
+import org.alfresco.util.Pair;
+import org.springframework.context.support.GenericApplicationContext;
+
+/**
+ * This class provides the generation of realistic, reproducible fixtures for serializer benchmarks, as well as a minimal application
+ * context with DAO stubs for serializers configured to substitute values with IDs. The DAO stubs are simple map-backed lookups, roughly
+ * equivalent to the cost of the entity lookup caches in a warmed-up system, so that ID-optimised modes are not unduly penalised by the
+ * overhead of mocking frameworks.
+ *
+ * @author Axel Faust
+ */
+public final class BenchmarkFixtures
+{
+
+    /**
+     * The seed for all random generators used to create fixtures so that results of separate runs are comparable.
+     */
+    public static final long SEED = 0x5eed_a1d1caL;
+
+    private static final String CUSTOM_NAMESPACE_PREFIX = "http://www.example.org/model/benchmark/";
+
+    private static final StoreRef[] STORES = { StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, StoreRef.STORE_REF_ARCHIVE_SPACESSTORE,
+            new StoreRef(StoreRef.PROTOCOL_WORKSPACE, "version2Store"), new StoreRef("user", "alfrescoUserStore"),
+            new StoreRef("system", "system") };
+
+    // weighted towards the primary store, similar to a typical production system
+    private static final int[] STORE_WEIGHTS = { 85, 10, 3, 1, 1 };
+
+    private static final String[] MIMETYPES = { MimetypeMap.MIMETYPE_PDF, MimetypeMap.MIMETYPE_TEXT_PLAIN,
+            MimetypeMap.MIMETYPE_OPENXML_WORDPROCESSING, MimetypeMap.MIMETYPE_OPENXML_SPREADSHEET, MimetypeMap.MIMETYPE_IMAGE_JPEG,
+            MimetypeMap.MIMETYPE_IMAGE_PNG, MimetypeMap.MIMETYPE_XML, MimetypeMap.MIMETYPE_JSON };
+
+    private static final String[] ENCODINGS = { StandardCharsets.UTF_8.name(), StandardCharsets.ISO_8859_1.name(),
+            StandardCharsets.UTF_16.name() };
+
+    private static final Locale[] LOCALES = { Locale.ENGLISH, Locale.GERMAN, Locale.FRENCH, Locale.US, Locale.UK, Locale.ITALIAN };
+
+    private static final String[] USERS = { "admin", "System", "guest", "abeecher", "mjackson", "jdoe", "asmith", "bwayne", "ckent",
+            "dprince", "eknight", "fmercury", "glopez", "hpotter", "iadler", "jbond", "kjohnson", "lskywalker", "mmouse", "nfury" };
+
+    private static final String[] WORDS = { "project", "report", "contract", "invoice", "meeting", "minutes", "draft", "final",
+            "budget", "proposal", "specification", "review", "summary", "quarterly", "annual", "policy", "presentation", "agenda" };
+
+    private static final QName[] ASPECTS = { ContentModel.ASPECT_AUDITABLE, ContentModel.ASPECT_TITLED, ContentModel.ASPECT_AUTHOR,
+            ContentModel.ASPECT_VERSIONABLE, ContentModel.ASPECT_OWNABLE, ContentModel.ASPECT_TAGGABLE,
+            ContentModel.ASPECT_GEN_CLASSIFIABLE, ContentModel.ASPECT_LOCKABLE, ContentModel.ASPECT_REFERENCEABLE,
+            ContentModel.ASPECT_LOCALIZED, ContentModel.ASPECT_HIDDEN, ContentModel.ASPECT_TEMPORARY, ContentModel.ASPECT_UNDELETABLE };
+
+    private static final QName[] PROPERTIES = { ContentModel.PROP_NAME, ContentModel.PROP_TITLE, ContentModel.PROP_DESCRIPTION,
+            ContentModel.PROP_CREATOR, ContentModel.PROP_CREATED, ContentModel.PROP_MODIFIER, ContentModel.PROP_MODIFIED,
+            ContentModel.PROP_ACCESSED, ContentModel.PROP_CONTENT, ContentModel.PROP_OWNER, ContentModel.PROP_AUTHOR,
+            ContentModel.PROP_VERSION_LABEL, ContentModel.PROP_AUTO_VERSION, ContentModel.PROP_AUTO_VERSION_PROPS,
+            ContentModel.PROP_INITIAL_VERSION, ContentModel.PROP_CATEGORIES, ContentModel.PROP_LOCALE };
+
+    private static final int CUSTOM_NAMESPACE_COUNT = 20;
+
+    private static final long BASE_TIME = LocalDateTime.of(2015, Month.JANUARY, 1, 0, 0, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+
+    private static final long TIME_RANGE = 5l * 365 * 24 * 60 * 60 * 1000;
+
+    private static final List<QName> KNOWN_QNAMES = new ArrayList<>();
+
+    static
+    {
+        KNOWN_QNAMES.addAll(Arrays.asList(ASPECTS));
+        KNOWN_QNAMES.addAll(Arrays.asList(PROPERTIES));
+        for (int idx = 0; idx < CUSTOM_NAMESPACE_COUNT; idx++)
+        {
+            KNOWN_QNAMES.add(QName.createQName(CUSTOM_NAMESPACE_PREFIX + idx + "/1.0", "document"));
+            KNOWN_QNAMES.add(QName.createQName(CUSTOM_NAMESPACE_PREFIX + idx + "/1.0", "status"));
+            KNOWN_QNAMES.add(QName.createQName(CUSTOM_NAMESPACE_PREFIX + idx + "/1.0", "reference"));
+        }
+        KNOWN_QNAMES.add(QName.createQName(NamespaceService.CONTENT_MODEL_1_0_URI, "content"));
+        KNOWN_QNAMES.add(QName.createQName(NamespaceService.CONTENT_MODEL_1_0_URI, "folder"));
+        KNOWN_QNAMES.add(QName.createQName(NamespaceService.SYSTEM_MODEL_1_0_URI, "children"));
+    }
+
+    /**
+     * Instances of this class provide simple, bidirectional ID lookups for entities.
+     *
+     * @author Axel Faust
+     */
+    protected static class EntityRegistry<V>
+    {
+
+        protected final Map<Long, Pair<Long, V>> byId = new HashMap<>();
+
+        protected final Map<V, Pair<Long, V>> byValue = new HashMap<>();
+
+        protected synchronized Pair<Long, V> register(final V value)
+        {
+            Pair<Long, V> pair = this.byValue.get(value);
+            if (pair == null)
+            {
+                // IDs are always positive, as in the DB
+                pair = new Pair<>(Long.valueOf(this.byId.size() + 1), value);
+                this.byId.put(pair.getFirst(), pair);
+                this.byValue.put(value, pair);
+            }
+            return pair;
+        }
+
+        protected Pair<Long, V> get(final Long id)
+        {
+            return this.byId.get(id);
+        }
+
+        protected Pair<Long, V> get(final V value)
+        {
+            return this.byValue.get(value);
+        }
+    }
+
+    private static final EntityRegistry<QName> QNAME_REGISTRY = new EntityRegistry<>();
+
+    private static final EntityRegistry<String> MIMETYPE_REGISTRY = new EntityRegistry<>();
+
+    private static final EntityRegistry<String> ENCODING_REGISTRY = new EntityRegistry<>();
+
+    private static final EntityRegistry<Locale> LOCALE_REGISTRY = new EntityRegistry<>();
+
+    private static final EntityRegistry<ContentData> CONTENT_DATA_REGISTRY = new EntityRegistry<>();
+
+    static
+    {
+        KNOWN_QNAMES.forEach(QNAME_REGISTRY::register);
+        Arrays.asList(MIMETYPES).forEach(MIMETYPE_REGISTRY::register);
+        Arrays.asList(ENCODINGS).forEach(ENCODING_REGISTRY::register);
+        Arrays.asList(LOCALES).forEach(LOCALE_REGISTRY::register);
+    }
+
+    private BenchmarkFixtures()
+    {
+        // NO-OP
+    }
+
+    /**
+     * Creates an application context containing stubs for all DAOs potentially used by the serializers.
+     *
+     * @return the application context
+     */
+    public static GenericApplicationContext createApplicationContext()
+    {
+        final GenericApplicationContext appContext = new GenericApplicationContext();
+
+        appContext.getBeanFactory().registerSingleton("qnameDAO", new QNameDAOImpl()
+        {
+
+            @Override
+            public Pair<Long, QName> getQName(final Long id)
+            {
+                return QNAME_REGISTRY.get(id);
+            }
+
+            @Override
+            public Pair<Long, QName> getQName(final QName qname)
+            {
+                return QNAME_REGISTRY.get(qname);
+            }
+        });
+        appContext.getBeanFactory().registerSingleton("contentDataDAO", new ContentDataDAOImpl()
+        {
+
+            @Override
+            public Pair<Long, ContentData> getContentData(final Long id)
+            {
+                return CONTENT_DATA_REGISTRY.get(id);
+            }
+        });
+        appContext.getBeanFactory().registerSingleton("mimetypeDAO", new MimetypeDAOImpl()
+        {
+
+            @Override
+            public Pair<Long, String> getMimetype(final Long id)
+            {
+                return MIMETYPE_REGISTRY.get(id);
+            }
+
+            @Override
+            public Pair<Long, String> getMimetype(final String mimetype)
+            {
+                return MIMETYPE_REGISTRY.get(mimetype);
+            }
+        });
+        appContext.getBeanFactory().registerSingleton("encodingDAO", new EncodingDAOImpl()
+        {
+
+            @Override
+            public Pair<Long, String> getEncoding(final Long id)
+            {
+                return ENCODING_REGISTRY.get(id);
+            }
+
+            @Override
+            public Pair<Long, String> getEncoding(final String encoding)
+            {
+                return ENCODING_REGISTRY.get(encoding);
+            }
+        });
+        appContext.getBeanFactory().registerSingleton("localeDAO", new LocaleDAOImpl()
+        {
+
+            @Override
+            public Pair<Long, Locale> getLocalePair(final Long id)
+            {
+                return LOCALE_REGISTRY.get(id);
+            }
+
+            @Override
+            public Pair<Long, Locale> getLocalePair(final Locale locale)
+            {
+                return LOCALE_REGISTRY.get(locale);
+            }
+        });
+
+        appContext.refresh();
+        return appContext;
+    }
+
+    /**
+     * Retrieves the custom namespace URIs used for qualified names in fixtures.
+     *
+     * @return the comma-separated custom namespace URIs
+     */
+    public static String getCustomNamespaceUris()
+    {
+        final StringBuilder namespaceUris = new StringBuilder();
+        for (int idx = 0; idx < CUSTOM_NAMESPACE_COUNT; idx++)
+        {
+            if (idx > 0)
+            {
+                namespaceUris.append(',');
+            }
+            namespaceUris.append(CUSTOM_NAMESPACE_PREFIX).append(idx).append("/1.0");
+        }
+        return namespaceUris.toString();
+    }
+
+    /**
+     * Creates a random store reference, weighted according to the typical distribution of nodes across stores.
+     *
+     * @param random
+     *            the random generator to use
+     * @return the store reference
+     */
+    public static StoreRef createStoreRef(final Random random)
+    {
+        int roll = random.nextInt(100);
+        int idx = 0;
+        while (roll >= STORE_WEIGHTS[idx])
+        {
+            roll -= STORE_WEIGHTS[idx];
+            idx++;
+        }
+        return STORES[idx];
+    }
+
+    /**
+     * Creates a random node reference.
+     *
+     * @param random
+     *            the random generator to use
+     * @return the node reference
+     */
+    public static NodeRef createNodeRef(final Random random)
+    {
+        return new NodeRef(createStoreRef(random), createUuid(random));
+    }
+
+    /**
+     * Selects a random qualified name from the set of qualified names known to the DAO stubs, including a fraction of qualified names
+     * from custom namespaces.
+     *
+     * @param random
+     *            the random generator to use
+     * @return the qualified name
+     */
+    public static QName createQName(final Random random)
+    {
+        return KNOWN_QNAMES.get(random.nextInt(KNOWN_QNAMES.size()));
+    }
+
+    /**
+     * Creates a random content data instance, with a content URL in the default layout of the file content store. The instance is
+     * registered with the content data DAO stub.
+     *
+     * @param random
+     *            the random generator to use
+     * @return the content data instance
+     */
+    public static ContentDataWithId createContentData(final Random random)
+    {
+        final LocalDateTime created = LocalDateTime.ofEpochSecond(createTime(random) / 1000, 0, ZoneOffset.UTC);
+        final String contentUrl = FileContentStore.STORE_PROTOCOL + "://" + created.getYear() + "/" + created.getMonthValue() + "/"
+                + created.getDayOfMonth() + "/" + created.getHour() + "/" + created.getMinute() + "/" + createUuid(random) + ".bin";
+        // majority of content in typical systems is below 10 MiB
+        final long size = random.nextInt(10 * 1024 * 1024);
+        final ContentData contentData = new ContentData(contentUrl, MIMETYPES[random.nextInt(MIMETYPES.length)], size,
+                ENCODINGS[random.nextInt(ENCODINGS.length)], LOCALES[random.nextInt(LOCALES.length)]);
+
+        synchronized (CONTENT_DATA_REGISTRY)
+        {
+            final Long id = Long.valueOf(CONTENT_DATA_REGISTRY.byId.size() + 1);
+            final ContentDataWithId contentDataWithId = new ContentDataWithId(contentData, id);
+            final Pair<Long, ContentData> pair = new Pair<>(id, contentDataWithId);
+            CONTENT_DATA_REGISTRY.byId.put(id, pair);
+            CONTENT_DATA_REGISTRY.byValue.put(contentDataWithId, pair);
+            return contentDataWithId;
+        }
+    }
+
+    /**
+     * Creates a random multilingual text, with values for one to three locales.
+     *
+     * @param random
+     *            the random generator to use
+     * @return the multilingual text
+     */
+    public static MLText createMLText(final Random random)
+    {
+        final MLText mlText = new MLText();
+        // most multilingual texts only ever contain a single locale
+        final int localeCount = random.nextInt(10) < 8 ? 1 : 2 + random.nextInt(2);
+        for (int idx = 0; idx < localeCount; idx++)
+        {
+            mlText.addValue(LOCALES[random.nextInt(LOCALES.length)], createText(random, 2 + random.nextInt(6)));
+        }
+        return mlText;
+    }
+
+    /**
+     * Creates a random set of node aspects, typical for nodes in the primary store.
+     *
+     * @param random
+     *            the random generator to use
+     * @return the set of aspects
+     */
+    public static NodeAspectsCacheSet createNodeAspects(final Random random)
+    {
+        final Set<QName> aspects = new HashSet<>();
+        // almost all nodes are auditable + referenceable
+        aspects.add(ContentModel.ASPECT_AUDITABLE);
+        aspects.add(ContentModel.ASPECT_REFERENCEABLE);
+
+        final int additionalCount = random.nextInt(6);
+        for (int idx = 0; idx < additionalCount; idx++)
+        {
+            aspects.add(ASPECTS[random.nextInt(ASPECTS.length)]);
+        }
+        return new NodeAspectsCacheSet(aspects);
+    }
+
+    /**
+     * Creates a random map of node properties, typical for content nodes in the primary store.
+     *
+     * @param random
+     *            the random generator to use
+     * @return the map of properties
+     */
+    public static NodePropertiesCacheMap createNodeProperties(final Random random)
+    {
+        final NodePropertiesCacheMap properties = new NodePropertiesCacheMap();
+
+        final long created = createTime(random);
+        final long modified = created + random.nextInt(Integer.MAX_VALUE);
+        final String creator = USERS[random.nextInt(USERS.length)];
+
+        properties.put(ContentModel.PROP_NAME, createText(random, 1 + random.nextInt(4)) + ".pdf");
+        properties.put(ContentModel.PROP_CREATOR, creator);
+        properties.put(ContentModel.PROP_CREATED, new Date(created));
+        properties.put(ContentModel.PROP_MODIFIER, random.nextBoolean() ? creator : USERS[random.nextInt(USERS.length)]);
+        properties.put(ContentModel.PROP_MODIFIED, new Date(modified));
+        properties.put(ContentModel.PROP_CONTENT, createContentData(random));
+        properties.put(ContentModel.PROP_LOCALE, LOCALES[random.nextInt(LOCALES.length)]);
+
+        if (random.nextBoolean())
+        {
+            properties.put(ContentModel.PROP_TITLE, createMLText(random));
+            properties.put(ContentModel.PROP_DESCRIPTION, createMLText(random));
+        }
+
+        if (random.nextInt(4) == 0)
+        {
+            properties.put(ContentModel.PROP_OWNER, USERS[random.nextInt(USERS.length)]);
+            properties.put(ContentModel.PROP_AUTHOR, createText(random, 2));
+        }
+
+        if (random.nextBoolean())
+        {
+            properties.put(ContentModel.PROP_VERSION_LABEL, (1 + random.nextInt(3)) + "." + random.nextInt(10));
+            properties.put(ContentModel.PROP_AUTO_VERSION, Boolean.TRUE);
+            properties.put(ContentModel.PROP_AUTO_VERSION_PROPS, Boolean.FALSE);
+            properties.put(ContentModel.PROP_INITIAL_VERSION, Boolean.TRUE);
+        }
+
+        if (random.nextInt(5) == 0)
+        {
+            final ArrayList<Serializable> categories = new ArrayList<>();
+            final int categoryCount = 1 + random.nextInt(3);
+            for (int idx = 0; idx < categoryCount; idx++)
+            {
+                categories.add(new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, createUuid(random)));
+            }
+            properties.put(ContentModel.PROP_CATEGORIES, categories);
+        }
+
+        return properties;
+    }
+
+    /**
+     * Creates a random cache region key for one of the entity lookup cache regions.
+     *
+     * @param random
+     *            the random generator to use
+     * @return the cache region key
+     */
+    public static CacheRegionKey createCacheRegionKey(final Random random)
+    {
+        final CacheRegion[] regions = CacheRegion.values();
+        // last region is CUSTOM with null name - use a custom name instead
+        final int regionIdx = random.nextInt(regions.length);
+        final String region = regionIdx == regions.length - 1 ? "CustomRegion" : regions[regionIdx].getCacheRegionName();
+        return new CacheRegionKey(region, Long.valueOf(1 + random.nextInt(Integer.MAX_VALUE)));
+    }
+
+    /**
+     * Creates a random cache region value key for one of the entity lookup cache regions keyed by values.
+     *
+     * @param random
+     *            the random generator to use
+     * @return the cache region value key
+     */
+    public static CacheRegionValueKey createCacheRegionValueKey(final Random random)
+    {
+        final CacheRegionValueKey key;
+        switch (random.nextInt(3))
+        {
+            case 0:
+                final QName qname = createQName(random);
+                key = new CacheRegionValueKey(CacheRegion.QNAME.getCacheRegionName(),
+                        new Pair<>(qname.getNamespaceURI(), qname.getLocalName()));
+                break;
+            case 1:
+                key = new CacheRegionValueKey(CacheRegion.NODES.getCacheRegionName(),
+                        new Pair<>(Long.valueOf(1 + random.nextInt(STORES.length)), createUuid(random)));
+                break;
+            default:
+                key = new CacheRegionValueKey(CacheRegion.CONTENT_URL.getCacheRegionName(), createContentData(random).getContentUrl());
+        }
+        return key;
+    }
+
+    protected static String createUuid(final Random random)
+    {
+        return new UUID(random.nextLong(), random.nextLong()).toString();
+    }
+
+    protected static long createTime(final Random random)
+    {
+        return BASE_TIME + (long) (random.nextDouble() * TIME_RANGE);
+    }
+
+    protected static String createText(final Random random, final int wordCount)
+    {
+        final StringBuilder sb = new StringBuilder();
+        for (int idx = 0; idx < wordCount; idx++)
+        {
+            if (idx != 0)
+            {
+                sb.append(' ');
+            }
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,52 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.benchmark;
+
+import java.util.List;
+import java.util.Random;
+
+import org.aldica.repo.ignite.binary.CacheRegionKeyBinarySerializer;
+import org.alfresco.repo.cache.lookup.CacheRegionKey;
+import org.apache.ignite.binary.BinaryTypeConfiguration;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * @author Axel Faust
+ */
+public class CacheRegionKeySerializerBenchmark extends AbstractSerializerBenchmark
+{
+
+    @Param({ MODE_REFLECTIVE, MODE_REGULAR, MODE_RAW })
+    public String mode;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected String getMode()
+    {
+        return this.mode;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Object createFixture(final Random random)
+    {
+        return BenchmarkFixtures.createCacheRegionKey(random);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void addTypeConfigurations(final String mode, final String instanceName,
+            final List<BinaryTypeConfiguration> typeConfigurations)
+    {
+        final CacheRegionKeyBinarySerializer serializer = new CacheRegionKeyBinarySerializer();
+        serializer.setUseRawSerialForm(isRawMode(mode));
+        typeConfigurations.add(createTypeConfiguration(CacheRegionKey.class, serializer));
+    }
+}
@@ -0,0 +1,77 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.benchmark;
+
+import java.util.List;
+import java.util.Random;
+
+import org.aldica.common.ignite.binary.StringDictionary;
+import org.aldica.repo.ignite.binary.ContentDataBinarySerializer;
+import org.alfresco.repo.domain.node.ContentDataWithId;
+import org.alfresco.service.cmr.repository.ContentData;
+import org.apache.ignite.binary.BinaryTypeConfiguration;
+import org.openjdk.jmh.annotations.Param;
+import org.springframework.context.ApplicationContext;
+
+/**
+ * Benchmarks {@link ContentDataBinarySerializer} - all custom modes use packed content URLs.
+ *
+ * @author Axel Faust
+ */
+public class ContentDataSerializerBenchmark extends AbstractSerializerBenchmark
+{
+
+    @Param({ MODE_REFLECTIVE, MODE_REGULAR, MODE_RAW, MODE_REGULAR_IDS, MODE_RAW_IDS, MODE_REGULAR_DICTIONARY, MODE_RAW_DICTIONARY })
+    public String mode;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected String getMode()
+    {
+        return this.mode;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Object createFixture(final Random random)
+    {
+        return BenchmarkFixtures.createContentData(random);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void addTypeConfigurations(final String mode, final String instanceName,
+            final List<BinaryTypeConfiguration> typeConfigurations)
+    {
+        StringDictionary stringDictionary = null;
+        if (isDictionaryMode(mode))
+        {
+            stringDictionary = new StringDictionary();
+            stringDictionary.setCacheName("strings");
+            this.registerDictionary(stringDictionary, instanceName);
+        }
+        addTypeConfigurations(mode, this.applicationContext, stringDictionary, typeConfigurations);
+    }
+
+    protected static void addTypeConfigurations(final String mode, final ApplicationContext applicationContext,
+            final StringDictionary stringDictionary, final List<BinaryTypeConfiguration> typeConfigurations)
+    {
+        final ContentDataBinarySerializer serializer = new ContentDataBinarySerializer();
+        serializer.setApplicationContext(applicationContext);
+        serializer.setUseRawSerialForm(isRawMode(mode));
+        serializer.setUseIdsWhenReasonable(isIdMode(mode));
+        serializer.setUsePackedContentUrls(true);
+        serializer.setUseStringDictionary(stringDictionary != null);
+        serializer.setStringDictionary(stringDictionary);
+
+        typeConfigurations.add(createTypeConfiguration(ContentData.class, serializer));
+        typeConfigurations.add(createTypeConfiguration(ContentDataWithId.class, serializer));
+    }
+}
@@ -0,0 +1,128 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import javax.cache.configuration.Factory;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.expiry.AccessedExpiryPolicy;
+import javax.cache.expiry.Duration;
+import javax.cache.expiry.ExpiryPolicy;
+import javax.cache.expiry.ModifiedExpiryPolicy;
+
+import org.aldica.common.ignite.cache.CombinedExpiryPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the {@link CombinedExpiryPolicy combined expiry policy}, which is consulted by Ignite for every entry operation on caches
+ * with both a time-to-live and a max-idle time, and thus should neither allocate any objects nor add noticeable overhead. The allocation
+ * rate per operation can be measured by running the benchmark with the JMH GC profiler ({@code -prof gc}, metric
+ * {@code gc.alloc.rate.norm}), and is expected to be zero for both modes.
+ *
+ * @author Axel Faust
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+public class ExpiryPolicyBenchmark
+{
+
+    /**
+     * Mode using standard JSR-107 policies which are known to return constant durations.
+     */
+    public static final String MODE_STATIC = "static";
+
+    /**
+     * Mode using sub-classes of standard JSR-107 policies which are not known to return constant durations.
+     */
+    public static final String MODE_DYNAMIC = "dynamic";
+
+    private static final Duration TIME_TO_LIVE = new Duration(TimeUnit.SECONDS, 60);
+
+    private static final Duration MAX_IDLE = new Duration(TimeUnit.SECONDS, 30);
+
+    @Param({ MODE_STATIC, MODE_DYNAMIC })
+    public String mode;
+
+    protected ExpiryPolicy policy;
+
+    /**
+     * Sets up the policy for a single trial of the benchmark.
+     */
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        final Collection<Factory<? extends ExpiryPolicy>> policyFactories = new ArrayList<>();
+        if (MODE_DYNAMIC.equals(this.mode))
+        {
+            // sub-classes are not known to return constant durations
+            policyFactories.add(new FactoryBuilder.SingletonFactory<>(new ModifiedExpiryPolicy(TIME_TO_LIVE)
+            {
+
+                private static final long serialVersionUID = 1L;
+            }));
+            policyFactories.add(new FactoryBuilder.SingletonFactory<>(new AccessedExpiryPolicy(MAX_IDLE)
+            {
+
+                private static final long serialVersionUID = 1L;
+            }));
+        }
+        else
+        {
+            policyFactories.add(ModifiedExpiryPolicy.factoryOf(TIME_TO_LIVE));
+            policyFactories.add(AccessedExpiryPolicy.factoryOf(MAX_IDLE));
+        }
+        this.policy = new CombinedExpiryPolicy(policyFactories);
+    }
+
+    /**
+     * Benchmarks the determination of the expiry duration for a newly created entry.
+     *
+     * @return the expiry duration
+     */
+    @Benchmark
+    public Duration expiryForCreation()
+    {
+        return this.policy.getExpiryForCreation();
+    }
+
+    /**
+     * Benchmarks the determination of the expiry duration for an accessed entry.
+     *
+     * @return the expiry duration
+     */
+    @Benchmark
+    public Duration expiryForAccess()
+    {
+        return this.policy.getExpiryForAccess();
+    }
+
+    /**
+     * Benchmarks the determination of the expiry duration for an updated entry.
+     *
+     * @return the expiry duration
+     */
+    @Benchmark
+    public Duration expiryForUpdate()
+    {
+        return this.policy.getExpiryForUpdate();
+    }
+}
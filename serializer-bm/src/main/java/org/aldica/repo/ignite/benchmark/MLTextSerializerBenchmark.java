@@ -0,0 +1,61 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.benchmark;
+
+import java.util.List;
+import java.util.Random;
+
+import org.aldica.repo.ignite.binary.MLTextBinarySerializer;
+import org.alfresco.service.cmr.repository.MLText;
+import org.apache.ignite.binary.BinaryTypeConfiguration;
+import org.openjdk.jmh.annotations.Param;
+import org.springframework.context.ApplicationContext;
+
+/**
+ * @author Axel Faust
+ */
+public class MLTextSerializerBenchmark extends AbstractSerializerBenchmark
+{
+
+    @Param({ MODE_REFLECTIVE, MODE_REGULAR, MODE_RAW, MODE_REGULAR_IDS, MODE_RAW_IDS })
+    public String mode;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected String getMode()
+    {
+        return this.mode;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Object createFixture(final Random random)
+    {
+        return BenchmarkFixtures.createMLText(random);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void addTypeConfigurations(final String mode, final String instanceName,
+            final List<BinaryTypeConfiguration> typeConfigurations)
+    {
+        addTypeConfigurations(mode, this.applicationContext, typeConfigurations);
+    }
+
+    protected static void addTypeConfigurations(final String mode, final ApplicationContext applicationContext,
+            final List<BinaryTypeConfiguration> typeConfigurations)
+    {
+        final MLTextBinarySerializer serializer = new MLTextBinarySerializer();
+        serializer.setApplicationContext(applicationContext);
+        serializer.setUseRawSerialForm(isRawMode(mode));
+        serializer.setUseIdsWhenReasonable(isIdMode(mode));
+        typeConfigurations.add(createTypeConfiguration(MLText.class, serializer));
+    }
+}
@@ -0,0 +1,62 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.benchmark;
+
+import java.util.List;
+import java.util.Random;
+
+import org.aldica.repo.ignite.binary.NodeAspectsBinarySerializer;
+import org.aldica.repo.ignite.cache.NodeAspectsCacheSet;
+import org.apache.ignite.binary.BinaryTypeConfiguration;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * @author Axel Faust
+ */
+public class NodeAspectsSerializerBenchmark extends AbstractSerializerBenchmark
+{
+
+    /**
+     * Mode using the raw serial form, substituting aspects with IDs and writing the IDs as a compressed bitmap.
+     */
+    public static final String MODE_RAW_IDS_BITMAP = "rawIdsBitmap";
+
+    @Param({ MODE_REFLECTIVE, MODE_REGULAR, MODE_RAW, MODE_REGULAR_IDS, MODE_RAW_IDS, MODE_RAW_IDS_BITMAP })
+    public String mode;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected String getMode()
+    {
+        return this.mode;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Object createFixture(final Random random)
+    {
+        return BenchmarkFixtures.createNodeAspects(random);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void addTypeConfigurations(final String mode, final String instanceName,
+            final List<BinaryTypeConfiguration> typeConfigurations)
+    {
+        final boolean bitmap = MODE_RAW_IDS_BITMAP.equals(mode);
+
+        final NodeAspectsBinarySerializer serializer = new NodeAspectsBinarySerializer();
+        serializer.setApplicationContext(this.applicationContext);
+        serializer.setUseRawSerialForm(isRawMode(mode));
+        serializer.setUseIdsWhenReasonable(isIdMode(mode) || bitmap);
+        serializer.setUseBitmapSerialForm(bitmap);
+        typeConfigurations.add(createTypeConfiguration(NodeAspectsCacheSet.class, serializer));
+    }
+}
@@ -0,0 +1,82 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.benchmark;
+
+import java.util.List;
+import java.util.Random;
+
+import org.aldica.repo.ignite.binary.NodePropertiesBinarySerializer;
+import org.aldica.repo.ignite.binary.NodeRefBinarySerializer;
+import org.aldica.repo.ignite.binary.PropertyLayoutDictionary;
+import org.aldica.repo.ignite.binary.PropertyValueDictionary;
+import org.aldica.repo.ignite.cache.NodePropertiesCacheMap;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.apache.ignite.binary.BinaryTypeConfiguration;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Benchmarks {@link NodePropertiesBinarySerializer} - in all custom modes, the serializers for nested values (content data, multilingual
+ * text, node references) are configured in the same mode to reflect a realistic setup. Lazy decoding and bulk resolution of IDs are not
+ * used, so that deserialisation always includes the full resolution of all values.
+ *
+ * @author Axel Faust
+ */
+public class NodePropertiesSerializerBenchmark extends AbstractSerializerBenchmark
+{
+
+    @Param({ MODE_REFLECTIVE, MODE_REGULAR, MODE_RAW, MODE_REGULAR_IDS, MODE_RAW_IDS, MODE_RAW_DICTIONARY })
+    public String mode;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected String getMode()
+    {
+        return this.mode;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Object createFixture(final Random random)
+    {
+        return BenchmarkFixtures.createNodeProperties(random);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void addTypeConfigurations(final String mode, final String instanceName,
+            final List<BinaryTypeConfiguration> typeConfigurations)
+    {
+        // dictionaries are only supported in raw serial form with IDs
+        final boolean dictionaries = isDictionaryMode(mode);
+        final boolean ids = isIdMode(mode) || dictionaries;
+
+        final NodePropertiesBinarySerializer serializer = new NodePropertiesBinarySerializer();
+        serializer.setApplicationContext(this.applicationContext);
+        serializer.setUseRawSerialForm(isRawMode(mode));
+        serializer.setUseIdsWhenReasonable(ids);
+        serializer.setUseIdsWhenPossible(ids);
+        if (dictionaries)
+        {
+            serializer.setUsePropertyLayouts(true);
+            serializer.setPropertyLayoutDictionary(this.registerDictionary(new PropertyLayoutDictionary(), instanceName));
+            serializer.setUseValueDictionary(true);
+            serializer.setPropertyValueDictionary(this.registerDictionary(new PropertyValueDictionary(), instanceName));
+        }
+        typeConfigurations.add(createTypeConfiguration(NodePropertiesCacheMap.class, serializer));
+
+        final String nestedMode = ids ? (isRawMode(mode) ? MODE_RAW_IDS : MODE_REGULAR_IDS) : mode;
+        ContentDataSerializerBenchmark.addTypeConfigurations(nestedMode, this.applicationContext, null, typeConfigurations);
+        MLTextSerializerBenchmark.addTypeConfigurations(nestedMode, this.applicationContext, typeConfigurations);
+
+        final NodeRefBinarySerializer nodeRefSerializer = new NodeRefBinarySerializer();
+        nodeRefSerializer.setUseRawSerialForm(isRawMode(mode));
+        typeConfigurations.add(createTypeConfiguration(NodeRef.class, nodeRefSerializer));
+    }
+}
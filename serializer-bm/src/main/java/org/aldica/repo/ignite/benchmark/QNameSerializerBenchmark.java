@@ -0,0 +1,60 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. */
+package org.aldica.repo.ignite.benchmark;
+
+import java.util.List;
+import java.util.Random;
+
+import org.aldica.repo.ignite.binary.NamespaceDictionary;
+import org.aldica.repo.ignite.binary.QNameBinarySerializer;
+import org.alfresco.service.namespace.QName;
+import org.apache.ignite.binary.BinaryTypeConfiguration;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * @author Axel Faust
+ */
+public class QNameSerializerBenchmark extends AbstractSerializerBenchmark
+{
+
+    @Param({ MODE_REFLECTIVE, MODE_REGULAR, MODE_RAW, MODE_REGULAR_DICTIONARY, MODE_RAW_DICTIONARY })
+    public String mode;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected String getMode()
+    {
+        return this.mode;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Object createFixture(final Random random)
+    {
+        return BenchmarkFixtures.createQName(random);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void addTypeConfigurations(final String mode, final String instanceName,
+            final List<BinaryTypeConfiguration> typeConfigurations)
+    {
+        final QNameBinarySerializer serializer = new QNameBinarySerializer();
+        serializer.setUseRawSerialForm(isRawMode(mode));
+        if (isDictionaryMode(mode))
+        {
+            final NamespaceDictionary namespaceDictionary = new NamespaceDictionary();
+            namespaceDictionary.setNamespaceUris(BenchmarkFixtures.getCustomNamespaceUris());
+            serializer.setUseNamespaceDictionary(true);
+            serializer.setNamespaceDictionary(namespaceDictionary);
+        }
+        typeConfigurations.add(createTypeConfiguration(QName.class, serializer));
+    }
+}